@@ -0,0 +1,34 @@
+package com.sportradar.unifiedodds.example.benchmark;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs JMH with JSON results written to results/[label].json, so runs of different commits can be compared
+ * (e.g. with jmh.morethan.io). The label defaults to the current time and can be set with -Dbenchmark.label=[commit].
+ * All other arguments are passed to JMH as they are.
+ */
+public final class BenchmarkRunner {
+    private BenchmarkRunner() {
+        // no instance
+    }
+
+    public static void main(String[] args) throws Exception {
+        String label = System.getProperty("benchmark.label", String.valueOf(System.currentTimeMillis()));
+        File resultsFolder = new File("results");
+        if (!resultsFolder.exists() && !resultsFolder.mkdirs()) {
+            throw new IllegalStateException("Failed to create the results folder: " + resultsFolder.getAbsolutePath());
+        }
+
+        List<String> jmhArgs = new ArrayList<>();
+        jmhArgs.add("-rf");
+        jmhArgs.add("json");
+        jmhArgs.add("-rff");
+        jmhArgs.add(new File(resultsFolder, label + ".json").getPath());
+        jmhArgs.addAll(Arrays.asList(args));
+
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
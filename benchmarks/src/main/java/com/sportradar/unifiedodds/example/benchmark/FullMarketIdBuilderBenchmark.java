@@ -0,0 +1,73 @@
+package com.sportradar.unifiedodds.example.benchmark;
+
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.entities.MarketData;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the legacy and the cached market key builder. Every invocation uses a fresh specifiers map copy,
+ * as the SDK hands out new map instances with every odds change.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class FullMarketIdBuilderBenchmark {
+
+    /**
+     * The number of distinct events the markets are spread over, larger values lower the key cache hit rate
+     */
+    @Param({"10", "10000"})
+    public int eventCount;
+
+    private MarketData[] markets;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Map<String, String>[] specifierSets = MarketFixtures.realisticSpecifierSets();
+        int[] marketIds = {1, 18, 16, 26, 199, 37, 66};
+
+        markets = new MarketData[eventCount * marketIds.length];
+        int i = 0;
+        for (int e = 0; e < eventCount; e++) {
+            for (int m = 0; m < marketIds.length; m++) {
+                markets[i++] = new MarketData(1, "sr:match:" + (20000000 + e), marketIds[m], specifierSets[m % specifierSets.length]);
+            }
+        }
+    }
+
+    @Benchmark
+    public String legacy() {
+        return LegacyFullMarketIdBuilder.composeFullMarketKey(next());
+    }
+
+    @Benchmark
+    public String optimized() {
+        return FullMarketIdBuilder.composeFullMarketKey(next());
+    }
+
+    private MarketData next() {
+        MarketData market = markets[index];
+        index = (index + 1) % markets.length;
+        Map<String, String> specifiers = market.getSpecifiers() == null ? null : new HashMap<>(market.getSpecifiers());
+        return new MarketData(market.getProducerId(), market.getEventId(), market.getId(), specifiers);
+    }
+}
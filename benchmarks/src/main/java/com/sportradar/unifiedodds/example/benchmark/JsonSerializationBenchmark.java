@@ -0,0 +1,37 @@
+package com.sportradar.unifiedodds.example.benchmark;
+
+import com.sportradar.unifiedodds.example.impl.JsonSerialization;
+import com.sportradar.unifiedodds.example.impl.entities.OutcomeCoreData;
+import com.sportradar.unifiedodds.example.impl.entities.OutcomeMetadata;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class JsonSerializationBenchmark {
+    private final OutcomeCoreData outcome = new OutcomeCoreData("12", 0.4123455, 2.35, true);
+    private final OutcomeMetadata outcomeMetadata = new OutcomeMetadata("Over 2.5");
+
+    @Benchmark
+    public String outcomeCoreData() {
+        return JsonSerialization.serialize(outcome);
+    }
+
+    @Benchmark
+    public String outcomeMetadata() {
+        return JsonSerialization.serialize(outcomeMetadata);
+    }
+}
@@ -0,0 +1,103 @@
+package com.sportradar.unifiedodds.example.benchmark;
+
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.utils.KeyedSerialExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Throughput of {@link KeyedSerialExecutor} with several concurrent submitters, doubling as a stress test:
+ * every task verifies it runs in submission order for its key and the invocation fails on the first violation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class KeyedSerialExecutorBenchmark {
+
+    @Param({"250"})
+    public int taskCount;
+
+    @Param({"1", "50", "250"})
+    public int keyCount;
+
+    @Param({"1024"})
+    public int maxPendingTasks;
+
+    private ExecutorService executor;
+    private ScheduledExecutorService metricsExecutor;
+    private KeyedSerialExecutor keyedSerialExecutor;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(16);
+        metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        keyedSerialExecutor = new KeyedSerialExecutor("benchmark", executor, 250, maxPendingTasks, new MetricsRegistry(metricsExecutor));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        executor.shutdownNow();
+        metricsExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void submitAndAwait(SubmitterState state) throws InterruptedException {
+        state.reset();
+        CountDownLatch completed = new CountDownLatch(taskCount);
+        for (int i = 0; i < taskCount; i++) {
+            int key = i % keyCount;
+            int sequence = i / keyCount;
+            keyedSerialExecutor.execute(state.keyPrefix + key, () -> {
+                Blackhole.consumeCPU(100);
+                if (!state.lastSequence.compareAndSet(key, sequence - 1, sequence)) {
+                    state.violated = true;
+                }
+                completed.countDown();
+            });
+        }
+        completed.await();
+
+        if (state.violated) {
+            throw new IllegalStateException("Per key ordering violated");
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SubmitterState {
+        private static final int MAX_KEYS = 250;
+
+        private final String keyPrefix = "submitter-" + System.identityHashCode(this) + "-";
+        private final AtomicIntegerArray lastSequence = new AtomicIntegerArray(MAX_KEYS);
+        private volatile boolean violated;
+
+        private void reset() {
+            for (int i = 0; i < MAX_KEYS; i++) {
+                lastSequence.set(i, -1);
+            }
+        }
+    }
+}
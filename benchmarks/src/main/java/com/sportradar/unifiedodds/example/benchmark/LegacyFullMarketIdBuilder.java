@@ -0,0 +1,29 @@
+package com.sportradar.unifiedodds.example.benchmark;
+
+import com.sportradar.unifiedodds.example.impl.entities.MarketData;
+
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.stream.Collectors;
+
+/**
+ * The original String.format/TreeSet based market key builder, kept as the benchmark baseline.
+ */
+final class LegacyFullMarketIdBuilder {
+    private LegacyFullMarketIdBuilder() {
+        // no instance
+    }
+
+    static String composeFullMarketKey(MarketData marketData) {
+        return String.format("uof:%s/%s/%s%s", marketData.getProducerId(), marketData.getEventId(), marketData.getId(), composeSpecifiersTail(marketData.getSpecifiers()));
+    }
+
+    private static String composeSpecifiersTail(Map<String, String> specifiers) {
+        if (specifiers == null || specifiers.isEmpty()) {
+            return "";
+        }
+        return "/" + new TreeSet<>(specifiers.keySet()).stream()
+                .map(v -> v + "=" + specifiers.get(v))
+                .collect(Collectors.joining("|"));
+    }
+}
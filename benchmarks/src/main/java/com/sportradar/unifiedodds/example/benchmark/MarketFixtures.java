@@ -0,0 +1,172 @@
+package com.sportradar.unifiedodds.example.benchmark;
+
+import com.google.common.collect.ImmutableMap;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithOdds;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithSettlement;
+import com.sportradar.unifiedodds.sdk.oddsentities.OddsDisplayType;
+import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeOdds;
+import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeResult;
+import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeSettlement;
+import com.sportradar.unifiedodds.sdk.oddsentities.VoidFactor;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Synthetic market data shaped like the live football feed. SDK entities are backed by dynamic proxies,
+ * so only the accessors the example actually calls need to be provided.
+ */
+public final class MarketFixtures {
+    private MarketFixtures() {
+        // no instance
+    }
+
+    @SuppressWarnings("unchecked")
+    public static Map<String, String>[] realisticSpecifierSets() {
+        return new Map[]{
+                null,
+                ImmutableMap.of("total", "2.5"),
+                ImmutableMap.of("hcp", "0:1"),
+                ImmutableMap.of("total", "1.5", "periodnr", "1"),
+                ImmutableMap.of("variant", "sr:correct_score:max:6"),
+                ImmutableMap.of("goalnr", "2", "hcp", "-1.5", "periodnr", "2"),
+                ImmutableMap.of("playerid", "sr:player:1047", "milestone", "1"),
+        };
+    }
+
+    /**
+     * @param marketCount the number of markets in the odds change
+     * @param outcomesPerMarket the number of outcomes of every market
+     * @param seed the random seed, different seeds produce different odds for the same market set
+     */
+    public static List<MarketWithOdds> markets(int marketCount, int outcomesPerMarket, long seed) {
+        Random random = new Random(seed);
+        Map<String, String>[] specifierSets = realisticSpecifierSets();
+        List<MarketWithOdds> markets = new ArrayList<>(marketCount);
+        for (int i = 0; i < marketCount; i++) {
+            List<OutcomeOdds> outcomes = new ArrayList<>(outcomesPerMarket);
+            for (int o = 0; o < outcomesPerMarket; o++) {
+                double probability = random.nextDouble();
+                outcomes.add(outcome(String.valueOf(o + 1), probability, 1 / Math.max(probability, 0.01), true));
+            }
+            markets.add(market(i / specifierSets.length + 1, specifierSets[i % specifierSets.length], MarketStatus.Active, outcomes));
+        }
+        return markets;
+    }
+
+    public static MarketWithOdds market(int id, Map<String, String> specifiers, MarketStatus status, List<OutcomeOdds> outcomes) {
+        String name = "Market " + id;
+        return proxy(MarketWithOdds.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getSpecifiers":
+                    return specifiers;
+                case "getStatus":
+                    return status;
+                case "getOutcomeOdds":
+                    return Collections.unmodifiableList(outcomes);
+                case "getName":
+                    return name;
+                default:
+                    return unsupported(MarketWithOdds.class, method.getName());
+            }
+        });
+    }
+
+    public static OutcomeOdds outcome(String id, double probability, double odds, boolean active) {
+        String name = "Outcome " + id;
+        return proxy(OutcomeOdds.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getProbability":
+                    return probability;
+                case "getOdds":
+                    return args != null && args[0] == OddsDisplayType.Decimal ? odds : null;
+                case "isActive":
+                    return active;
+                case "getName":
+                    return args == null || Locale.ENGLISH.equals(args[0]) ? name : null;
+                default:
+                    return unsupported(OutcomeOdds.class, method.getName());
+            }
+        });
+    }
+
+    /**
+     * Markets of a bet settlement, the first outcome of every market won, every tenth market is half void
+     */
+    public static List<MarketWithSettlement> settledMarkets(int marketCount, int outcomesPerMarket) {
+        Map<String, String>[] specifierSets = realisticSpecifierSets();
+        List<MarketWithSettlement> markets = new ArrayList<>(marketCount);
+        for (int i = 0; i < marketCount; i++) {
+            VoidFactor voidFactor = i % 10 == 0 ? VoidFactor.Half : VoidFactor.Zero;
+            List<OutcomeSettlement> outcomes = new ArrayList<>(outcomesPerMarket);
+            for (int o = 0; o < outcomesPerMarket; o++) {
+                outcomes.add(outcomeSettlement(String.valueOf(o + 1), o == 0 ? OutcomeResult.Won : OutcomeResult.Lost, voidFactor));
+            }
+            markets.add(settledMarket(i / specifierSets.length + 1, specifierSets[i % specifierSets.length], outcomes));
+        }
+        return markets;
+    }
+
+    public static MarketWithSettlement settledMarket(int id, Map<String, String> specifiers, List<OutcomeSettlement> outcomes) {
+        return proxy(MarketWithSettlement.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getSpecifiers":
+                    return specifiers;
+                case "getOutcomeSettlements":
+                    return Collections.unmodifiableList(outcomes);
+                default:
+                    return unsupported(MarketWithSettlement.class, method.getName());
+            }
+        });
+    }
+
+    public static OutcomeSettlement outcomeSettlement(String id, OutcomeResult result, VoidFactor voidFactor) {
+        return proxy(OutcomeSettlement.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getOutcomeResult":
+                    return result;
+                case "getVoidFactor":
+                    return voidFactor;
+                case "getDeadHeatFactor":
+                    return null;
+                default:
+                    return unsupported(OutcomeSettlement.class, method.getName());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(MarketFixtures.class.getClassLoader(), new Class[]{type}, (p, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(p);
+                case "equals":
+                    return p == args[0];
+                case "toString":
+                    return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(p));
+                default:
+                    return handler.invoke(p, method, args);
+            }
+        });
+    }
+
+    private static Object unsupported(Class<?> type, String method) {
+        throw new UnsupportedOperationException(type.getSimpleName() + "." + method + " is not provided by the fixture");
+    }
+}
@@ -0,0 +1,54 @@
+package com.sportradar.unifiedodds.example.benchmark;
+
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeCodec;
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeEncoding;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.entities.OutcomeCoreData;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class OutcomeCodecBenchmark {
+
+    @Param({"JSON", "BINARY"})
+    public OutcomeEncoding encoding;
+
+    private final MarketCoreData market = new MarketCoreData(1, "sr:match:20000001", 18, null, MarketStatus.Active,
+            new String[]{"12", "13"}, new double[]{0.4123455, 0.5876545}, new double[]{2.35, 1.62}, new boolean[]{true, true});
+    private OutcomeCodec codec;
+    private byte[] encoded;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        codec = encoding.getCodec();
+        encoded = codec.encode(market, 0);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return codec.encode(market, 0);
+    }
+
+    @Benchmark
+    public OutcomeCoreData decode() {
+        return OutcomeEncoding.decodeAny("12", encoded);
+    }
+}
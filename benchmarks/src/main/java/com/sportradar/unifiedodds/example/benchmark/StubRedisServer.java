@@ -0,0 +1,149 @@
+package com.sportradar.unifiedodds.example.benchmark;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * A minimal in-process RESP server which acknowledges every command without storing anything,
+ * so the writers can be benchmarked offline with real Jedis serialization and socket round trips.
+ * Reads find nothing: the hash and set reads reply with an empty list.
+ */
+public class StubRedisServer implements Closeable {
+    private static final Logger logger = LoggerFactory.getLogger(StubRedisServer.class);
+
+    private final ServerSocket serverSocket;
+    private final Thread acceptThread;
+
+    public StubRedisServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        this.acceptThread = new Thread(this::acceptConnections, "stub-redis-accept");
+        this.acceptThread.setDaemon(true);
+        this.acceptThread.start();
+    }
+
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    public String getUri() {
+        return "redis://localhost:" + getPort();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                Thread connectionThread = new Thread(() -> serve(socket), "stub-redis-connection");
+                connectionThread.setDaemon(true);
+                connectionThread.start();
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    logger.warn("Stub redis failed to accept a connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            while (true) {
+                String command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                out.write(reply(command));
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // connection closed by the client
+        }
+    }
+
+    private static byte[] reply(String command) {
+        switch (command) {
+            case "PING":
+                return "+PONG\r\n".getBytes(StandardCharsets.US_ASCII);
+            case "SET":
+            case "HMSET":
+            case "SELECT":
+            case "AUTH":
+            case "QUIT":
+                return "+OK\r\n".getBytes(StandardCharsets.US_ASCII);
+            case "HGETALL":
+            case "SMEMBERS":
+                return "*0\r\n".getBytes(StandardCharsets.US_ASCII);
+            default:
+                return ":1\r\n".getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * @return the upper-cased command name, null when the stream ended
+     */
+    private static String readCommand(InputStream in) throws IOException {
+        int marker = in.read();
+        if (marker == -1) {
+            return null;
+        }
+        if (marker != '*') {
+            throw new IOException("Unexpected RESP marker: " + (char) marker);
+        }
+        int arguments = Integer.parseInt(readLine(in));
+        String command = null;
+        for (int i = 0; i < arguments; i++) {
+            if (in.read() != '$') {
+                throw new IOException("Expected a bulk string");
+            }
+            int length = Integer.parseInt(readLine(in));
+            byte[] value = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int r = in.read(value, read, length - read);
+                if (r == -1) {
+                    throw new IOException("Unexpected end of stream");
+                }
+                read += r;
+            }
+            readLine(in);
+            if (i == 0) {
+                command = new String(value, StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+            }
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            sb.append((char) c);
+        }
+        in.read(); // \n
+        return sb.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.sportradar.unifiedodds.example.impl.core;
+
+import com.sportradar.unifiedodds.example.benchmark.MarketFixtures;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithOdds;
+import com.sportradar.utils.URN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping a whole odds change into core data entities ({@link CoreDataWriter#mapCoreData}).
+ * Placed in the core package, as the mapping is package-private.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CoreDataMappingBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int marketCount;
+
+    @Param({"2", "30", "300"})
+    public int outcomesPerMarket;
+
+    private URN eventId;
+    private List<MarketWithOdds> markets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        eventId = URN.parse("sr:match:20000001");
+        markets = MarketFixtures.markets(marketCount, outcomesPerMarket, 1);
+    }
+
+    @Benchmark
+    public void mapOddsChange(Blackhole blackhole) {
+        for (MarketWithOdds market : markets) {
+            MarketCoreData mapped = CoreDataWriter.mapCoreData(1, eventId, market);
+            blackhole.consume(mapped);
+        }
+    }
+}
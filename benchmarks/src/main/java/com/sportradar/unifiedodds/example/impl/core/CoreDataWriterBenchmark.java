@@ -0,0 +1,132 @@
+package com.sportradar.unifiedodds.example.impl.core;
+
+import com.sportradar.unifiedodds.example.benchmark.MarketFixtures;
+import com.sportradar.unifiedodds.example.benchmark.StubRedisServer;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.book.OddsBook;
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeEncoding;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.redis.SingleRedisShards;
+import com.sportradar.unifiedodds.example.impl.storage.MappedStorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.RedisStorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithOdds;
+import com.sportradar.utils.URN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.JedisPool;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing a whole odds change through {@link CoreDataWriter} against the in-process stub redis
+ * or the memory-mapped storage.
+ * With changedOdds=true every invocation alternates between two odds sets, so all outcomes must be written.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CoreDataWriterBenchmark {
+
+    @Param({"1", "50", "500"})
+    public int marketCount;
+
+    @Param({"2", "30"})
+    public int outcomesPerMarket;
+
+    @Param({"true", "false"})
+    public boolean changedOdds;
+
+    @Param({"JSON", "BINARY"})
+    public OutcomeEncoding encoding;
+
+    @Param({"redis", "mapped"})
+    public String storage;
+
+    private StubRedisServer redisServer;
+    private Path storageFile;
+    private StorageBackend storageBackend;
+    private ScheduledExecutorService metricsExecutor;
+    private CoreDataWriter coreDataWriter;
+    private MarketCoalescingBuffer[] buffers;
+    private int index;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        MetricsRegistry metricsRegistry = new MetricsRegistry(metricsExecutor);
+        if ("mapped".equals(storage)) {
+            storageFile = Files.createTempFile("uof-benchmark", ".store");
+            storageBackend = new MappedStorageBackend(storageFile, 256L * 1024 * 1024, metricsExecutor, metricsRegistry);
+        } else {
+            redisServer = new StubRedisServer();
+            storageBackend = new RedisStorageBackend(new SingleRedisShards(new JedisPool(new URI(redisServer.getUri()))), metricsRegistry);
+        }
+        EventLifecycleTracker eventLifecycleTracker = new EventLifecycleTracker(storageBackend, metricsExecutor, metricsRegistry, 3600);
+        coreDataWriter = new CoreDataWriter(storageBackend, new LastWrittenStateCache(1000), eventLifecycleTracker,
+                new OddsBook(eventLifecycleTracker, metricsExecutor, metricsRegistry, TimeUnit.HOURS.toMillis(6)), encoding.getCodec(),
+                metricsRegistry, 500, false);
+
+        URN eventId = URN.parse("sr:match:20000001");
+        buffers = new MarketCoalescingBuffer[]{
+                buffer(metricsRegistry, eventId, MarketFixtures.markets(marketCount, outcomesPerMarket, 1)),
+                buffer(metricsRegistry, eventId, MarketFixtures.markets(marketCount, outcomesPerMarket, 2))
+        };
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        storageBackend.close();
+        if (redisServer != null) {
+            redisServer.close();
+        }
+        if (storageFile != null) {
+            Files.deleteIfExists(storageFile);
+        }
+        metricsExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void writeOddsChange() {
+        if (changedOdds) {
+            index = 1 - index;
+        }
+        coreDataWriter.write(buffers[index]);
+    }
+
+    private static MarketCoalescingBuffer buffer(MetricsRegistry metricsRegistry, URN eventId, List<MarketWithOdds> markets) {
+        Map<String, MarketCoreData> mapped = new LinkedHashMap<>();
+        for (MarketWithOdds market : markets) {
+            MarketCoreData marketCoreData = CoreDataWriter.mapCoreData(1, eventId, market);
+            mapped.put(FullMarketIdBuilder.composeFullMarketKey(marketCoreData), marketCoreData);
+        }
+        MarketCoalescingBuffer buffer = new MarketCoalescingBuffer(metricsRegistry);
+        buffer.add(new CoreDataUpdate(eventId, mapped, Collections.emptyMap()));
+        return buffer;
+    }
+}
@@ -0,0 +1,166 @@
+package com.sportradar.unifiedodds.example.impl.read;
+
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeCodec;
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeEncoding;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.entities.StoredMarket;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.redis.SingleRedisShards;
+import com.sportradar.unifiedodds.example.impl.storage.RedisStorageBackend;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+import com.sportradar.utils.URN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.ScanParams;
+import redis.clients.jedis.ScanResult;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.net.URI;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reading the full market book of an event: through the per-event market index ({@link MarketBookReader})
+ * against discovering the keys with SCAN. Both variants fetch the found markets the same way.
+ * <p>
+ * Needs a real redis, the database selected by the redisUri parameter is FLUSHED and populated in the setup.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MarketBookReaderBenchmark {
+    private static final int OUTCOMES_PER_MARKET = 3;
+    private static final int SCAN_BATCH_SIZE = 1000;
+
+    @Param({"redis://localhost:6379/15"})
+    public String redisUri;
+
+    @Param({"1000", "10000"})
+    public int eventCount;
+
+    @Param({"50"})
+    public int marketsPerEvent;
+
+    private JedisPool jedisPool;
+    private ScheduledExecutorService metricsExecutor;
+    private MarketBookReader marketBookReader;
+    private final Random random = new Random(1);
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        jedisPool = new JedisPool(new URI(redisUri));
+        metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        marketBookReader = new MarketBookReader(new RedisStorageBackend(new SingleRedisShards(jedisPool), new MetricsRegistry(metricsExecutor)));
+
+        OutcomeCodec codec = OutcomeEncoding.BINARY.getCodec();
+        try (Jedis client = jedisPool.getResource()) {
+            client.flushDB();
+            Pipeline pipeline = client.pipelined();
+            for (int e = 0; e < eventCount; e++) {
+                String eventId = eventId(e);
+                for (int m = 0; m < marketsPerEvent; m++) {
+                    MarketCoreData market = market(eventId, m);
+                    String fullMarketKey = FullMarketIdBuilder.composeFullMarketKey(market);
+
+                    Map<byte[], byte[]> properties = new HashMap<>();
+                    properties.put(SafeEncoder.encode("status"), SafeEncoder.encode(market.getMarketStatus().toString()));
+                    for (int o = 0; o < market.getOutcomeCount(); o++) {
+                        properties.put(SafeEncoder.encode("os_" + market.getOutcomeId(o)), codec.encode(market, o));
+                    }
+                    pipeline.hset(SafeEncoder.encode(RedisKeysBuilder.getMarketKey(fullMarketKey)), properties);
+                    pipeline.sadd(RedisKeysBuilder.getEventMarketsKey(eventId), fullMarketKey);
+                }
+                pipeline.hset(RedisKeysBuilder.getEventKey(eventId), Collections.singletonMap("eventStatus", "Live"));
+                if (e % 100 == 0) {
+                    pipeline.sync();
+                }
+            }
+            pipeline.sync();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        jedisPool.destroy();
+        metricsExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public Map<String, StoredMarket> readByIndex() {
+        Map<String, StoredMarket> markets = marketBookReader.readEventMarkets(URN.parse(eventId(random.nextInt(eventCount))));
+        return verified(markets);
+    }
+
+    @Benchmark
+    public Map<String, StoredMarket> readByScan() {
+        String eventId = eventId(random.nextInt(eventCount));
+        try (Jedis client = jedisPool.getResource()) {
+            Set<String> fullMarketKeys = new TreeSet<>();
+            ScanParams scanParams = new ScanParams()
+                    .match(RedisKeysBuilder.getEventMarketKeysPattern(eventId))
+                    .count(SCAN_BATCH_SIZE);
+            String cursor = ScanParams.SCAN_POINTER_START;
+            do {
+                ScanResult<String> scanResult = client.scan(cursor, scanParams);
+                for (String key : scanResult.getResult()) {
+                    fullMarketKeys.add(RedisKeysBuilder.getFullMarketKey(key));
+                }
+                cursor = scanResult.getCursor();
+            } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+
+            return verified(marketBookReader.readMarkets(fullMarketKeys));
+        }
+    }
+
+    private Map<String, StoredMarket> verified(Map<String, StoredMarket> markets) {
+        if (markets.size() != marketsPerEvent) {
+            throw new IllegalStateException("Expected " + marketsPerEvent + " markets, got " + markets.size());
+        }
+        return markets;
+    }
+
+    private static String eventId(int index) {
+        return "sr:match:" + (30_000_000 + index);
+    }
+
+    private static MarketCoreData market(String eventId, int index) {
+        String[] outcomeIds = new String[OUTCOMES_PER_MARKET];
+        double[] probabilities = new double[OUTCOMES_PER_MARKET];
+        double[] odds = new double[OUTCOMES_PER_MARKET];
+        boolean[] active = new boolean[OUTCOMES_PER_MARKET];
+        for (int o = 0; o < OUTCOMES_PER_MARKET; o++) {
+            outcomeIds[o] = Integer.toString(o + 1);
+            probabilities[o] = 1.0 / OUTCOMES_PER_MARKET;
+            odds[o] = OUTCOMES_PER_MARKET * 0.95;
+            active[o] = true;
+        }
+        Map<String, String> specifiers = Collections.singletonMap("total", (index + 0.5) + "");
+        return new MarketCoreData(1, eventId, 18, specifiers, MarketStatus.Active, outcomeIds, probabilities, odds, active);
+    }
+}
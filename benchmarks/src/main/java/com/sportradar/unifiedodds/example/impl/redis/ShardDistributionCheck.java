@@ -0,0 +1,83 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import redis.clients.jedis.JedisPool;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Checks the key placement of {@link ConsistentHashRedisShards} without touching redis (pools connect lazily):
+ * the event and market keys of every event must land on one shard, the events should spread evenly and adding a
+ * shard should move only about 1/n of the events.
+ * <p>
+ * Usage: java -cp benchmarks.jar com.sportradar.unifiedodds.example.impl.redis.ShardDistributionCheck [shards] [events]
+ * <p>
+ * For an end-to-end run start several redis-server processes (e.g. redis-server --port 6380 ...) and run the example
+ * with -Duof.example.redisMode=sharded -Duof.example.redisUris=redis://localhost:6379,redis://localhost:6380
+ */
+public final class ShardDistributionCheck {
+    private static final int VIRTUAL_NODES_PER_SHARD = 160;
+    private static final int MARKETS_PER_EVENT = 20;
+
+    private ShardDistributionCheck() {
+        // no instance
+    }
+
+    public static void main(String[] args) {
+        int shardCount = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int eventCount = args.length > 1 ? Integer.parseInt(args[1]) : 100_000;
+
+        ConsistentHashRedisShards shards = shards(shardCount);
+        ConsistentHashRedisShards grown = shards(shardCount + 1);
+        try {
+            long[] eventsPerShard = new long[shardCount];
+            int splitEvents = 0;
+            int movedEvents = 0;
+            for (int e = 0; e < eventCount; e++) {
+                String eventId = "sr:match:" + (40_000_000 + e);
+                String eventKey = RedisKeysBuilder.getEventKey(eventId);
+                int shard = shards.getShard(eventKey);
+                eventsPerShard[shard]++;
+
+                boolean split = shards.getShard(RedisKeysBuilder.getEventMarketsKey(eventId)) != shard;
+                for (int m = 0; m < MARKETS_PER_EVENT && !split; m++) {
+                    String fullMarketKey = FullMarketIdBuilder.composeFullMarketKey(1, eventId, m + 1,
+                            Collections.singletonMap("total", (m + 0.5) + ""));
+                    split = shards.getShard(RedisKeysBuilder.getMarketKey(fullMarketKey)) != shard;
+                }
+                if (split) {
+                    splitEvents++;
+                }
+                if (grown.getShard(eventKey) != shard) {
+                    movedEvents++;
+                }
+            }
+
+            long min = Long.MAX_VALUE;
+            long max = 0;
+            for (long count : eventsPerShard) {
+                min = Math.min(min, count);
+                max = Math.max(max, count);
+            }
+            System.out.printf("shards=%d events=%d per shard min=%d max=%d (max/avg %.3f)%n",
+                    shardCount, eventCount, min, max, max / ((double) eventCount / shardCount));
+            System.out.printf("events split across shards=%d%n", splitEvents);
+            System.out.printf("events moved when adding a shard=%.3f (ideal %.3f)%n",
+                    (double) movedEvents / eventCount, 1.0 / (shardCount + 1));
+        } finally {
+            shards.close();
+            grown.close();
+        }
+    }
+
+    private static ConsistentHashRedisShards shards(int count) {
+        List<JedisPool> pools = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            pools.add(new JedisPool("localhost", 6379 + i));
+        }
+        return new ConsistentHashRedisShards(pools, VIRTUAL_NODES_PER_SHARD);
+    }
+}
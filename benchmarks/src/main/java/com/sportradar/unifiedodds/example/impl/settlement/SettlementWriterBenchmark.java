@@ -0,0 +1,134 @@
+package com.sportradar.unifiedodds.example.impl.settlement;
+
+import com.sportradar.unifiedodds.example.benchmark.MarketFixtures;
+import com.sportradar.unifiedodds.example.benchmark.StubRedisServer;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.recovery.EventRecoveryRequester;
+import com.sportradar.unifiedodds.example.impl.recovery.FailedWriteTracker;
+import com.sportradar.unifiedodds.example.impl.redis.SingleRedisShards;
+import com.sportradar.unifiedodds.example.impl.storage.MappedStorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.RedisStorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithSettlement;
+import com.sportradar.utils.URN;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import redis.clients.jedis.JedisPool;
+
+import java.net.URI;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures a burst of 10k settled (or rolled back) markets written through {@link SettlementWriter}, from the first
+ * message submitted until the last write is acknowledged; the score is in markets per second.
+ * Every invocation writes the same burst again, the same as a recovery replaying already stored settlements.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(SettlementWriterBenchmark.BURST_MARKETS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SettlementWriterBenchmark {
+    static final int BURST_MARKETS = 10_000;
+
+    @Param({"100", "1000", "10000"})
+    public int marketsPerEvent;
+
+    @Param({"3"})
+    public int outcomesPerMarket;
+
+    @Param({"redis", "mapped"})
+    public String storage;
+
+    private StubRedisServer redisServer;
+    private Path storageFile;
+    private StorageBackend storageBackend;
+    private ScheduledExecutorService metricsExecutor;
+    private ExecutorService writerExecutor;
+    private SettlementWriter settlementWriter;
+    private List<MarketWithSettlement> markets;
+    private URN[] eventIds;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        writerExecutor = Executors.newSingleThreadExecutor();
+        MetricsRegistry metricsRegistry = new MetricsRegistry(metricsExecutor);
+        if ("mapped".equals(storage)) {
+            storageFile = Files.createTempFile("uof-benchmark", ".store");
+            storageBackend = new MappedStorageBackend(storageFile, 256L * 1024 * 1024, metricsExecutor, metricsRegistry);
+        } else {
+            redisServer = new StubRedisServer();
+            storageBackend = new RedisStorageBackend(new SingleRedisShards(new JedisPool(new URI(redisServer.getUri()))), metricsRegistry);
+        }
+        FailedWriteTracker failedWriteTracker = new FailedWriteTracker(new EventRecoveryRequester(metricsExecutor, metricsRegistry),
+                EventRecoveryRequester.Kind.STATEFUL, metricsRegistry, "settlement.write");
+        settlementWriter = new SettlementWriter(storageBackend, writerExecutor, metricsRegistry, new FeedMetrics(metricsRegistry),
+                failedWriteTracker, 3600, 1000, 10_000);
+        settlementWriter.start();
+
+        markets = MarketFixtures.settledMarkets(marketsPerEvent, outcomesPerMarket);
+        eventIds = new URN[BURST_MARKETS / marketsPerEvent];
+        for (int i = 0; i < eventIds.length; i++) {
+            eventIds[i] = URN.parse("sr:match:" + (20000001 + i));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        writerExecutor.shutdownNow();
+        storageBackend.close();
+        if (redisServer != null) {
+            redisServer.close();
+        }
+        if (storageFile != null) {
+            Files.deleteIfExists(storageFile);
+        }
+        metricsExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public void settlementBurst() throws InterruptedException {
+        long generatedAt = System.currentTimeMillis();
+        for (URN eventId : eventIds) {
+            settlementWriter.settle(1, eventId, markets, generatedAt);
+        }
+        awaitWritten();
+    }
+
+    @Benchmark
+    public void rollbackBurst() throws InterruptedException {
+        long generatedAt = System.currentTimeMillis();
+        for (URN eventId : eventIds) {
+            settlementWriter.rollbackSettlement(1, eventId, markets, generatedAt);
+        }
+        awaitWritten();
+    }
+
+    private void awaitWritten() throws InterruptedException {
+        while (settlementWriter.pendingMessages() > 0) {
+            TimeUnit.MICROSECONDS.sleep(50);
+        }
+    }
+}
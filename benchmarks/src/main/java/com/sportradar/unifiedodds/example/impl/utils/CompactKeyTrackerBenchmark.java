@@ -0,0 +1,90 @@
+package com.sportradar.unifiedodds.example.impl.utils;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the metadata trackers: the original Guava cache against {@link CompactKeyTracker}, using the
+ * check-then-put pattern of the MetadataWriter on full market keys. Run with -prof gc to compare the allocation rate.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CompactKeyTrackerBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int keyCount;
+
+    private String[] keys;
+    private ScheduledExecutorService metricsExecutor;
+    private CompactKeyTracker compactTracker;
+    private Cache<String, Integer> guavaTracker;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        keys = CompactKeyTrackerFalsePositiveCheck.fullMarketKeys(keyCount, 0);
+        metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        compactTracker = new CompactKeyTracker("benchmark", 64L * 1024 * 1024, 1, TimeUnit.HOURS,
+                new MetricsRegistry(metricsExecutor));
+        guavaTracker = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.HOURS).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        metricsExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean compactTracker(KeyCursor cursor) {
+        String key = keys[cursor.next(keys.length)];
+        if (!compactTracker.contains(key)) {
+            compactTracker.put(key);
+            return true;
+        }
+        return false;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean guavaTracker(KeyCursor cursor) {
+        String key = keys[cursor.next(keys.length)];
+        if (guavaTracker.getIfPresent(key) == null) {
+            guavaTracker.put(key, 1);
+            return true;
+        }
+        return false;
+    }
+
+    @State(Scope.Thread)
+    public static class KeyCursor {
+        private int position = (int) (Math.random() * Integer.MAX_VALUE);
+
+        private int next(int length) {
+            position = (position + 1) & Integer.MAX_VALUE;
+            return position % length;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.sportradar.unifiedodds.example.impl.utils;
+
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures the false positive and the forgotten key rates of {@link CompactKeyTracker} on realistic full market
+ * keys, for the given key count and memory ceiling.
+ * <p>
+ * Usage: java -cp benchmarks.jar com.sportradar.unifiedodds.example.impl.utils.CompactKeyTrackerFalsePositiveCheck
+ * [trackedKeys] [probedKeys] [maxMemoryMb]
+ */
+public final class CompactKeyTrackerFalsePositiveCheck {
+
+    private CompactKeyTrackerFalsePositiveCheck() {
+        // no instance
+    }
+
+    public static void main(String[] args) {
+        int trackedKeys = args.length > 0 ? Integer.parseInt(args[0]) : 2_000_000;
+        int probedKeys = args.length > 1 ? Integer.parseInt(args[1]) : 10_000_000;
+        long maxMemoryBytes = (args.length > 2 ? Long.parseLong(args[2]) : 64) * 1024 * 1024;
+
+        ScheduledExecutorService metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        try {
+            AtomicLong clock = new AtomicLong();
+            CompactKeyTracker tracker = new CompactKeyTracker("check", maxMemoryBytes, 1, TimeUnit.HOURS,
+                    new MetricsRegistry(metricsExecutor), clock::get);
+
+            String[] tracked = fullMarketKeys(trackedKeys, 0);
+            for (String key : tracked) {
+                tracker.put(key);
+            }
+
+            long forgotten = 0;
+            for (String key : tracked) {
+                if (!tracker.contains(key)) {
+                    forgotten++;
+                }
+            }
+
+            // the probed keys come from a disjoint event id range, so every hit is a false positive
+            long falsePositives = 0;
+            int batch = 1_000_000;
+            for (int offset = 0; offset < probedKeys; offset += batch) {
+                for (String key : fullMarketKeys(Math.min(batch, probedKeys - offset), 1_000_000_000 + offset)) {
+                    if (tracker.contains(key)) {
+                        falsePositives++;
+                    }
+                }
+            }
+
+            System.out.printf("tracked=%d probed=%d memory=%dMB size=%d%n",
+                    trackedKeys, probedKeys, tracker.memoryBytes() / 1024 / 1024, tracker.size());
+            System.out.printf("false positives=%d (rate %.3e), forgotten=%d (rate %.3e)%n",
+                    falsePositives, (double) falsePositives / probedKeys, forgotten, (double) forgotten / trackedKeys);
+        } finally {
+            metricsExecutor.shutdownNow();
+        }
+    }
+
+    /**
+     * Full market keys in the uof:[producer]/[event]/[market]/[specifiers] format, 50 markets per event
+     */
+    static String[] fullMarketKeys(int count, int firstEventId) {
+        Random random = new Random(firstEventId);
+        String[] keys = new String[count];
+        Map<String, String> specifiers = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            specifiers.clear();
+            int marketId = 1 + random.nextInt(1000);
+            if (random.nextBoolean()) {
+                specifiers.put("total", (random.nextInt(20) + 0.5) + "");
+            }
+            String eventId = "sr:match:" + (firstEventId + i / 50);
+            keys[i] = FullMarketIdBuilder.composeFullMarketKey(1 + random.nextInt(3), eventId, marketId, specifiers);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,387 @@
+package com.sportradar.unifiedodds.example.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sportradar.unifiedodds.example.impl.FeedEventListener;
+import com.sportradar.unifiedodds.example.impl.HeartbeatTracker;
+import com.sportradar.unifiedodds.example.impl.book.OddsBook;
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeEncoding;
+import com.sportradar.unifiedodds.example.impl.core.CoreDataPipeline;
+import com.sportradar.unifiedodds.example.impl.core.CoreDataWriter;
+import com.sportradar.unifiedodds.example.impl.core.LastWrittenStateCache;
+import com.sportradar.unifiedodds.example.impl.core.OverflowPolicy;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.meta.MarketGroups;
+import com.sportradar.unifiedodds.example.impl.meta.MarketNameCache;
+import com.sportradar.unifiedodds.example.impl.meta.MetadataWriteCollector;
+import com.sportradar.unifiedodds.example.impl.meta.MetadataWriter;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.recovery.EventRecoveryRequester;
+import com.sportradar.unifiedodds.example.impl.recovery.FailedWriteTracker;
+import com.sportradar.unifiedodds.example.impl.recovery.RecoveryTimestampTracker;
+import com.sportradar.unifiedodds.example.impl.redis.SingleRedisShards;
+import com.sportradar.unifiedodds.example.impl.settlement.SettlementWriter;
+import com.sportradar.unifiedodds.example.impl.snapshot.WarmStartSnapshot;
+import com.sportradar.unifiedodds.example.impl.storage.MappedStorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.RedisStorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import redis.clients.jedis.JedisPool;
+
+import java.io.BufferedReader;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Drives {@link FeedEventListener} from a replay file (see {@link ReplayRecord}, {@link SyntheticFeedGenerator})
+ * without a UOF connection, through the same processing stack as the example, and reports the sustained throughput,
+ * the latency percentiles and the allocation rate.
+ * <p>
+ * The messages are split over the dispatch threads by event (producer status messages by producer), so the messages
+ * of an event keep their order, like within an SDK session. With a finite rate every message is dispatched at its
+ * scheduled time and that time is its generated timestamp, so a dispatcher falling behind shows up in the latencies.
+ * <p>
+ * With a snapshot file the name cache, and for redis storage the metadata trackers, are restored from it before the
+ * replay and saved into it afterwards, so a second run with the same file measures a warm restart: the time until the
+ * metadata queue is drained after the replay (the whole replay standing for the recovery burst) and the number of
+ * metadata tasks. As in the example, the mapped storage starts empty, so its metadata is always written again.
+ * <p>
+ * Usage: java -cp benchmarks.jar com.sportradar.unifiedodds.example.replay.FeedReplay
+ * [file] [rate: 1|10|...|max] [threads] [storage: mapped|redis://host:port] [snapshot file]
+ */
+public final class FeedReplay {
+    private static final int CORE_WRITER_THREADS = 4;
+    private static final long DRAIN_TIMEOUT_MS = TimeUnit.MINUTES.toMillis(5);
+
+    private FeedReplay() {
+        // no instance
+    }
+
+    public static void main(String[] args) throws Exception {
+        long startedAtNanos = System.nanoTime();
+        String file = args.length > 0 ? args[0] : "replay.jsonl";
+        String rateArg = args.length > 1 ? args[1] : "max";
+        double rate = "max".equals(rateArg) ? 0 : Double.parseDouble(rateArg.replace("x", ""));
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        String storage = args.length > 3 ? args[3] : "mapped";
+        Path snapshotFile = args.length > 4 ? Paths.get(args[4]) : null;
+
+        List<ReplayRecord> records = read(Paths.get(file));
+        System.out.printf("Replaying %d messages from %s, rate=%s, threads=%d, storage=%s%n", records.size(), file, rateArg, threads, storage);
+
+        ScheduledExecutorService metricsExecutor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("metrics-t-%d").build());
+        ScheduledExecutorService heartbeatTrackingExecutor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("heartbeat-t-%d").build());
+        ScheduledExecutorService metadataExecutor =
+                Executors.newScheduledThreadPool(16, new ThreadFactoryBuilder().setNameFormat("metadata-t-%d").build());
+        ExecutorService metadataWriteExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("metadata-writer-t-%d").build());
+        ExecutorService coreDataExecutor =
+                Executors.newFixedThreadPool(CORE_WRITER_THREADS, new ThreadFactoryBuilder().setNameFormat("core-writer-t-%d").build());
+        ExecutorService settlementExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("settlement-t-%d").build());
+        ExecutorService lifecycleExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("lifecycle-t-%d").build());
+        ScheduledExecutorService recoveryExecutor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("recovery-t-%d").build());
+
+        MetricsRegistry metricsRegistry = new MetricsRegistry(metricsExecutor);
+        FeedMetrics feedMetrics = new FeedMetrics(metricsRegistry);
+        Path storageFile = null;
+        StorageBackend storageBackend;
+        if ("mapped".equals(storage)) {
+            storageFile = Files.createTempFile("uof-replay", ".store");
+            MappedStorageBackend mappedStorageBackend = new MappedStorageBackend(storageFile, 4L * 1024 * 1024 * 1024, metricsExecutor, metricsRegistry);
+            mappedStorageBackend.start();
+            storageBackend = mappedStorageBackend;
+        } else {
+            storageBackend = new RedisStorageBackend(new SingleRedisShards(new JedisPool(new URI(storage))), metricsRegistry);
+        }
+
+        EventLifecycleTracker eventLifecycleTracker = new EventLifecycleTracker(storageBackend, lifecycleExecutor, metricsRegistry, 3600);
+        LastWrittenStateCache lastWrittenStateCache = new LastWrittenStateCache(20_000);
+        eventLifecycleTracker.addEvictionListener(lastWrittenStateCache::evictEvent);
+        // the replay is shorter than the idle eviction time, so the sweep is not started
+        OddsBook oddsBook = new OddsBook(eventLifecycleTracker, metricsExecutor, metricsRegistry, TimeUnit.HOURS.toMillis(6));
+        eventLifecycleTracker.addEvictionListener(oddsBook::evictEvent);
+        CoreDataWriter coreDataWriter = new CoreDataWriter(storageBackend, lastWrittenStateCache, eventLifecycleTracker, oddsBook,
+                OutcomeEncoding.BINARY.getCodec(), metricsRegistry, 500, false);
+        // not bound to a feed, recoveries of failed writes are only logged
+        EventRecoveryRequester eventRecoveryRequester = new EventRecoveryRequester(recoveryExecutor, metricsRegistry);
+        CoreDataPipeline coreDataPipeline = new CoreDataPipeline(coreDataWriter, coreDataExecutor, metricsRegistry, feedMetrics,
+                new FailedWriteTracker(eventRecoveryRequester, EventRecoveryRequester.Kind.ODDS, metricsRegistry, "core.write"), CORE_WRITER_THREADS, 1000, OverflowPolicy.COALESCE, 20);
+        MetadataWriteCollector metadataWriteCollector = new MetadataWriteCollector(storageBackend, eventLifecycleTracker, metadataWriteExecutor, metricsRegistry, 20_000);
+        MarketNameCache marketNameCache = new MarketNameCache(200_000, metricsRegistry);
+        MetadataWriter metadataWriter = new MetadataWriter(metadataWriteCollector, marketNameCache, eventLifecycleTracker, metadataExecutor,
+                metricsRegistry, 4L * 1024 * 1024, 64L * 1024 * 1024, 100_000);
+        SettlementWriter settlementWriter = new SettlementWriter(storageBackend, settlementExecutor, metricsRegistry, feedMetrics,
+                new FailedWriteTracker(eventRecoveryRequester, EventRecoveryRequester.Kind.STATEFUL, metricsRegistry, "settlement.write"), 3600, 1000, 10_000);
+        HeartbeatTracker heartbeatTracker = new HeartbeatTracker(storageBackend, heartbeatTrackingExecutor);
+        Path recoveryFile = Files.createTempFile("uof-replay", ".recovery");
+        RecoveryTimestampTracker recoveryTimestampTracker = new RecoveryTimestampTracker(storageBackend, recoveryFile, recoveryExecutor, metricsRegistry,
+                Arrays.asList(coreDataPipeline::oldestPendingGeneratedAt, settlementWriter::oldestPendingGeneratedAt),
+                TimeUnit.SECONDS.toMillis(1), TimeUnit.HOURS.toMillis(72));
+        coreDataPipeline.start();
+        metadataWriteCollector.start();
+        settlementWriter.start();
+        heartbeatTracker.start();
+        WarmStartSnapshot warmStartSnapshot = null;
+        if (snapshotFile != null) {
+            warmStartSnapshot = new WarmStartSnapshot(snapshotFile, recoveryExecutor, metricsRegistry, TimeUnit.HOURS.toMillis(1));
+            warmStartSnapshot.register("meta.names", marketNameCache);
+            if (storageFile == null) {
+                // the same rule as the example: trackers are only restored over a storage which kept the metadata
+                metadataWriter.registerSnapshots(warmStartSnapshot, "meta");
+            }
+            warmStartSnapshot.load();
+        }
+        recoveryTimestampTracker.start();
+        FeedEventListener listener = new FeedEventListener(coreDataPipeline, metadataWriter, new MarketGroups(metricsRegistry), settlementWriter,
+                heartbeatTracker, eventLifecycleTracker, recoveryTimestampTracker, eventRecoveryRequester, feedMetrics);
+
+        List<List<ReplayRecord>> lanes = split(records, threads);
+        AllocationProbe allocationProbe = new AllocationProbe();
+        long startNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+        long startMillis = System.currentTimeMillis() + 100;
+        AtomicLong failures = new AtomicLong();
+        List<Thread> dispatchers = new ArrayList<>();
+        for (int i = 0; i < lanes.size(); i++) {
+            List<ReplayRecord> lane = lanes.get(i);
+            Thread dispatcher = new Thread(() -> {
+                try {
+                    dispatch(listener, lane, rate, startNanos, startMillis, failures);
+                } finally {
+                    allocationProbe.onThreadExit();
+                }
+            }, "replay-t-" + i);
+            dispatchers.add(dispatcher);
+            dispatcher.start();
+        }
+        for (Thread dispatcher : dispatchers) {
+            dispatcher.join();
+        }
+        long dispatchedNanos = System.nanoTime();
+
+        long drainDeadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while ((coreDataPipeline.pendingUpdates() > 0 || settlementWriter.pendingMessages() > 0) && System.currentTimeMillis() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        long storedNanos = System.nanoTime();
+        long storedMillis = System.currentTimeMillis();
+        recoveryTimestampTracker.checkpoint();
+        while (metadataWriter.getPendingTasks() > 0 && System.currentTimeMillis() < drainDeadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+        }
+        // the queued metadata writes are stored before the snapshot, so it only tracks stored metadata
+        metadataWriteCollector.stop();
+        metadataWriteExecutor.shutdown();
+        metadataWriteExecutor.awaitTermination(Math.max(0, drainDeadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        long metadataDrainedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+        if (warmStartSnapshot != null) {
+            warmStartSnapshot.write();
+        }
+
+        report(records, metricsRegistry, startNanos, dispatchedNanos, storedNanos, allocationProbe, failures.get());
+        reportRecoveryTimestamps(records, recoveryTimestampTracker, storedMillis);
+        System.out.printf("metadata drained %dms after the process start, %d metadata tasks, %s%n",
+                metadataDrainedMillis, metadataWriter.getSubmittedTasks(), snapshotFile == null ? "no snapshot" : "snapshot " + snapshotFile);
+
+        coreDataExecutor.shutdownNow();
+        metadataExecutor.shutdownNow();
+        metadataWriteExecutor.shutdownNow();
+        settlementExecutor.shutdownNow();
+        lifecycleExecutor.shutdownNow();
+        recoveryExecutor.shutdownNow();
+        heartbeatTrackingExecutor.shutdownNow();
+        metricsExecutor.shutdownNow();
+        storageBackend.close();
+        if (storageFile != null) {
+            Files.deleteIfExists(storageFile);
+        }
+        Files.deleteIfExists(recoveryFile);
+    }
+
+    private static List<ReplayRecord> read(Path file) throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        List<ReplayRecord> records = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.trim().isEmpty()) {
+                    records.add(mapper.readValue(line, ReplayRecord.class));
+                }
+            }
+        }
+        records.sort(Comparator.comparingLong(r -> r.offset));
+        return records;
+    }
+
+    private static List<List<ReplayRecord>> split(List<ReplayRecord> records, int threads) {
+        List<List<ReplayRecord>> lanes = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            lanes.add(new ArrayList<>());
+        }
+        for (ReplayRecord record : records) {
+            int hash = record.eventId == null ? record.producerId : record.eventId.hashCode();
+            lanes.get((hash & Integer.MAX_VALUE) % threads).add(record);
+        }
+        return lanes;
+    }
+
+    private static void dispatch(FeedEventListener listener, List<ReplayRecord> lane, double rate, long startNanos, long startMillis,
+                                 AtomicLong failures) {
+        for (ReplayRecord record : lane) {
+            long generatedAt;
+            if (rate > 0) {
+                long scheduledOffsetNanos = (long) (TimeUnit.MILLISECONDS.toNanos(record.offset) / rate);
+                long wait;
+                while ((wait = startNanos + scheduledOffsetNanos - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                generatedAt = startMillis + TimeUnit.NANOSECONDS.toMillis(scheduledOffsetNanos);
+            } else {
+                generatedAt = System.currentTimeMillis();
+            }
+
+            try {
+                switch (record.type) {
+                    case ReplayRecord.ODDS_CHANGE:
+                        listener.onOddsChange(null, ReplayMessages.oddsChange(record, generatedAt));
+                        break;
+                    case ReplayRecord.FIXTURE_CHANGE:
+                        listener.onFixtureChange(null, ReplayMessages.fixtureChange(record, generatedAt));
+                        break;
+                    case ReplayRecord.BET_STOP:
+                        listener.onBetStop(null, ReplayMessages.betStop(record, generatedAt));
+                        break;
+                    case ReplayRecord.PRODUCER_STATUS:
+                        listener.onProducerStatusChange(ReplayMessages.producerStatus(record, generatedAt));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unsupported message type: " + record.type);
+                }
+            } catch (Exception e) {
+                if (failures.getAndIncrement() == 0) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private static void report(List<ReplayRecord> records, MetricsRegistry metricsRegistry, long startNanos, long dispatchedNanos,
+                               long storedNanos, AllocationProbe allocationProbe, long failures) {
+        double dispatchSeconds = (dispatchedNanos - startNanos) / 1e9;
+        double totalSeconds = (storedNanos - startNanos) / 1e9;
+        long markets = 0;
+        Set<Integer> producers = new TreeSet<>();
+        for (ReplayRecord record : records) {
+            markets += record.markets == null ? 0 : record.markets.size();
+            producers.add(record.producerId);
+        }
+
+        System.out.printf("dispatched %d messages in %.2fs (%.0f msg/s), stored in %.2fs (%.0f msg/s, %.0f markets/s), failures=%d%n",
+                records.size(), dispatchSeconds, records.size() / dispatchSeconds,
+                totalSeconds, records.size() / totalSeconds, markets / totalSeconds, failures);
+        for (Integer producerId : producers) {
+            print("p" + producerId + " odds change -> stored (ms)", metricsRegistry.histogram("feed.odds_change.p" + producerId + ".stored.latency.ms"));
+            print("p" + producerId + " dispatch lag (ms)", metricsRegistry.histogram("feed.odds_change.p" + producerId + ".dispatch.latency.ms"));
+            print("p" + producerId + " bet stop -> suspended (ms)", metricsRegistry.histogram("feed.bet_stop.p" + producerId + ".stored.latency.ms"));
+        }
+        print("bet stop submit -> suspended (us)", metricsRegistry.histogram("core.suspension.latency.us"));
+        print("bet stop suspended markets", metricsRegistry.histogram("core.suspension.markets"));
+        print("core queue latency (us)", metricsRegistry.histogram("core.queue.latency.us"));
+        print("core write latency (us)", metricsRegistry.histogram("core.write.latency.us"));
+        print("core flush latency (us)", metricsRegistry.histogram("core.flush.latency.us"));
+        allocationProbe.report(totalSeconds);
+    }
+
+    /**
+     * Once everything is stored the persisted recovery timestamp of each producer should be its last message, which
+     * is where a restart would recover from
+     */
+    private static void reportRecoveryTimestamps(List<ReplayRecord> records, RecoveryTimestampTracker recoveryTimestampTracker,
+                                                 long storedMillis) {
+        Set<Integer> producers = new TreeSet<>();
+        for (ReplayRecord record : records) {
+            producers.add(record.producerId);
+        }
+        for (Integer producerId : producers) {
+            long persisted = recoveryTimestampTracker.getPersistedTimestamp(producerId);
+            System.out.printf("p%d recovery timestamp %s%n", producerId,
+                    persisted == 0 ? "not persisted" : (storedMillis - persisted) + "ms before the drain completed");
+        }
+    }
+
+    private static void print(String label, Histogram histogram) {
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        if (snapshot.getCount() > 0) {
+            System.out.printf("%-36s %s%n", label, snapshot);
+        }
+    }
+
+    /**
+     * Allocated bytes of all threads (HotSpot specific) and the GC activity since construction. Threads which end
+     * earlier must report their allocations with {@link #onThreadExit()}.
+     */
+    private static final class AllocationProbe {
+        private final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        private final long startAllocatedBytes = allocatedBytes();
+        private final long startGcCount = gcCount();
+        private final long startGcMillis = gcMillis();
+        private final AtomicLong exitedThreadsBytes = new AtomicLong();
+
+        private void onThreadExit() {
+            exitedThreadsBytes.addAndGet(threadMXBean.getThreadAllocatedBytes(Thread.currentThread().getId()));
+        }
+
+        private void report(double seconds) {
+            double allocatedMb = (allocatedBytes() + exitedThreadsBytes.get() - startAllocatedBytes) / (1024.0 * 1024.0);
+            System.out.printf("allocated %.0f MB (%.1f MB/s), gc: %d collections, %d ms%n",
+                    allocatedMb, allocatedMb / seconds, gcCount() - startGcCount, gcMillis() - startGcMillis);
+        }
+
+        private long allocatedBytes() {
+            long total = 0;
+            for (long allocated : threadMXBean.getThreadAllocatedBytes(threadMXBean.getAllThreadIds())) {
+                total += Math.max(0, allocated);
+            }
+            return total;
+        }
+
+        private static long gcCount() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, gc.getCollectionCount());
+            }
+            return total;
+        }
+
+        private static long gcMillis() {
+            long total = 0;
+            for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+                total += Math.max(0, gc.getCollectionTime());
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.sportradar.unifiedodds.example.replay;
+
+import com.sportradar.unifiedodds.example.benchmark.MarketFixtures;
+import com.sportradar.unifiedodds.sdk.entities.Competition;
+import com.sportradar.unifiedodds.sdk.entities.EventStatus;
+import com.sportradar.unifiedodds.sdk.entities.SportEvent;
+import com.sportradar.unifiedodds.sdk.entities.status.CompetitionStatus;
+import com.sportradar.unifiedodds.sdk.oddsentities.BetStop;
+import com.sportradar.unifiedodds.sdk.oddsentities.FixtureChange;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithOdds;
+import com.sportradar.unifiedodds.sdk.oddsentities.OddsChange;
+import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeOdds;
+import com.sportradar.unifiedodds.sdk.oddsentities.Producer;
+import com.sportradar.unifiedodds.sdk.oddsentities.ProducerStatus;
+import com.sportradar.unifiedodds.sdk.oddsentities.ProducerStatusReason;
+import com.sportradar.utils.URN;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+
+/**
+ * Turns {@link ReplayRecord}s into SDK message proxies, the generated timestamp of a message is the time it was
+ * scheduled for, so the measured latencies include any lag of the replay itself.
+ */
+final class ReplayMessages {
+    private ReplayMessages() {
+        // no instance
+    }
+
+    @SuppressWarnings("unchecked")
+    static OddsChange<SportEvent> oddsChange(ReplayRecord record, long generatedAt) {
+        Producer producer = producer(record.producerId);
+        SportEvent event = event(record.eventId, record.eventStatus);
+        List<MarketWithOdds> markets = markets(record.markets);
+        return MarketFixtures.proxy(OddsChange.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getProducer":
+                    return producer;
+                case "getEvent":
+                    return event;
+                case "getMarkets":
+                    return markets;
+                case "getTimestamp":
+                    return generatedAt;
+                default:
+                    throw unsupported(OddsChange.class, method.getName());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static FixtureChange<SportEvent> fixtureChange(ReplayRecord record, long generatedAt) {
+        Producer producer = producer(record.producerId);
+        SportEvent event = event(record.eventId, record.eventStatus);
+        return MarketFixtures.proxy(FixtureChange.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getProducer":
+                    return producer;
+                case "getEvent":
+                    return event;
+                case "getTimestamp":
+                    return generatedAt;
+                default:
+                    throw unsupported(FixtureChange.class, method.getName());
+            }
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    static BetStop<SportEvent> betStop(ReplayRecord record, long generatedAt) {
+        Producer producer = producer(record.producerId);
+        SportEvent event = event(record.eventId, record.eventStatus);
+        return MarketFixtures.proxy(BetStop.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getProducer":
+                    return producer;
+                case "getEvent":
+                    return event;
+                case "getTimestamp":
+                    return generatedAt;
+                case "getGroups":
+                    return Collections.singletonList("all");
+                case "getMarketStatus":
+                    return MarketStatus.Suspended;
+                default:
+                    throw unsupported(BetStop.class, method.getName());
+            }
+        });
+    }
+
+    static ProducerStatus producerStatus(ReplayRecord record, long generatedAt) {
+        Producer producer = producer(record.producerId);
+        boolean down = Boolean.TRUE.equals(record.down);
+        boolean delayed = Boolean.TRUE.equals(record.delayed);
+        return MarketFixtures.proxy(ProducerStatus.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getProducer":
+                    return producer;
+                case "getTimestamp":
+                    return generatedAt;
+                case "isDown":
+                    return down;
+                case "isDelayed":
+                    return delayed;
+                case "getProducerStatusReason":
+                    return down ? ProducerStatusReason.ConnectionDown : ProducerStatusReason.FirstRecoveryCompleted;
+                default:
+                    throw unsupported(ProducerStatus.class, method.getName());
+            }
+        });
+    }
+
+    private static Producer producer(int producerId) {
+        String name = "Producer " + producerId;
+        return MarketFixtures.proxy(Producer.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return producerId;
+                case "getName":
+                    return name;
+                default:
+                    throw unsupported(Producer.class, method.getName());
+            }
+        });
+    }
+
+    private static SportEvent event(String eventId, String eventStatus) {
+        URN id = URN.parse(eventId);
+        Optional<CompetitionStatus> status = eventStatus == null
+                ? Optional.empty()
+                : Optional.of(status(EventStatus.valueOf(eventStatus)));
+        String name = "Event " + eventId;
+        return MarketFixtures.proxy(Competition.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getName":
+                    return args == null || Locale.ENGLISH.equals(args[0]) ? name : null;
+                case "getScheduledTime":
+                    return new Date(0);
+                case "getStatusIfPresent":
+                    return status;
+                default:
+                    throw unsupported(Competition.class, method.getName());
+            }
+        });
+    }
+
+    private static CompetitionStatus status(EventStatus eventStatus) {
+        return MarketFixtures.proxy(CompetitionStatus.class, (p, method, args) -> {
+            if ("getStatus".equals(method.getName())) {
+                return eventStatus;
+            }
+            throw unsupported(CompetitionStatus.class, method.getName());
+        });
+    }
+
+    private static List<MarketWithOdds> markets(List<ReplayRecord.Market> recorded) {
+        if (recorded == null) {
+            return Collections.emptyList();
+        }
+
+        List<MarketWithOdds> markets = new ArrayList<>(recorded.size());
+        for (ReplayRecord.Market market : recorded) {
+            List<OutcomeOdds> outcomes = new ArrayList<>();
+            if (market.outcomes != null) {
+                for (ReplayRecord.Outcome outcome : market.outcomes) {
+                    outcomes.add(MarketFixtures.outcome(outcome.id, outcome.probability, outcome.odds, outcome.active));
+                }
+            }
+            MarketStatus status = market.status == null ? MarketStatus.Active : MarketStatus.valueOf(market.status);
+            markets.add(MarketFixtures.market(market.id, market.specifiers, status, outcomes));
+        }
+        return markets;
+    }
+
+    private static UnsupportedOperationException unsupported(Class<?> type, String method) {
+        return new UnsupportedOperationException(type.getSimpleName() + "." + method + " is not provided by the replay");
+    }
+}
@@ -0,0 +1,47 @@
+package com.sportradar.unifiedodds.example.replay;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * One recorded feed message, a line of the JSON lines replay file. Only the fields of the message type are set:
+ * <ul>
+ *     <li>odds_change - eventId, eventStatus (optional), markets</li>
+ *     <li>fixture_change, bet_stop - eventId</li>
+ *     <li>producer_status - down, delayed</li>
+ * </ul>
+ * The offset is the time in millis since the start of the recording, the replay rate scales it.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ReplayRecord {
+    public static final String ODDS_CHANGE = "odds_change";
+    public static final String FIXTURE_CHANGE = "fixture_change";
+    public static final String BET_STOP = "bet_stop";
+    public static final String PRODUCER_STATUS = "producer_status";
+
+    public String type;
+    public long offset;
+    public int producerId;
+    public String eventId;
+    public String eventStatus;
+    public List<Market> markets;
+    public Boolean down;
+    public Boolean delayed;
+
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    public static class Market {
+        public int id;
+        public Map<String, String> specifiers;
+        public String status;
+        public List<Outcome> outcomes;
+    }
+
+    public static class Outcome {
+        public String id;
+        public double probability;
+        public double odds;
+        public boolean active;
+    }
+}
@@ -0,0 +1,134 @@
+package com.sportradar.unifiedodds.example.replay;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sportradar.unifiedodds.example.benchmark.MarketFixtures;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Writes a synthetic replay file shaped like a busy match day: live events (producer 1) tick every few seconds with a
+ * part of their markets, prematch events (producer 3) change rarely with the full market set, live events get an
+ * occasional bet stop and a final Ended status.
+ * <p>
+ * Usage: java -cp benchmarks.jar com.sportradar.unifiedodds.example.replay.SyntheticFeedGenerator
+ * [file] [events] [minutes] [marketsPerEvent]
+ */
+public final class SyntheticFeedGenerator {
+    private static final int LIVE_PRODUCER = 1;
+    private static final int PREMATCH_PRODUCER = 3;
+    private static final double LIVE_EVENT_SHARE = 0.3;
+    private static final long LIVE_TICK_MILLIS = 5_000;
+    private static final long PREMATCH_TICK_MILLIS = 60_000;
+    private static final int OUTCOMES_PER_MARKET = 3;
+    private static final double BET_STOP_PROBABILITY = 0.01;
+
+    private SyntheticFeedGenerator() {
+        // no instance
+    }
+
+    public static void main(String[] args) throws IOException {
+        String file = args.length > 0 ? args[0] : "replay.jsonl";
+        int eventCount = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int minutes = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int marketsPerEvent = args.length > 3 ? Integer.parseInt(args[3]) : 40;
+
+        List<ReplayRecord> records = generate(eventCount, minutes * 60_000L, marketsPerEvent, new Random(1));
+        ObjectMapper mapper = new ObjectMapper();
+        try (BufferedWriter writer = Files.newBufferedWriter(Paths.get(file), StandardCharsets.UTF_8)) {
+            for (ReplayRecord record : records) {
+                writer.write(mapper.writeValueAsString(record));
+                writer.newLine();
+            }
+        }
+        System.out.printf("Written %d messages of %d events (%d minutes) to %s%n", records.size(), eventCount, minutes, file);
+    }
+
+    static List<ReplayRecord> generate(int eventCount, long durationMillis, int marketsPerEvent, Random random) {
+        List<ReplayRecord> records = new ArrayList<>();
+        records.add(producerStatus(LIVE_PRODUCER));
+        records.add(producerStatus(PREMATCH_PRODUCER));
+
+        for (int e = 0; e < eventCount; e++) {
+            String eventId = "sr:match:" + (30_000_000 + e);
+            boolean live = random.nextDouble() < LIVE_EVENT_SHARE;
+            int producerId = live ? LIVE_PRODUCER : PREMATCH_PRODUCER;
+            long tick = live ? LIVE_TICK_MILLIS : PREMATCH_TICK_MILLIS;
+            long start = (long) (random.nextDouble() * tick);
+
+            records.add(eventRecord(ReplayRecord.FIXTURE_CHANGE, start, producerId, eventId));
+            for (long offset = start; offset < durationMillis; offset += tick) {
+                if (live && random.nextDouble() < BET_STOP_PROBABILITY) {
+                    records.add(eventRecord(ReplayRecord.BET_STOP, offset, producerId, eventId));
+                    continue;
+                }
+                boolean last = offset + tick >= durationMillis;
+                // live ticks carry only the moving markets, prematch changes and the first tick carry the whole book
+                int marketCount = live && offset != start ? 1 + random.nextInt(Math.max(1, marketsPerEvent / 4)) : marketsPerEvent;
+                ReplayRecord record = eventRecord(ReplayRecord.ODDS_CHANGE, offset, producerId, eventId);
+                record.eventStatus = !live ? "NotStarted" : last ? "Ended" : "Live";
+                record.markets = markets(marketsPerEvent, marketCount, random);
+                records.add(record);
+            }
+        }
+
+        records.sort(Comparator.comparingLong(r -> r.offset));
+        return records;
+    }
+
+    private static List<ReplayRecord.Market> markets(int marketsPerEvent, int marketCount, Random random) {
+        Map<String, String>[] specifierSets = MarketFixtures.realisticSpecifierSets();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < marketsPerEvent; i++) {
+            indexes.add(i);
+        }
+        Collections.shuffle(indexes, random);
+
+        List<ReplayRecord.Market> markets = new ArrayList<>(marketCount);
+        for (int i = 0; i < marketCount; i++) {
+            int index = indexes.get(i);
+            ReplayRecord.Market market = new ReplayRecord.Market();
+            market.id = index / specifierSets.length + 1;
+            market.specifiers = specifierSets[index % specifierSets.length];
+            market.status = "Active";
+            market.outcomes = new ArrayList<>(OUTCOMES_PER_MARKET);
+            for (int o = 0; o < OUTCOMES_PER_MARKET; o++) {
+                ReplayRecord.Outcome outcome = new ReplayRecord.Outcome();
+                outcome.id = String.valueOf(o + 1);
+                outcome.probability = random.nextDouble();
+                outcome.odds = Math.round(100 / Math.max(outcome.probability, 0.01)) / 100.0;
+                outcome.active = true;
+                market.outcomes.add(outcome);
+            }
+            markets.add(market);
+        }
+        return markets;
+    }
+
+    private static ReplayRecord eventRecord(String type, long offset, int producerId, String eventId) {
+        ReplayRecord record = new ReplayRecord();
+        record.type = type;
+        record.offset = offset;
+        record.producerId = producerId;
+        record.eventId = eventId;
+        return record;
+    }
+
+    private static ReplayRecord producerStatus(int producerId) {
+        ReplayRecord record = new ReplayRecord();
+        record.type = ReplayRecord.PRODUCER_STATUS;
+        record.producerId = producerId;
+        record.down = false;
+        record.delayed = false;
+        return record;
+    }
+}
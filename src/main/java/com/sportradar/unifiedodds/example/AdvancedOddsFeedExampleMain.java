@@ -4,38 +4,267 @@ import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import com.sportradar.unifiedodds.example.impl.FeedEventListener;
 import com.sportradar.unifiedodds.example.impl.HeartbeatTracker;
 import com.sportradar.unifiedodds.example.impl.MultithreadedSessionSetup;
+import com.sportradar.unifiedodds.example.impl.book.OddsBook;
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeEncoding;
+import com.sportradar.unifiedodds.example.impl.core.CoreDataPipeline;
 import com.sportradar.unifiedodds.example.impl.core.CoreDataWriter;
+import com.sportradar.unifiedodds.example.impl.core.LastWrittenStateCache;
+import com.sportradar.unifiedodds.example.impl.core.OverflowPolicy;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.meta.MarketGroups;
+import com.sportradar.unifiedodds.example.impl.meta.MarketNameCache;
+import com.sportradar.unifiedodds.example.impl.meta.MetadataWriteCollector;
 import com.sportradar.unifiedodds.example.impl.meta.MetadataWriter;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsHttpServer;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.recovery.EventRecoveryRequester;
+import com.sportradar.unifiedodds.example.impl.recovery.FailedWriteTracker;
+import com.sportradar.unifiedodds.example.impl.recovery.RecoveryTimestampTracker;
+import com.sportradar.unifiedodds.example.impl.recovery.SteadyStateMonitor;
+import com.sportradar.unifiedodds.example.impl.redis.ClusterRedisShards;
+import com.sportradar.unifiedodds.example.impl.redis.ConsistentHashRedisShards;
+import com.sportradar.unifiedodds.example.impl.redis.RedisShards;
+import com.sportradar.unifiedodds.example.impl.redis.RoutingJedisCluster;
+import com.sportradar.unifiedodds.example.impl.redis.SingleRedisShards;
+import com.sportradar.unifiedodds.example.impl.settlement.SettlementWriter;
+import com.sportradar.unifiedodds.example.impl.snapshot.WarmStartSnapshot;
+import com.sportradar.unifiedodds.example.impl.storage.MappedStorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.RedisStorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.HostAndPort;
 import redis.clients.jedis.JedisPool;
 import redis.clients.jedis.JedisPoolConfig;
 
+import java.net.InetSocketAddress;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 
 public class AdvancedOddsFeedExampleMain {
+    private static final Logger logger = LoggerFactory.getLogger(AdvancedOddsFeedExampleMain.class);
+
+    private static final int CORE_MAX_COMMANDS_PER_FLUSH = 500;
+    private static final OverflowPolicy CORE_OVERFLOW_POLICY = OverflowPolicy.COALESCE;
+    private static final int CORE_MAX_TRACKED_EVENTS = 20_000;
+    private static final boolean CORE_PRODUCER_INDEX_ENABLED = false;
+    private static final int LIFECYCLE_FINISHED_EVENT_TTL_SECONDS = (int) TimeUnit.HOURS.toSeconds(6);
+    // events whose end is never seen leave the odds book once they were not updated for this long
+    private static final long BOOK_IDLE_EVICTION_MS = TimeUnit.HOURS.toMillis(6);
+    private static final int META_MAX_CACHED_NAMES = 200_000;
+    // memory ceilings of the "metadata already written" trackers, 8 bytes per tracked key
+    private static final long META_EVENT_TRACKER_MEMORY_BYTES = 4L * 1024 * 1024;
+    private static final long META_MARKET_TRACKER_MEMORY_BYTES = 64L * 1024 * 1024;
+    // per lane, writes beyond it are rejected and requested again with a later message
+    private static final int META_MAX_PENDING_WRITES = 20_000;
+
+    // the live and the prematch session are processed by separate lanes, each with its own writer threads, redis
+    // connection pool and metadata queue; live gets more capacity, higher priority threads and a shorter coalescing
+    // window, prematch writers back off while the live lane is backlogged (a prematch flood after a recovery)
+    private static final int LIVE_CORE_WRITER_THREADS = 4;
+    private static final int LIVE_CORE_PARTITION_CAPACITY = 1000;
+    private static final long LIVE_CORE_COALESCING_WINDOW_MS = 20;
+    private static final int LIVE_META_THREADS = 12;
+    private static final int LIVE_META_MAX_PENDING_TASKS = 100_000;
+    private static final int LIVE_REDIS_POOL_SIZE = 10;
+    private static final int PREMATCH_CORE_WRITER_THREADS = 2;
+    private static final int PREMATCH_CORE_PARTITION_CAPACITY = 2000;
+    private static final long PREMATCH_CORE_COALESCING_WINDOW_MS = 100;
+    private static final int PREMATCH_META_THREADS = 4;
+    private static final int PREMATCH_META_MAX_PENDING_TASKS = 200_000;
+    private static final int PREMATCH_REDIS_POOL_SIZE = 6;
+    private static final long PREMATCH_YIELD_LIVE_BACKLOG = 200;
+
+    // settlements and cancels, batched per lane by a single writer thread
+    private static final int SETTLEMENT_TTL_SECONDS = (int) TimeUnit.DAYS.toSeconds(2);
+    private static final int SETTLEMENT_MAX_COMMANDS_PER_FLUSH = 1000;
+    private static final int SETTLEMENT_MAX_PENDING_MESSAGES = 10_000;
+
+    // the stored-up-to timestamp of each producer is persisted periodically and used as the recovery timestamp on
+    // restart, capped to the stateful recovery window of each producer (and to the max window, for producers without one)
+    private static final long RECOVERY_CHECKPOINT_INTERVAL_MS = TimeUnit.SECONDS.toMillis(5);
+    private static final long RECOVERY_MAX_WINDOW_MS = TimeUnit.HOURS.toMillis(72);
+    private static final String RECOVERY_TIMESTAMPS_FILE = System.getProperty("uof.example.recoveryFile", "uof-recovery.properties");
+
+    // the metadata trackers and the name cache are snapshotted periodically and restored before the feed is opened
+    private static final String WARM_START_SNAPSHOT_FILE = System.getProperty("uof.example.snapshotFile", "uof-warm-start.snapshot");
+    private static final long WARM_START_SNAPSHOT_INTERVAL_MS = TimeUnit.MINUTES.toMillis(1);
+    // how long the shutdown waits for the queued metadata to be written before the final snapshot
+    private static final long SHUTDOWN_DRAIN_TIMEOUT_MS = TimeUnit.SECONDS.toMillis(10);
+    // JSON keeps the original os_[outcomeId] format, BINARY is the compact fixed-width encoding
+    private static final OutcomeEncoding CORE_OUTCOME_ENCODING =
+            OutcomeEncoding.valueOf(System.getProperty("uof.example.outcomeEncoding", OutcomeEncoding.JSON.name()));
+
+    // GET /metrics in the Prometheus text format
+    private static final String METRICS_HTTP_HOST = System.getProperty("uof.example.metricsHost", "127.0.0.1");
+    private static final int METRICS_HTTP_PORT = Integer.getInteger("uof.example.metricsPort", 9400);
+
+    // redis (default) or mapped (in-process, off-heap memory-mapped store, e.g. for co-located readers or load tests)
+    private static final String STORAGE = System.getProperty("uof.example.storage", "redis");
+    private static final String STORAGE_MAPPED_FILE = System.getProperty("uof.example.storageFile", "uof-odds.store");
+    private static final long STORAGE_MAPPED_MAX_BYTES = 4L * 1024 * 1024 * 1024;
+
+    // single (default), sharded (client-side consistent hashing over all the uris) or cluster (the uris are seed nodes)
+    private static final String REDIS_MODE = System.getProperty("uof.example.redisMode", "single");
+    private static final String REDIS_URIS = System.getProperty("uof.example.redisUris", "redis://localhost:6379");
+    private static final int REDIS_TIMEOUT_MS = 500;
+    private static final int REDIS_VIRTUAL_NODES_PER_SHARD = 160;
+    private static final int REDIS_CLUSTER_MAX_ATTEMPTS = 5;
 
     public static void main(String[] args) throws Exception {
+        long startedAtNanos = System.nanoTime();
+
         // resources setup
-        JedisPool jedisPool = getJedisPool();
         ScheduledExecutorService heartbeatTrackingExecutor =
                 Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("heartbeat-t-%d").build());
-        ScheduledExecutorService metadataExecutor =
-                Executors.newScheduledThreadPool(16, new ThreadFactoryBuilder().setNameFormat("metadata-t-%d").build());
+        ScheduledExecutorService liveMetadataExecutor =
+                Executors.newScheduledThreadPool(LIVE_META_THREADS, new ThreadFactoryBuilder().setNameFormat("live-metadata-t-%d").build());
+        ExecutorService liveMetadataWriteExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("live-metadata-writer-t-%d").build());
+        ExecutorService liveCoreDataExecutor =
+                Executors.newFixedThreadPool(LIVE_CORE_WRITER_THREADS, new ThreadFactoryBuilder().setNameFormat("live-core-writer-t-%d")
+                        .setPriority(Thread.MAX_PRIORITY).build());
+        ScheduledExecutorService prematchMetadataExecutor =
+                Executors.newScheduledThreadPool(PREMATCH_META_THREADS, new ThreadFactoryBuilder().setNameFormat("prematch-metadata-t-%d").build());
+        ExecutorService liveSettlementExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("live-settlement-t-%d").build());
+        ExecutorService prematchMetadataWriteExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("prematch-metadata-writer-t-%d").build());
+        ExecutorService prematchCoreDataExecutor =
+                Executors.newFixedThreadPool(PREMATCH_CORE_WRITER_THREADS, new ThreadFactoryBuilder().setNameFormat("prematch-core-writer-t-%d").build());
+        ExecutorService prematchSettlementExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("prematch-settlement-t-%d").build());
+        ScheduledExecutorService recoveryExecutor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("recovery-t-%d").build());
+        ScheduledExecutorService snapshotExecutor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("snapshot-t-%d").build());
+        ExecutorService lifecycleExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("lifecycle-t-%d").build());
+        ScheduledExecutorService storageExecutor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("storage-t-%d").build());
+        ScheduledExecutorService bookExecutor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("book-t-%d").build());
+        ScheduledExecutorService metricsExecutor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setNameFormat("metrics-t-%d").build());
+        ExecutorService metricsHttpExecutor =
+                Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setNameFormat("metrics-http-t-%d").build());
+
+        MetricsRegistry metricsRegistry = new MetricsRegistry(metricsExecutor);
+        metricsRegistry.start();
+        MetricsHttpServer metricsHttpServer = new MetricsHttpServer(metricsRegistry,
+                new InetSocketAddress(METRICS_HTTP_HOST, METRICS_HTTP_PORT), metricsHttpExecutor);
+        metricsHttpServer.start();
+        FeedMetrics feedMetrics = new FeedMetrics(metricsRegistry); // per producer and message type throughput/latency
+        MetricsRegistry liveMetricsRegistry = metricsRegistry.scoped("live"); // per lane throughput, queue depth and lag
+        MetricsRegistry prematchMetricsRegistry = metricsRegistry.scoped("prematch");
+        StorageBackend liveStorageBackend;
+        StorageBackend prematchStorageBackend;
+        switch (STORAGE) {
+            case "redis":
+                // separate connection pools, so prematch writes never wait for a connection used by the live lane
+                liveStorageBackend = new RedisStorageBackend(getRedisShards(LIVE_REDIS_POOL_SIZE), liveMetricsRegistry);
+                prematchStorageBackend = new RedisStorageBackend(getRedisShards(PREMATCH_REDIS_POOL_SIZE), prematchMetricsRegistry);
+                break;
+            case "mapped":
+                // a single in-process store, there are no connections to isolate
+                liveStorageBackend = getMappedStorageBackend(storageExecutor, metricsRegistry);
+                prematchStorageBackend = liveStorageBackend;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported storage: " + STORAGE);
+        }
+
+        // data processors shared by both lanes
+        // both backends write to the same storage, so the releases of finished events (background work, not latency
+        // sensitive) expire the keys of both lanes through the prematch connections, keeping them off the live pool
+        EventLifecycleTracker eventLifecycleTracker = new EventLifecycleTracker(prematchStorageBackend, lifecycleExecutor, metricsRegistry,
+                LIFECYCLE_FINISHED_EVENT_TTL_SECONDS); // releases the state of finished events
+        LastWrittenStateCache lastWrittenStateCache = new LastWrittenStateCache(CORE_MAX_TRACKED_EVENTS);
+        eventLifecycleTracker.addEvictionListener(lastWrittenStateCache::evictEvent);
+        OddsBook oddsBook = new OddsBook(eventLifecycleTracker, bookExecutor, metricsRegistry, BOOK_IDLE_EVICTION_MS); // in-process latest odds for co-located readers
+        eventLifecycleTracker.addEvictionListener(oddsBook::evictEvent);
+        MarketNameCache marketNameCache = new MarketNameCache(META_MAX_CACHED_NAMES, metricsRegistry); // market/outcome names shared across events
+        MarketGroups marketGroups = new MarketGroups(metricsRegistry); // resolves the markets of a bet stop
+        HeartbeatTracker heartbeatTracker = new HeartbeatTracker(liveStorageBackend, heartbeatTrackingExecutor); // producer liveness tracking
+        EventRecoveryRequester eventRecoveryRequester = new EventRecoveryRequester(recoveryExecutor, metricsRegistry); // single event recoveries
 
-        // data processors
-        CoreDataWriter coreDataWriter = new CoreDataWriter(jedisPool); // important betting information processing
-        MetadataWriter metadataWriter = new MetadataWriter(jedisPool, metadataExecutor); // event/market metadata async processing
-        HeartbeatTracker heartbeatTracker = new HeartbeatTracker(jedisPool, heartbeatTrackingExecutor); // producer liveness tracking
+        // live lane
+        CoreDataWriter liveCoreDataWriter = new CoreDataWriter(liveStorageBackend, lastWrittenStateCache, eventLifecycleTracker, oddsBook,
+                CORE_OUTCOME_ENCODING.getCodec(), liveMetricsRegistry, CORE_MAX_COMMANDS_PER_FLUSH, CORE_PRODUCER_INDEX_ENABLED); // important betting information processing
+        CoreDataPipeline liveCoreDataPipeline = new CoreDataPipeline(liveCoreDataWriter, liveCoreDataExecutor, liveMetricsRegistry, feedMetrics,
+                new FailedWriteTracker(eventRecoveryRequester, EventRecoveryRequester.Kind.ODDS, liveMetricsRegistry, "core.write"), LIVE_CORE_WRITER_THREADS, LIVE_CORE_PARTITION_CAPACITY, CORE_OVERFLOW_POLICY, LIVE_CORE_COALESCING_WINDOW_MS); // async, per-event ordered core data writes
+        MetadataWriteCollector liveMetadataWriteCollector = new MetadataWriteCollector(liveStorageBackend, eventLifecycleTracker,
+                liveMetadataWriteExecutor, liveMetricsRegistry, META_MAX_PENDING_WRITES);
+        MetadataWriter liveMetadataWriter = new MetadataWriter(liveMetadataWriteCollector, marketNameCache, eventLifecycleTracker, liveMetadataExecutor,
+                liveMetricsRegistry, META_EVENT_TRACKER_MEMORY_BYTES, META_MARKET_TRACKER_MEMORY_BYTES, LIVE_META_MAX_PENDING_TASKS); // event/market metadata async processing
+        SettlementWriter liveSettlementWriter = new SettlementWriter(liveStorageBackend, liveSettlementExecutor, liveMetricsRegistry, feedMetrics,
+                new FailedWriteTracker(eventRecoveryRequester, EventRecoveryRequester.Kind.STATEFUL, liveMetricsRegistry, "settlement.write"), SETTLEMENT_TTL_SECONDS, SETTLEMENT_MAX_COMMANDS_PER_FLUSH, SETTLEMENT_MAX_PENDING_MESSAGES); // settlements, cancels and rollbacks
 
+        // prematch lane
+        CoreDataWriter prematchCoreDataWriter = new CoreDataWriter(prematchStorageBackend, lastWrittenStateCache, eventLifecycleTracker, oddsBook,
+                CORE_OUTCOME_ENCODING.getCodec(), prematchMetricsRegistry, CORE_MAX_COMMANDS_PER_FLUSH, CORE_PRODUCER_INDEX_ENABLED);
+        CoreDataPipeline prematchCoreDataPipeline = new CoreDataPipeline(prematchCoreDataWriter, prematchCoreDataExecutor, prematchMetricsRegistry,
+                feedMetrics, new FailedWriteTracker(eventRecoveryRequester, EventRecoveryRequester.Kind.ODDS, prematchMetricsRegistry, "core.write"),
+                PREMATCH_CORE_WRITER_THREADS, PREMATCH_CORE_PARTITION_CAPACITY, CORE_OVERFLOW_POLICY, PREMATCH_CORE_COALESCING_WINDOW_MS);
+        prematchCoreDataPipeline.yieldTo(liveCoreDataPipeline, PREMATCH_YIELD_LIVE_BACKLOG);
+        MetadataWriteCollector prematchMetadataWriteCollector = new MetadataWriteCollector(prematchStorageBackend, eventLifecycleTracker, prematchMetadataWriteExecutor,
+                prematchMetricsRegistry, META_MAX_PENDING_WRITES);
+        MetadataWriter prematchMetadataWriter = new MetadataWriter(prematchMetadataWriteCollector, marketNameCache, eventLifecycleTracker,
+                prematchMetadataExecutor, prematchMetricsRegistry, META_EVENT_TRACKER_MEMORY_BYTES, META_MARKET_TRACKER_MEMORY_BYTES,
+                PREMATCH_META_MAX_PENDING_TASKS);
+        SettlementWriter prematchSettlementWriter = new SettlementWriter(prematchStorageBackend, prematchSettlementExecutor,
+                prematchMetricsRegistry, feedMetrics, new FailedWriteTracker(eventRecoveryRequester, EventRecoveryRequester.Kind.STATEFUL,
+                prematchMetricsRegistry, "settlement.write"), SETTLEMENT_TTL_SECONDS, SETTLEMENT_MAX_COMMANDS_PER_FLUSH, SETTLEMENT_MAX_PENDING_MESSAGES);
+
+        RecoveryTimestampTracker recoveryTimestampTracker = new RecoveryTimestampTracker(liveStorageBackend, Paths.get(RECOVERY_TIMESTAMPS_FILE),
+                recoveryExecutor, metricsRegistry, Arrays.asList(liveCoreDataPipeline::oldestPendingGeneratedAt, liveSettlementWriter::oldestPendingGeneratedAt,
+                        prematchCoreDataPipeline::oldestPendingGeneratedAt, prematchSettlementWriter::oldestPendingGeneratedAt),
+                RECOVERY_CHECKPOINT_INTERVAL_MS, RECOVERY_MAX_WINDOW_MS); // persisted per producer recovery timestamps
+        SteadyStateMonitor steadyStateMonitor = new SteadyStateMonitor(recoveryTimestampTracker,
+                Arrays.asList(liveMetadataWriter, prematchMetadataWriter), recoveryExecutor, metricsRegistry, startedAtNanos);
+
+        // warm start, restored before the feed is opened
+        WarmStartSnapshot warmStartSnapshot = new WarmStartSnapshot(Paths.get(WARM_START_SNAPSHOT_FILE), snapshotExecutor, metricsRegistry,
+                WARM_START_SNAPSHOT_INTERVAL_MS);
+        warmStartSnapshot.register("meta.names", marketNameCache);
+        if (!"mapped".equals(STORAGE)) {
+            // the mapped storage starts empty on every start, so its metadata has to be written again
+            liveMetadataWriter.registerSnapshots(warmStartSnapshot, "live.meta");
+            prematchMetadataWriter.registerSnapshots(warmStartSnapshot, "prematch.meta");
+        }
+        warmStartSnapshot.load();
+
+        liveCoreDataPipeline.start();
+        liveMetadataWriteCollector.start();
+        liveSettlementWriter.start();
+        prematchCoreDataPipeline.start();
+        prematchMetadataWriteCollector.start();
+        prematchSettlementWriter.start();
         heartbeatTracker.start();
-        metadataWriter.start();
+        oddsBook.start();
+        recoveryTimestampTracker.start();
+        warmStartSnapshot.start();
+        steadyStateMonitor.start();
 
         // UOF consumer setup
-        FeedEventListener feedEventListener = new FeedEventListener(coreDataWriter, metadataWriter, heartbeatTracker);
-        MultithreadedSessionSetup multithreadedSessionSetup = new MultithreadedSessionSetup(feedEventListener);
+        FeedEventListener liveEventListener = new FeedEventListener(liveCoreDataPipeline, liveMetadataWriter, marketGroups,
+                liveSettlementWriter, heartbeatTracker, eventLifecycleTracker, recoveryTimestampTracker, eventRecoveryRequester, feedMetrics);
+        FeedEventListener prematchEventListener = new FeedEventListener(prematchCoreDataPipeline, prematchMetadataWriter, marketGroups,
+                prematchSettlementWriter, heartbeatTracker, eventLifecycleTracker, recoveryTimestampTracker, eventRecoveryRequester, feedMetrics);
+        MultithreadedSessionSetup multithreadedSessionSetup = new MultithreadedSessionSetup(liveEventListener, prematchEventListener,
+                recoveryTimestampTracker, eventRecoveryRequester);
+        multithreadedSessionSetup.warmUp(marketNameCache, marketGroups);
         multithreadedSessionSetup.run();
 
         // sleep 30min for demo purposes
@@ -43,23 +272,94 @@ public class AdvancedOddsFeedExampleMain {
 
         // resources cleanup
         multithreadedSessionSetup.stop();
-        jedisPool.destroy();
+        recoveryExecutor.shutdownNow();
+        recoveryTimestampTracker.checkpoint(); // whatever is still queued is held back and recovered on the next start
+        // the metadata tasks and then their writes are drained first, so the snapshot only tracks stored metadata
+        liveMetadataExecutor.shutdown();
+        prematchMetadataExecutor.shutdown();
+        awaitTermination(liveMetadataExecutor, prematchMetadataExecutor);
+        liveMetadataWriteCollector.stop();
+        prematchMetadataWriteCollector.stop();
+        liveMetadataWriteExecutor.shutdown();
+        prematchMetadataWriteExecutor.shutdown();
+        awaitTermination(liveMetadataWriteExecutor, prematchMetadataWriteExecutor);
+        snapshotExecutor.shutdownNow();
+        warmStartSnapshot.write();
+        liveCoreDataExecutor.shutdownNow();
+        prematchCoreDataExecutor.shutdownNow();
+        liveStorageBackend.close();
+        if (prematchStorageBackend != liveStorageBackend) {
+            prematchStorageBackend.close();
+        }
         heartbeatTrackingExecutor.shutdownNow();
-        metadataExecutor.shutdownNow();
+        liveSettlementExecutor.shutdownNow();
+        prematchSettlementExecutor.shutdownNow();
+        lifecycleExecutor.shutdownNow();
+        storageExecutor.shutdownNow();
+        bookExecutor.shutdownNow();
+        metricsHttpServer.stop();
+        metricsHttpExecutor.shutdownNow();
+        metricsExecutor.shutdownNow();
+    }
+
+    /**
+     * Waits up to SHUTDOWN_DRAIN_TIMEOUT_MS for all the executors, the ones still running are interrupted
+     */
+    private static void awaitTermination(ExecutorService... executors) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(SHUTDOWN_DRAIN_TIMEOUT_MS);
+        for (ExecutorService executor : executors) {
+            if (!executor.awaitTermination(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                logger.warn("Executor not drained in {}ms, interrupting it", SHUTDOWN_DRAIN_TIMEOUT_MS);
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static StorageBackend getMappedStorageBackend(ScheduledExecutorService storageExecutor, MetricsRegistry metricsRegistry) {
+        MappedStorageBackend mappedStorageBackend = new MappedStorageBackend(Paths.get(STORAGE_MAPPED_FILE),
+                STORAGE_MAPPED_MAX_BYTES, storageExecutor, metricsRegistry);
+        mappedStorageBackend.start();
+        return mappedStorageBackend;
+    }
+
+    private static RedisShards getRedisShards(int poolSize) throws URISyntaxException {
+        List<URI> uris = new ArrayList<>();
+        for (String uri : REDIS_URIS.split(",")) {
+            uris.add(new URI(uri.trim()));
+        }
+
+        switch (REDIS_MODE) {
+            case "sharded":
+                List<JedisPool> pools = new ArrayList<>();
+                for (URI uri : uris) {
+                    pools.add(new JedisPool(getJedisPoolConfig(poolSize), uri, REDIS_TIMEOUT_MS, REDIS_TIMEOUT_MS));
+                }
+                return new ConsistentHashRedisShards(pools, REDIS_VIRTUAL_NODES_PER_SHARD);
+            case "cluster":
+                Set<HostAndPort> nodes = new HashSet<>();
+                for (URI uri : uris) {
+                    nodes.add(new HostAndPort(uri.getHost(), uri.getPort()));
+                }
+                return new ClusterRedisShards(new RoutingJedisCluster(nodes, REDIS_TIMEOUT_MS, REDIS_TIMEOUT_MS,
+                        REDIS_CLUSTER_MAX_ATTEMPTS, getJedisPoolConfig(poolSize)));
+            case "single":
+                return new SingleRedisShards(new JedisPool(getJedisPoolConfig(poolSize), uris.get(0), REDIS_TIMEOUT_MS, REDIS_TIMEOUT_MS));
+            default:
+                throw new IllegalArgumentException("Unsupported redis mode: " + REDIS_MODE);
+        }
     }
 
-    private static JedisPool getJedisPool() throws URISyntaxException {
-        int timeout = 500;
+    private static JedisPoolConfig getJedisPoolConfig(int poolSize) {
+        int timeout = REDIS_TIMEOUT_MS;
         JedisPoolConfig config = new JedisPoolConfig();
-        config.setMaxTotal(10);
-        config.setMaxIdle(10);
-        config.setMinIdle(10);
+        config.setMaxTotal(poolSize);
+        config.setMaxIdle(poolSize);
+        config.setMinIdle(poolSize);
         config.setMaxWaitMillis(timeout);
         config.setBlockWhenExhausted(true);
         config.setTestOnBorrow(false);
         config.setTestOnCreate(false);
         config.setTestOnReturn(false);
-        URI url = new URI("redis://localhost:6379");
-        return new JedisPool(config, url, timeout, timeout);
+        return config;
     }
 }
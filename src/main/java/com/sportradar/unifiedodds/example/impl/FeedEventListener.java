@@ -1,8 +1,15 @@
 package com.sportradar.unifiedodds.example.impl;
 
 import com.google.common.base.Preconditions;
-import com.sportradar.unifiedodds.example.impl.core.CoreDataWriter;
+import com.sportradar.unifiedodds.example.impl.core.CoreDataPipeline;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.meta.MarketGroups;
 import com.sportradar.unifiedodds.example.impl.meta.MetadataWriter;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics.MessageType;
+import com.sportradar.unifiedodds.example.impl.recovery.EventRecoveryRequester;
+import com.sportradar.unifiedodds.example.impl.recovery.RecoveryTimestampTracker;
+import com.sportradar.unifiedodds.example.impl.settlement.SettlementWriter;
 import com.sportradar.unifiedodds.sdk.OddsFeedListener;
 import com.sportradar.unifiedodds.sdk.OddsFeedSession;
 import com.sportradar.unifiedodds.sdk.SDKGlobalEventsListener;
@@ -12,10 +19,12 @@ import com.sportradar.unifiedodds.sdk.oddsentities.BetCancel;
 import com.sportradar.unifiedodds.sdk.oddsentities.BetSettlement;
 import com.sportradar.unifiedodds.sdk.oddsentities.BetStop;
 import com.sportradar.unifiedodds.sdk.oddsentities.FixtureChange;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
 import com.sportradar.unifiedodds.sdk.oddsentities.OddsChange;
 import com.sportradar.unifiedodds.sdk.oddsentities.Producer;
 import com.sportradar.unifiedodds.sdk.oddsentities.ProducerDown;
 import com.sportradar.unifiedodds.sdk.oddsentities.ProducerStatus;
+import com.sportradar.unifiedodds.sdk.oddsentities.ProducerStatusReason;
 import com.sportradar.unifiedodds.sdk.oddsentities.ProducerUp;
 import com.sportradar.unifiedodds.sdk.oddsentities.RollbackBetCancel;
 import com.sportradar.unifiedodds.sdk.oddsentities.RollbackBetSettlement;
@@ -24,6 +33,8 @@ import com.sportradar.utils.URN;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.List;
+
 /**
  * Created on 17. 09. 20
  *
@@ -32,89 +43,157 @@ import org.slf4j.LoggerFactory;
 public class FeedEventListener implements OddsFeedListener, SDKGlobalEventsListener {
     private static final Logger logger = LoggerFactory.getLogger(FeedEventListener.class);
 
-    private final CoreDataWriter coreDataWriter;
+    private final CoreDataPipeline coreDataPipeline;
     private final MetadataWriter metadataWriter;
+    private final MarketGroups marketGroups;
+    private final SettlementWriter settlementWriter;
     private final HeartbeatTracker heartbeatTracker;
-
-    public FeedEventListener(CoreDataWriter coreDataWriter, MetadataWriter metadataWriter, HeartbeatTracker heartbeatTracker) {
-        Preconditions.checkNotNull(coreDataWriter);
+    private final EventLifecycleTracker eventLifecycleTracker;
+    private final RecoveryTimestampTracker recoveryTimestampTracker;
+    private final EventRecoveryRequester eventRecoveryRequester;
+    private final FeedMetrics feedMetrics;
+
+    public FeedEventListener(CoreDataPipeline coreDataPipeline,
+                             MetadataWriter metadataWriter,
+                             MarketGroups marketGroups,
+                             SettlementWriter settlementWriter,
+                             HeartbeatTracker heartbeatTracker,
+                             EventLifecycleTracker eventLifecycleTracker,
+                             RecoveryTimestampTracker recoveryTimestampTracker,
+                             EventRecoveryRequester eventRecoveryRequester,
+                             FeedMetrics feedMetrics) {
+        Preconditions.checkNotNull(coreDataPipeline);
         Preconditions.checkNotNull(metadataWriter);
+        Preconditions.checkNotNull(marketGroups);
+        Preconditions.checkNotNull(settlementWriter);
         Preconditions.checkNotNull(heartbeatTracker);
+        Preconditions.checkNotNull(eventLifecycleTracker);
+        Preconditions.checkNotNull(recoveryTimestampTracker);
+        Preconditions.checkNotNull(eventRecoveryRequester);
+        Preconditions.checkNotNull(feedMetrics);
 
-        this.coreDataWriter = coreDataWriter;
+        this.coreDataPipeline = coreDataPipeline;
         this.metadataWriter = metadataWriter;
+        this.marketGroups = marketGroups;
+        this.settlementWriter = settlementWriter;
         this.heartbeatTracker = heartbeatTracker;
+        this.eventLifecycleTracker = eventLifecycleTracker;
+        this.recoveryTimestampTracker = recoveryTimestampTracker;
+        this.eventRecoveryRequester = eventRecoveryRequester;
+        this.feedMetrics = feedMetrics;
     }
 
     @Override
     public void onOddsChange(OddsFeedSession sender, OddsChange<SportEvent> oddsChanges) {
         int producerId = oddsChanges.getProducer().getId();
         URN eventId = oddsChanges.getEvent().getId();
-        logger.info("Received odds change for Event[{}], producer[{}]", eventId, producerId);
-        coreDataWriter.process(producerId, eventId, oddsChanges.getMarkets());
+        feedMetrics.onMessage(MessageType.ODDS_CHANGE, producerId, oddsChanges.getTimestamp(), size(oddsChanges.getMarkets()));
+        logger.debug("Received odds change for Event[{}], producer[{}]", eventId, producerId);
+        coreDataPipeline.submit(producerId, eventId, oddsChanges.getMarkets(), oddsChanges.getTimestamp());
         if (oddsChanges.getEvent() instanceof Competition) {
             ((Competition) oddsChanges.getEvent())
                     .getStatusIfPresent()
-                    .ifPresent(v -> coreDataWriter.process(eventId, v));
+                    .ifPresent(v -> coreDataPipeline.submit(eventId, v));
         }
+        recoveryTimestampTracker.onMessageSubmitted(producerId, oddsChanges.getTimestamp());
         metadataWriter.process(oddsChanges.getEvent(), false);
         metadataWriter.process(producerId, eventId, oddsChanges.getMarkets());
     }
 
     @Override
     public void onFixtureChange(OddsFeedSession sender, FixtureChange<SportEvent> fixtureChange) {
-        logger.info("Received fixture change for Event[{}], producer[{}]",
+        feedMetrics.onMessage(MessageType.FIXTURE_CHANGE, fixtureChange.getProducer().getId(), fixtureChange.getTimestamp(), -1);
+        logger.debug("Received fixture change for Event[{}], producer[{}]",
                 fixtureChange.getEvent().getId(), fixtureChange.getProducer().getId());
         metadataWriter.process(fixtureChange.getEvent(), true);
+        trackEventStatus(fixtureChange.getEvent());
     }
 
     @Override
     public void onBetStop(OddsFeedSession sender, BetStop<SportEvent> betStop) {
-        logger.info("Received betstop for Event[{}], producer[{}]",
-                betStop.getEvent().getId(), betStop.getProducer().getId());
-        // TODO handling
+        int producerId = betStop.getProducer().getId();
+        feedMetrics.onMessage(MessageType.BET_STOP, producerId, betStop.getTimestamp(), -1);
+        logger.debug("Received betstop for Event[{}], producer[{}]", betStop.getEvent().getId(), producerId);
+        MarketStatus status = betStop.getMarketStatus() == null ? MarketStatus.Suspended : betStop.getMarketStatus();
+        coreDataPipeline.suspend(producerId, betStop.getEvent().getId(), marketGroups.filter(betStop.getGroups()), status,
+                betStop.getTimestamp());
+        recoveryTimestampTracker.onMessageSubmitted(producerId, betStop.getTimestamp());
     }
 
     @Override
     public void onBetSettlement(OddsFeedSession sender, BetSettlement<SportEvent> clearBets) {
-        logger.info("Received bet settlement for Event[{}], producer[{}]",
+        feedMetrics.onMessage(MessageType.BET_SETTLEMENT, clearBets.getProducer().getId(), clearBets.getTimestamp(), size(clearBets.getMarkets()));
+        logger.debug("Received bet settlement for Event[{}], producer[{}]",
                 clearBets.getEvent().getId(), clearBets.getProducer().getId());
-        // TODO handling
+        trackEventStatus(clearBets.getEvent());
+        settlementWriter.settle(clearBets.getProducer().getId(), clearBets.getEvent().getId(), clearBets.getMarkets(), clearBets.getTimestamp());
+        recoveryTimestampTracker.onMessageSubmitted(clearBets.getProducer().getId(), clearBets.getTimestamp());
     }
 
     @Override
     public void onRollbackBetSettlement(OddsFeedSession sender, RollbackBetSettlement<SportEvent> rollbackBetSettlement) {
-        logger.info("Received rollback betsettlement for Event[{}], producer[{}]",
+        feedMetrics.onMessage(MessageType.ROLLBACK_BET_SETTLEMENT, rollbackBetSettlement.getProducer().getId(),
+                rollbackBetSettlement.getTimestamp(), size(rollbackBetSettlement.getMarkets()));
+        logger.debug("Received rollback betsettlement for Event[{}], producer[{}]",
                 rollbackBetSettlement.getEvent().getId(), rollbackBetSettlement.getProducer().getId());
-        // TODO handling
+        settlementWriter.rollbackSettlement(rollbackBetSettlement.getProducer().getId(), rollbackBetSettlement.getEvent().getId(),
+                rollbackBetSettlement.getMarkets(), rollbackBetSettlement.getTimestamp());
+        recoveryTimestampTracker.onMessageSubmitted(rollbackBetSettlement.getProducer().getId(), rollbackBetSettlement.getTimestamp());
     }
 
     @Override
     public void onBetCancel(OddsFeedSession sender, BetCancel<SportEvent> betCancel) {
-        logger.info("Received bet cancel for Event[{}], producer[{}]",
+        feedMetrics.onMessage(MessageType.BET_CANCEL, betCancel.getProducer().getId(), betCancel.getTimestamp(), size(betCancel.getMarkets()));
+        logger.debug("Received bet cancel for Event[{}], producer[{}]",
                 betCancel.getEvent().getId(), betCancel.getProducer().getId());
-        // TODO handling
+        settlementWriter.cancel(betCancel.getProducer().getId(), betCancel.getEvent().getId(), betCancel.getMarkets(),
+                betCancel.getStartTime(), betCancel.getEndTime(), betCancel.getSupersededBy(), betCancel.getTimestamp());
+        recoveryTimestampTracker.onMessageSubmitted(betCancel.getProducer().getId(), betCancel.getTimestamp());
     }
 
     @Override
     public void onRollbackBetCancel(OddsFeedSession sender, RollbackBetCancel<SportEvent> rbBetCancel) {
-        logger.info("Received rollback betcancel for Event[{}], producer[{}]",
+        feedMetrics.onMessage(MessageType.ROLLBACK_BET_CANCEL, rbBetCancel.getProducer().getId(), rbBetCancel.getTimestamp(),
+                size(rbBetCancel.getMarkets()));
+        logger.debug("Received rollback betcancel for Event[{}], producer[{}]",
                 rbBetCancel.getEvent().getId(), rbBetCancel.getProducer().getId());
-        // TODO handling
+        settlementWriter.rollbackCancel(rbBetCancel.getProducer().getId(), rbBetCancel.getEvent().getId(), rbBetCancel.getMarkets(),
+                rbBetCancel.getStartTime(), rbBetCancel.getEndTime(), rbBetCancel.getTimestamp());
+        recoveryTimestampTracker.onMessageSubmitted(rbBetCancel.getProducer().getId(), rbBetCancel.getTimestamp());
     }
 
     @Override
     public void onUnparsableMessage(OddsFeedSession sender, UnparsableMessage unparsableMessage) {
         Producer possibleProducer = unparsableMessage.getProducer(); // the SDK will try to provide the origin of the message
+        feedMetrics.onMessage(MessageType.UNPARSABLE, possibleProducer == null ? 0 : possibleProducer.getId(), 0, -1);
 
         if (unparsableMessage.getEvent() != null) {
             logger.info("Problems detected on received message for event " + unparsableMessage.getEvent().getId());
-            // TODO bet stop handling for the event
+            if (possibleProducer != null) {
+                // the content is unknown, the feed sends the current odds of the event again
+                eventRecoveryRequester.request(EventRecoveryRequester.Kind.ODDS, possibleProducer.getId(),
+                        unparsableMessage.getEvent().getId(), null);
+            }
         } else {
             logger.info("Problems detected on received message"); // probably a system message deserialization failure
         }
     }
 
+    private static int size(List<?> markets) {
+        return markets == null ? 0 : markets.size();
+    }
+
+    /**
+     * Only the already available status is used, so the SDK thread never waits for an API call
+     */
+    private void trackEventStatus(SportEvent event) {
+        if (event instanceof Competition) {
+            ((Competition) event)
+                    .getStatusIfPresent()
+                    .ifPresent(v -> eventLifecycleTracker.onEventStatus(event.getId(), v.getStatus()));
+        }
+    }
+
     @Override
     public void onConnectionDown() {
         logger.warn("onConnectionDown triggered!");
@@ -126,6 +205,9 @@ public class FeedEventListener implements OddsFeedListener, SDKGlobalEventsListe
                 producerStatus.getProducer().getId(), producerStatus.getProducerStatusReason(), producerStatus.isDelayed(), producerStatus.isDown());
         boolean isHealthy = !producerStatus.isDown() && !producerStatus.isDelayed();
         heartbeatTracker.onProducerStatusChange(producerStatus.getProducer().getId(), isHealthy);
+        if (producerStatus.getProducerStatusReason() == ProducerStatusReason.FirstRecoveryCompleted) {
+            recoveryTimestampTracker.onRecoveryCompleted(producerStatus.getProducer().getId());
+        }
     }
 
     @Override
@@ -140,7 +222,7 @@ public class FeedEventListener implements OddsFeedListener, SDKGlobalEventsListe
 
     @Override
     public void onEventRecoveryCompleted(URN urn, long l) {
-        // example doesnt do event recoveries
+        eventRecoveryRequester.onCompleted(urn, l);
     }
 
     @Override
@@ -3,9 +3,10 @@ package com.sportradar.unifiedodds.example.impl;
 import com.google.common.base.Preconditions;
 import com.sportradar.unifiedodds.example.impl.entities.MarketData;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Map;
-import java.util.TreeSet;
-import java.util.stream.Collectors;
 
 /**
  * Created on 17. 09. 20
@@ -13,6 +14,9 @@ import java.util.stream.Collectors;
  * @author e.roznik
  */
 public final class FullMarketIdBuilder {
+    private static final int CACHE_SIZE = 4096; // must be a power of two
+    private static final ThreadLocal<BuilderState> STATE = ThreadLocal.withInitial(BuilderState::new);
+
     private FullMarketIdBuilder() {
         // no instance
     }
@@ -20,15 +24,141 @@ public final class FullMarketIdBuilder {
     public static String composeFullMarketKey(MarketData marketData) {
         Preconditions.checkNotNull(marketData);
 
-        return String.format("uof:%s/%s/%s%s", marketData.getProducerId(), marketData.getEventId(), marketData.getId(), composeSpecifiersTail(marketData.getSpecifiers()));
+        return composeFullMarketKey(marketData.getProducerId(), marketData.getEventId(), marketData.getId(), marketData.getSpecifiers());
+    }
+
+    /**
+     * Builds the key in the format uof:[producerId]/[eventId]/[marketId]/[specifiers sorted by name, joined with |].
+     * Keys of recurring markets are served from a per-thread cache, so the hot path does not allocate.
+     */
+    public static String composeFullMarketKey(int producerId, String eventId, int marketId, Map<String, String> specifiers) {
+        Preconditions.checkNotNull(eventId);
+
+        BuilderState state = STATE.get();
+        int specifiersHash = specifiers == null ? 0 : specifiers.hashCode();
+        int hash = ((producerId * 31 + eventId.hashCode()) * 31 + marketId) * 31 + specifiersHash;
+        int index = (hash ^ (hash >>> 16)) & (CACHE_SIZE - 1);
+
+        CachedKey cached = state.cache[index];
+        if (cached != null && cached.matches(producerId, eventId, marketId, specifiers)) {
+            return cached.key;
+        }
+
+        String key = build(state, producerId, eventId, marketId, specifiers);
+        state.cache[index] = new CachedKey(producerId, eventId, marketId, specifiers, key);
+        return key;
+    }
+
+    /**
+     * Builds the event independent part of the key in the format [marketId]/[specifiers sorted by name, joined with |],
+     * which identifies a market type across all events (e.g. for name lookups)
+     */
+    public static String composeMarketTypeKey(int marketId, Map<String, String> specifiers) {
+        BuilderState state = STATE.get();
+        StringBuilder sb = state.builder;
+        sb.setLength(0);
+        sb.append(marketId);
+        appendSpecifiers(state, specifiers);
+        return sb.toString();
+    }
+
+    /**
+     * Extracts the producer id from a key built by {@link #composeFullMarketKey(int, String, int, Map)}
+     */
+    public static int getProducerId(String fullMarketKey) {
+        Preconditions.checkNotNull(fullMarketKey);
+        Preconditions.checkArgument(fullMarketKey.startsWith("uof:"), "Invalid full market key: %s", fullMarketKey);
+
+        return Integer.parseInt(fullMarketKey.substring(4, fullMarketKey.indexOf('/')));
+    }
+
+    /**
+     * Extracts the event id from a key built by {@link #composeFullMarketKey(int, String, int, Map)}
+     */
+    public static String getEventId(String fullMarketKey) {
+        Preconditions.checkNotNull(fullMarketKey);
+
+        int start = fullMarketKey.indexOf('/');
+        int end = start < 0 ? -1 : fullMarketKey.indexOf('/', start + 1);
+        Preconditions.checkArgument(end > start, "Invalid full market key: %s", fullMarketKey);
+        return fullMarketKey.substring(start + 1, end);
+    }
+
+    private static String build(BuilderState state, int producerId, String eventId, int marketId, Map<String, String> specifiers) {
+        StringBuilder sb = state.builder;
+        sb.setLength(0);
+        sb.append("uof:").append(producerId).append('/').append(eventId).append('/').append(marketId);
+        appendSpecifiers(state, specifiers);
+        return sb.toString();
     }
 
-    private static String composeSpecifiersTail(Map<String, String> specifiers) {
+    private static void appendSpecifiers(BuilderState state, Map<String, String> specifiers) {
         if (specifiers == null || specifiers.isEmpty()) {
-            return "";
+            return;
+        }
+
+        StringBuilder sb = state.builder;
+
+        String[] names = state.names(specifiers.size());
+        int count = 0;
+        for (String name : specifiers.keySet()) {
+            // insertion sort, markets carry only a handful of specifiers
+            int i = count++;
+            while (i > 0 && names[i - 1].compareTo(name) > 0) {
+                names[i] = names[i - 1];
+                i--;
+            }
+            names[i] = name;
+        }
+
+        sb.append('/');
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                sb.append('|');
+            }
+            sb.append(names[i]).append('=').append(specifiers.get(names[i]));
+        }
+        Arrays.fill(names, 0, count, null);
+    }
+
+    private static final class BuilderState {
+        private final StringBuilder builder = new StringBuilder(128);
+        private final CachedKey[] cache = new CachedKey[CACHE_SIZE];
+        private String[] names = new String[8];
+
+        private String[] names(int size) {
+            if (names.length < size) {
+                names = new String[size];
+            }
+            return names;
+        }
+    }
+
+    private static final class CachedKey {
+        private final int producerId;
+        private final String eventId;
+        private final int marketId;
+        private final Map<String, String> specifiers;
+        private final String key;
+
+        private CachedKey(int producerId, String eventId, int marketId, Map<String, String> specifiers, String key) {
+            this.producerId = producerId;
+            this.eventId = eventId;
+            this.marketId = marketId;
+            this.specifiers = specifiers == null || specifiers.isEmpty()
+                    ? Collections.emptyMap()
+                    : Collections.unmodifiableMap(new HashMap<>(specifiers));
+            this.key = key;
+        }
+
+        private boolean matches(int producerId, String eventId, int marketId, Map<String, String> specifiers) {
+            if (this.producerId != producerId || this.marketId != marketId || !this.eventId.equals(eventId)) {
+                return false;
+            }
+            if (specifiers == null || specifiers.isEmpty()) {
+                return this.specifiers.isEmpty();
+            }
+            return this.specifiers.equals(specifiers);
         }
-        return "/" + new TreeSet<>(specifiers.keySet()).stream()
-                .map(v -> v + "=" + specifiers.get(v))
-                .collect(Collectors.joining("|"));
     }
 }
@@ -2,10 +2,10 @@ package com.sportradar.unifiedodds.example.impl;
 
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Maps;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 
 import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
@@ -20,15 +20,15 @@ import java.util.concurrent.atomic.AtomicBoolean;
 public class HeartbeatTracker {
     private static final Logger logger = LoggerFactory.getLogger(HeartbeatTracker.class);
 
-    private final JedisPool jedisPool;
+    private final StorageBackend storageBackend;
     private final ScheduledExecutorService heartbeatTrackingExecutor;
     private final Map<Integer, AtomicBoolean> producerStatuses;
 
-    public HeartbeatTracker(JedisPool jedisPool, ScheduledExecutorService heartbeatTrackingExecutor) {
-        Preconditions.checkNotNull(jedisPool);
+    public HeartbeatTracker(StorageBackend storageBackend, ScheduledExecutorService heartbeatTrackingExecutor) {
+        Preconditions.checkNotNull(storageBackend);
         Preconditions.checkNotNull(heartbeatTrackingExecutor);
 
-        this.jedisPool = jedisPool;
+        this.storageBackend = storageBackend;
         this.heartbeatTrackingExecutor = heartbeatTrackingExecutor;
         this.producerStatuses = Maps.newConcurrentMap();
     }
@@ -39,21 +39,24 @@ public class HeartbeatTracker {
 
     private void writeHeartbeats() {
         logger.info("Updating producer heartbeats");
-        try (Jedis client = jedisPool.getResource()) {
+        try (StorageBatch batch = storageBackend.newBatch("heartbeat")) {
             long currentTimestamp = System.currentTimeMillis();
             producerStatuses.forEach((pid, status) -> {
                 if (status.get()) {
-                    updateProducerHeartbeat(client, pid, currentTimestamp);
+                    updateProducerHeartbeat(batch, pid, currentTimestamp);
                 } else {
                     logger.warn("Producer[{}] unhealthy, skipping producer heartbeat update", pid);
                 }
             });
+            batch.flush();
+        } catch (Exception e) {
+            logger.error("Failed to update producer heartbeats: " + e.getMessage(), e);
         }
     }
 
-    private void updateProducerHeartbeat(Jedis client, Integer pid, long currentTimestamp) {
+    private void updateProducerHeartbeat(StorageBatch batch, Integer pid, long currentTimestamp) {
         logger.info("Producer[{}] is healthy, updating heartbeat value", pid);
-        client.set(RedisKeysBuilder.getHeartbeatKey(pid), currentTimestamp + "");
+        batch.valuePut(RedisKeysBuilder.getHeartbeatKey(pid), currentTimestamp + "");
     }
 
     public void onProducerStatusChange(int producerId, boolean isHealthy) {
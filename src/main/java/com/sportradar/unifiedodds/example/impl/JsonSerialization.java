@@ -1,8 +1,11 @@
 package com.sportradar.unifiedodds.example.impl;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+
 /**
  * Created on 17. 09. 20
  *
@@ -21,4 +24,20 @@ public final class JsonSerialization {
             throw new IllegalStateException("Failed to serialize object: " + e.getMessage(), e);
         }
     }
+
+    public static byte[] serializeToBytes(Object object) {
+        try {
+            return OBJECT_MAPPER.writeValueAsBytes(object);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Failed to serialize object: " + e.getMessage(), e);
+        }
+    }
+
+    public static JsonNode readTree(byte[] json) {
+        try {
+            return OBJECT_MAPPER.readTree(json);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to deserialize json: " + e.getMessage(), e);
+        }
+    }
 }
@@ -1,5 +1,9 @@
 package com.sportradar.unifiedodds.example.impl;
 
+import com.sportradar.unifiedodds.example.impl.meta.MarketGroups;
+import com.sportradar.unifiedodds.example.impl.meta.MarketNameCache;
+import com.sportradar.unifiedodds.example.impl.recovery.EventRecoveryRequester;
+import com.sportradar.unifiedodds.example.impl.recovery.RecoveryTimestampTracker;
 import com.sportradar.unifiedodds.sdk.MessageInterest;
 import com.sportradar.unifiedodds.sdk.OddsFeed;
 import com.sportradar.unifiedodds.sdk.ProducerManager;
@@ -7,29 +11,54 @@ import com.sportradar.unifiedodds.sdk.cfg.OddsFeedConfiguration;
 import com.sportradar.unifiedodds.sdk.exceptions.InitException;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Created on 17. 09. 20
+ * <p>
+ * The prematch and the live session are dispatched to separate listeners, so each message interest is processed by
+ * its own lane (writer threads, connection pool, metadata queue) and a prematch flood can't delay the live odds.
  *
  * @author e.roznik
  */
 public class MultithreadedSessionSetup {
+    private static final List<Locale> DESIRED_LOCALES = Arrays.asList(Locale.ENGLISH, Locale.ITALIAN);
+
     private final OddsFeed oddsFeed;
-    private final FeedEventListener feedEventListener;
+    private final FeedEventListener liveEventListener;
+    private final FeedEventListener prematchEventListener;
+    private final RecoveryTimestampTracker recoveryTimestampTracker;
 
-    public MultithreadedSessionSetup(FeedEventListener feedEventListener) {
+    /**
+     * @param liveEventListener also receives the global (producer status) events
+     * @param recoveryTimestampTracker provides the persisted recovery timestamps, must be started before {@link #run()}
+     * @param eventRecoveryRequester is bound to the created feed
+     */
+    public MultithreadedSessionSetup(FeedEventListener liveEventListener, FeedEventListener prematchEventListener,
+                                     RecoveryTimestampTracker recoveryTimestampTracker, EventRecoveryRequester eventRecoveryRequester) {
         OddsFeedConfiguration configuration = OddsFeed.getOddsFeedConfigurationBuilder()
                 .setAccessTokenFromSystemVar()
                 .selectProduction()
                 .setSdkNodeId(-371)
                 .setDefaultLocale(Locale.ENGLISH)
-                .setDesiredLocales(Arrays.asList(Locale.ENGLISH, Locale.ITALIAN))
+                .setDesiredLocales(DESIRED_LOCALES)
                 .build();
 
-        this.feedEventListener = feedEventListener;
-        this.oddsFeed = new OddsFeed(feedEventListener, configuration);
+        this.liveEventListener = liveEventListener;
+        this.prematchEventListener = prematchEventListener;
+        this.recoveryTimestampTracker = recoveryTimestampTracker;
+        this.oddsFeed = new OddsFeed(liveEventListener, configuration);
+        eventRecoveryRequester.bind(oddsFeed.getEventRecoveryRequestIssuer(), oddsFeed.getProducerManager());
+    }
+
+    /**
+     * Preloads the market descriptions of all desired locales, should be invoked before the feed is opened
+     */
+    public void warmUp(MarketNameCache marketNameCache, MarketGroups marketGroups) {
+        marketNameCache.warmUp(oddsFeed.getMarketDescriptionManager(), DESIRED_LOCALES);
+        marketGroups.warmUp(oddsFeed.getMarketDescriptionManager(), DESIRED_LOCALES.get(0));
     }
 
     public void run() throws InitException {
@@ -37,11 +66,11 @@ public class MultithreadedSessionSetup {
 
         oddsFeed.getSessionBuilder()
                 .setMessageInterest(MessageInterest.PrematchMessagesOnly)
-                .setListener(feedEventListener)
+                .setListener(prematchEventListener)
                 .build();
         oddsFeed.getSessionBuilder()
                 .setMessageInterest(MessageInterest.LiveMessagesOnly)
-                .setListener(feedEventListener)
+                .setListener(liveEventListener)
                 .build();
 
         oddsFeed.open();
@@ -51,13 +80,21 @@ public class MultithreadedSessionSetup {
         oddsFeed.close();
     }
 
+    /**
+     * Recovers each producer from the timestamp up to which its messages were stored before the restart, clamped to
+     * the producer's stateful recovery window; producers without a persisted timestamp (e.g. the first start) recover
+     * only the last 10 seconds
+     */
     private void setProducersRecoveryTimestamp() {
-        // using the timestamp from 1 hour back, in real case scenarios you need to monitor the timestamp for recovery
-        // with the producerManager.getProducer(producerId).getTimestampForRecovery(); method
-        long recoveryFromTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(10, TimeUnit.SECONDS);
+        long fallbackTimestamp = System.currentTimeMillis() - TimeUnit.MILLISECONDS.convert(10, TimeUnit.SECONDS);
 
         ProducerManager producerManager = oddsFeed.getProducerManager();
 
-        producerManager.getActiveProducers().values().forEach(p -> producerManager.setProducerRecoveryFromTimestamp(p.getId(), recoveryFromTimestamp));
+        producerManager.getActiveProducers().values().forEach(p -> {
+            long recoveryFromTimestamp = recoveryTimestampTracker.getRecoveryTimestamp(p.getId(), fallbackTimestamp,
+                    TimeUnit.MINUTES.toMillis(p.getStatefulRecoveryWindowInMinutes()));
+            producerManager.setProducerRecoveryFromTimestamp(p.getId(), recoveryFromTimestamp);
+            recoveryTimestampTracker.onRecoveryRequested(p.getId(), recoveryFromTimestamp);
+        });
     }
 }
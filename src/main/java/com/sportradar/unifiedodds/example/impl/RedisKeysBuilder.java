@@ -6,10 +6,15 @@ import com.sportradar.utils.URN;
 
 /**
  * Created on 17. 09. 20
+ * <p>
+ * Event scoped keys carry the event id as hash tag ({eventId}), so the event hash, its market hashes and its market
+ * index are placed on the same redis cluster slot / shard.
  *
  * @author e.roznik
  */
 public final class RedisKeysBuilder {
+    private static final String MARKET_KEY_PREFIX = "market:{";
+
     private RedisKeysBuilder() {
         // no instance
     }
@@ -18,9 +23,45 @@ public final class RedisKeysBuilder {
         return String.format("producer:%s:heartbeat", producerId);
     }
 
+    /**
+     * Hash of producerId -> the generated timestamp up to which all the messages of the producer are stored
+     */
+    public static String getRecoveryTimestampsKey() {
+        return "producer:recovery";
+    }
+
     public static String getEventKey(URN eventId) {
         Preconditions.checkNotNull(eventId);
-        return "event:" + eventId.toString();
+        return getEventKey(eventId.toString());
+    }
+
+    public static String getEventKey(String eventId) {
+        Preconditions.checkNotNull(eventId);
+        return "event:{" + eventId + "}";
+    }
+
+    /**
+     * Set of the full market keys written for the event, maintained by the core data writer
+     */
+    public static String getEventMarketsKey(String eventId) {
+        Preconditions.checkNotNull(eventId);
+        return "event:{" + eventId + "}:markets";
+    }
+
+    /**
+     * Set of the event ids with markets of the producer, maintained only when enabled on the core data writer
+     */
+    public static String getProducerEventsKey(int producerId) {
+        return "producer:" + producerId + ":events";
+    }
+
+    /**
+     * SCAN/KEYS pattern matching the market keys of the event, of all producers; prefer the
+     * {@link #getEventMarketsKey(String)} index, a SCAN is O(keyspace)
+     */
+    public static String getEventMarketKeysPattern(String eventId) {
+        Preconditions.checkNotNull(eventId);
+        return MARKET_KEY_PREFIX + eventId + "}:*";
     }
 
     public static String getMarketKey(MarketData marketData) {
@@ -30,6 +71,40 @@ public final class RedisKeysBuilder {
 
     public static String getMarketKey(String fullMarketKey) {
         Preconditions.checkNotNull(fullMarketKey);
-        return "market:" + fullMarketKey;
+        return getMarketKey(FullMarketIdBuilder.getEventId(fullMarketKey), fullMarketKey);
+    }
+
+    public static String getMarketKey(String eventId, String fullMarketKey) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(fullMarketKey);
+        return MARKET_KEY_PREFIX + eventId + "}:" + fullMarketKey;
+    }
+
+    /**
+     * Hash of the results of a settled market, one [result]|[voidFactor]|[deadHeatFactor] field per outcome id
+     */
+    public static String getMarketSettlementKey(String eventId, String fullMarketKey) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(fullMarketKey);
+        return "settlement:{" + eventId + "}:" + fullMarketKey;
+    }
+
+    /**
+     * Hash of the cancelled time ranges of a market, one [startTime]-[endTime] field per range (empty for open ends),
+     * the value is the id of the superseding cancel, if any
+     */
+    public static String getMarketCancelKey(String eventId, String fullMarketKey) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(fullMarketKey);
+        return "cancel:{" + eventId + "}:" + fullMarketKey;
+    }
+
+    /**
+     * Reverse of {@link #getMarketKey(String)}
+     */
+    public static String getFullMarketKey(String marketKey) {
+        Preconditions.checkNotNull(marketKey);
+        Preconditions.checkArgument(marketKey.startsWith(MARKET_KEY_PREFIX), "Invalid market key: %s", marketKey);
+        return marketKey.substring(marketKey.indexOf("}:") + 2);
     }
 }
@@ -0,0 +1,75 @@
+package com.sportradar.unifiedodds.example.impl.book;
+
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of an event in the {@link OddsBook}: the event properties and the latest state of every market,
+ * keyed by the full market key. A snapshot is never modified once published, updates publish a new one.
+ */
+public final class EventBook {
+    private final String eventId;
+    private final long version;
+    private final long updatedAt;
+    private final Map<String, String> properties;
+    private final Map<String, MarketCoreData> markets;
+    private final Set<Integer> producerIds;
+    private final long estimatedBytes;
+
+    EventBook(String eventId, long version, long updatedAt, Map<String, String> properties, Map<String, MarketCoreData> markets,
+              Set<Integer> producerIds, long estimatedBytes) {
+        this.eventId = eventId;
+        this.version = version;
+        this.updatedAt = updatedAt;
+        this.properties = properties;
+        this.markets = markets;
+        this.producerIds = producerIds;
+        this.estimatedBytes = estimatedBytes;
+    }
+
+    public String getEventId() {
+        return eventId;
+    }
+
+    /**
+     * @return incremented with every published snapshot of the event, so readers can detect changes cheaply
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public long getUpdatedAt() {
+        return updatedAt;
+    }
+
+    /**
+     * @return unmodifiable event properties (eventStatus, eventTime, ...)
+     */
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+
+    /**
+     * @return unmodifiable markets of the event, keyed by the full market key
+     */
+    public Map<String, MarketCoreData> getMarkets() {
+        return markets;
+    }
+
+    public MarketCoreData getMarket(String fullMarketKey) {
+        return markets.get(fullMarketKey);
+    }
+
+    /**
+     * @return the producers which sent markets of the event
+     */
+    public Set<Integer> getProducerIds() {
+        return producerIds;
+    }
+
+    long getEstimatedBytes() {
+        return estimatedBytes;
+    }
+}
@@ -0,0 +1,299 @@
+package com.sportradar.unifiedodds.example.impl.book;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.core.LastWrittenStateCache;
+import com.sportradar.unifiedodds.example.impl.core.MarketCoalescingBuffer;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.utils.URN;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process copy of the latest odds, maintained by the core data writer next to the storage writes, so co-located
+ * readers don't need a round trip to the storage for data this process already holds.
+ * <p>
+ * Every event is an immutable {@link EventBook} snapshot; a write batch copies the event's market map once and
+ * publishes the new snapshot with a single map update. Readers never lock and always see a consistent event.
+ * <p>
+ * The book is shared by the live and the prematch core data pipelines, each partitions by event on its own, so both
+ * may write the same event concurrently. The snapshot is replaced within {@link ConcurrentMap#compute}, so the two
+ * writers never lose each other's markets, and the market keys include the producer id, so the two lanes never
+ * overwrite each other's markets (the same holds for the {@link LastWrittenStateCache}).
+ * Finished events are evicted through the {@link EventLifecycleTracker}. Events whose end is never seen (postponed or
+ * abandoned, ended while the process was down, prematch only) are evicted by a periodic sweep once they were not
+ * updated for the idle eviction time, same as the {@link LastWrittenStateCache} expires them.
+ */
+public class OddsBook {
+    private static final Logger logger = LoggerFactory.getLogger(OddsBook.class);
+
+    private static final long SWEEP_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    // rough heap estimates, used only for the memory accounting
+    private static final int EVENT_OVERHEAD_BYTES = 256;
+    private static final int MARKET_OVERHEAD_BYTES = 160;
+    private static final int OUTCOME_BYTES = 21; // reference + probability + odds + active flag
+    private static final int STRING_OVERHEAD_BYTES = 40;
+    private static final int MAP_ENTRY_BYTES = 48;
+
+    private final EventLifecycleTracker eventLifecycleTracker;
+    private final ScheduledExecutorService sweepExecutor;
+    private final long idleEvictionMillis;
+    private final ConcurrentMap<String, EventBook> events = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Integer, Set<String>> producerEvents = new ConcurrentHashMap<>();
+    private final AtomicLong estimatedBytes = new AtomicLong();
+    private final AtomicLong marketCount = new AtomicLong();
+
+    private final LongAdder publishedSnapshots;
+    private final LongAdder skippedFinished;
+    private final LongAdder evictedIdle;
+
+    /**
+     * @param idleEvictionMillis events not updated for this long are evicted by the sweep
+     */
+    public OddsBook(EventLifecycleTracker eventLifecycleTracker, ScheduledExecutorService sweepExecutor, MetricsRegistry metricsRegistry,
+                    long idleEvictionMillis) {
+        Preconditions.checkNotNull(eventLifecycleTracker);
+        Preconditions.checkNotNull(sweepExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkArgument(idleEvictionMillis > 0);
+
+        this.eventLifecycleTracker = eventLifecycleTracker;
+        this.sweepExecutor = sweepExecutor;
+        this.idleEvictionMillis = idleEvictionMillis;
+
+        this.publishedSnapshots = metricsRegistry.counter("book.snapshots.published");
+        this.skippedFinished = metricsRegistry.counter("book.updates.skipped.finished");
+        this.evictedIdle = metricsRegistry.counter("book.events.evicted.idle");
+        metricsRegistry.gauge("book.events", events::size);
+        metricsRegistry.gauge("book.markets", marketCount::get);
+        metricsRegistry.gauge("book.memory.bytes", estimatedBytes::get);
+    }
+
+    public void start() {
+        sweepExecutor.scheduleWithFixedDelay(() -> evictIdle(System.currentTimeMillis()),
+                SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Applies the content of a write batch, one snapshot is published per touched event
+     */
+    public void apply(MarketCoalescingBuffer buffer) {
+        Preconditions.checkNotNull(buffer);
+
+        Map<String, Map<String, MarketCoreData>> marketsByEvent = new HashMap<>();
+        for (Map.Entry<String, MarketCoreData> entry : buffer.getMarkets().entrySet()) {
+            marketsByEvent.computeIfAbsent(entry.getValue().getEventId(), k -> new HashMap<>()).put(entry.getKey(), entry.getValue());
+        }
+        Map<String, Map<String, String>> propertiesByEvent = new HashMap<>();
+        for (Map.Entry<URN, Map<String, String>> entry : buffer.getEventProperties().entrySet()) {
+            propertiesByEvent.put(entry.getKey().toString(), entry.getValue());
+        }
+
+        Set<String> eventIds = new HashSet<>(marketsByEvent.keySet());
+        eventIds.addAll(propertiesByEvent.keySet());
+        for (String eventId : eventIds) {
+            if (eventLifecycleTracker.isFinished(eventId)) {
+                // late updates would resurrect an already released event
+                skippedFinished.increment();
+                continue;
+            }
+            update(eventId, propertiesByEvent.get(eventId), marketsByEvent.getOrDefault(eventId, Collections.emptyMap()));
+        }
+    }
+
+    /**
+     * Replaces single markets of an event outside of a write batch, e.g. the markets suspended by a bet stop
+     */
+    public void apply(String eventId, Map<String, MarketCoreData> markets) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(markets);
+
+        if (markets.isEmpty()) {
+            return;
+        }
+        if (eventLifecycleTracker.isFinished(eventId)) {
+            skippedFinished.increment();
+            return;
+        }
+        update(eventId, null, markets);
+    }
+
+    public EventBook getEvent(String eventId) {
+        Preconditions.checkNotNull(eventId);
+        return events.get(eventId);
+    }
+
+    public MarketCoreData getMarket(String fullMarketKey) {
+        Preconditions.checkNotNull(fullMarketKey);
+
+        EventBook event = events.get(FullMarketIdBuilder.getEventId(fullMarketKey));
+        return event == null ? null : event.getMarket(fullMarketKey);
+    }
+
+    /**
+     * @return the snapshots of the events for which the producer sent markets
+     */
+    public List<EventBook> getProducerEvents(int producerId) {
+        Set<String> eventIds = producerEvents.get(producerId);
+        if (eventIds == null) {
+            return Collections.emptyList();
+        }
+
+        List<EventBook> result = new ArrayList<>(eventIds.size());
+        for (String eventId : eventIds) {
+            EventBook event = events.get(eventId);
+            if (event != null) {
+                result.add(event);
+            }
+        }
+        return result;
+    }
+
+    public void evictEvent(String eventId) {
+        Preconditions.checkNotNull(eventId);
+
+        EventBook removed = events.remove(eventId);
+        if (removed != null) {
+            release(removed);
+        }
+    }
+
+    /**
+     * Evicts the events not updated since now - the idle eviction time
+     */
+    void evictIdle(long now) {
+        try {
+            long idleSince = now - idleEvictionMillis;
+            int evicted = 0;
+            long releasedBytes = 0;
+            for (EventBook event : events.values()) {
+                // an event updated meanwhile is a new snapshot, so it stays
+                if (event.getUpdatedAt() <= idleSince && events.remove(event.getEventId(), event)) {
+                    release(event);
+                    evicted++;
+                    releasedBytes += event.getEstimatedBytes();
+                }
+            }
+            if (evicted > 0) {
+                evictedIdle.add(evicted);
+                logger.info("Evicted {} events not updated for {}min from the odds book, {} bytes released",
+                        evicted, TimeUnit.MILLISECONDS.toMinutes(idleEvictionMillis), releasedBytes);
+            }
+        } catch (Exception e) {
+            logger.error("Failed to evict the idle events: " + e.getMessage(), e);
+        }
+    }
+
+    private void release(EventBook removed) {
+        String eventId = removed.getEventId();
+        for (Integer producerId : removed.getProducerIds()) {
+            Set<String> eventIds = producerEvents.get(producerId);
+            if (eventIds != null) {
+                eventIds.remove(eventId);
+            }
+        }
+        estimatedBytes.addAndGet(-removed.getEstimatedBytes());
+        marketCount.addAndGet(-removed.getMarkets().size());
+    }
+
+    public int eventCount() {
+        return events.size();
+    }
+
+    public long estimatedMemoryBytes() {
+        return estimatedBytes.get();
+    }
+
+    private void update(String eventId, Map<String, String> properties, Map<String, MarketCoreData> markets) {
+        long now = System.currentTimeMillis();
+        EventBook[] replaced = new EventBook[1];
+        EventBook published = events.compute(eventId, (id, current) -> {
+            replaced[0] = current;
+            return next(id, current, properties, markets, now);
+        });
+
+        long previousBytes = replaced[0] == null ? 0 : replaced[0].getEstimatedBytes();
+        int previousMarkets = replaced[0] == null ? 0 : replaced[0].getMarkets().size();
+        estimatedBytes.addAndGet(published.getEstimatedBytes() - previousBytes);
+        marketCount.addAndGet(published.getMarkets().size() - previousMarkets);
+        for (Integer producerId : published.getProducerIds()) {
+            producerEvents.computeIfAbsent(producerId, k -> ConcurrentHashMap.newKeySet()).add(eventId);
+        }
+        publishedSnapshots.increment();
+    }
+
+    private static EventBook next(String eventId, EventBook current, Map<String, String> properties, Map<String, MarketCoreData> markets, long now) {
+        Map<String, String> nextProperties = current == null ? Collections.emptyMap() : current.getProperties();
+        if (properties != null && !properties.isEmpty()) {
+            Map<String, String> merged = new HashMap<>(nextProperties);
+            merged.putAll(properties);
+            nextProperties = Collections.unmodifiableMap(merged);
+        }
+
+        Map<String, MarketCoreData> nextMarkets = current == null ? Collections.emptyMap() : current.getMarkets();
+        Set<Integer> nextProducers = current == null ? Collections.emptySet() : current.getProducerIds();
+        long bytes = current == null ? EVENT_OVERHEAD_BYTES + estimate(nextProperties) : current.getEstimatedBytes();
+        if (!markets.isEmpty()) {
+            Map<String, MarketCoreData> copy = new HashMap<>(nextMarkets);
+            Set<Integer> producers = new HashSet<>(nextProducers);
+            for (Map.Entry<String, MarketCoreData> entry : markets.entrySet()) {
+                String fullMarketKey = entry.getKey();
+                MarketCoreData market = entry.getValue();
+                MarketCoreData previous = copy.put(fullMarketKey, market);
+                bytes += previous == null ? estimate(fullMarketKey, market) : estimate(market) - estimate(previous);
+                producers.add(market.getProducerId());
+            }
+            nextMarkets = Collections.unmodifiableMap(copy);
+            nextProducers = producers.size() == nextProducers.size() ? nextProducers : Collections.unmodifiableSet(producers);
+        }
+        if (current != null && nextProperties != current.getProperties()) {
+            bytes += estimate(nextProperties) - estimate(current.getProperties());
+        }
+
+        long version = current == null ? 1 : current.getVersion() + 1;
+        return new EventBook(eventId, version, now, nextProperties, nextMarkets, nextProducers, bytes);
+    }
+
+    private static long estimate(String fullMarketKey, MarketCoreData market) {
+        return MAP_ENTRY_BYTES + estimate(fullMarketKey) + estimate(market);
+    }
+
+    private static long estimate(MarketCoreData market) {
+        long bytes = MARKET_OVERHEAD_BYTES + (long) market.getOutcomeCount() * OUTCOME_BYTES;
+        for (int i = 0; i < market.getOutcomeCount(); i++) {
+            bytes += estimate(market.getOutcomeId(i));
+        }
+        if (market.getSpecifiers() != null) {
+            bytes += estimate(market.getSpecifiers());
+        }
+        return bytes;
+    }
+
+    private static long estimate(Map<String, String> map) {
+        long bytes = 0;
+        for (Map.Entry<String, String> entry : map.entrySet()) {
+            bytes += MAP_ENTRY_BYTES + estimate(entry.getKey()) + estimate(entry.getValue());
+        }
+        return bytes;
+    }
+
+    private static long estimate(String value) {
+        return value == null ? 0 : STRING_OVERHEAD_BYTES + 2L * value.length();
+    }
+}
@@ -0,0 +1,68 @@
+package com.sportradar.unifiedodds.example.impl.codec;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.entities.OutcomeCoreData;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed-width binary encoding, 18 bytes per outcome:
+ * <pre>
+ * [version:1][flags:1][probability:8, IEEE 754][odds:8, IEEE 754]
+ * </pre>
+ * flags: bit 0 - active, bit 1 - probability present, bit 2 - odds present; absent values are written as 0.
+ * The outcome id is not encoded, it is already part of the field name.
+ */
+public class BinaryOutcomeCodec implements OutcomeCodec {
+    static final byte VERSION = 1;
+    private static final int ENCODED_LENGTH = 18;
+
+    private static final int FLAG_ACTIVE = 1;
+    private static final int FLAG_PROBABILITY = 1 << 1;
+    private static final int FLAG_ODDS = 1 << 2;
+
+    @Override
+    public byte[] encode(MarketCoreData market, int outcomeIndex) {
+        Preconditions.checkNotNull(market);
+
+        double probability = market.getProbability(outcomeIndex);
+        double odds = market.getOdds(outcomeIndex);
+
+        int flags = 0;
+        if (market.isActive(outcomeIndex)) {
+            flags |= FLAG_ACTIVE;
+        }
+        if (!Double.isNaN(probability)) {
+            flags |= FLAG_PROBABILITY;
+        }
+        if (!Double.isNaN(odds)) {
+            flags |= FLAG_ODDS;
+        }
+
+        byte[] encoded = new byte[ENCODED_LENGTH];
+        ByteBuffer.wrap(encoded)
+                .put(VERSION)
+                .put((byte) flags)
+                .putDouble(Double.isNaN(probability) ? 0 : probability)
+                .putDouble(Double.isNaN(odds) ? 0 : odds);
+        return encoded;
+    }
+
+    @Override
+    public OutcomeCoreData decode(String outcomeId, byte[] value) {
+        Preconditions.checkNotNull(value);
+        Preconditions.checkArgument(value.length == ENCODED_LENGTH && value[0] == VERSION,
+                "Unsupported binary outcome value, length: %s", value.length);
+
+        ByteBuffer buffer = ByteBuffer.wrap(value, 1, ENCODED_LENGTH - 1);
+        int flags = buffer.get();
+        double probability = buffer.getDouble();
+        double odds = buffer.getDouble();
+        return new OutcomeCoreData(
+                outcomeId,
+                (flags & FLAG_PROBABILITY) != 0 ? probability : Double.NaN,
+                (flags & FLAG_ODDS) != 0 ? odds : Double.NaN,
+                (flags & FLAG_ACTIVE) != 0);
+    }
+}
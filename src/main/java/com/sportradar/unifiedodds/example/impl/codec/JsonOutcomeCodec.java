@@ -0,0 +1,60 @@
+package com.sportradar.unifiedodds.example.impl.codec;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.JsonSerialization;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.entities.OutcomeCoreData;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The original JSON encoding, e.g. {"id":"1","probability":0.45,"odds":2.1,"active":true}.
+ * Values are written directly (absent values as null), matching the former Jackson output of the entity.
+ */
+public class JsonOutcomeCodec implements OutcomeCodec {
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(96));
+
+    @Override
+    public byte[] encode(MarketCoreData market, int outcomeIndex) {
+        Preconditions.checkNotNull(market);
+
+        StringBuilder sb = BUILDER.get();
+        sb.setLength(0);
+        sb.append("{\"id\":\"");
+        JsonStringEncoder.getInstance().quoteAsString(market.getOutcomeId(outcomeIndex), sb);
+        sb.append("\",\"probability\":");
+        appendDouble(sb, market.getProbability(outcomeIndex));
+        sb.append(",\"odds\":");
+        appendDouble(sb, market.getOdds(outcomeIndex));
+        sb.append(",\"active\":").append(market.isActive(outcomeIndex)).append('}');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public OutcomeCoreData decode(String outcomeId, byte[] value) {
+        Preconditions.checkNotNull(value);
+
+        JsonNode node = JsonSerialization.readTree(value);
+        JsonNode id = node.get("id");
+        return new OutcomeCoreData(
+                id == null || id.isNull() ? outcomeId : id.asText(),
+                readDouble(node, "probability"),
+                readDouble(node, "odds"),
+                node.path("active").asBoolean(false));
+    }
+
+    private static void appendDouble(StringBuilder sb, double value) {
+        if (Double.isNaN(value)) {
+            sb.append("null");
+        } else {
+            sb.append(value);
+        }
+    }
+
+    private static double readDouble(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? Double.NaN : value.asDouble();
+    }
+}
@@ -0,0 +1,20 @@
+package com.sportradar.unifiedodds.example.impl.codec;
+
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.entities.OutcomeCoreData;
+
+/**
+ * Encodes the outcome values stored in the os_[outcomeId] fields of the market hashes.
+ * Implementations must be thread-safe.
+ */
+public interface OutcomeCodec {
+    /**
+     * Encodes the outcome at the provided index straight from the market's primitive outcome arrays
+     */
+    byte[] encode(MarketCoreData market, int outcomeIndex);
+
+    /**
+     * @param outcomeId the outcome id taken from the field name, as encoded values do not have to carry it
+     */
+    OutcomeCoreData decode(String outcomeId, byte[] value);
+}
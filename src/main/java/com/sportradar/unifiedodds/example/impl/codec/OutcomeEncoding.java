@@ -0,0 +1,33 @@
+package com.sportradar.unifiedodds.example.impl.codec;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.entities.OutcomeCoreData;
+
+/**
+ * The outcome encodings a deployment can choose from.
+ */
+public enum OutcomeEncoding {
+    JSON(new JsonOutcomeCodec()),
+    BINARY(new BinaryOutcomeCodec());
+
+    private final OutcomeCodec codec;
+
+    OutcomeEncoding(OutcomeCodec codec) {
+        this.codec = codec;
+    }
+
+    public OutcomeCodec getCodec() {
+        return codec;
+    }
+
+    /**
+     * Reader-side decoding which does not need to know the writer configuration, so readers keep working
+     * while a deployment switches between encodings (JSON values always start with '{').
+     */
+    public static OutcomeCoreData decodeAny(String outcomeId, byte[] value) {
+        Preconditions.checkNotNull(value);
+        Preconditions.checkArgument(value.length > 0, "Empty outcome value");
+
+        return value[0] == '{' ? JSON.codec.decode(outcomeId, value) : BINARY.codec.decode(outcomeId, value);
+    }
+}
@@ -0,0 +1,593 @@
+package com.sportradar.unifiedodds.example.impl.core;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.recovery.FailedWriteTracker;
+import com.sportradar.unifiedodds.sdk.entities.status.CompetitionStatus;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithOdds;
+import com.sportradar.utils.URN;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+/**
+ * Decouples the SDK listener threads from the Redis core data writes.
+ * <p>
+ * Updates are mapped on the calling thread into {@link CoreDataUpdate} snapshots and enqueued into one of the bounded
+ * partitions, selected by the event id. Each partition is drained by a dedicated writer thread, so updates of the
+ * same event are always written in order while different events are written in parallel.
+ * <p>
+ * Bet stops take a fast path: the matching markets still queued for the event are suspended in place, and the
+ * suspension is handed to the writer of the event's partition ahead of any queued work, see
+ * {@link #suspend(int, URN, IntPredicate, MarketStatus, long)}.
+ * <p>
+ * A lower priority pipeline can {@link #yieldTo(CoreDataPipeline, long) yield} to a higher priority one (e.g. prematch
+ * to live), its writers then back off for a bounded time while the other pipeline is backlogged.
+ */
+public class CoreDataPipeline {
+    private static final Logger logger = LoggerFactory.getLogger(CoreDataPipeline.class);
+
+    private static final int MAX_DRAIN_SIZE = 64;
+    private static final int MAX_BUFFERED_ENTRIES = 2000;
+    private static final long MAX_YIELD_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+    private static final long YIELD_PAUSE_MILLIS = 1;
+
+    private final CoreDataWriter coreDataWriter;
+    private final ExecutorService writerExecutor;
+    private final MetricsRegistry metricsRegistry;
+    private final FeedMetrics feedMetrics;
+    private final FailedWriteTracker failedWriteTracker;
+    private final OverflowPolicy overflowPolicy;
+    private final long coalescingWindowNanos;
+    private final Partition[] partitions;
+    private volatile CoreDataPipeline priorityPipeline;
+    private volatile long maxPriorityBacklog;
+
+    private final Histogram queueLatency;
+    private final Histogram writeLatency;
+    private final LongAdder coalescedUpdates;
+    private final LongAdder droppedMarkets;
+    private final LongAdder blockedEnqueues;
+    private final LongAdder failedWrites;
+    private final Histogram yieldTime;
+    private final Histogram suspensionWait;
+    private final Histogram suspensionLatency;
+    private final Histogram suspendedMarkets;
+    private final LongAdder suspendedQueuedMarkets;
+    private final LongAdder failedSuspensions;
+
+    /**
+     * @param failedWriteTracker holds the messages lost by failed writes until they are stored again
+     */
+    public CoreDataPipeline(CoreDataWriter coreDataWriter,
+                            ExecutorService writerExecutor,
+                            MetricsRegistry metricsRegistry,
+                            FeedMetrics feedMetrics,
+                            FailedWriteTracker failedWriteTracker,
+                            int partitionCount,
+                            int partitionCapacity,
+                            OverflowPolicy overflowPolicy,
+                            long coalescingWindowMillis) {
+        Preconditions.checkNotNull(coreDataWriter);
+        Preconditions.checkNotNull(writerExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkNotNull(feedMetrics);
+        Preconditions.checkNotNull(failedWriteTracker);
+        Preconditions.checkNotNull(overflowPolicy);
+        Preconditions.checkArgument(partitionCount > 0);
+        Preconditions.checkArgument(partitionCapacity > 0);
+        Preconditions.checkArgument(coalescingWindowMillis >= 0);
+
+        this.coreDataWriter = coreDataWriter;
+        this.writerExecutor = writerExecutor;
+        this.metricsRegistry = metricsRegistry;
+        this.feedMetrics = feedMetrics;
+        this.failedWriteTracker = failedWriteTracker;
+        this.overflowPolicy = overflowPolicy;
+        this.coalescingWindowNanos = TimeUnit.MILLISECONDS.toNanos(coalescingWindowMillis);
+        this.partitions = new Partition[partitionCount];
+        for (int i = 0; i < partitionCount; i++) {
+            Partition partition = new Partition(partitionCapacity);
+            partitions[i] = partition;
+            metricsRegistry.gauge("core.queue.depth.p" + i, partition::size);
+        }
+        metricsRegistry.gauge("core.queue.depth", this::totalQueueDepth);
+        metricsRegistry.gauge("core.queue.lag.ms", this::queueLagMillis);
+
+        this.queueLatency = metricsRegistry.histogram("core.queue.latency.us");
+        this.writeLatency = metricsRegistry.histogram("core.write.latency.us");
+        this.coalescedUpdates = metricsRegistry.counter("core.queue.coalesced");
+        this.droppedMarkets = metricsRegistry.counter("core.queue.dropped.markets");
+        this.blockedEnqueues = metricsRegistry.counter("core.queue.blocked");
+        this.failedWrites = metricsRegistry.counter("core.write.failed");
+        this.yieldTime = metricsRegistry.histogram("core.yield.ms");
+        this.suspensionWait = metricsRegistry.histogram("core.suspension.wait.us");
+        this.suspensionLatency = metricsRegistry.histogram("core.suspension.latency.us");
+        this.suspendedMarkets = metricsRegistry.histogram("core.suspension.markets");
+        this.suspendedQueuedMarkets = metricsRegistry.counter("core.suspension.queued.markets");
+        this.failedSuspensions = metricsRegistry.counter("core.suspension.failed");
+    }
+
+    /**
+     * Before each write the writers of this pipeline wait (up to 50ms) while the priority pipeline has more than
+     * maxPriorityBacklog updates pending, so this pipeline slows down but never stalls completely
+     */
+    public void yieldTo(CoreDataPipeline priorityPipeline, long maxPriorityBacklog) {
+        Preconditions.checkNotNull(priorityPipeline);
+        Preconditions.checkArgument(priorityPipeline != this);
+        Preconditions.checkArgument(maxPriorityBacklog >= 0);
+
+        this.maxPriorityBacklog = maxPriorityBacklog;
+        this.priorityPipeline = priorityPipeline;
+    }
+
+    public void start() {
+        for (Partition partition : partitions) {
+            writerExecutor.execute(() -> drain(partition));
+        }
+    }
+
+    /**
+     * @param generatedAt the generated timestamp of the odds change, used for the end-to-end latency
+     */
+    public void submit(int producerId, URN eventId, List<MarketWithOdds> markets, long generatedAt) {
+        Preconditions.checkNotNull(eventId);
+        if (markets == null || markets.isEmpty()) {
+            return;
+        }
+
+        Map<String, MarketCoreData> mappedMarkets = new LinkedHashMap<>(markets.size());
+        for (MarketWithOdds market : markets) {
+            MarketCoreData marketCoreData = CoreDataWriter.mapCoreData(producerId, eventId, market);
+            mappedMarkets.put(FullMarketIdBuilder.composeFullMarketKey(marketCoreData), marketCoreData);
+        }
+
+        enqueue(new CoreDataUpdate(eventId, producerId, generatedAt, mappedMarkets, Collections.emptyMap()));
+    }
+
+    public void submit(URN eventId, CompetitionStatus status) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(status);
+
+        Map<String, String> properties = CoreDataWriter.mapEventProperties(status);
+        if (properties.isEmpty()) {
+            return;
+        }
+
+        enqueue(new CoreDataUpdate(eventId, Collections.emptyMap(), properties));
+    }
+
+    /**
+     * Suspends the active markets of the event and producer matching the filter (the bet stop groups). Never blocks,
+     * the suspension is written by the partition writer as soon as its current write completes.
+     *
+     * @param status the market status of the bet stop, usually suspended
+     * @param generatedAt the generated timestamp of the bet stop, used for the end-to-end latency
+     */
+    public void suspend(int producerId, URN eventId, IntPredicate marketFilter, MarketStatus status, long generatedAt) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(marketFilter);
+        Preconditions.checkNotNull(status);
+
+        partitionFor(eventId).suspend(new Suspension(eventId, producerId, marketFilter, status, generatedAt));
+    }
+
+    private Partition partitionFor(URN eventId) {
+        return partitions[(eventId.hashCode() & Integer.MAX_VALUE) % partitions.length];
+    }
+
+    private void enqueue(CoreDataUpdate update) {
+        Partition partition = partitionFor(update.getEventId());
+        try {
+            partition.offer(update);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failedWriteTracker.onFailed(update.getMarkets().keySet(), update.getGeneratedAt());
+            logger.warn("Interrupted while enqueuing core data for Event[{}], update discarded", update.getEventId());
+        }
+    }
+
+    private void drain(Partition partition) {
+        List<CoreDataUpdate> drained = new ArrayList<>(MAX_DRAIN_SIZE);
+        List<Suspension> suspensions = new ArrayList<>();
+        MarketCoalescingBuffer buffer = new MarketCoalescingBuffer(metricsRegistry);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                partition.take(drained, suspensions, MAX_DRAIN_SIZE, -1);
+                bufferDrained(drained, buffer);
+                writeSuspensions(partition, suspensions, buffer);
+                if (buffer.isEmpty()) {
+                    continue;
+                }
+
+                // keep collecting until the window closes, only the newest state of each market survives
+                long deadline = System.nanoTime() + coalescingWindowNanos;
+                long remaining = coalescingWindowNanos;
+                while (remaining > 0 && buffer.size() < MAX_BUFFERED_ENTRIES) {
+                    partition.take(drained, suspensions, MAX_DRAIN_SIZE, remaining);
+                    bufferDrained(drained, buffer);
+                    writeSuspensions(partition, suspensions, buffer);
+                    remaining = deadline - System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            try {
+                yieldToPriorityPipeline();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+
+            long start = System.nanoTime();
+            try {
+                coreDataWriter.write(buffer);
+                failedWriteTracker.onStored(buffer.getMarkets().keySet());
+                recordStored(buffer);
+            } catch (Exception e) {
+                failedWrites.increment();
+                recordFailed(buffer);
+                logger.error("Failed to write core data batch of " + buffer.size() + " entries: " + e.getMessage(), e);
+            }
+            writeLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            buffer.clear();
+            partition.written();
+        }
+        logger.info("Core data writer stopped");
+    }
+
+    /**
+     * The suspensions were taken after everything in the buffer, so the buffered markets are suspended as well
+     */
+    private void writeSuspensions(Partition partition, List<Suspension> suspensions, MarketCoalescingBuffer buffer) {
+        if (suspensions.isEmpty()) {
+            return;
+        }
+        for (Suspension suspension : suspensions) {
+            suspensionWait.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - suspension.submittedAtNanos));
+            try {
+                int count = coreDataWriter.suspend(buffer, suspension.eventId.toString(), suspension.producerId, suspension.marketFilter,
+                        suspension.status);
+                suspensionLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - suspension.submittedAtNanos));
+                suspendedMarkets.record(count);
+                feedMetrics.onBetStopStored(suspension.producerId, suspension.generatedAt, System.currentTimeMillis());
+            } catch (Exception e) {
+                // the buffered markets were already changed, so they are suspended at the latest with the next write
+                failedSuspensions.increment();
+                failedWriteTracker.onFailed(suspension.producerId, suspension.eventId, suspension.generatedAt);
+                logger.error("Failed to suspend markets of Event[" + suspension.eventId + "]: " + e.getMessage(), e);
+            }
+        }
+        suspensions.clear();
+        partition.suspensionsWritten();
+    }
+
+    private void yieldToPriorityPipeline() throws InterruptedException {
+        CoreDataPipeline priority = priorityPipeline;
+        if (priority == null || priority.pendingUpdates() <= maxPriorityBacklog) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        do {
+            TimeUnit.MILLISECONDS.sleep(YIELD_PAUSE_MILLIS);
+        } while (System.nanoTime() - start < MAX_YIELD_NANOS && priority.pendingUpdates() > maxPriorityBacklog);
+        yieldTime.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void recordStored(MarketCoalescingBuffer buffer) {
+        long storedAt = System.currentTimeMillis();
+        for (int i = 0; i < buffer.getMessageCount(); i++) {
+            feedMetrics.onOddsChangeStored(buffer.getMessageProducerId(i), buffer.getMessageGeneratedAt(i), storedAt);
+        }
+    }
+
+    /**
+     * The coalesced markets can't be told apart by message, so all of them are held at the oldest message
+     */
+    private void recordFailed(MarketCoalescingBuffer buffer) {
+        long oldest = Long.MAX_VALUE;
+        for (int i = 0; i < buffer.getMessageCount(); i++) {
+            oldest = oldestGeneratedAt(oldest, buffer.getMessageGeneratedAt(i));
+        }
+        if (oldest != Long.MAX_VALUE) {
+            failedWriteTracker.onFailed(buffer.getMarkets().keySet(), oldest);
+        }
+    }
+
+    private void bufferDrained(List<CoreDataUpdate> drained, MarketCoalescingBuffer buffer) {
+        long now = System.nanoTime();
+        for (CoreDataUpdate update : drained) {
+            queueLatency.record(TimeUnit.NANOSECONDS.toMicros(now - update.getEnqueuedAtNanos()));
+            buffer.add(update);
+        }
+        drained.clear();
+    }
+
+    /**
+     * @return the number of updates and suspensions queued or being written, 0 once everything submitted so far is stored
+     */
+    public long pendingUpdates() {
+        long total = 0;
+        for (Partition partition : partitions) {
+            total += partition.pending();
+        }
+        return total;
+    }
+
+    /**
+     * @return the generated timestamp of the oldest message not stored yet (queued, being written or lost by a failed
+     * write), {@link Long#MAX_VALUE} if everything submitted so far is stored
+     */
+    public long oldestPendingGeneratedAt() {
+        long oldest = failedWriteTracker.oldestFailedGeneratedAt();
+        for (Partition partition : partitions) {
+            oldest = Math.min(oldest, partition.oldestPendingGeneratedAt());
+        }
+        return oldest;
+    }
+
+    private long totalQueueDepth() {
+        long total = 0;
+        for (Partition partition : partitions) {
+            total += partition.size();
+        }
+        return total;
+    }
+
+    /**
+     * @return the time the oldest queued update is waiting for, i.e. how far behind the feed the writers are
+     */
+    private long queueLagMillis() {
+        long now = System.nanoTime();
+        long lag = 0;
+        for (Partition partition : partitions) {
+            long oldest = partition.oldestEnqueuedAtNanos();
+            if (oldest != 0) {
+                lag = Math.max(lag, now - oldest);
+            }
+        }
+        return TimeUnit.NANOSECONDS.toMillis(lag);
+    }
+
+    /**
+     * Updates without a source message (event status) have no generated timestamp and are not tracked
+     */
+    private static long oldestGeneratedAt(long oldest, long generatedAt) {
+        return generatedAt > 0 ? Math.min(oldest, generatedAt) : oldest;
+    }
+
+    private static final class Suspension {
+        private final URN eventId;
+        private final int producerId;
+        private final IntPredicate marketFilter;
+        private final MarketStatus status;
+        private final long generatedAt;
+        private final long submittedAtNanos;
+
+        private Suspension(URN eventId, int producerId, IntPredicate marketFilter, MarketStatus status, long generatedAt) {
+            this.eventId = eventId;
+            this.producerId = producerId;
+            this.marketFilter = marketFilter;
+            this.status = status;
+            this.generatedAt = generatedAt;
+            this.submittedAtNanos = System.nanoTime();
+        }
+    }
+
+    private final class Partition {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition notEmpty = lock.newCondition();
+        private final Condition notFull = lock.newCondition();
+        private final ArrayDeque<CoreDataUpdate> queue;
+        private final ArrayDeque<Suspension> suspensions = new ArrayDeque<>();
+        private final int capacity;
+        // updates taken by the writer but not written yet and the oldest generated timestamp of the taken updates
+        // and suspensions, guarded by the lock
+        private int inWrite;
+        private long oldestInWrite = Long.MAX_VALUE;
+        private long oldestSuspensionInWrite = Long.MAX_VALUE;
+
+        private Partition(int capacity) {
+            this.queue = new ArrayDeque<>(capacity);
+            this.capacity = capacity;
+        }
+
+        private void offer(CoreDataUpdate update) throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                while (queue.size() >= capacity) {
+                    if (overflowPolicy == OverflowPolicy.COALESCE && coalesce(update)) {
+                        return;
+                    }
+                    if (overflowPolicy == OverflowPolicy.DROP_OLDEST_FOR_SAME_MARKET && dropSuperseded(update)) {
+                        continue;
+                    }
+                    blockedEnqueues.increment();
+                    notFull.await();
+                }
+                queue.addLast(update);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Suspends the matching markets of the queued updates and wakes up the writer
+         */
+        private void suspend(Suspension suspension) {
+            lock.lock();
+            try {
+                for (CoreDataUpdate queued : queue) {
+                    if (queued.getEventId().equals(suspension.eventId)) {
+                        suspendedQueuedMarkets.add(queued.suspendMarkets(suspension.producerId, suspension.marketFilter, suspension.status));
+                    }
+                }
+                suspensions.addLast(suspension);
+                notEmpty.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Pending suspensions are taken first and alone, so every update in the writer's buffer precedes them
+         *
+         * @param timeoutNanos the max time to wait for the first element, negative to wait indefinitely
+         */
+        private void take(List<CoreDataUpdate> target, List<Suspension> suspensionTarget, int maxElements, long timeoutNanos)
+                throws InterruptedException {
+            lock.lockInterruptibly();
+            try {
+                long remaining = timeoutNanos;
+                while (queue.isEmpty() && suspensions.isEmpty()) {
+                    if (timeoutNanos < 0) {
+                        notEmpty.await();
+                    } else if (remaining > 0) {
+                        remaining = notEmpty.awaitNanos(remaining);
+                    } else {
+                        return;
+                    }
+                }
+                if (!suspensions.isEmpty()) {
+                    for (Suspension suspension : suspensions) {
+                        oldestSuspensionInWrite = oldestGeneratedAt(oldestSuspensionInWrite, suspension.generatedAt);
+                    }
+                    suspensionTarget.addAll(suspensions);
+                    suspensions.clear();
+                    return;
+                }
+                while (target.size() < maxElements && !queue.isEmpty()) {
+                    CoreDataUpdate update = queue.pollFirst();
+                    oldestInWrite = oldestGeneratedAt(oldestInWrite, update.getGeneratedAt());
+                    target.add(update);
+                    inWrite++;
+                }
+                notFull.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int size() {
+            lock.lock();
+            try {
+                return queue.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * @return the enqueue time of the head of the queue, 0 if the queue is empty
+         */
+        private long oldestEnqueuedAtNanos() {
+            lock.lock();
+            try {
+                CoreDataUpdate oldest = queue.peekFirst();
+                return oldest == null ? 0 : oldest.getEnqueuedAtNanos();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void written() {
+            lock.lock();
+            try {
+                inWrite = 0;
+                oldestInWrite = Long.MAX_VALUE;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private void suspensionsWritten() {
+            lock.lock();
+            try {
+                oldestSuspensionInWrite = Long.MAX_VALUE;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Scans the queue, only invoked by the periodic recovery checkpoints
+         */
+        private long oldestPendingGeneratedAt() {
+            lock.lock();
+            try {
+                long oldest = Math.min(oldestInWrite, oldestSuspensionInWrite);
+                for (CoreDataUpdate update : queue) {
+                    oldest = oldestGeneratedAt(oldest, update.getGeneratedAt());
+                }
+                for (Suspension suspension : suspensions) {
+                    oldest = oldestGeneratedAt(oldest, suspension.generatedAt);
+                }
+                return oldest;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private int pending() {
+            lock.lock();
+            try {
+                return queue.size() + inWrite + suspensions.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean coalesce(CoreDataUpdate update) {
+            // only the newest queued update of the event may absorb the new one, otherwise ordering would break
+            Iterator<CoreDataUpdate> it = queue.descendingIterator();
+            while (it.hasNext()) {
+                CoreDataUpdate queued = it.next();
+                if (queued.getEventId().equals(update.getEventId())) {
+                    queued.mergeNewer(update);
+                    coalescedUpdates.increment();
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean dropSuperseded(CoreDataUpdate update) {
+            boolean freedSlot = false;
+            Iterator<CoreDataUpdate> it = queue.iterator();
+            while (it.hasNext()) {
+                CoreDataUpdate queued = it.next();
+                if (!queued.getEventId().equals(update.getEventId())) {
+                    continue;
+                }
+                droppedMarkets.add(queued.removeSuperseded(update));
+                if (queued.isEmpty()) {
+                    it.remove();
+                    freedSlot = true;
+                }
+            }
+            return freedSlot;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.sportradar.unifiedodds.example.impl.core;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+import com.sportradar.utils.URN;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+
+/**
+ * A snapshot of core data for a single event waiting in the {@link CoreDataPipeline}.
+ * The content is only modified (coalesced/pruned) by the pipeline while the update is still queued,
+ * once it is handed to a writer it is effectively immutable.
+ */
+public class CoreDataUpdate {
+    private final URN eventId;
+    private final Map<String, MarketCoreData> markets;
+    private final Map<String, String> eventProperties;
+    private final long enqueuedAtNanos;
+    private final int producerId;
+    private long generatedAt;
+
+    CoreDataUpdate(URN eventId, Map<String, MarketCoreData> markets, Map<String, String> eventProperties) {
+        this(eventId, 0, 0, markets, eventProperties);
+    }
+
+    /**
+     * @param generatedAt the generated timestamp of the source message in millis, 0 if the update has no source message
+     */
+    CoreDataUpdate(URN eventId, int producerId, long generatedAt, Map<String, MarketCoreData> markets, Map<String, String> eventProperties) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(markets);
+        Preconditions.checkNotNull(eventProperties);
+
+        this.eventId = eventId;
+        this.markets = new LinkedHashMap<>(markets);
+        this.eventProperties = new LinkedHashMap<>(eventProperties);
+        this.enqueuedAtNanos = System.nanoTime();
+        this.producerId = producerId;
+        this.generatedAt = generatedAt;
+    }
+
+    public URN getEventId() {
+        return eventId;
+    }
+
+    /**
+     * @return the markets of this update, keyed by their full market key
+     */
+    public Map<String, MarketCoreData> getMarkets() {
+        return Collections.unmodifiableMap(markets);
+    }
+
+    public Map<String, String> getEventProperties() {
+        return Collections.unmodifiableMap(eventProperties);
+    }
+
+    public long getEnqueuedAtNanos() {
+        return enqueuedAtNanos;
+    }
+
+    public int getProducerId() {
+        return producerId;
+    }
+
+    /**
+     * @return the generated timestamp of the oldest source message merged into this update, 0 if unknown
+     */
+    public long getGeneratedAt() {
+        return generatedAt;
+    }
+
+    boolean isEmpty() {
+        return markets.isEmpty() && eventProperties.isEmpty();
+    }
+
+    void mergeNewer(CoreDataUpdate newer) {
+        markets.putAll(newer.markets);
+        eventProperties.putAll(newer.eventProperties);
+        if (generatedAt == 0) {
+            generatedAt = newer.generatedAt;
+        }
+    }
+
+    /**
+     * Changes the status of the matching active markets, so a queued update can't reopen markets stopped after it
+     *
+     * @return the number of changed markets
+     */
+    int suspendMarkets(int producerId, IntPredicate marketFilter, MarketStatus status) {
+        int suspended = 0;
+        for (Map.Entry<String, MarketCoreData> entry : markets.entrySet()) {
+            MarketCoreData market = entry.getValue();
+            if (market.getProducerId() == producerId && market.getMarketStatus() == MarketStatus.Active && marketFilter.test(market.getId())) {
+                entry.setValue(market.withMarketStatus(status));
+                suspended++;
+            }
+        }
+        return suspended;
+    }
+
+    int removeSuperseded(CoreDataUpdate newer) {
+        int before = markets.size();
+        markets.keySet().removeAll(newer.markets.keySet());
+        eventProperties.keySet().removeAll(newer.eventProperties.keySet());
+        return before - markets.size();
+    }
+}
@@ -1,26 +1,38 @@
 package com.sportradar.unifiedodds.example.impl.core;
 
 import com.google.common.base.Preconditions;
-import com.sportradar.unifiedodds.example.impl.JsonSerialization;
 import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.book.EventBook;
+import com.sportradar.unifiedodds.example.impl.book.OddsBook;
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeCodec;
+import com.sportradar.unifiedodds.example.impl.core.LastWrittenStateCache.WrittenMarketState;
 import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
-import com.sportradar.unifiedodds.example.impl.entities.OutcomeCoreData;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBatch;
 import com.sportradar.unifiedodds.sdk.entities.EventClock;
 import com.sportradar.unifiedodds.sdk.entities.EventStatus;
 import com.sportradar.unifiedodds.sdk.entities.status.CompetitionStatus;
 import com.sportradar.unifiedodds.sdk.entities.status.MatchStatus;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
 import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithOdds;
 import com.sportradar.unifiedodds.sdk.oddsentities.OddsDisplayType;
 import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeOdds;
 import com.sportradar.utils.URN;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.SafeEncoder;
 
-import java.util.Collections;
+import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
 
 /**
  * Created on 17. 09. 20
@@ -28,16 +40,250 @@ import java.util.stream.Collectors;
  * @author e.roznik
  */
 public class CoreDataWriter {
-    private final JedisPool jedisPool;
+    private static final byte[] STATUS_FIELD = SafeEncoder.encode("status");
+    private static final byte[] STATUS_TS_FIELD = SafeEncoder.encode("statusTs");
+    private static final Map<MarketStatus, byte[]> STATUS_VALUES = encodeStatusValues();
+    private static final ThreadLocal<WriteScratch> SCRATCH = ThreadLocal.withInitial(WriteScratch::new);
 
-    public CoreDataWriter(JedisPool jedisPool) {
-        Preconditions.checkNotNull(jedisPool);
+    private final StorageBackend storageBackend;
+    private final LastWrittenStateCache lastWrittenStateCache;
+    private final EventLifecycleTracker eventLifecycleTracker;
+    private final OddsBook oddsBook;
+    private final OutcomeCodec outcomeCodec;
+    private final int maxCommandsPerFlush;
+    private final boolean producerIndexEnabled;
 
-        this.jedisPool = jedisPool;
+    private final Histogram flushCommands;
+    private final Histogram flushLatency;
+    private final LongAdder flushCount;
+    private final LongAdder writtenOutcomes;
+    private final LongAdder skippedOutcomes;
+    private final LongAdder skippedMarkets;
+
+    /**
+     * @param maxCommandsPerFlush the max number of market writes pipelined into a single round trip,
+     *                            1 falls back to one round trip per market
+     * @param producerIndexEnabled if the per-producer index of events is maintained next to the per-event market index
+     */
+    public CoreDataWriter(StorageBackend storageBackend,
+                          LastWrittenStateCache lastWrittenStateCache,
+                          EventLifecycleTracker eventLifecycleTracker,
+                          OddsBook oddsBook,
+                          OutcomeCodec outcomeCodec,
+                          MetricsRegistry metricsRegistry,
+                          int maxCommandsPerFlush,
+                          boolean producerIndexEnabled) {
+        Preconditions.checkNotNull(storageBackend);
+        Preconditions.checkNotNull(lastWrittenStateCache);
+        Preconditions.checkNotNull(eventLifecycleTracker);
+        Preconditions.checkNotNull(oddsBook);
+        Preconditions.checkNotNull(outcomeCodec);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkArgument(maxCommandsPerFlush > 0);
+
+        this.storageBackend = storageBackend;
+        this.lastWrittenStateCache = lastWrittenStateCache;
+        this.eventLifecycleTracker = eventLifecycleTracker;
+        this.oddsBook = oddsBook;
+        this.outcomeCodec = outcomeCodec;
+        this.maxCommandsPerFlush = maxCommandsPerFlush;
+        this.producerIndexEnabled = producerIndexEnabled;
+
+        this.flushCommands = metricsRegistry.histogram("core.flush.commands");
+        this.flushLatency = metricsRegistry.histogram("core.flush.latency.us");
+        this.flushCount = metricsRegistry.counter("core.flush.count");
+        this.writtenOutcomes = metricsRegistry.counter("core.delta.outcomes.written");
+        this.skippedOutcomes = metricsRegistry.counter("core.delta.outcomes.skipped");
+        this.skippedMarkets = metricsRegistry.counter("core.delta.markets.skipped");
+        metricsRegistry.gauge("core.delta.tracked.events", lastWrittenStateCache::trackedEvents);
+    }
+
+    public void write(MarketCoalescingBuffer buffer) {
+        Preconditions.checkNotNull(buffer);
+
+        if (buffer.isEmpty()) {
+            return;
+        }
+
+        // the local book is updated first, so in-process readers don't depend on the storage availability
+        oddsBook.apply(buffer);
+
+        // all keys of an event share the hash tag, so with redis an event is always written through a single shard pipeline
+        try (StorageBatch batch = storageBackend.newBatch("core")) {
+            WriteScratch scratch = SCRATCH.get();
+            List<PendingState> pendingStates = scratch.pendingStates;
+            pendingStates.clear();
+            int pendingCommands = 0;
+
+            int finishedEventTtl = eventLifecycleTracker.getFinishedEventTtlSeconds();
+            for (Map.Entry<URN, Map<String, String>> entry : buffer.getEventProperties().entrySet()) {
+                String eventKey = RedisKeysBuilder.getEventKey(entry.getKey());
+                batch.hashPut(eventKey, entry.getValue());
+                pendingCommands++;
+                if (eventLifecycleTracker.isFinished(entry.getKey().toString())) {
+                    batch.expire(eventKey, finishedEventTtl);
+                    pendingCommands++;
+                }
+            }
+
+            byte[] now = SafeEncoder.encode(System.currentTimeMillis() + "");
+            for (Map.Entry<String, MarketCoreData> entry : buffer.getMarkets().entrySet()) {
+                String fullMarketKey = entry.getKey();
+                MarketCoreData market = entry.getValue();
+                // late updates of finished events are written in full, get the TTL and are not remembered
+                boolean finished = eventLifecycleTracker.isFinished(market.getEventId());
+                WrittenMarketState writtenState = finished ? null : lastWrittenStateCache.get(market.getEventId(), fullMarketKey);
+
+                // the batch consumes the fields immediately, so the properties map can be reused
+                Map<byte[], byte[]> properties = scratch.properties;
+                properties.clear();
+                if (writtenState == null || writtenState.isStatusChanged(market.getMarketStatus())) {
+                    properties.put(STATUS_FIELD, STATUS_VALUES.get(market.getMarketStatus()));
+                    properties.put(STATUS_TS_FIELD, now);
+                }
+
+                for (int i = 0; i < market.getOutcomeCount(); i++) {
+                    if (writtenState == null || writtenState.isOutcomeChanged(market, i)) {
+                        properties.put(scratch.outcomeField(market.getOutcomeId(i)), outcomeCodec.encode(market, i));
+                        writtenOutcomes.increment();
+                    } else {
+                        skippedOutcomes.increment();
+                    }
+                }
+
+                if (properties.isEmpty()) {
+                    skippedMarkets.increment();
+                    continue;
+                }
+
+                String marketKey = RedisKeysBuilder.getMarketKey(market.getEventId(), fullMarketKey);
+                batch.hashPutBinary(marketKey, properties);
+                pendingCommands++;
+                if (writtenState == null) {
+                    // not written since startup (or the state was evicted), SADD is idempotent so a repeated add is harmless
+                    pendingCommands += addToIndexes(batch, fullMarketKey, market);
+                }
+                if (finished) {
+                    batch.expire(marketKey, finishedEventTtl);
+                    batch.expire(RedisKeysBuilder.getEventMarketsKey(market.getEventId()), finishedEventTtl);
+                    pendingCommands += 2;
+                } else {
+                    pendingStates.add(new PendingState(fullMarketKey, market, writtenState));
+                }
+
+                if (pendingCommands >= maxCommandsPerFlush) {
+                    flush(batch, pendingCommands, pendingStates);
+                    pendingCommands = 0;
+                }
+            }
+
+            if (pendingCommands > 0) {
+                flush(batch, pendingCommands, pendingStates);
+            }
+        }
+
+        // notified only after the preceding writes of the event were flushed
+        buffer.getEventProperties().forEach((eventId, properties) -> {
+            if (isFinished(properties.get("eventStatus"))) {
+                eventLifecycleTracker.onEventFinished(eventId.toString());
+            }
+        });
     }
 
-    public void process(URN eventId, CompetitionStatus status) {
+    /**
+     * Bet stop fast path, the matching active markets of the event are suspended with a single round trip.
+     * The markets are resolved from the odds book (the markets already written) and from the buffer (the markets
+     * taken for the next write), the buffered ones are changed in place so the following write can't reopen them.
+     *
+     * @return the number of suspended markets
+     */
+    public int suspend(MarketCoalescingBuffer buffer, String eventId, int producerId, IntPredicate marketFilter, MarketStatus status) {
+        Preconditions.checkNotNull(buffer);
         Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(marketFilter);
+        Preconditions.checkNotNull(status);
+
+        Set<String> fullMarketKeys = new LinkedHashSet<>();
+        buffer.suspendMarkets(eventId, producerId, marketFilter, status, fullMarketKeys);
+
+        Map<String, MarketCoreData> suspendedBookMarkets = new HashMap<>();
+        EventBook event = oddsBook.getEvent(eventId);
+        if (event != null) {
+            for (Map.Entry<String, MarketCoreData> entry : event.getMarkets().entrySet()) {
+                MarketCoreData market = entry.getValue();
+                if (market.getProducerId() == producerId && market.getMarketStatus() == MarketStatus.Active && marketFilter.test(market.getId())) {
+                    suspendedBookMarkets.put(entry.getKey(), market.withMarketStatus(status));
+                    fullMarketKeys.add(entry.getKey());
+                }
+            }
+        }
+        if (fullMarketKeys.isEmpty() || eventLifecycleTracker.isFinished(eventId)) {
+            return 0;
+        }
+
+        try (StorageBatch batch = storageBackend.newBatch("core")) {
+            Map<byte[], byte[]> properties = new HashMap<>(2);
+            properties.put(STATUS_FIELD, STATUS_VALUES.get(status));
+            properties.put(STATUS_TS_FIELD, SafeEncoder.encode(System.currentTimeMillis() + ""));
+            for (String fullMarketKey : fullMarketKeys) {
+                batch.hashPutBinary(RedisKeysBuilder.getMarketKey(eventId, fullMarketKey), properties);
+            }
+            long start = System.nanoTime();
+            batch.flush();
+            flushLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+            flushCommands.record(fullMarketKeys.size());
+            flushCount.increment();
+        }
+
+        // the status is remembered only once the storage acknowledged it, so the next odds change rewrites a reopened market
+        for (String fullMarketKey : fullMarketKeys) {
+            WrittenMarketState writtenState = lastWrittenStateCache.get(eventId, fullMarketKey);
+            if (writtenState != null) {
+                lastWrittenStateCache.put(eventId, fullMarketKey, writtenState.withStatus(status));
+            }
+        }
+        oddsBook.apply(eventId, suspendedBookMarkets);
+        return fullMarketKeys.size();
+    }
+
+    private int addToIndexes(StorageBatch batch, String fullMarketKey, MarketCoreData market) {
+        batch.indexAdd(RedisKeysBuilder.getEventMarketsKey(market.getEventId()), fullMarketKey);
+        if (!producerIndexEnabled) {
+            return 1;
+        }
+        // the producer index is not event scoped, so it may live on another shard
+        batch.indexAdd(RedisKeysBuilder.getProducerEventsKey(market.getProducerId()), market.getEventId());
+        return 2;
+    }
+
+    private void flush(StorageBatch batch, int pendingCommands, List<PendingState> pendingStates) {
+        long start = System.nanoTime();
+        batch.flush();
+        flushLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        flushCommands.record(pendingCommands);
+        flushCount.increment();
+
+        // the written state is remembered only once the storage acknowledged it
+        for (PendingState pendingState : pendingStates) {
+            lastWrittenStateCache.put(pendingState.market.getEventId(), pendingState.fullMarketKey,
+                    WrittenMarketState.after(pendingState.previousState, pendingState.market));
+        }
+        pendingStates.clear();
+    }
+
+    private static boolean isFinished(String eventStatus) {
+        if (eventStatus == null) {
+            return false;
+        }
+        for (EventStatus status : EventStatus.values()) {
+            if (status.toString().equals(eventStatus)) {
+                return EventLifecycleTracker.isFinishedStatus(status);
+            }
+        }
+        return false;
+    }
+
+    static Map<String, String> mapEventProperties(CompetitionStatus status) {
         Preconditions.checkNotNull(status);
 
         // sample properties for demo purposes
@@ -57,65 +303,82 @@ public class CoreDataWriter {
         if (eventTime != null) {
             properties.put("eventTime", eventTime);
         }
+        return properties;
+    }
 
-        if (properties.isEmpty()) {
-            return;
-        }
+    static MarketCoreData mapCoreData(int producerId, URN eventId, MarketWithOdds market) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(market);
 
-        try (Jedis client = jedisPool.getResource()) {
-            client.hset(RedisKeysBuilder.getEventKey(eventId), properties);
+        List<OutcomeOdds> outcomeOdds = market.getOutcomeOdds();
+        int count = outcomeOdds == null ? 0 : outcomeOdds.size();
+        String[] outcomeIds = new String[count];
+        double[] probabilities = new double[count];
+        double[] odds = new double[count];
+        boolean[] active = new boolean[count];
+        for (int i = 0; i < count; i++) {
+            OutcomeOdds outcome = outcomeOdds.get(i);
+            outcomeIds[i] = outcome.getId();
+            probabilities[i] = unbox(outcome.getProbability());
+            odds[i] = unbox(outcome.getOdds(OddsDisplayType.Decimal));
+            active[i] = outcome.isActive();
         }
-    }
 
-    public void process(int producerId, URN eventId, List<MarketWithOdds> markets) {
-        if (markets == null || markets.isEmpty()) {
-            return;
-        }
+        return new MarketCoreData(
+                producerId,
+                eventId.toString(),
+                market.getId(),
+                market.getSpecifiers(),
+                market.getStatus(),
+                outcomeIds,
+                probabilities,
+                odds,
+                active);
+    }
 
-        List<MarketCoreData> mappedCoreData =
-                markets.stream().map(v -> mapCoreData(producerId, eventId, v)).collect(Collectors.toList());
+    private static double unbox(Double value) {
+        return value == null ? Double.NaN : value;
+    }
 
-        if (mappedCoreData.isEmpty()) {
-            return;
+    private static Map<MarketStatus, byte[]> encodeStatusValues() {
+        Map<MarketStatus, byte[]> values = new EnumMap<>(MarketStatus.class);
+        for (MarketStatus status : MarketStatus.values()) {
+            values.put(status, SafeEncoder.encode(status.toString()));
         }
+        return values;
+    }
 
-        try (Jedis client  = jedisPool.getResource()) {
-
-            long now = System.currentTimeMillis();
-            for (MarketCoreData market : mappedCoreData) {
-                Map<String, String> properties = new HashMap<>();
+    /**
+     * Per writer thread buffers, reused across writes to keep the write path allocation rate low
+     */
+    private static final class WriteScratch {
+        private static final int MAX_CACHED_FIELDS = 10_000;
 
-                properties.put("status", market.getMarketStatus().toString());
-                properties.put("statusTs", now + "");
+        private final Map<byte[], byte[]> properties = new HashMap<>();
+        private final List<PendingState> pendingStates = new ArrayList<>();
+        private final Map<String, byte[]> outcomeFields = new HashMap<>();
 
-                for (OutcomeCoreData outcome : market.getOutcomes()) {
-                    properties.put("os_" + outcome.getId(), JsonSerialization.serialize(outcome));
+        private byte[] outcomeField(String outcomeId) {
+            byte[] field = outcomeFields.get(outcomeId);
+            if (field == null) {
+                field = SafeEncoder.encode("os_" + outcomeId);
+                if (outcomeFields.size() < MAX_CACHED_FIELDS) {
+                    outcomeFields.put(outcomeId, field);
                 }
-
-                client.hset(RedisKeysBuilder.getMarketKey(market), properties);
             }
+            return field;
         }
     }
 
-    private static MarketCoreData mapCoreData(int producerId, URN eventId, MarketWithOdds market) {
-        Preconditions.checkNotNull(eventId);
-        Preconditions.checkNotNull(market);
-
-        return new MarketCoreData(
-                producerId,
-                eventId.toString(),
-                market.getId(),
-                market.getSpecifiers(),
-                market.getStatus(),
-                prepareOutcomes(market.getOutcomeOdds()));
-    }
+    private static final class PendingState {
+        private final String fullMarketKey;
+        private final MarketCoreData market;
+        private final WrittenMarketState previousState;
 
-    private static List<OutcomeCoreData> prepareOutcomes(List<OutcomeOdds> outcomeOdds) {
-        if (outcomeOdds == null || outcomeOdds.isEmpty()) {
-            return Collections.emptyList();
+        private PendingState(String fullMarketKey, MarketCoreData market, WrittenMarketState previousState) {
+            this.fullMarketKey = fullMarketKey;
+            this.market = market;
+            this.previousState = previousState;
         }
-        return outcomeOdds.stream()
-                .map(v -> new OutcomeCoreData(v.getId(), v.getProbability(), v.getOdds(OddsDisplayType.Decimal), v.isActive()))
-                .collect(Collectors.toList());
     }
 }
@@ -0,0 +1,166 @@
+package com.sportradar.unifiedodds.example.impl.core;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Remembers the market status and outcome values last persisted for each market, so the {@link CoreDataWriter}
+ * only needs to send the fields that changed.
+ * <p>
+ * The cache is bounded by the number of tracked events; an event is evicted once it ends or when it was not written
+ * for an hour, after which its markets are fully rewritten on the next change.
+ * <p>
+ * Shared by the live and the prematch writers, which may write the same event concurrently: the per event maps are
+ * concurrent and the market keys include the producer id, so each market state has a single writer.
+ */
+public class LastWrittenStateCache {
+    private final Cache<String, ConcurrentMap<String, WrittenMarketState>> eventStates;
+
+    public LastWrittenStateCache(int maxTrackedEvents) {
+        Preconditions.checkArgument(maxTrackedEvents > 0);
+
+        this.eventStates =
+                CacheBuilder.newBuilder()
+                        .maximumSize(maxTrackedEvents)
+                        .expireAfterAccess(1, TimeUnit.HOURS)
+                        .build();
+    }
+
+    public WrittenMarketState get(String eventId, String fullMarketKey) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(fullMarketKey);
+
+        ConcurrentMap<String, WrittenMarketState> markets = eventStates.getIfPresent(eventId);
+        return markets == null ? null : markets.get(fullMarketKey);
+    }
+
+    /**
+     * Must only be invoked after the market state was acknowledged by the storage
+     */
+    public void put(String eventId, String fullMarketKey, WrittenMarketState state) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(fullMarketKey);
+        Preconditions.checkNotNull(state);
+
+        try {
+            eventStates.get(eventId, Maps::newConcurrentMap).put(fullMarketKey, state);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to create market state holder for event " + eventId, e);
+        }
+    }
+
+    public void evictEvent(String eventId) {
+        Preconditions.checkNotNull(eventId);
+        eventStates.invalidate(eventId);
+    }
+
+    public long trackedEvents() {
+        return eventStates.size();
+    }
+
+    public static final class WrittenMarketState {
+        private final MarketStatus status;
+        private final String[] outcomeIds;
+        private final double[] probabilities;
+        private final double[] odds;
+        private final boolean[] active;
+
+        private WrittenMarketState(MarketStatus status, String[] outcomeIds, double[] probabilities, double[] odds, boolean[] active) {
+            this.status = status;
+            this.outcomeIds = outcomeIds;
+            this.probabilities = probabilities;
+            this.odds = odds;
+            this.active = active;
+        }
+
+        /**
+         * Builds the state after a write, outcomes missing from the written market keep their previous value
+         */
+        static WrittenMarketState after(WrittenMarketState previous, MarketCoreData written) {
+            int count = written.getOutcomeCount();
+            int missing = 0;
+            if (previous != null) {
+                for (int i = 0; i < previous.outcomeIds.length; i++) {
+                    if (indexOf(written, previous.outcomeIds[i], i) < 0) {
+                        missing++;
+                    }
+                }
+            }
+
+            String[] outcomeIds = new String[count + missing];
+            double[] probabilities = new double[count + missing];
+            double[] odds = new double[count + missing];
+            boolean[] active = new boolean[count + missing];
+            for (int i = 0; i < count; i++) {
+                outcomeIds[i] = written.getOutcomeId(i);
+                probabilities[i] = written.getProbability(i);
+                odds[i] = written.getOdds(i);
+                active[i] = written.isActive(i);
+            }
+            if (missing > 0) {
+                int target = count;
+                for (int i = 0; i < previous.outcomeIds.length; i++) {
+                    if (indexOf(written, previous.outcomeIds[i], i) < 0) {
+                        outcomeIds[target] = previous.outcomeIds[i];
+                        probabilities[target] = previous.probabilities[i];
+                        odds[target] = previous.odds[i];
+                        active[target] = previous.active[i];
+                        target++;
+                    }
+                }
+            }
+            return new WrittenMarketState(written.getMarketStatus(), outcomeIds, probabilities, odds, active);
+        }
+
+        WrittenMarketState withStatus(MarketStatus newStatus) {
+            return newStatus == status ? this : new WrittenMarketState(newStatus, outcomeIds, probabilities, odds, active);
+        }
+
+        boolean isStatusChanged(MarketStatus newStatus) {
+            return status != newStatus;
+        }
+
+        boolean isOutcomeChanged(MarketCoreData market, int index) {
+            int writtenIndex = indexOf(outcomeIds, market.getOutcomeId(index), index);
+            return writtenIndex < 0
+                    || active[writtenIndex] != market.isActive(index)
+                    || Double.compare(odds[writtenIndex], market.getOdds(index)) != 0
+                    || Double.compare(probabilities[writtenIndex], market.getProbability(index)) != 0;
+        }
+
+        private static int indexOf(MarketCoreData market, String outcomeId, int hint) {
+            if (hint < market.getOutcomeCount() && market.getOutcomeId(hint).equals(outcomeId)) {
+                return hint;
+            }
+            for (int i = 0; i < market.getOutcomeCount(); i++) {
+                if (market.getOutcomeId(i).equals(outcomeId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Outcomes are nearly always sent in the same order, so the lookup first checks the same position
+         */
+        private static int indexOf(String[] outcomeIds, String outcomeId, int hint) {
+            if (hint < outcomeIds.length && outcomeIds[hint].equals(outcomeId)) {
+                return hint;
+            }
+            for (int i = 0; i < outcomeIds.length; i++) {
+                if (outcomeIds[i].equals(outcomeId)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.sportradar.unifiedodds.example.impl.core;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+import com.sportradar.utils.URN;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntPredicate;
+
+/**
+ * Collects the core data updates received within a write window and keeps only the newest state of each market
+ * (keyed by the full market key), so intermediate states of fast ticking markets are never written.
+ * <p>
+ * Instances are not thread-safe, each pipeline writer thread owns its own buffer.
+ */
+public class MarketCoalescingBuffer {
+    private final Map<String, MarketCoreData> markets;
+    private final Map<URN, Map<String, String>> eventProperties;
+    // source messages of the buffered updates, for the end-to-end latency once the buffer is written
+    private int[] messageProducerIds = new int[64];
+    private long[] messageGeneratedAts = new long[64];
+    private int messageCount;
+
+    private final LongAdder receivedUpdates;
+    private final LongAdder coalescedUpdates;
+    private final LongAdder writtenUpdates;
+
+    public MarketCoalescingBuffer(MetricsRegistry metricsRegistry) {
+        Preconditions.checkNotNull(metricsRegistry);
+
+        this.markets = new LinkedHashMap<>();
+        this.eventProperties = new LinkedHashMap<>();
+
+        this.receivedUpdates = metricsRegistry.counter("core.coalescing.received");
+        this.coalescedUpdates = metricsRegistry.counter("core.coalescing.coalesced");
+        this.writtenUpdates = metricsRegistry.counter("core.coalescing.written");
+    }
+
+    public void add(CoreDataUpdate update) {
+        Preconditions.checkNotNull(update);
+
+        if (update.getGeneratedAt() > 0) {
+            if (messageCount == messageGeneratedAts.length) {
+                messageProducerIds = Arrays.copyOf(messageProducerIds, messageCount * 2);
+                messageGeneratedAts = Arrays.copyOf(messageGeneratedAts, messageCount * 2);
+            }
+            messageProducerIds[messageCount] = update.getProducerId();
+            messageGeneratedAts[messageCount] = update.getGeneratedAt();
+            messageCount++;
+        }
+
+        for (Map.Entry<String, MarketCoreData> entry : update.getMarkets().entrySet()) {
+            receivedUpdates.increment();
+            if (markets.put(entry.getKey(), entry.getValue()) != null) {
+                coalescedUpdates.increment();
+            }
+        }
+
+        if (!update.getEventProperties().isEmpty()) {
+            receivedUpdates.increment();
+            Map<String, String> existing = eventProperties.get(update.getEventId());
+            if (existing == null) {
+                eventProperties.put(update.getEventId(), new LinkedHashMap<>(update.getEventProperties()));
+            } else {
+                existing.putAll(update.getEventProperties());
+                coalescedUpdates.increment();
+            }
+        }
+    }
+
+    /**
+     * Changes the status of the buffered active markets of the event matching the bet stop
+     *
+     * @param suspendedKeys receives the full market keys of the changed markets
+     */
+    void suspendMarkets(String eventId, int producerId, IntPredicate marketFilter, MarketStatus status, Collection<String> suspendedKeys) {
+        for (Map.Entry<String, MarketCoreData> entry : markets.entrySet()) {
+            MarketCoreData market = entry.getValue();
+            if (market.getEventId().equals(eventId) && market.getProducerId() == producerId
+                    && market.getMarketStatus() == MarketStatus.Active && marketFilter.test(market.getId())) {
+                entry.setValue(market.withMarketStatus(status));
+                suspendedKeys.add(entry.getKey());
+            }
+        }
+    }
+
+    public int size() {
+        return markets.size() + eventProperties.size();
+    }
+
+    public boolean isEmpty() {
+        return markets.isEmpty() && eventProperties.isEmpty();
+    }
+
+    /**
+     * @return the surviving markets, keyed by their full market key
+     */
+    public Map<String, MarketCoreData> getMarkets() {
+        return Collections.unmodifiableMap(markets);
+    }
+
+    public Map<URN, Map<String, String>> getEventProperties() {
+        return Collections.unmodifiableMap(eventProperties);
+    }
+
+    /**
+     * @return the number of buffered updates with a known source message
+     */
+    public int getMessageCount() {
+        return messageCount;
+    }
+
+    public int getMessageProducerId(int index) {
+        return messageProducerIds[index];
+    }
+
+    public long getMessageGeneratedAt(int index) {
+        return messageGeneratedAts[index];
+    }
+
+    /**
+     * Must be called once the buffered content was written, so the written counter reflects the flushed survivors
+     */
+    public void clear() {
+        writtenUpdates.add(size());
+        markets.clear();
+        eventProperties.clear();
+        messageCount = 0;
+    }
+}
@@ -0,0 +1,21 @@
+package com.sportradar.unifiedodds.example.impl.core;
+
+/**
+ * Defines how the {@link CoreDataPipeline} behaves when a partition queue is full.
+ */
+public enum OverflowPolicy {
+    /**
+     * The producing (SDK) thread waits until the partition has free capacity
+     */
+    BLOCK,
+
+    /**
+     * The update is merged into the newest queued update of the same event, blocks only if there is none
+     */
+    COALESCE,
+
+    /**
+     * Queued states of the same markets are dropped in favour of the new update, blocks only if that frees no slot
+     */
+    DROP_OLDEST_FOR_SAME_MARKET
+}
@@ -2,7 +2,6 @@ package com.sportradar.unifiedodds.example.impl.entities;
 
 import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
 
-import java.util.List;
 import java.util.Map;
 
 /**
@@ -12,19 +11,61 @@ import java.util.Map;
  */
 public class MarketCoreData extends MarketData {
     private final MarketStatus marketStatus;
-    private final List<OutcomeCoreData> outcomes;
 
-    public MarketCoreData(int producerId, String eventId, int id, Map<String, String> specifiers, MarketStatus marketStatus, List<OutcomeCoreData> outcomes) {
+    // outcomes are kept in parallel primitive arrays, absent probabilities/odds are Double.NaN
+    private final String[] outcomeIds;
+    private final double[] probabilities;
+    private final double[] odds;
+    private final boolean[] active;
+
+    public MarketCoreData(int producerId, String eventId, int id, Map<String, String> specifiers, MarketStatus marketStatus,
+                          String[] outcomeIds, double[] probabilities, double[] odds, boolean[] active) {
         super(producerId, eventId, id, specifiers);
+        if (outcomeIds.length != probabilities.length || outcomeIds.length != odds.length || outcomeIds.length != active.length) {
+            throw new IllegalArgumentException("Outcome arrays must be of equal length");
+        }
         this.marketStatus = marketStatus;
-        this.outcomes = outcomes;
+        this.outcomeIds = outcomeIds;
+        this.probabilities = probabilities;
+        this.odds = odds;
+        this.active = active;
     }
 
     public MarketStatus getMarketStatus() {
         return marketStatus;
     }
 
-    public List<OutcomeCoreData> getOutcomes() {
-        return outcomes;
+    /**
+     * @return a copy of the market with a different status, the outcomes are shared
+     */
+    public MarketCoreData withMarketStatus(MarketStatus status) {
+        if (status == marketStatus) {
+            return this;
+        }
+        return new MarketCoreData(getProducerId(), getEventId(), getId(), getSpecifiers(), status, outcomeIds, probabilities, odds, active);
+    }
+
+    public int getOutcomeCount() {
+        return outcomeIds.length;
+    }
+
+    public String getOutcomeId(int index) {
+        return outcomeIds[index];
+    }
+
+    public double getProbability(int index) {
+        return probabilities[index];
+    }
+
+    public double getOdds(int index) {
+        return odds[index];
+    }
+
+    public boolean isActive(int index) {
+        return active[index];
+    }
+
+    public OutcomeCoreData getOutcome(int index) {
+        return new OutcomeCoreData(outcomeIds[index], probabilities[index], odds[index], active[index]);
     }
 }
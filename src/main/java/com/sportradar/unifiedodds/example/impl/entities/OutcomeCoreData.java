@@ -7,11 +7,15 @@ package com.sportradar.unifiedodds.example.impl.entities;
  */
 public class OutcomeCoreData {
     private final String id;
-    private final Double probability;
-    private final Double odds;
+    private final double probability;
+    private final double odds;
     private final boolean active;
 
-    public OutcomeCoreData(String id, Double probability, Double odds, boolean active) {
+    /**
+     * @param probability the probability, {@link Double#NaN} if not available
+     * @param odds the decimal odds, {@link Double#NaN} if not available
+     */
+    public OutcomeCoreData(String id, double probability, double odds, boolean active) {
         this.id = id;
         this.probability = probability;
         this.odds = odds;
@@ -22,11 +26,11 @@ public class OutcomeCoreData {
         return id;
     }
 
-    public Double getProbability() {
+    public double getProbability() {
         return probability;
     }
 
-    public Double getOdds() {
+    public double getOdds() {
         return odds;
     }
 
@@ -0,0 +1,39 @@
+package com.sportradar.unifiedodds.example.impl.entities;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A market as read back from the storage: the core data (status and outcomes) and the remaining
+ * string properties, e.g. the metadata names
+ */
+public class StoredMarket {
+    private final String fullMarketKey;
+    private final String status;
+    private final List<OutcomeCoreData> outcomes;
+    private final Map<String, String> properties;
+
+    public StoredMarket(String fullMarketKey, String status, List<OutcomeCoreData> outcomes, Map<String, String> properties) {
+        this.fullMarketKey = fullMarketKey;
+        this.status = status;
+        this.outcomes = Collections.unmodifiableList(outcomes);
+        this.properties = Collections.unmodifiableMap(properties);
+    }
+
+    public String getFullMarketKey() {
+        return fullMarketKey;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public List<OutcomeCoreData> getOutcomes() {
+        return outcomes;
+    }
+
+    public Map<String, String> getProperties() {
+        return properties;
+    }
+}
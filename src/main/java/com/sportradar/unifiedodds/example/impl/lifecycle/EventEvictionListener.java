@@ -0,0 +1,9 @@
+package com.sportradar.unifiedodds.example.impl.lifecycle;
+
+/**
+ * Implemented by the holders of per-event in-memory state, invoked once the event finished
+ */
+@FunctionalInterface
+public interface EventEvictionListener {
+    void onEventFinished(String eventId);
+}
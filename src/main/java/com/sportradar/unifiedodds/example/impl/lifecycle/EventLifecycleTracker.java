@@ -0,0 +1,160 @@
+package com.sportradar.unifiedodds.example.impl.lifecycle;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBatch;
+import com.sportradar.unifiedodds.sdk.entities.EventStatus;
+import com.sportradar.utils.URN;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reacts to events reaching a final status (Ended, Closed, Cancelled): the registered listeners evict their
+ * in-memory state of the event and the event's stored keys, found through the event's market index, get a TTL.
+ * So both the heap and the storage stay proportional to the live events instead of the day's volume.
+ * <p>
+ * Finished events are remembered for the TTL period, writers use {@link #isFinished(String)} to avoid caching state
+ * of late updates and to put the TTL on keys they create afterwards.
+ */
+public class EventLifecycleTracker {
+    private static final Logger logger = LoggerFactory.getLogger(EventLifecycleTracker.class);
+
+    private static final EnumSet<EventStatus> FINISHED_EVENT_STATUSES =
+            EnumSet.of(EventStatus.Ended, EventStatus.Closed, EventStatus.Cancelled);
+    private static final int MAX_TRACKED_FINISHED_EVENTS = 100_000;
+
+    private final StorageBackend storageBackend;
+    private final ExecutorService lifecycleExecutor;
+    private final int finishedEventTtlSeconds;
+    private final Cache<String, Boolean> finishedEvents;
+    private final List<EventEvictionListener> evictionListeners = new CopyOnWriteArrayList<>();
+
+    private final LongAdder finishedCount;
+    private final LongAdder expiredKeys;
+    private final LongAdder failedReleases;
+    private final Histogram releaseLatency;
+
+    /**
+     * @param storageBackend the backend holding the keys of both lanes, the releases use its connections
+     * @param finishedEventTtlSeconds how long the stored keys of a finished event are kept
+     */
+    public EventLifecycleTracker(StorageBackend storageBackend,
+                                 ExecutorService lifecycleExecutor,
+                                 MetricsRegistry metricsRegistry,
+                                 int finishedEventTtlSeconds) {
+        Preconditions.checkNotNull(storageBackend);
+        Preconditions.checkNotNull(lifecycleExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkArgument(finishedEventTtlSeconds > 0);
+
+        this.storageBackend = storageBackend;
+        this.lifecycleExecutor = lifecycleExecutor;
+        this.finishedEventTtlSeconds = finishedEventTtlSeconds;
+        this.finishedEvents =
+                CacheBuilder.newBuilder()
+                        .maximumSize(MAX_TRACKED_FINISHED_EVENTS)
+                        .expireAfterWrite(finishedEventTtlSeconds, TimeUnit.SECONDS)
+                        .build();
+
+        this.finishedCount = metricsRegistry.counter("lifecycle.events.finished");
+        this.expiredKeys = metricsRegistry.counter("lifecycle.keys.expired");
+        this.failedReleases = metricsRegistry.counter("lifecycle.release.failed");
+        this.releaseLatency = metricsRegistry.histogram("lifecycle.release.latency.ms");
+        metricsRegistry.gauge("lifecycle.events.finished.tracked", finishedEvents::size);
+    }
+
+    public void addEvictionListener(EventEvictionListener listener) {
+        Preconditions.checkNotNull(listener);
+        evictionListeners.add(listener);
+    }
+
+    public static boolean isFinishedStatus(EventStatus status) {
+        return status != null && FINISHED_EVENT_STATUSES.contains(status);
+    }
+
+    public void onEventStatus(URN eventId, EventStatus status) {
+        Preconditions.checkNotNull(eventId);
+
+        if (isFinishedStatus(status)) {
+            onEventFinished(eventId.toString());
+        }
+    }
+
+    /**
+     * Idempotent, the release of the event state is executed only for the first invocation
+     */
+    public void onEventFinished(String eventId) {
+        Preconditions.checkNotNull(eventId);
+
+        if (finishedEvents.asMap().putIfAbsent(eventId, Boolean.TRUE) != null) {
+            return;
+        }
+        finishedCount.increment();
+        lifecycleExecutor.execute(() -> release(eventId));
+    }
+
+    public boolean isFinished(String eventId) {
+        return finishedEvents.getIfPresent(eventId) != null;
+    }
+
+    public int getFinishedEventTtlSeconds() {
+        return finishedEventTtlSeconds;
+    }
+
+    private void release(String eventId) {
+        long start = System.nanoTime();
+        for (EventEvictionListener listener : evictionListeners) {
+            try {
+                listener.onEventFinished(eventId);
+            } catch (Exception e) {
+                logger.error("Failed to evict state of finished event " + eventId + ", " + e.getMessage(), e);
+            }
+        }
+
+        try {
+            expireKeys(eventId);
+        } catch (Exception e) {
+            failedReleases.increment();
+            logger.error("Failed to set TTL on keys of finished event " + eventId + ", " + e.getMessage(), e);
+        }
+        releaseLatency.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void expireKeys(String eventId) {
+        String indexKey = RedisKeysBuilder.getEventMarketsKey(eventId);
+        Set<String> fullMarketKeys = storageBackend.indexMembers(indexKey);
+
+        try (StorageBatch batch = storageBackend.newBatch("lifecycle")) {
+            // with redis the event scoped keys share the hash tag, only the producer indexes may live on other shards
+            Set<Integer> producerIds = new HashSet<>();
+            for (String fullMarketKey : fullMarketKeys) {
+                batch.expire(RedisKeysBuilder.getMarketKey(eventId, fullMarketKey), finishedEventTtlSeconds);
+                producerIds.add(FullMarketIdBuilder.getProducerId(fullMarketKey));
+            }
+            batch.expire(indexKey, finishedEventTtlSeconds);
+            batch.expire(RedisKeysBuilder.getEventKey(eventId), finishedEventTtlSeconds);
+            for (Integer producerId : producerIds) {
+                batch.indexRemove(RedisKeysBuilder.getProducerEventsKey(producerId), eventId);
+            }
+            batch.flush();
+
+            expiredKeys.add(fullMarketKeys.size() + 2);
+            logger.debug("Finished event[{}] released, TTL set on {} market keys", eventId, fullMarketKeys.size());
+        }
+    }
+}
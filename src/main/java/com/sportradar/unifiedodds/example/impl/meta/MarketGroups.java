@@ -0,0 +1,77 @@
+package com.sportradar.unifiedodds.example.impl.meta;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.sdk.MarketDescriptionManager;
+import com.sportradar.unifiedodds.sdk.entities.markets.MarketDescription;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.IntPredicate;
+
+/**
+ * The groups (e.g. all, score, 1st_half) of each market id, loaded from the market descriptions on startup and used
+ * to resolve the markets a bet stop applies to.
+ * <p>
+ * Markets with unknown groups are always matched, suspending a market too many is the safe side of a bet stop.
+ */
+public class MarketGroups {
+    private static final Logger logger = LoggerFactory.getLogger(MarketGroups.class);
+
+    private static final String ALL_GROUP = "all";
+    private static final IntPredicate ALL_MARKETS = marketId -> true;
+
+    private final ConcurrentMap<Integer, Set<String>> groups = new ConcurrentHashMap<>();
+
+    public MarketGroups(MetricsRegistry metricsRegistry) {
+        Preconditions.checkNotNull(metricsRegistry);
+
+        metricsRegistry.gauge("meta.groups.markets", () -> groups.size());
+    }
+
+    /**
+     * Loads the groups of all the market descriptions, the groups are not localized so a single locale is enough
+     */
+    public void warmUp(MarketDescriptionManager marketDescriptionManager, Locale locale) {
+        Preconditions.checkNotNull(marketDescriptionManager);
+        Preconditions.checkNotNull(locale);
+
+        try {
+            List<MarketDescription> descriptions = marketDescriptionManager.getMarketDescriptions(locale);
+            if (descriptions == null) {
+                return;
+            }
+            for (MarketDescription description : descriptions) {
+                if (description.getGroups() != null) {
+                    groups.put(description.getId(), Collections.unmodifiableSet(new HashSet<>(description.getGroups())));
+                }
+            }
+            logger.info("Market groups loaded for {} markets", groups.size());
+        } catch (Exception e) {
+            logger.error("Market groups warm-up failed, bet stops will apply to all markets, " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @param betStopGroups the groups of a bet stop message, null or empty for all markets
+     * @return the filter of the market ids the bet stop applies to
+     */
+    public IntPredicate filter(List<String> betStopGroups) {
+        if (betStopGroups == null || betStopGroups.isEmpty() || betStopGroups.contains(ALL_GROUP)) {
+            return ALL_MARKETS;
+        }
+
+        Set<String> stopped = new HashSet<>(betStopGroups);
+        return marketId -> {
+            Set<String> marketGroups = groups.get(marketId);
+            return marketGroups == null || !Collections.disjoint(marketGroups, stopped);
+        };
+    }
+}
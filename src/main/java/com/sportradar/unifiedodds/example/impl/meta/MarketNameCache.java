@@ -0,0 +1,249 @@
+package com.sportradar.unifiedodds.example.impl.meta;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.snapshot.SnapshotReader;
+import com.sportradar.unifiedodds.example.impl.snapshot.SnapshotWriter;
+import com.sportradar.unifiedodds.example.impl.snapshot.Snapshottable;
+import com.sportradar.unifiedodds.sdk.MarketDescriptionManager;
+import com.sportradar.unifiedodds.sdk.entities.markets.MarketDescription;
+import com.sportradar.unifiedodds.sdk.entities.markets.OutcomeDescription;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithOdds;
+import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeOdds;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Size bounded cache of market and outcome names, keyed by market id + specifiers + locale.
+ * <p>
+ * Names of the same market type repeat across thousands of events, so they are resolved once and shared. The name
+ * templates are preloaded from the market descriptions on startup, simple {specifier} placeholders are substituted
+ * locally, everything else is resolved by the SDK. Names which reference the event (e.g. {$competitor1}) differ
+ * between events and are never cached.
+ * <p>
+ * The resolved names don't expire, so a {@link Snapshottable snapshot} restores them as they were.
+ */
+public class MarketNameCache implements Snapshottable {
+    private static final Logger logger = LoggerFactory.getLogger(MarketNameCache.class);
+
+    private final Cache<String, String> names;
+    private final ConcurrentMap<String, String> templates = new ConcurrentHashMap<>();
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder uncacheable;
+    private final LongAdder renderedLocally;
+    private final Histogram loadTime;
+    private final Histogram warmUpTime;
+
+    public MarketNameCache(int maxCachedNames, MetricsRegistry metricsRegistry) {
+        Preconditions.checkArgument(maxCachedNames > 0);
+        Preconditions.checkNotNull(metricsRegistry);
+
+        this.names =
+                CacheBuilder.newBuilder()
+                        .maximumSize(maxCachedNames)
+                        .build();
+
+        this.hits = metricsRegistry.counter("meta.names.hit");
+        this.misses = metricsRegistry.counter("meta.names.miss");
+        this.uncacheable = metricsRegistry.counter("meta.names.uncacheable");
+        this.renderedLocally = metricsRegistry.counter("meta.names.rendered");
+        this.loadTime = metricsRegistry.histogram("meta.names.load.us");
+        this.warmUpTime = metricsRegistry.histogram("meta.names.warmup.ms");
+        metricsRegistry.gauge("meta.names.size", names::size);
+        metricsRegistry.gauge("meta.names.templates", () -> templates.size());
+    }
+
+    /**
+     * Preloads the market descriptions (name templates) for the provided locales, failures are logged and the
+     * affected names are later resolved by the SDK
+     */
+    public void warmUp(MarketDescriptionManager marketDescriptionManager, List<Locale> locales) {
+        Preconditions.checkNotNull(marketDescriptionManager);
+        Preconditions.checkNotNull(locales);
+
+        for (Locale locale : locales) {
+            long start = System.nanoTime();
+            try {
+                List<MarketDescription> descriptions = marketDescriptionManager.getMarketDescriptions(locale);
+                if (descriptions == null) {
+                    continue;
+                }
+                for (MarketDescription description : descriptions) {
+                    loadTemplates(description, locale);
+                }
+
+                long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                warmUpTime.record(elapsedMs);
+                logger.info("Market descriptions warm-up for {} completed in {}ms, {} descriptions", locale, elapsedMs, descriptions.size());
+            } catch (Exception e) {
+                logger.error("Market descriptions warm-up for " + locale + " failed, " + e.getMessage(), e);
+            }
+        }
+    }
+
+    @Override
+    public void writeSnapshot(SnapshotWriter writer) {
+        List<Map.Entry<String, String>> entries = new ArrayList<>(names.asMap().entrySet());
+        writer.putInt(entries.size());
+        for (Map.Entry<String, String> entry : entries) {
+            writer.putString(entry.getKey());
+            writer.putString(entry.getValue());
+        }
+    }
+
+    @Override
+    public void readSnapshot(SnapshotReader reader) {
+        int size = reader.getInt();
+        for (int i = 0; i < size; i++) {
+            names.put(reader.getString(), reader.getString());
+        }
+        logger.info("Restored {} market and outcome names from the snapshot", size);
+    }
+
+    public String getMarketName(MarketWithOdds market, Locale locale) {
+        Preconditions.checkNotNull(market);
+        Preconditions.checkNotNull(locale);
+
+        String language = locale.getLanguage();
+        String cacheKey = language + '|' + FullMarketIdBuilder.composeMarketTypeKey(market.getId(), market.getSpecifiers());
+        String template = templates.get(templateKey(language, market.getId(), null));
+        return resolve(cacheKey, template, market.getSpecifiers(), () -> market.getName(locale));
+    }
+
+    public String getOutcomeName(MarketWithOdds market, OutcomeOdds outcome, Locale locale) {
+        Preconditions.checkNotNull(market);
+        Preconditions.checkNotNull(outcome);
+        Preconditions.checkNotNull(locale);
+
+        String language = locale.getLanguage();
+        String cacheKey = language + '|' + FullMarketIdBuilder.composeMarketTypeKey(market.getId(), market.getSpecifiers())
+                + '|' + outcome.getId();
+        String template = templates.get(templateKey(language, market.getId(), outcome.getId()));
+        return resolve(cacheKey, template, market.getSpecifiers(), () -> outcome.getName(locale));
+    }
+
+    private String resolve(String cacheKey, String template, Map<String, String> specifiers, Supplier<String> sdkLoader) {
+        String name = names.getIfPresent(cacheKey);
+        if (name != null) {
+            hits.increment();
+            return name;
+        }
+        misses.increment();
+
+        // without a known event independent template the name can't be shared between events
+        if (template == null || template.indexOf('$') >= 0) {
+            uncacheable.increment();
+            return load(sdkLoader);
+        }
+
+        name = render(template, specifiers);
+        if (name != null) {
+            renderedLocally.increment();
+        } else {
+            name = load(sdkLoader);
+        }
+
+        if (name != null) {
+            names.put(cacheKey, name);
+        }
+        return name;
+    }
+
+    private String load(Supplier<String> sdkLoader) {
+        long start = System.nanoTime();
+        try {
+            return sdkLoader.get();
+        } finally {
+            loadTime.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    private void loadTemplates(MarketDescription description, Locale locale) {
+        String language = locale.getLanguage();
+        String marketName = description.getName(locale);
+        if (marketName != null) {
+            templates.put(templateKey(language, description.getId(), null), marketName);
+        }
+
+        List<OutcomeDescription> outcomes = description.getOutcomes();
+        if (outcomes == null) {
+            return;
+        }
+        for (OutcomeDescription outcome : outcomes) {
+            String outcomeName = outcome.getName(locale);
+            if (outcomeName != null) {
+                templates.put(templateKey(language, description.getId(), outcome.getId()), outcomeName);
+            }
+        }
+    }
+
+    private static String templateKey(String language, int marketId, String outcomeId) {
+        return outcomeId == null
+                ? language + '|' + marketId
+                : language + '|' + marketId + '|' + outcomeId;
+    }
+
+    /**
+     * Substitutes plain {specifier} placeholders, returns null if the template contains any other placeholder
+     * type (signed, ordinal, player, ...) which needs to be resolved by the SDK
+     */
+    static String render(String template, Map<String, String> specifiers) {
+        int open = template.indexOf('{');
+        if (open < 0) {
+            return template;
+        }
+
+        StringBuilder sb = new StringBuilder(template.length() + 16);
+        int position = 0;
+        while (open >= 0) {
+            int close = template.indexOf('}', open);
+            if (close < 0) {
+                return null;
+            }
+
+            String placeholder = template.substring(open + 1, close);
+            if (!isPlainSpecifier(placeholder) || specifiers == null) {
+                return null;
+            }
+            String value = specifiers.get(placeholder);
+            if (value == null) {
+                return null;
+            }
+
+            sb.append(template, position, open).append(value);
+            position = close + 1;
+            open = template.indexOf('{', position);
+        }
+        sb.append(template, position, template.length());
+        return sb.toString();
+    }
+
+    private static boolean isPlainSpecifier(String placeholder) {
+        if (placeholder.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < placeholder.length(); i++) {
+            char c = placeholder.charAt(i);
+            if (!Character.isLetterOrDigit(c) && c != '_') {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,219 @@
+package com.sportradar.unifiedodds.example.impl.meta;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Funnels the metadata hash writes of all metadata tasks into pipelined groups written by a single thread,
+ * so metadata never holds more than one pooled connection per shard and does not starve the core data writers.
+ * <p>
+ * Market metadata keys are added to the event's market index, so the {@link EventLifecycleTracker} finds them when
+ * the event finishes; keys of events which already finished get the finished event TTL directly.
+ * <p>
+ * The queue is bounded: a write rejected because the writer thread falls behind (e.g. a recovery burst against a slow
+ * storage) is reported through its failure callback right away, same as the writes of a failed group, so the writer
+ * can request them again.
+ */
+public class MetadataWriteCollector {
+    private static final Logger logger = LoggerFactory.getLogger(MetadataWriteCollector.class);
+
+    private static final int MAX_PIPELINE_SIZE = 250;
+    private static final long STOP_CHECK_INTERVAL_MILLIS = 100;
+    private static final long REJECTION_LOG_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final StorageBackend storageBackend;
+    private final EventLifecycleTracker eventLifecycleTracker;
+    private final ExecutorService writerExecutor;
+    private final BlockingQueue<PendingWrite> pendingWrites;
+    private volatile boolean stopping;
+
+    private final Histogram pipelineSize;
+    private final Histogram flushLatency;
+    private final LongAdder failedWrites;
+    private final LongAdder rejectedWrites;
+    private final AtomicLong lastRejectionLogAt = new AtomicLong();
+
+    /**
+     * @param maxPendingWrites the capacity of the write queue, further writes are rejected
+     */
+    public MetadataWriteCollector(StorageBackend storageBackend,
+                                  EventLifecycleTracker eventLifecycleTracker,
+                                  ExecutorService writerExecutor,
+                                  MetricsRegistry metricsRegistry,
+                                  int maxPendingWrites) {
+        Preconditions.checkNotNull(storageBackend);
+        Preconditions.checkNotNull(eventLifecycleTracker);
+        Preconditions.checkNotNull(writerExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkArgument(maxPendingWrites > 0);
+
+        this.storageBackend = storageBackend;
+        this.eventLifecycleTracker = eventLifecycleTracker;
+        this.writerExecutor = writerExecutor;
+        this.pendingWrites = new LinkedBlockingQueue<>(maxPendingWrites);
+
+        this.pipelineSize = metricsRegistry.histogram("meta.pipeline.size");
+        this.flushLatency = metricsRegistry.histogram("meta.flush.latency.us");
+        this.failedWrites = metricsRegistry.counter("meta.write.failed");
+        this.rejectedWrites = metricsRegistry.counter("meta.write.rejected");
+        metricsRegistry.gauge("meta.write.queue.depth", pendingWrites::size);
+    }
+
+    public void start() {
+        writerExecutor.execute(this::writeLoop);
+    }
+
+    /**
+     * The writer thread stops once the queued writes are written, the metadata tasks must be stopped before
+     */
+    public void stop() {
+        stopping = true;
+    }
+
+    /**
+     * @param onFailed invoked if the write failed or was rejected
+     */
+    public void writeEvent(String eventId, Map<String, String> properties, Runnable onFailed) {
+        Preconditions.checkNotNull(eventId);
+        Preconditions.checkNotNull(properties);
+        Preconditions.checkNotNull(onFailed);
+
+        enqueue(new PendingWrite(eventId, RedisKeysBuilder.getEventKey(eventId), null, properties, onFailed));
+    }
+
+    /**
+     * @param onFailed invoked if the write failed or was rejected
+     */
+    public void writeMarket(String fullMarketKey, Map<String, String> properties, Runnable onFailed) {
+        Preconditions.checkNotNull(fullMarketKey);
+        Preconditions.checkNotNull(properties);
+        Preconditions.checkNotNull(onFailed);
+
+        String eventId = FullMarketIdBuilder.getEventId(fullMarketKey);
+        enqueue(new PendingWrite(eventId, RedisKeysBuilder.getMarketKey(eventId, fullMarketKey), fullMarketKey, properties,
+                onFailed));
+    }
+
+    private void enqueue(PendingWrite write) {
+        if (pendingWrites.offer(write)) {
+            return;
+        }
+
+        rejectedWrites.increment();
+        write.onFailed.run();
+        long now = System.currentTimeMillis();
+        long lastLogAt = lastRejectionLogAt.get();
+        if (now - lastLogAt >= REJECTION_LOG_INTERVAL_MILLIS && lastRejectionLogAt.compareAndSet(lastLogAt, now)) {
+            logger.warn("Metadata write queue full, {} writes rejected since the start, latest {}", rejectedWrites.sum(), write.key);
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingWrite> batch = new ArrayList<>(MAX_PIPELINE_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                PendingWrite first = pendingWrites.poll(STOP_CHECK_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    if (stopping) {
+                        break;
+                    }
+                    continue;
+                }
+                batch.add(first);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            pendingWrites.drainTo(batch, MAX_PIPELINE_SIZE - 1);
+
+            try {
+                flush(batch);
+            } catch (Exception e) {
+                failedWrites.add(batch.size());
+                batch.forEach(write -> write.onFailed.run());
+                logger.error("Failed to write " + batch.size() + " metadata entries: " + e.getMessage(), e);
+            }
+            batch.clear();
+        }
+        logger.info("Metadata write collector stopped");
+    }
+
+    private void flush(List<PendingWrite> batch) {
+        long flushStart = System.nanoTime();
+        int finishedEventTtl = eventLifecycleTracker.getFinishedEventTtlSeconds();
+        try (StorageBatch storageBatch = storageBackend.newBatch("meta")) {
+            for (PendingWrite write : batch) {
+                storageBatch.hashPut(write.key, write.properties);
+                write.expired = eventLifecycleTracker.isFinished(write.eventId);
+                if (write.expired) {
+                    // the event was already released, a re-created index would not expire
+                    storageBatch.expire(write.key, finishedEventTtl);
+                } else if (write.fullMarketKey != null) {
+                    storageBatch.indexAdd(RedisKeysBuilder.getEventMarketsKey(write.eventId), write.fullMarketKey);
+                }
+            }
+            storageBatch.flush();
+
+            flushLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - flushStart));
+            pipelineSize.record(batch.size());
+        }
+
+        // an event which finished during the flush may have been released before its keys were indexed
+        List<PendingWrite> finishedMeanwhile = new ArrayList<>();
+        for (PendingWrite write : batch) {
+            if (!write.expired && eventLifecycleTracker.isFinished(write.eventId)) {
+                finishedMeanwhile.add(write);
+            }
+        }
+        if (finishedMeanwhile.isEmpty()) {
+            return;
+        }
+        try (StorageBatch storageBatch = storageBackend.newBatch("meta")) {
+            for (PendingWrite write : finishedMeanwhile) {
+                storageBatch.expire(write.key, finishedEventTtl);
+                if (write.fullMarketKey != null) {
+                    storageBatch.expire(RedisKeysBuilder.getEventMarketsKey(write.eventId), finishedEventTtl);
+                }
+            }
+            storageBatch.flush();
+        }
+    }
+
+    private static final class PendingWrite {
+        private final String eventId;
+        private final String key;
+        private final String fullMarketKey;
+        private final Map<String, String> properties;
+        private final Runnable onFailed;
+        private boolean expired;
+
+        /**
+         * @param fullMarketKey the market to add to the event's market index, null for event metadata
+         */
+        private PendingWrite(String eventId, String key, String fullMarketKey, Map<String, String> properties, Runnable onFailed) {
+            this.eventId = eventId;
+            this.key = key;
+            this.fullMarketKey = fullMarketKey;
+            this.properties = properties;
+            this.onFailed = onFailed;
+        }
+    }
+}
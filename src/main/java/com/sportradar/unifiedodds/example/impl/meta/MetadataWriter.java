@@ -1,33 +1,30 @@
 package com.sportradar.unifiedodds.example.impl.meta;
 
 import com.google.common.base.Preconditions;
-import com.google.common.cache.Cache;
-import com.google.common.cache.CacheBuilder;
 import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
 import com.sportradar.unifiedodds.example.impl.JsonSerialization;
-import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
 import com.sportradar.unifiedodds.example.impl.entities.MarketData;
 import com.sportradar.unifiedodds.example.impl.entities.OutcomeMetadata;
-import com.sportradar.unifiedodds.example.impl.utils.BatchTaskProcessor;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.snapshot.WarmStartSnapshot;
+import com.sportradar.unifiedodds.example.impl.utils.CompactKeyTracker;
+import com.sportradar.unifiedodds.example.impl.utils.KeyedSerialExecutor;
 import com.sportradar.unifiedodds.sdk.entities.SportEvent;
 import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithOdds;
 import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeOdds;
 import com.sportradar.utils.URN;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.JedisPool;
 
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * Created on 17. 09. 20
@@ -37,127 +34,170 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class MetadataWriter {
     private static final Logger logger = LoggerFactory.getLogger(MetadataWriter.class);
 
-    private static final int BATCH_SIZE = 250;
     private static final int MAX_CONCURRENCY = 250;
-
-    private final JedisPool jedisPool;
-    private final ScheduledExecutorService metadataExecutor;
-
-    private final Cache<String, Integer> eventMetaTracker;
-    private final Cache<String, Integer> marketMetaTracker;
-
-    private final BlockingQueue<RunnableTask> loadQueue;
-
-    public MetadataWriter(JedisPool jedisPool, ScheduledExecutorService metadataExecutor) {
-        Preconditions.checkNotNull(jedisPool);
+    // rejections happen in bursts on the SDK threads, they are logged as a periodic summary
+    private static final long REJECTION_LOG_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final MetadataWriteCollector writeCollector;
+    private final MarketNameCache marketNameCache;
+    private final EventLifecycleTracker eventLifecycleTracker;
+
+    private final CompactKeyTracker eventMetaTracker;
+    private final CompactKeyTracker marketMetaTracker;
+
+    private final KeyedSerialExecutor metaTaskExecutor;
+    private final LongAdder eventTasks;
+    private final LongAdder marketTasks;
+    private final LongAdder rejectedTasks;
+    private final LongAdder skippedFinishedTasks;
+    private final AtomicLong lastRejectionLogAt = new AtomicLong();
+
+    public MetadataWriter(MetadataWriteCollector writeCollector,
+                          MarketNameCache marketNameCache,
+                          EventLifecycleTracker eventLifecycleTracker,
+                          ScheduledExecutorService metadataExecutor,
+                          MetricsRegistry metricsRegistry,
+                          long eventTrackerMemoryBytes,
+                          long marketTrackerMemoryBytes,
+                          int maxPendingTasks) {
+        Preconditions.checkNotNull(writeCollector);
+        Preconditions.checkNotNull(marketNameCache);
+        Preconditions.checkNotNull(eventLifecycleTracker);
         Preconditions.checkNotNull(metadataExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkArgument(maxPendingTasks > 0);
 
-        this.jedisPool = jedisPool;
-        this.metadataExecutor = metadataExecutor;
+        this.writeCollector = writeCollector;
+        this.marketNameCache = marketNameCache;
+        this.eventLifecycleTracker = eventLifecycleTracker;
 
         this.eventMetaTracker =
-                CacheBuilder.newBuilder()
-                        .expireAfterWrite(1, TimeUnit.HOURS)
-                        .build();
+                new CompactKeyTracker("meta.events", eventTrackerMemoryBytes, 1, TimeUnit.HOURS, metricsRegistry);
         this.marketMetaTracker =
-                CacheBuilder.newBuilder()
-                        .expireAfterWrite(1, TimeUnit.HOURS)
-                        .build();
+                new CompactKeyTracker("meta.markets", marketTrackerMemoryBytes, 1, TimeUnit.HOURS, metricsRegistry);
+
+        // tasks are dispatched as soon as they are submitted and a lane frees up, without batch barriers;
+        // tasks with the same identifier are serialized, up to MAX_CONCURRENCY lanes of identifiers run in parallel
+        this.metaTaskExecutor =
+                new KeyedSerialExecutor("meta", metadataExecutor, MAX_CONCURRENCY, maxPendingTasks, metricsRegistry);
+        this.eventTasks = metricsRegistry.counter("meta.tasks.events");
+        this.marketTasks = metricsRegistry.counter("meta.tasks.markets");
+        this.rejectedTasks = metricsRegistry.counter("meta.rejected");
+        this.skippedFinishedTasks = metricsRegistry.counter("meta.skipped.finished");
+    }
 
-        this.loadQueue = new LinkedBlockingQueue<>();
+    /**
+     * Registers the "metadata already written" trackers, so a restart does not write the metadata again. Only valid
+     * with a storage which keeps the written metadata across restarts.
+     */
+    public void registerSnapshots(WarmStartSnapshot warmStartSnapshot, String name) {
+        Preconditions.checkNotNull(warmStartSnapshot);
+        Preconditions.checkNotNull(name);
+
+        warmStartSnapshot.register(name + ".events", eventMetaTracker);
+        warmStartSnapshot.register(name + ".markets", marketMetaTracker);
+    }
+
+    /**
+     * @return the number of event and market metadata tasks submitted since the start
+     */
+    public long getSubmittedTasks() {
+        return eventTasks.sum() + marketTasks.sum();
     }
 
-    public void start() {
-        processMetaBatch();
+    public int getPendingTasks() {
+        return metaTaskExecutor.getPendingTasks();
     }
 
     public void process(SportEvent event, boolean forceReload) {
         Preconditions.checkNotNull(event);
 
         String eventId = event.getId().toString();
-        if (eventMetaTracker.getIfPresent(eventId) == null || forceReload) {
-            eventMetaTracker.put(eventId, 1);
-            loadQueue.add(new RunnableTask(eventId, () -> writeEventMetadata(event)));
+        if (eventLifecycleTracker.isFinished(eventId)) {
+            return;
+        }
+        if (!eventMetaTracker.contains(eventId) || forceReload) {
+            eventMetaTracker.put(eventId);
+            if (submit(eventId, () -> writeEventMetadata(event), eventMetaTracker)) {
+                eventTasks.increment();
+            } else {
+                eventMetaTracker.invalidate(eventId);
+            }
         }
     }
 
     public void process(int producerId, URN eventId, List<MarketWithOdds> markets) {
-        if (markets == null || markets.isEmpty()) {
+        if (markets == null || markets.isEmpty() || eventLifecycleTracker.isFinished(eventId.toString())) {
             return;
         }
 
         markets.forEach(m -> {
             MarketData marketData = new MarketData(producerId, eventId.toString(), m.getId(), m.getSpecifiers());
             String fullMarketId = FullMarketIdBuilder.composeFullMarketKey(marketData);
-            if (marketMetaTracker.getIfPresent(fullMarketId) == null) {
-                marketMetaTracker.put(fullMarketId, 1);
-                loadQueue.add(new RunnableTask(fullMarketId, () -> writeMarketMetadata(fullMarketId, m)));
+            if (!marketMetaTracker.contains(fullMarketId)) {
+                marketMetaTracker.put(fullMarketId);
+                if (submit(fullMarketId, () -> writeMarketMetadata(fullMarketId, m), marketMetaTracker)) {
+                    marketTasks.increment();
+                } else {
+                    marketMetaTracker.invalidate(fullMarketId);
+                }
             }
         });
     }
 
-    private void processMetaBatch() {
-        AtomicInteger processedCount = new AtomicInteger(0);
-        Map<String, List<Runnable>> metaTasks = new HashMap<>();
-        for (int i = 0; i < BATCH_SIZE; i++) {
-            RunnableTask metaLoadRequest = loadQueue.poll();
-            if (metaLoadRequest == null) {
-                break;
+    /**
+     * Never blocks the calling (SDK) thread, when the queue is full the task is rejected and the caller untracks it,
+     * so the metadata is requested again with one of the following messages. A task dropped after it was accepted,
+     * failing or whose write failed untracks itself through the tracker, so only stored metadata stays tracked.
+     */
+    private boolean submit(String identifier, Runnable task, CompactKeyTracker tracker) {
+        Runnable untrackingTask = () -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                tracker.invalidate(identifier);
+                throw e;
             }
-            processedCount.incrementAndGet();
-
-            metaTasks
-                    .computeIfAbsent(metaLoadRequest.identifier, k -> new LinkedList<>())
-                    .add(() -> {
-                        try {
-                            metaLoadRequest.runnable.run();
-                        } catch (Exception e) {
-                            logger.error("Failed to process meta[" + metaLoadRequest.identifier + "] request: " + e.getMessage(), e);
-                        }
-                    });
-
-            if (metaTasks.size() >= MAX_CONCURRENCY) {
-                // we must cap max concurrency so we do not clutter the executor
-                break;
+        };
+        try {
+            if (metaTaskExecutor.tryExecute(identifier, untrackingTask, () -> tracker.invalidate(identifier), 0, TimeUnit.MILLISECONDS)) {
+                return true;
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
         }
-
-        logger.info("Meta queue size: {}", loadQueue.size());
-
-        if (processedCount.get() == 0) {
-            scheduleAfterEmptyQueue();
-            return;
+        rejectedTasks.increment();
+        long now = System.currentTimeMillis();
+        long lastLogAt = lastRejectionLogAt.get();
+        if (now - lastLogAt >= REJECTION_LOG_INTERVAL_MILLIS && lastRejectionLogAt.compareAndSet(lastLogAt, now)) {
+            logger.warn("Meta queue full or stopped, {} meta requests rejected since the start, latest meta[{}]", rejectedTasks.sum(), identifier);
         }
-
-        BatchTaskProcessor bp = new BatchTaskProcessor("meta-batch-processor", metadataExecutor, metaTasks);
-        bp.processBatch(this::scheduleAfterNotEmptyQueue);
-    }
-
-    private void scheduleAfterEmptyQueue() {
-        metadataExecutor.schedule(this::processMetaBatch, 500, TimeUnit.MILLISECONDS);
-    }
-
-    private void scheduleAfterNotEmptyQueue() {
-        metadataExecutor.submit(this::processMetaBatch);
+        return false;
     }
 
     private void writeMarketMetadata(String fullMarketId, MarketWithOdds market) {
         Preconditions.checkNotNull(market);
 
+        // the event may have finished while the task was queued
+        if (eventLifecycleTracker.isFinished(FullMarketIdBuilder.getEventId(fullMarketId))) {
+            skippedFinishedTasks.increment();
+            return;
+        }
+
         Map<String, String> properties = new HashMap<>();
-        String name = market.getName(Locale.ENGLISH);
+        String name = marketNameCache.getMarketName(market, Locale.ENGLISH);
         if (name != null) {
             properties.put("EN_name", name);
         }
 
-        String italianName = market.getName(Locale.ITALIAN);
+        String italianName = marketNameCache.getMarketName(market, Locale.ITALIAN);
         if (italianName != null) {
             properties.put("IT_name", italianName);
         }
 
         if (market.getOutcomeOdds() != null && !market.getOutcomeOdds().isEmpty()) {
-            processOutcomesForLocale("EN", Locale.ENGLISH, properties, market.getOutcomeOdds());
-            processOutcomesForLocale("IT", Locale.ITALIAN, properties, market.getOutcomeOdds());
+            processOutcomesForLocale("EN", Locale.ENGLISH, properties, market);
+            processOutcomesForLocale("IT", Locale.ITALIAN, properties, market);
         }
 
         if (properties.isEmpty()) {
@@ -167,19 +207,17 @@ public class MetadataWriter {
 
         properties.put("meTs", System.currentTimeMillis() + "");
 
-        try (Jedis client = jedisPool.getResource()) {
-            client.hmset(RedisKeysBuilder.getMarketKey(fullMarketId), properties);
-        }
+        writeCollector.writeMarket(fullMarketId, properties, () -> marketMetaTracker.invalidate(fullMarketId));
     }
 
-    private static void processOutcomesForLocale(String prefixLocale, Locale locale, Map<String, String> properties, List<OutcomeOdds> outcomeOdds) {
+    private void processOutcomesForLocale(String prefixLocale, Locale locale, Map<String, String> properties, MarketWithOdds market) {
         Preconditions.checkNotNull(prefixLocale);
         Preconditions.checkNotNull(locale);
         Preconditions.checkNotNull(properties);
-        Preconditions.checkNotNull(outcomeOdds);
+        Preconditions.checkNotNull(market);
 
-        for (OutcomeOdds outcome : outcomeOdds) {
-            String name = outcome.getName(locale);
+        for (OutcomeOdds outcome : market.getOutcomeOdds()) {
+            String name = marketNameCache.getOutcomeName(market, outcome, locale);
             if (name == null) {
                 continue;
             }
@@ -191,6 +229,11 @@ public class MetadataWriter {
     private void writeEventMetadata(SportEvent event) {
         Preconditions.checkNotNull(event);
 
+        if (eventLifecycleTracker.isFinished(event.getId().toString())) {
+            skippedFinishedTasks.increment();
+            return;
+        }
+
         Map<String, String> properties = new HashMap<>();
         String name = event.getName(Locale.ENGLISH);
         if (name != null) {
@@ -213,18 +256,7 @@ public class MetadataWriter {
 
         properties.put("meTs", System.currentTimeMillis() + "");
 
-        try (Jedis client = jedisPool.getResource()) {
-            client.hmset(RedisKeysBuilder.getEventKey(event.getId()), properties);
-        }
-    }
-
-    private static class RunnableTask {
-        private final String identifier;
-        private final Runnable runnable;
-
-        private RunnableTask(String identifier, Runnable runnable) {
-            this.identifier = identifier;
-            this.runnable = runnable;
-        }
+        String eventId = event.getId().toString();
+        writeCollector.writeEvent(eventId, properties, () -> eventMetaTracker.invalidate(eventId));
     }
 }
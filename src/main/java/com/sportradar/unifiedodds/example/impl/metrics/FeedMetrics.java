@@ -0,0 +1,128 @@
+package com.sportradar.unifiedodds.example.impl.metrics;
+
+import com.google.common.base.Preconditions;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per producer and message type feed metrics, registered lazily as feed.[type].p[producerId].*:
+ * <ul>
+ *     <li>messages - received messages (the registry reports the per-second rate)</li>
+ *     <li>markets - markets per message</li>
+ *     <li>dispatch.latency.ms - from the message generated timestamp to the listener invocation</li>
+ *     <li>stored.latency.ms - from the message generated timestamp to the storage ack (odds changes only)</li>
+ * </ul>
+ * Latencies against the generated timestamp include the clock skew between the feed and this host.
+ */
+public class FeedMetrics {
+
+    public enum MessageType {
+        ODDS_CHANGE("odds_change"),
+        BET_STOP("bet_stop"),
+        BET_SETTLEMENT("bet_settlement"),
+        ROLLBACK_BET_SETTLEMENT("rollback_bet_settlement"),
+        BET_CANCEL("bet_cancel"),
+        ROLLBACK_BET_CANCEL("rollback_bet_cancel"),
+        FIXTURE_CHANGE("fixture_change"),
+        UNPARSABLE("unparsable");
+
+        private final String metricName;
+
+        MessageType(String metricName) {
+            this.metricName = metricName;
+        }
+    }
+
+    // the target latency of a bet stop, from the message generated timestamp to the storage acknowledgement
+    public static final long BET_STOP_SLO_MILLIS = 10;
+
+    private final MetricsRegistry metricsRegistry;
+    private final Map<MessageType, ConcurrentMap<Integer, Instruments>> instruments;
+
+    public FeedMetrics(MetricsRegistry metricsRegistry) {
+        Preconditions.checkNotNull(metricsRegistry);
+
+        this.metricsRegistry = metricsRegistry;
+        this.instruments = new EnumMap<>(MessageType.class);
+        for (MessageType type : MessageType.values()) {
+            instruments.put(type, new ConcurrentHashMap<>());
+        }
+    }
+
+    /**
+     * @param generatedAt the message generated timestamp in millis, 0 if unknown
+     * @param marketCount the number of markets in the message, negative if not applicable
+     */
+    public void onMessage(MessageType type, int producerId, long generatedAt, int marketCount) {
+        Preconditions.checkNotNull(type);
+
+        Instruments target = instruments(type, producerId);
+        target.messages.increment();
+        if (marketCount >= 0) {
+            target.markets.record(marketCount);
+        }
+        if (generatedAt > 0) {
+            target.dispatchLatency.record(System.currentTimeMillis() - generatedAt);
+        }
+    }
+
+    /**
+     * Records the end-to-end latency of an odds change whose markets were acknowledged by the storage
+     */
+    public void onOddsChangeStored(int producerId, long generatedAt, long storedAt) {
+        if (generatedAt > 0) {
+            instruments(MessageType.ODDS_CHANGE, producerId).storedLatency.record(storedAt - generatedAt);
+        }
+    }
+
+    /**
+     * Records the end-to-end latency of a message (e.g. a settlement) whose content was acknowledged by the storage
+     */
+    public void onMessageStored(MessageType type, int producerId, long generatedAt, long storedAt) {
+        Preconditions.checkNotNull(type);
+
+        if (generatedAt > 0) {
+            instruments(type, producerId).storedLatency.record(storedAt - generatedAt);
+        }
+    }
+
+    /**
+     * Records the end-to-end latency of a bet stop whose markets were suspended in the storage, latencies of
+     * {@link #BET_STOP_SLO_MILLIS} or more are counted as SLO breaches
+     */
+    public void onBetStopStored(int producerId, long generatedAt, long storedAt) {
+        if (generatedAt > 0) {
+            Instruments target = instruments(MessageType.BET_STOP, producerId);
+            long latency = storedAt - generatedAt;
+            target.storedLatency.record(latency);
+            if (latency >= BET_STOP_SLO_MILLIS) {
+                target.sloBreaches.increment();
+            }
+        }
+    }
+
+    private Instruments instruments(MessageType type, int producerId) {
+        // the producer ids are a small fixed set, so the names are built once per producer
+        return instruments.get(type).computeIfAbsent(producerId, k -> new Instruments(type, "feed." + type.metricName + ".p" + k));
+    }
+
+    private final class Instruments {
+        private final LongAdder messages;
+        private final Histogram markets;
+        private final Histogram dispatchLatency;
+        private final Histogram storedLatency;
+        private final LongAdder sloBreaches;
+
+        private Instruments(MessageType type, String prefix) {
+            this.messages = metricsRegistry.counter(prefix + ".messages");
+            this.markets = metricsRegistry.histogram(prefix + ".markets");
+            this.dispatchLatency = metricsRegistry.histogram(prefix + ".dispatch.latency.ms");
+            this.storedLatency = metricsRegistry.histogram(prefix + ".stored.latency.ms");
+            this.sloBreaches = type == MessageType.BET_STOP ? metricsRegistry.counter(prefix + ".slo.breached") : null;
+        }
+    }
+}
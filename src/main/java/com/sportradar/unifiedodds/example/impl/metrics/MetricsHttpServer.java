@@ -0,0 +1,84 @@
+package com.sportradar.unifiedodds.example.impl.metrics;
+
+import com.google.common.base.Preconditions;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Serves the {@link MetricsRegistry} content on GET /metrics in the Prometheus text format, using the JDK built-in
+ * HTTP server, so no extra dependency is needed.
+ */
+public class MetricsHttpServer {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsHttpServer.class);
+
+    private final MetricsRegistry metricsRegistry;
+    private final InetSocketAddress address;
+    private final ExecutorService httpExecutor;
+    private HttpServer server;
+
+    public MetricsHttpServer(MetricsRegistry metricsRegistry, InetSocketAddress address, ExecutorService httpExecutor) {
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkNotNull(address);
+        Preconditions.checkNotNull(httpExecutor);
+
+        this.metricsRegistry = metricsRegistry;
+        this.address = address;
+        this.httpExecutor = httpExecutor;
+    }
+
+    public void start() {
+        try {
+            server = HttpServer.create(address, 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to bind the metrics endpoint to " + address, e);
+        }
+        server.createContext("/metrics", this::handle);
+        server.setExecutor(httpExecutor);
+        server.start();
+        logger.info("Metrics endpoint listening on http://{}:{}/metrics", address.getHostString(), address.getPort());
+    }
+
+    public void stop() {
+        if (server != null) {
+            server.stop(0);
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            byte[] body;
+            try {
+                StringWriter writer = new StringWriter(16 * 1024);
+                metricsRegistry.export(writer);
+                body = writer.toString().getBytes(StandardCharsets.UTF_8);
+            } catch (Exception e) {
+                logger.error("Failed to export metrics: " + e.getMessage(), e);
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
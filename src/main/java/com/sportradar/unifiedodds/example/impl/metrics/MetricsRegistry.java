@@ -0,0 +1,159 @@
+package com.sportradar.unifiedodds.example.impl.metrics;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.Maps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Named counters, gauges and histograms shared by the example processors, periodically dumped to the log.
+ * The per-second rate of every counter is computed over the reporting interval.
+ * <p>
+ * A {@link #scoped(String) scoped} registry shares the metrics of its parent and prefixes the names, so the same
+ * processor can be instantiated several times (e.g. once per processing lane) without the metrics colliding.
+ */
+public class MetricsRegistry {
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private final ScheduledExecutorService reportingExecutor;
+    private final Map<String, LongAdder> counters;
+    private final Map<String, LongSupplier> gauges;
+    private final Map<String, Histogram> histograms;
+    private final Map<String, Long> lastCounterValues;
+    private final Map<String, Double> counterRates;
+    private final String prefix;
+    private long lastReportNanos;
+
+    public MetricsRegistry(ScheduledExecutorService reportingExecutor) {
+        Preconditions.checkNotNull(reportingExecutor);
+
+        this.prefix = "";
+        this.reportingExecutor = reportingExecutor;
+        this.counters = Maps.newConcurrentMap();
+        this.gauges = Maps.newConcurrentMap();
+        this.histograms = Maps.newConcurrentMap();
+        this.lastCounterValues = Maps.newHashMap();
+        this.counterRates = Maps.newConcurrentMap();
+        this.lastReportNanos = System.nanoTime();
+    }
+
+    private MetricsRegistry(MetricsRegistry parent, String prefix) {
+        this.prefix = prefix;
+        this.reportingExecutor = parent.reportingExecutor;
+        this.counters = parent.counters;
+        this.gauges = parent.gauges;
+        this.histograms = parent.histograms;
+        this.lastCounterValues = parent.lastCounterValues;
+        this.counterRates = parent.counterRates;
+    }
+
+    /**
+     * @return a view registering its metrics as [scope].[name], reporting and exporting is done by the root registry
+     */
+    public MetricsRegistry scoped(String scope) {
+        Preconditions.checkNotNull(scope);
+        Preconditions.checkArgument(!scope.isEmpty());
+
+        return new MetricsRegistry(this, prefix + scope + ".");
+    }
+
+    public void start() {
+        Preconditions.checkState(prefix.isEmpty(), "Only the root registry is reported");
+        reportingExecutor.scheduleWithFixedDelay(this::report, 30, 30, TimeUnit.SECONDS);
+    }
+
+    public LongAdder counter(String name) {
+        Preconditions.checkNotNull(name);
+        return counters.computeIfAbsent(prefix + name, k -> new LongAdder());
+    }
+
+    public Histogram histogram(String name) {
+        Preconditions.checkNotNull(name);
+        return histograms.computeIfAbsent(prefix + name, k -> new Histogram());
+    }
+
+    public void gauge(String name, LongSupplier supplier) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(supplier);
+        gauges.put(prefix + name, supplier);
+    }
+
+    /**
+     * Writes all the metrics in the Prometheus text format, names are prefixed with uof_ and dots become underscores.
+     * Counters are exported with their rate (per second, over the last reporting interval), histograms as summaries.
+     */
+    public void export(Writer writer) throws IOException {
+        Preconditions.checkNotNull(writer);
+
+        for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+            String name = exportName(counter.getKey());
+            writer.write("# TYPE " + name + "_total counter\n");
+            writer.write(name + "_total " + counter.getValue().sum() + "\n");
+            Double rate = counterRates.get(counter.getKey());
+            if (rate != null) {
+                writer.write("# TYPE " + name + "_rate gauge\n");
+                writer.write(name + "_rate " + String.format("%.2f", rate) + "\n");
+            }
+        }
+        for (Map.Entry<String, LongSupplier> gauge : new TreeMap<>(gauges).entrySet()) {
+            String name = exportName(gauge.getKey());
+            writer.write("# TYPE " + name + " gauge\n");
+            writer.write(name + " " + gauge.getValue().getAsLong() + "\n");
+        }
+        for (Map.Entry<String, Histogram> histogram : new TreeMap<>(histograms).entrySet()) {
+            String name = exportName(histogram.getKey());
+            Histogram.Snapshot snapshot = histogram.getValue().snapshot();
+            writer.write("# TYPE " + name + " summary\n");
+            writer.write(name + "{quantile=\"0.5\"} " + snapshot.getPercentile(50) + "\n");
+            writer.write(name + "{quantile=\"0.99\"} " + snapshot.getPercentile(99) + "\n");
+            writer.write(name + "{quantile=\"0.999\"} " + snapshot.getPercentile(99.9) + "\n");
+            writer.write(name + "{quantile=\"1\"} " + snapshot.getMax() + "\n");
+            writer.write(name + "_sum " + snapshot.getSum() + "\n");
+            writer.write(name + "_count " + snapshot.getCount() + "\n");
+        }
+    }
+
+    private static String exportName(String name) {
+        StringBuilder sb = new StringBuilder(name.length() + 4).append("uof_");
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            sb.append(Character.isLetterOrDigit(c) ? c : '_');
+        }
+        return sb.toString();
+    }
+
+    private void report() {
+        try {
+            updateRates();
+            new TreeMap<>(counters).forEach((name, value) ->
+                    logger.info("counter[{}] {} ({}/s)", name, value.sum(), String.format("%.1f", counterRates.getOrDefault(name, 0.0))));
+            new TreeMap<>(gauges).forEach((name, value) -> logger.info("gauge[{}] {}", name, value.getAsLong()));
+            new TreeMap<>(histograms).forEach((name, value) -> logger.info("histogram[{}] {}", name, value.snapshot()));
+        } catch (Exception e) {
+            logger.error("Failed to report metrics: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Only invoked from the reporting thread
+     */
+    private void updateRates() {
+        long now = System.nanoTime();
+        double elapsedSeconds = Math.max(1, now - lastReportNanos) / 1_000_000_000.0;
+        lastReportNanos = now;
+        counters.forEach((name, value) -> {
+            long current = value.sum();
+            Long previous = lastCounterValues.put(name, current);
+            counterRates.put(name, (current - (previous == null ? 0 : previous)) / elapsedSeconds);
+        });
+    }
+}
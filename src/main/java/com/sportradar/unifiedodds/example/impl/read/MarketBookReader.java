@@ -0,0 +1,83 @@
+package com.sportradar.unifiedodds.example.impl.read;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.codec.OutcomeEncoding;
+import com.sportradar.unifiedodds.example.impl.entities.OutcomeCoreData;
+import com.sportradar.unifiedodds.example.impl.entities.StoredMarket;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.utils.URN;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Reads the full market book of an event, using the per-event market index maintained by the core data writer
+ * instead of scanning the keyspace: one index read and one batched read of the market hashes.
+ */
+public class MarketBookReader {
+    private static final String OUTCOME_FIELD_PREFIX = "os_";
+    private static final String STATUS_FIELD = "status";
+
+    private final StorageBackend storageBackend;
+
+    public MarketBookReader(StorageBackend storageBackend) {
+        Preconditions.checkNotNull(storageBackend);
+
+        this.storageBackend = storageBackend;
+    }
+
+    /**
+     * @return the markets of the event ordered by the full market key, empty if the event is not known
+     */
+    public Map<String, StoredMarket> readEventMarkets(URN eventId) {
+        Preconditions.checkNotNull(eventId);
+
+        // with redis the index and the market hashes share the event hash tag, so they are read from the same shard
+        String indexKey = RedisKeysBuilder.getEventMarketsKey(eventId.toString());
+        return readMarkets(new TreeSet<>(storageBackend.indexMembers(indexKey)));
+    }
+
+    /**
+     * Fetches the provided markets with a single batched read, markets which don't exist (anymore) are skipped
+     */
+    public Map<String, StoredMarket> readMarkets(Set<String> fullMarketKeys) {
+        Preconditions.checkNotNull(fullMarketKeys);
+
+        Map<String, String> fullMarketKeysByKey = new LinkedHashMap<>();
+        for (String fullMarketKey : fullMarketKeys) {
+            fullMarketKeysByKey.put(RedisKeysBuilder.getMarketKey(fullMarketKey), fullMarketKey);
+        }
+
+        Map<String, StoredMarket> markets = new LinkedHashMap<>();
+        storageBackend.readHashes(fullMarketKeysByKey.keySet()).forEach((marketKey, fields) -> {
+            String fullMarketKey = fullMarketKeysByKey.get(marketKey);
+            markets.put(fullMarketKey, decode(fullMarketKey, fields));
+        });
+        return markets;
+    }
+
+    private static StoredMarket decode(String fullMarketKey, Map<String, byte[]> fields) {
+        String status = null;
+        List<OutcomeCoreData> outcomes = new ArrayList<>();
+        Map<String, String> properties = new HashMap<>();
+        for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+            String name = field.getKey();
+            if (name.startsWith(OUTCOME_FIELD_PREFIX)) {
+                // outcome values may be binary encoded, so they are never converted to strings
+                outcomes.add(OutcomeEncoding.decodeAny(name.substring(OUTCOME_FIELD_PREFIX.length()), field.getValue()));
+            } else if (STATUS_FIELD.equals(name)) {
+                status = SafeEncoder.encode(field.getValue());
+            } else {
+                properties.put(name, SafeEncoder.encode(field.getValue()));
+            }
+        }
+        return new StoredMarket(fullMarketKey, status, outcomes, properties);
+    }
+}
@@ -0,0 +1,266 @@
+package com.sportradar.unifiedodds.example.impl.recovery;
+
+import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.sdk.EventRecoveryRequestIssuer;
+import com.sportradar.unifiedodds.sdk.ProducerManager;
+import com.sportradar.unifiedodds.sdk.oddsentities.Producer;
+import com.sportradar.utils.URN;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Requests the recovery of a single event from the feed, either its odds (the current odds of all its markets) or its
+ * stateful messages (settlements and cancels). The requests are API calls, so they are issued on the recovery
+ * executor and never block the SDK threads.
+ * <p>
+ * Requests of the same event, producer and kind are merged while the first one was not issued yet, it covers
+ * everything that happened before. A failed request is retried a few times, the feed reports a completed recovery
+ * through {@link #onCompleted(URN, long)}.
+ */
+public class EventRecoveryRequester {
+    private static final Logger logger = LoggerFactory.getLogger(EventRecoveryRequester.class);
+
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    // the feed does not report failed recoveries, a request not completed by then is issued again
+    private static final long COMPLETION_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(10);
+
+    public enum Kind {
+        ODDS,
+        STATEFUL
+    }
+
+    private final ScheduledExecutorService recoveryExecutor;
+    private volatile EventRecoveryRequestIssuer requestIssuer;
+    private volatile ProducerManager producerManager;
+    // guarded by this
+    private final Map<String, Request> queuedRequests = new HashMap<>();
+    private final Map<Long, Request> issuedRequests = new HashMap<>();
+    // completions reported before the issuing thread registered the request id
+    private final Cache<Long, Boolean> earlyCompletions =
+            CacheBuilder.newBuilder()
+                    .maximumSize(1000)
+                    .expireAfterWrite(1, TimeUnit.MINUTES)
+                    .build();
+
+    private final LongAdder requestedRecoveries;
+    private final LongAdder mergedRequests;
+    private final LongAdder failedRequests;
+    private final LongAdder completedRecoveries;
+    private final Histogram recoveryDuration;
+
+    public EventRecoveryRequester(ScheduledExecutorService recoveryExecutor, MetricsRegistry metricsRegistry) {
+        Preconditions.checkNotNull(recoveryExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+
+        this.recoveryExecutor = recoveryExecutor;
+
+        this.requestedRecoveries = metricsRegistry.counter("recovery.event.requested");
+        this.mergedRequests = metricsRegistry.counter("recovery.event.merged");
+        this.failedRequests = metricsRegistry.counter("recovery.event.failed");
+        this.completedRecoveries = metricsRegistry.counter("recovery.event.completed");
+        this.recoveryDuration = metricsRegistry.histogram("recovery.event.duration.ms");
+        metricsRegistry.gauge("recovery.event.pending", this::pendingRequests);
+    }
+
+    /**
+     * Invoked once the feed is created, requests made before are dropped
+     */
+    public void bind(EventRecoveryRequestIssuer requestIssuer, ProducerManager producerManager) {
+        Preconditions.checkNotNull(requestIssuer);
+        Preconditions.checkNotNull(producerManager);
+
+        this.producerManager = producerManager;
+        this.requestIssuer = requestIssuer;
+    }
+
+    /**
+     * @param onCompleted invoked once the feed completed the recovery, never if the request failed; may be null
+     */
+    public void request(Kind kind, int producerId, URN eventId, Runnable onCompleted) {
+        Preconditions.checkNotNull(kind);
+        Preconditions.checkNotNull(eventId);
+
+        String key = kind + "|" + producerId + "|" + eventId;
+        Request request;
+        synchronized (this) {
+            Request queued = queuedRequests.get(key);
+            if (queued != null) {
+                queued.addCallback(onCompleted);
+                mergedRequests.increment();
+                return;
+            }
+            request = new Request(key, kind, producerId, eventId);
+            request.addCallback(onCompleted);
+            queuedRequests.put(key, request);
+        }
+        schedule(request, 0);
+    }
+
+    /**
+     * Invoked by the global listener when the feed completed an event recovery
+     */
+    public void onCompleted(URN eventId, long requestId) {
+        Request request;
+        synchronized (this) {
+            request = issuedRequests.remove(requestId);
+            if (request == null) {
+                earlyCompletions.put(requestId, Boolean.TRUE);
+            }
+        }
+        if (request != null) {
+            complete(request);
+        }
+    }
+
+    private void schedule(Request request, long delayMillis) {
+        try {
+            recoveryExecutor.schedule(() -> issue(request), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            synchronized (this) {
+                queuedRequests.remove(request.key, request);
+            }
+            logger.warn("Recovery of Event[{}], producer[{}] not requested, shutting down", request.eventId, request.producerId);
+        }
+    }
+
+    private void issue(Request request) {
+        synchronized (this) {
+            // from now on messages lost later need another request
+            queuedRequests.remove(request.key, request);
+        }
+
+        EventRecoveryRequestIssuer issuer = requestIssuer;
+        if (issuer == null) {
+            failedRequests.increment();
+            logger.warn("Recovery of Event[{}], producer[{}] not requested, the feed is not connected", request.eventId, request.producerId);
+            return;
+        }
+
+        Long requestId = null;
+        try {
+            Producer producer = producerManager.getProducer(request.producerId);
+            requestId = request.kind == Kind.ODDS
+                    ? issuer.initiateEventOddsMessagesRecovery(producer, request.eventId)
+                    : issuer.initiateEventStatefulMessagesRecovery(producer, request.eventId);
+        } catch (Exception e) {
+            logger.warn("Recovery request of Event[{}], producer[{}] failed: {}", request.eventId, request.producerId, e.getMessage());
+        }
+        if (requestId == null) {
+            retry(request);
+            return;
+        }
+
+        requestedRecoveries.increment();
+        request.requestedAtNanos = System.nanoTime();
+        logger.info("Requested {} recovery of Event[{}], producer[{}], request[{}]", request.kind, request.eventId, request.producerId, requestId);
+        boolean completed;
+        synchronized (this) {
+            completed = earlyCompletions.asMap().remove(requestId) != null;
+            if (!completed) {
+                issuedRequests.put(requestId, request);
+            }
+        }
+        if (completed) {
+            complete(request);
+            return;
+        }
+
+        long issuedRequestId = requestId;
+        try {
+            recoveryExecutor.schedule(() -> onTimeout(issuedRequestId, request), COMPLETION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // shutting down, the completion may still arrive
+        }
+    }
+
+    private void onTimeout(long requestId, Request request) {
+        synchronized (this) {
+            if (!issuedRequests.remove(requestId, request)) {
+                return;
+            }
+        }
+        logger.warn("Recovery request[{}] of Event[{}] not completed in {}ms", requestId, request.eventId, COMPLETION_TIMEOUT_MILLIS);
+        retry(request);
+    }
+
+    private void retry(Request request) {
+        if (request.attempts >= MAX_ATTEMPTS) {
+            failedRequests.increment();
+            logger.error("Recovery of Event[{}], producer[{}] failed after {} attempts, its lost messages are recovered on the next start",
+                    request.eventId, request.producerId, request.attempts);
+            return;
+        }
+
+        request.attempts++;
+        synchronized (this) {
+            Request queued = queuedRequests.get(request.key);
+            if (queued != null) {
+                // a newer request covers this one as well
+                request.callbacks.forEach(queued::addCallback);
+                return;
+            }
+            queuedRequests.put(request.key, request);
+        }
+        schedule(request, RETRY_DELAY_MILLIS);
+    }
+
+    private void complete(Request request) {
+        completedRecoveries.increment();
+        recoveryDuration.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - request.requestedAtNanos));
+        logger.info("{} recovery of Event[{}], producer[{}] completed", request.kind, request.eventId, request.producerId);
+
+        List<Runnable> callbacks;
+        synchronized (this) {
+            callbacks = new ArrayList<>(request.callbacks);
+        }
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                logger.error("Event recovery completion callback failed: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private synchronized long pendingRequests() {
+        return queuedRequests.size() + issuedRequests.size();
+    }
+
+    private static final class Request {
+        private final String key;
+        private final Kind kind;
+        private final int producerId;
+        private final URN eventId;
+        // guarded by the requester
+        private final List<Runnable> callbacks = new ArrayList<>(1);
+        private volatile int attempts = 1;
+        private volatile long requestedAtNanos;
+
+        private Request(String key, Kind kind, int producerId, URN eventId) {
+            this.key = key;
+            this.kind = kind;
+            this.producerId = producerId;
+            this.eventId = eventId;
+        }
+
+        private void addCallback(Runnable callback) {
+            if (callback != null) {
+                callbacks.add(callback);
+            }
+        }
+    }
+}
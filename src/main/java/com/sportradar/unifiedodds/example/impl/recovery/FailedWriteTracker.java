@@ -0,0 +1,158 @@
+package com.sportradar.unifiedodds.example.impl.recovery;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.utils.URN;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The messages lost by failed writes, per event and producer. Their oldest generated timestamp holds the recovery
+ * timestamp back (see {@link RecoveryTimestampTracker}) until the lost data is stored again, either by a later
+ * successful write of the same markets (an odds change supersedes the failed one) or by an event recovery, which
+ * is requested from the feed for every failure.
+ */
+public class FailedWriteTracker {
+    private final EventRecoveryRequester eventRecoveryRequester;
+    private final EventRecoveryRequester.Kind recoveryKind;
+    private final ConcurrentMap<String, Failure> failures = new ConcurrentHashMap<>();
+
+    private final LongAdder coveredFailures;
+    private final LongAdder recoveredFailures;
+
+    /**
+     * @param recoveryKind the event recovery resending the lost messages
+     * @param metricPrefix e.g. core.write, the metrics are reported as [prefix].unrecovered.*
+     */
+    public FailedWriteTracker(EventRecoveryRequester eventRecoveryRequester,
+                              EventRecoveryRequester.Kind recoveryKind,
+                              MetricsRegistry metricsRegistry,
+                              String metricPrefix) {
+        Preconditions.checkNotNull(eventRecoveryRequester);
+        Preconditions.checkNotNull(recoveryKind);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkNotNull(metricPrefix);
+
+        this.eventRecoveryRequester = eventRecoveryRequester;
+        this.recoveryKind = recoveryKind;
+
+        this.coveredFailures = metricsRegistry.counter(metricPrefix + ".unrecovered.covered");
+        this.recoveredFailures = metricsRegistry.counter(metricPrefix + ".unrecovered.recovered");
+        metricsRegistry.gauge(metricPrefix + ".unrecovered.events", failures::size);
+    }
+
+    /**
+     * A failure which only an event recovery can repair, e.g. a lost settlement or suspension
+     */
+    public void onFailed(int producerId, URN eventId, long generatedAt) {
+        Preconditions.checkNotNull(eventId);
+
+        record(producerId, eventId, null, generatedAt);
+    }
+
+    /**
+     * A failure of market writes, repaired by the next successful write of each of the markets as well
+     */
+    public void onFailed(Collection<String> fullMarketKeys, long generatedAt) {
+        Preconditions.checkNotNull(fullMarketKeys);
+
+        Map<String, List<String>> marketsByEvent = new LinkedHashMap<>();
+        for (String fullMarketKey : fullMarketKeys) {
+            String key = key(FullMarketIdBuilder.getProducerId(fullMarketKey), FullMarketIdBuilder.getEventId(fullMarketKey));
+            marketsByEvent.computeIfAbsent(key, k -> new ArrayList<>()).add(fullMarketKey);
+        }
+        marketsByEvent.values().forEach(markets -> record(FullMarketIdBuilder.getProducerId(markets.get(0)),
+                URN.parse(FullMarketIdBuilder.getEventId(markets.get(0))), markets, generatedAt));
+    }
+
+    /**
+     * Invoked after the markets were acknowledged by the storage, cheap while nothing failed
+     */
+    public void onStored(Collection<String> fullMarketKeys) {
+        if (failures.isEmpty()) {
+            return;
+        }
+
+        synchronized (this) {
+            for (String fullMarketKey : fullMarketKeys) {
+                String key = key(FullMarketIdBuilder.getProducerId(fullMarketKey), FullMarketIdBuilder.getEventId(fullMarketKey));
+                Failure failure = failures.get(key);
+                if (failure != null && failure.uncoveredMarkets.remove(fullMarketKey) && failure.isCovered()) {
+                    failures.remove(key);
+                    coveredFailures.increment();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the oldest generated timestamp of a lost message, {@link Long#MAX_VALUE} if nothing is lost
+     */
+    public long oldestFailedGeneratedAt() {
+        long oldest = Long.MAX_VALUE;
+        for (Failure failure : failures.values()) {
+            oldest = Math.min(oldest, failure.oldestGeneratedAt);
+        }
+        return oldest;
+    }
+
+    /**
+     * @param fullMarketKeys the failed markets of the event and producer, null if only a recovery can repair the failure
+     */
+    private void record(int producerId, URN eventId, Collection<String> fullMarketKeys, long generatedAt) {
+        if (generatedAt <= 0) {
+            // updates without a source message (event status) are not part of the recovery timestamp
+            return;
+        }
+
+        String key = key(producerId, eventId.toString());
+        Failure failure;
+        long sequence;
+        synchronized (this) {
+            failure = failures.computeIfAbsent(key, k -> new Failure());
+            failure.oldestGeneratedAt = Math.min(failure.oldestGeneratedAt, generatedAt);
+            if (fullMarketKeys == null) {
+                failure.recoveryOnly = true;
+            } else {
+                failure.uncoveredMarkets.addAll(fullMarketKeys);
+            }
+            sequence = ++failure.sequence;
+        }
+        // a request not issued yet covers this failure as well, then the requests are merged
+        eventRecoveryRequester.request(recoveryKind, producerId, eventId, () -> onRecovered(key, failure, sequence));
+    }
+
+    /**
+     * Only the recovery requested after the latest failure of the event covers all of them
+     */
+    private synchronized void onRecovered(String key, Failure failure, long sequence) {
+        if (failure.sequence == sequence && failures.remove(key, failure)) {
+            recoveredFailures.increment();
+        }
+    }
+
+    private static String key(int producerId, String eventId) {
+        return producerId + "|" + eventId;
+    }
+
+    private static final class Failure {
+        private final Set<String> uncoveredMarkets = new HashSet<>();
+        private volatile long oldestGeneratedAt = Long.MAX_VALUE;
+        private boolean recoveryOnly;
+        private long sequence;
+
+        private boolean isCovered() {
+            return !recoveryOnly && uncoveredMarkets.isEmpty();
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.sportradar.unifiedodds.example.impl.recovery;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Tracks per producer the generated timestamp up to which every message is stored, and persists it (in the storage,
+ * see {@link RedisKeysBuilder#getRecoveryTimestampsKey()}, and in a local file, which also covers the scratch mapped
+ * storage) so a restart requests the recovery from that point instead of a fixed time back.
+ * <p>
+ * The listeners report a message once it is handed to its writer, the writers report the oldest message they have
+ * not stored yet (queued, being written or failed). The recovery timestamp is the newest reported message, held back
+ * below the oldest unstored one, so a crash never skips a message whose write was not acknowledged. This relies on
+ * the SDK dispatching the messages of a producer in order, which it does on the session thread.
+ * <p>
+ * The first recovery after the start is measured per producer as recovery.p[producerId].duration.ms and
+ * recovery.p[producerId].messages.
+ */
+public class RecoveryTimestampTracker {
+    private static final Logger logger = LoggerFactory.getLogger(RecoveryTimestampTracker.class);
+
+    private final StorageBackend storageBackend;
+    private final Path localFile;
+    private final ScheduledExecutorService checkpointExecutor;
+    private final MetricsRegistry metricsRegistry;
+    private final List<LongSupplier> pendingSources;
+    private final long checkpointIntervalMillis;
+    private final long maxRecoveryWindowMillis;
+    private final ConcurrentMap<Integer, ProducerState> producers = new ConcurrentHashMap<>();
+
+    private final Histogram checkpointLatency;
+    private final LongAdder failedCheckpoints;
+
+    /**
+     * @param pendingSources the writers' oldest unstored generated timestamp, {@link Long#MAX_VALUE} if all is stored
+     * @param maxRecoveryWindowMillis the max recovery window of any producer, older stored timestamps are capped to it
+     */
+    public RecoveryTimestampTracker(StorageBackend storageBackend,
+                                    Path localFile,
+                                    ScheduledExecutorService checkpointExecutor,
+                                    MetricsRegistry metricsRegistry,
+                                    List<LongSupplier> pendingSources,
+                                    long checkpointIntervalMillis,
+                                    long maxRecoveryWindowMillis) {
+        Preconditions.checkNotNull(storageBackend);
+        Preconditions.checkNotNull(localFile);
+        Preconditions.checkNotNull(checkpointExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkNotNull(pendingSources);
+        Preconditions.checkArgument(checkpointIntervalMillis > 0);
+        Preconditions.checkArgument(maxRecoveryWindowMillis > 0);
+
+        this.storageBackend = storageBackend;
+        this.localFile = localFile;
+        this.checkpointExecutor = checkpointExecutor;
+        this.metricsRegistry = metricsRegistry;
+        this.pendingSources = ImmutableList.copyOf(pendingSources);
+        this.checkpointIntervalMillis = checkpointIntervalMillis;
+        this.maxRecoveryWindowMillis = maxRecoveryWindowMillis;
+
+        this.checkpointLatency = metricsRegistry.histogram("recovery.checkpoint.latency.us");
+        this.failedCheckpoints = metricsRegistry.counter("recovery.checkpoint.failed");
+    }
+
+    /**
+     * Loads the persisted timestamps, must be invoked before the recovery timestamps are requested
+     */
+    public void start() {
+        loadStored();
+        loadLocal();
+        checkpointExecutor.scheduleWithFixedDelay(this::checkpoint, checkpointIntervalMillis, checkpointIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private void loadStored() {
+        try {
+            String key = RedisKeysBuilder.getRecoveryTimestampsKey();
+            Map<String, byte[]> stored = storageBackend.readHashes(Collections.singletonList(key)).get(key);
+            if (stored == null) {
+                logger.info("No recovery timestamps found in the storage");
+                return;
+            }
+            stored.forEach((producerId, value) -> onLoaded(producerId, new String(value, StandardCharsets.UTF_8)));
+            logger.info("Loaded the recovery timestamps of {} producers from the storage", stored.size());
+        } catch (Exception e) {
+            logger.error("Failed to load the recovery timestamps from the storage: " + e.getMessage(), e);
+        }
+    }
+
+    private void loadLocal() {
+        if (!Files.exists(localFile)) {
+            logger.info("No recovery timestamps found in {}", localFile);
+            return;
+        }
+        try (InputStream in = Files.newInputStream(localFile)) {
+            Properties properties = new Properties();
+            properties.load(in);
+            properties.stringPropertyNames().forEach(producerId -> onLoaded(producerId, properties.getProperty(producerId)));
+            logger.info("Loaded the recovery timestamps of {} producers from {}", properties.size(), localFile);
+        } catch (Exception e) {
+            logger.error("Failed to load the recovery timestamps from " + localFile + ": " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Both copies were safe when written and the timestamps only advance, so the newer one wins
+     */
+    private void onLoaded(String producerId, String value) {
+        long timestamp = Long.parseLong(value);
+        ProducerState state = state(Integer.parseInt(producerId));
+        state.submitted.accumulateAndGet(timestamp, Math::max);
+        state.persisted = Math.max(state.persisted, timestamp);
+    }
+
+    /**
+     * @param fallback the timestamp to use if nothing was persisted for the producer
+     * @param producerRecoveryWindowMillis how far back the feed serves the recoveries of the producer, the stored
+     *                                     timestamp is capped to it (and to the max recovery window)
+     * @return the timestamp the recovery of the producer should start from
+     */
+    public long getRecoveryTimestamp(int producerId, long fallback, long producerRecoveryWindowMillis) {
+        ProducerState state = producers.get(producerId);
+        if (state == null || state.persisted == 0) {
+            logger.info("Producer[{}] has no persisted recovery timestamp, using {}", producerId, fallback);
+            return fallback;
+        }
+
+        long recoveryWindowMillis = producerRecoveryWindowMillis > 0
+                ? Math.min(producerRecoveryWindowMillis, maxRecoveryWindowMillis)
+                : maxRecoveryWindowMillis;
+        long oldestAllowed = System.currentTimeMillis() - recoveryWindowMillis;
+        if (state.persisted < oldestAllowed) {
+            logger.warn("Producer[{}] recovery timestamp {} is out of its {}min recovery window, clamped to {}, older messages are missed",
+                    producerId, state.persisted, TimeUnit.MILLISECONDS.toMinutes(recoveryWindowMillis), oldestAllowed);
+            return oldestAllowed;
+        }
+        return state.persisted;
+    }
+
+    public void onRecoveryRequested(int producerId, long fromTimestamp) {
+        ProducerState state = state(producerId);
+        state.recoveryFrom = fromTimestamp;
+        state.recoveryStartMessages = state.messages.sum();
+        state.recoveryStartNanos = System.nanoTime();
+    }
+
+    public void onRecoveryCompleted(int producerId) {
+        ProducerState state = producers.get(producerId);
+        if (state == null || state.recoveryStartNanos == 0 || state.recoveryDurationMillis >= 0) {
+            return;
+        }
+
+        state.recoveryMessages = state.messages.sum() - state.recoveryStartMessages;
+        state.recoveryDurationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - state.recoveryStartNanos);
+        logger.info("Producer[{}] recovery from {} ({}s back) completed in {}ms, {} messages", producerId, state.recoveryFrom,
+                TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - state.recoveryFrom), state.recoveryDurationMillis,
+                state.recoveryMessages);
+    }
+
+    /**
+     * @return true once every producer whose recovery was requested completed its first recovery
+     */
+    public boolean isRecoveryCompleted() {
+        boolean requested = false;
+        for (ProducerState state : producers.values()) {
+            if (state.recoveryStartNanos == 0) {
+                continue;
+            }
+            if (state.recoveryDurationMillis < 0) {
+                return false;
+            }
+            requested = true;
+        }
+        return requested;
+    }
+
+    /**
+     * Invoked by the listeners after the message was handed to its writer
+     */
+    public void onMessageSubmitted(int producerId, long generatedAt) {
+        ProducerState state = state(producerId);
+        state.messages.increment();
+        if (generatedAt > 0) {
+            state.submitted.accumulateAndGet(generatedAt, Math::max);
+        }
+    }
+
+    /**
+     * Persists the timestamps which advanced since the last checkpoint, runs periodically and on shutdown. The runs
+     * are serialized, so the shutdown call waits for a scheduled one instead of racing it on the local file, and the
+     * persisted timestamps only move forward.
+     */
+    public synchronized void checkpoint() {
+        long start = System.nanoTime();
+        try {
+            // the submitted timestamps are read first, every message they cover is either stored or seen as pending
+            Map<ProducerState, Long> submitted = new HashMap<>();
+            producers.values().forEach(state -> submitted.put(state, state.submitted.get()));
+            long oldestPending = Long.MAX_VALUE;
+            for (LongSupplier source : pendingSources) {
+                oldestPending = Math.min(oldestPending, source.getAsLong());
+            }
+
+            Map<String, String> fields = new HashMap<>();
+            Map<ProducerState, Long> advanced = new HashMap<>();
+            for (Map.Entry<ProducerState, Long> entry : submitted.entrySet()) {
+                long timestamp = Math.min(entry.getValue(), oldestPending - 1);
+                if (timestamp > entry.getKey().persisted) {
+                    fields.put(String.valueOf(entry.getKey().producerId), String.valueOf(timestamp));
+                    advanced.put(entry.getKey(), timestamp);
+                }
+            }
+            if (fields.isEmpty()) {
+                return;
+            }
+
+            try (StorageBatch batch = storageBackend.newBatch("recovery")) {
+                batch.hashPut(RedisKeysBuilder.getRecoveryTimestampsKey(), fields);
+                batch.flush();
+            }
+            advanced.forEach((state, timestamp) -> state.persisted = timestamp);
+            writeLocal();
+        } catch (Exception e) {
+            failedCheckpoints.increment();
+            logger.error("Failed to persist the recovery timestamps: " + e.getMessage(), e);
+        } finally {
+            checkpointLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        }
+    }
+
+    /**
+     * Replaces the file atomically, so a crash leaves either the previous or the new timestamps
+     */
+    private void writeLocal() throws IOException {
+        Properties properties = new Properties();
+        producers.values().forEach(state -> {
+            if (state.persisted > 0) {
+                properties.setProperty(String.valueOf(state.producerId), String.valueOf(state.persisted));
+            }
+        });
+        Path tmpFile = localFile.resolveSibling(localFile.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmpFile)) {
+            properties.store(out, "producerId=the generated timestamp up to which all the messages are stored");
+        }
+        Files.move(tmpFile, localFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * @return the persisted recovery timestamp of the producer, 0 if none
+     */
+    public long getPersistedTimestamp(int producerId) {
+        ProducerState state = producers.get(producerId);
+        return state == null ? 0 : state.persisted;
+    }
+
+    private ProducerState state(int producerId) {
+        return producers.computeIfAbsent(producerId, ProducerState::new);
+    }
+
+    private final class ProducerState {
+        private final int producerId;
+        private final AtomicLong submitted = new AtomicLong();
+        private final LongAdder messages = new LongAdder();
+        private volatile long persisted;
+        private volatile long recoveryFrom;
+        private volatile long recoveryStartMessages;
+        private volatile long recoveryStartNanos;
+        private volatile long recoveryMessages = -1;
+        private volatile long recoveryDurationMillis = -1;
+
+        private ProducerState(int producerId) {
+            this.producerId = producerId;
+
+            String prefix = "recovery.p" + producerId;
+            metricsRegistry.gauge(prefix + ".lag.ms", () -> persisted == 0 ? 0 : System.currentTimeMillis() - persisted);
+            metricsRegistry.gauge(prefix + ".duration.ms", () -> recoveryDurationMillis);
+            metricsRegistry.gauge(prefix + ".messages", () -> recoveryMessages);
+        }
+    }
+}
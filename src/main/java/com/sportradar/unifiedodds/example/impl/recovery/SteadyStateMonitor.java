@@ -0,0 +1,91 @@
+package com.sportradar.unifiedodds.example.impl.recovery;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.sportradar.unifiedodds.example.impl.meta.MetadataWriter;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time from the start until the feed processing is in steady state: the first recovery of every
+ * producer completed and the metadata queues drained. Reported as startup.steady.ms together with the number of
+ * metadata tasks it took (startup.meta.tasks), which shows how much work a warm start saved.
+ */
+public class SteadyStateMonitor {
+    private static final Logger logger = LoggerFactory.getLogger(SteadyStateMonitor.class);
+
+    private static final long CHECK_INTERVAL_MILLIS = 100;
+
+    private final RecoveryTimestampTracker recoveryTimestampTracker;
+    private final List<MetadataWriter> metadataWriters;
+    private final ScheduledExecutorService monitorExecutor;
+    private final long startedAtNanos;
+    private volatile long steadyStateMillis = -1;
+    private volatile long metadataTasks = -1;
+    private ScheduledFuture<?> check;
+
+    /**
+     * @param startedAtNanos the {@link System#nanoTime()} the process started at
+     */
+    public SteadyStateMonitor(RecoveryTimestampTracker recoveryTimestampTracker,
+                              List<MetadataWriter> metadataWriters,
+                              ScheduledExecutorService monitorExecutor,
+                              MetricsRegistry metricsRegistry,
+                              long startedAtNanos) {
+        Preconditions.checkNotNull(recoveryTimestampTracker);
+        Preconditions.checkNotNull(metadataWriters);
+        Preconditions.checkNotNull(monitorExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+
+        this.recoveryTimestampTracker = recoveryTimestampTracker;
+        this.metadataWriters = ImmutableList.copyOf(metadataWriters);
+        this.monitorExecutor = monitorExecutor;
+        this.startedAtNanos = startedAtNanos;
+
+        metricsRegistry.gauge("startup.steady.ms", () -> steadyStateMillis);
+        metricsRegistry.gauge("startup.meta.tasks", () -> metadataTasks);
+    }
+
+    public synchronized void start() {
+        check = monitorExecutor.scheduleWithFixedDelay(this::checkSteadyState, CHECK_INTERVAL_MILLIS, CHECK_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @return the time from the start to the steady state, -1 until it is reached
+     */
+    public long getSteadyStateMillis() {
+        return steadyStateMillis;
+    }
+
+    /**
+     * @return the number of metadata tasks submitted until the steady state, -1 until it is reached
+     */
+    public long getMetadataTasks() {
+        return metadataTasks;
+    }
+
+    private synchronized void checkSteadyState() {
+        if (steadyStateMillis >= 0 || !recoveryTimestampTracker.isRecoveryCompleted()) {
+            return;
+        }
+        long tasks = 0;
+        for (MetadataWriter metadataWriter : metadataWriters) {
+            if (metadataWriter.getPendingTasks() > 0) {
+                return;
+            }
+            tasks += metadataWriter.getSubmittedTasks();
+        }
+
+        metadataTasks = tasks;
+        steadyStateMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startedAtNanos);
+        logger.info("Steady state reached {}ms after the start, {} metadata tasks", steadyStateMillis, metadataTasks);
+        check.cancel(false);
+    }
+}
@@ -0,0 +1,139 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.BinaryJedisCluster;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.util.JedisClusterCRC16;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Redis cluster, one shard per master node so the writers pipeline per node instead of per slot.
+ * The {@link JedisCluster} discovers the nodes and owns the pools, the slot to node mapping is read with
+ * CLUSTER SLOTS and refreshed whenever a node moved a slot (MOVED), refused a write after a failover (READONLY) or
+ * could not be reached. Commands redirected with ASK (a slot being migrated) are sent to the target node directly.
+ */
+public class ClusterRedisShards implements RedisShards {
+    private static final Logger logger = LoggerFactory.getLogger(ClusterRedisShards.class);
+
+    // the writers of a batch all report the same failover, the topology is read once for all of them
+    private static final long MIN_REFRESH_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final RoutingJedisCluster jedisCluster;
+    private volatile Topology topology;
+    private long lastRefreshNanos;
+
+    public ClusterRedisShards(RoutingJedisCluster jedisCluster) {
+        Preconditions.checkNotNull(jedisCluster);
+
+        this.jedisCluster = jedisCluster;
+        this.topology = loadTopology();
+    }
+
+    @Override
+    public int getShardCount() {
+        return topology.pools.size();
+    }
+
+    @Override
+    public int getShard(String key) {
+        return topology.slotOwners[JedisClusterCRC16.getSlot(key)];
+    }
+
+    @Override
+    public Jedis getResource(int shard) {
+        return topology.pools.get(shard).getResource();
+    }
+
+    @Override
+    public Jedis getNodeResource(HostAndPort node) {
+        return jedisCluster.getConnectionFromNode(node);
+    }
+
+    @Override
+    public synchronized void refresh(String reason) {
+        if (System.nanoTime() - lastRefreshNanos < MIN_REFRESH_INTERVAL_NANOS) {
+            return;
+        }
+        lastRefreshNanos = System.nanoTime();
+
+        logger.warn("Refreshing the cluster topology, {}", reason);
+        try {
+            // picks up promoted replicas and new nodes, so the slots can be mapped to pools
+            jedisCluster.renewSlotCache();
+            topology = loadTopology();
+        } catch (Exception e) {
+            logger.error("Failed to refresh the cluster topology: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        jedisCluster.close();
+    }
+
+    @SuppressWarnings("unchecked")
+    private Topology loadTopology() {
+        Map<String, JedisPool> clusterNodes = jedisCluster.getClusterNodes();
+        List<Object> slots = null;
+        for (JedisPool pool : clusterNodes.values()) {
+            try (Jedis client = pool.getResource()) {
+                slots = client.clusterSlots();
+                break;
+            } catch (Exception e) {
+                logger.warn("Failed to read the cluster slots from a node: {}", e.getMessage());
+            }
+        }
+        if (slots == null) {
+            throw new IllegalStateException("Cluster slots could not be read from any node");
+        }
+
+        List<JedisPool> pools = new ArrayList<>();
+        Map<String, Integer> shardsByNode = new HashMap<>();
+        int[] slotOwners = new int[BinaryJedisCluster.HASHSLOTS];
+        for (Object slotRange : slots) {
+            List<Object> range = (List<Object>) slotRange;
+            int start = ((Long) range.get(0)).intValue();
+            int end = ((Long) range.get(1)).intValue();
+            List<Object> master = (List<Object>) range.get(2);
+            String node = SafeEncoder.encode((byte[]) master.get(0)) + ":" + master.get(1);
+
+            Integer shard = shardsByNode.get(node);
+            if (shard == null) {
+                JedisPool pool = clusterNodes.get(node);
+                if (pool == null) {
+                    throw new IllegalStateException("No pool for cluster node " + node);
+                }
+                shard = pools.size();
+                pools.add(pool);
+                shardsByNode.put(node, shard);
+            }
+            for (int slot = start; slot <= end; slot++) {
+                slotOwners[slot] = shard;
+            }
+        }
+
+        logger.info("Cluster topology loaded, {} masters", pools.size());
+        return new Topology(pools, slotOwners);
+    }
+
+    private static final class Topology {
+        private final List<JedisPool> pools;
+        private final int[] slotOwners;
+
+        private Topology(List<JedisPool> pools, int[] slotOwners) {
+            this.pools = pools;
+            this.slotOwners = slotOwners;
+        }
+    }
+}
@@ -0,0 +1,96 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import com.google.common.base.Preconditions;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Client-side sharding over independent redis servers with a consistent-hash ring, adding or removing a server
+ * only moves about 1/n of the keys. Keys are placed by their hash tag, same as in redis cluster.
+ */
+public class ConsistentHashRedisShards implements RedisShards {
+    private static final HashFunction HASH_FUNCTION = Hashing.murmur3_32();
+
+    private final List<JedisPool> pools;
+    private final int[] ringPoints;
+    private final int[] ringOwners;
+
+    /**
+     * @param virtualNodesPerShard the points each shard gets on the ring, more points even out the key distribution
+     */
+    public ConsistentHashRedisShards(List<JedisPool> pools, int virtualNodesPerShard) {
+        Preconditions.checkNotNull(pools);
+        Preconditions.checkArgument(!pools.isEmpty());
+        Preconditions.checkArgument(virtualNodesPerShard > 0);
+
+        this.pools = new ArrayList<>(pools);
+
+        long[] points = new long[pools.size() * virtualNodesPerShard];
+        int index = 0;
+        for (int shard = 0; shard < pools.size(); shard++) {
+            for (int node = 0; node < virtualNodesPerShard; node++) {
+                int point = hash("shard-" + shard + "-vn-" + node);
+                // packs point and owner into one long, so sorting keeps them together
+                points[index++] = ((long) point << 32) | shard;
+            }
+        }
+        Arrays.sort(points);
+
+        this.ringPoints = new int[points.length];
+        this.ringOwners = new int[points.length];
+        for (int i = 0; i < points.length; i++) {
+            ringPoints[i] = (int) (points[i] >> 32);
+            ringOwners[i] = (int) points[i];
+        }
+    }
+
+    @Override
+    public int getShardCount() {
+        return pools.size();
+    }
+
+    @Override
+    public int getShard(String key) {
+        int point = hash(hashTag(key));
+        int index = Arrays.binarySearch(ringPoints, point);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return ringOwners[index == ringPoints.length ? 0 : index];
+    }
+
+    @Override
+    public Jedis getResource(int shard) {
+        return pools.get(shard).getResource();
+    }
+
+    @Override
+    public void close() {
+        pools.forEach(JedisPool::destroy);
+    }
+
+    /**
+     * Same rules as redis cluster: the content of the first {...} if not empty, the whole key otherwise
+     */
+    static String hashTag(String key) {
+        int open = key.indexOf('{');
+        if (open >= 0) {
+            int close = key.indexOf('}', open + 1);
+            if (close > open + 1) {
+                return key.substring(open + 1, close);
+            }
+        }
+        return key;
+    }
+
+    private static int hash(String value) {
+        return HASH_FUNCTION.hashString(value, StandardCharsets.UTF_8).asInt();
+    }
+}
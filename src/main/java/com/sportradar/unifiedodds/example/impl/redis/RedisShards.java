@@ -0,0 +1,38 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+
+/**
+ * The redis nodes the writers target. Keys are routed by their hash tag ({...}), so all keys of an event end up
+ * on the same shard and can be written with a single pipeline.
+ */
+public interface RedisShards extends AutoCloseable {
+
+    int getShardCount();
+
+    /**
+     * @return the index of the shard owning the key, in the range [0, {@link #getShardCount()})
+     */
+    int getShard(String key);
+
+    Jedis getResource(int shard);
+
+    /**
+     * Invoked when a node replied with MOVED, refused a write (READONLY) or could not be reached, so the routing
+     * can be refreshed
+     */
+    default void refresh(String reason) {
+        // static topologies have nothing to refresh
+    }
+
+    /**
+     * @return a connection to the node a command was redirected to with ASK
+     */
+    default Jedis getNodeResource(HostAndPort node) {
+        throw new UnsupportedOperationException("Redirected to " + node + ", only a redis cluster redirects");
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,37 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import org.apache.commons.pool2.impl.GenericObjectPoolConfig;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisCluster;
+
+import java.util.Set;
+
+/**
+ * {@link JedisCluster} exposing the node discovery of its connection handler, so the {@link ClusterRedisShards}
+ * pipelines can follow a failover or a redirect to a node the client did not know yet
+ */
+public class RoutingJedisCluster extends JedisCluster {
+
+    public RoutingJedisCluster(Set<HostAndPort> nodes,
+                               int connectionTimeout,
+                               int soTimeout,
+                               int maxAttempts,
+                               GenericObjectPoolConfig poolConfig) {
+        super(nodes, connectionTimeout, soTimeout, maxAttempts, poolConfig);
+    }
+
+    /**
+     * Rediscovers the cluster nodes and slots, pools are created for nodes which joined
+     */
+    public void renewSlotCache() {
+        connectionHandler.renewSlotCache();
+    }
+
+    /**
+     * @return a connection to the node, its pool is created if the node is not known yet
+     */
+    public Jedis getConnectionFromNode(HostAndPort node) {
+        return connectionHandler.getConnectionFromNode(node);
+    }
+}
@@ -0,0 +1,257 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.commands.ProtocolCommand;
+import redis.clients.jedis.exceptions.JedisAskDataException;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.exceptions.JedisDataException;
+import redis.clients.jedis.exceptions.JedisMovedDataException;
+import redis.clients.jedis.exceptions.JedisRedirectionException;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One pipeline per shard for a single write batch, a connection is borrowed only for the shards the batch touches.
+ * The commands are kept with their encoded arguments until the batch is synced, so redirected commands can be sent
+ * again: ASK is answered by the target node with ASKING in front, MOVED refreshes the routing and is retried once.
+ * Must be closed to return the connections.
+ */
+public final class ShardedPipelines implements AutoCloseable {
+    private final RedisShards shards;
+    private final Histogram poolWait;
+    private Jedis[] clients;
+    private Pipeline[] pipelines;
+    private List<List<Reply>> queued;
+
+    /**
+     * @param poolWait records the time spent waiting for pooled connections, in microseconds
+     */
+    public ShardedPipelines(RedisShards shards, Histogram poolWait) {
+        Preconditions.checkNotNull(shards);
+        Preconditions.checkNotNull(poolWait);
+
+        this.shards = shards;
+        this.poolWait = poolWait;
+        reset();
+    }
+
+    /**
+     * Queues the command on the pipeline of the key's shard, the arguments must not be changed until the batch is synced
+     *
+     * @param args the command arguments, the key first
+     * @return the reply, available once the batch is synced
+     */
+    public Reply add(String key, ProtocolCommand command, byte[]... args) {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(command);
+
+        Reply reply = new Reply(key, command, args);
+        queue(reply);
+        return reply;
+    }
+
+    /**
+     * Flushes the pipelines shard by shard. Any error reply (e.g. OOM, WRONGTYPE, READONLY) or connection failure
+     * fails the batch once all the shards were synced, so callers never treat a partially applied batch as
+     * acknowledged. A failover (READONLY, connection failure) refreshes the routing.
+     *
+     * @throws JedisDataException the first error reply, the number of failed commands is part of the message
+     * @throws JedisConnectionException if a shard could not be reached
+     */
+    public void sync() {
+        List<Reply> moved = syncShards();
+        if (moved.isEmpty()) {
+            return;
+        }
+
+        // the slot moved to another node for good, the commands are routed again with the refreshed topology
+        shards.refresh("MOVED " + moved.get(0).redirect.getSlot() + " " + moved.get(0).redirect.getTargetNode());
+        close();
+        reset();
+        moved.forEach(this::queue);
+        List<Reply> movedAgain = syncShards();
+        if (!movedAgain.isEmpty()) {
+            shards.refresh("MOVED " + movedAgain.get(0).redirect.getSlot() + " " + movedAgain.get(0).redirect.getTargetNode());
+            throw new JedisDataException(movedAgain.size() + " commands of the batch still redirected after a retry",
+                    movedAgain.get(0).redirect);
+        }
+    }
+
+    /**
+     * Syncs the commands queued since the previous sync, a batch may be flushed several times
+     *
+     * @return the commands answered with MOVED, they were not applied
+     */
+    private List<Reply> syncShards() {
+        List<Reply> moved = new ArrayList<>();
+        Map<HostAndPort, List<Reply>> asked = new LinkedHashMap<>();
+        RuntimeException firstError = null;
+        int failedCommands = 0;
+        boolean failover = false;
+        for (int shard = 0; shard < pipelines.length; shard++) {
+            List<Reply> replies = queued.get(shard);
+            if (pipelines[shard] == null || replies.isEmpty()) {
+                continue;
+            }
+            List<Object> responses;
+            try {
+                responses = pipelines[shard].syncAndReturnAll();
+            } catch (JedisConnectionException e) {
+                failedCommands += replies.size();
+                firstError = firstError == null ? e : firstError;
+                failover = true;
+                // the connection is broken, a later flush of the batch borrows a new one
+                closeShard(shard);
+                replies.clear();
+                continue;
+            }
+
+            for (int i = 0; i < responses.size(); i++) {
+                Object response = responses.get(i);
+                if (response instanceof JedisAskDataException) {
+                    // the slot is being migrated, only this command is sent to the target node
+                    Reply reply = replies.get(i);
+                    reply.redirect = (JedisAskDataException) response;
+                    asked.computeIfAbsent(reply.redirect.getTargetNode(), node -> new ArrayList<>()).add(reply);
+                } else if (response instanceof JedisMovedDataException) {
+                    Reply reply = replies.get(i);
+                    reply.redirect = (JedisMovedDataException) response;
+                    moved.add(reply);
+                } else if (response instanceof JedisDataException) {
+                    failedCommands++;
+                    firstError = firstError == null ? (JedisDataException) response : firstError;
+                    failover |= isReadOnly((JedisDataException) response);
+                }
+            }
+            // the responses of the next sync start after these commands
+            replies.clear();
+        }
+
+        for (Map.Entry<HostAndPort, List<Reply>> entry : asked.entrySet()) {
+            try {
+                syncAsked(entry.getKey(), entry.getValue());
+            } catch (JedisConnectionException e) {
+                failedCommands += entry.getValue().size();
+                firstError = firstError == null ? e : firstError;
+            } catch (JedisDataException e) {
+                failedCommands++;
+                firstError = firstError == null ? e : firstError;
+            }
+        }
+
+        if (firstError == null) {
+            return moved;
+        }
+        if (failover) {
+            // a promoted replica is not announced with a redirect, the old master refuses writes or is unreachable
+            shards.refresh("failover: " + firstError.getMessage());
+        }
+        if (firstError instanceof JedisConnectionException) {
+            throw new JedisConnectionException(failedCommands + " commands of the batch failed, first error: " + firstError.getMessage(), firstError);
+        }
+        throw new JedisDataException(failedCommands + " commands of the batch failed, first error: " + firstError.getMessage(), firstError);
+    }
+
+    private void syncAsked(HostAndPort node, List<Reply> replies) {
+        try (Jedis client = shards.getNodeResource(node)) {
+            Pipeline pipeline = client.pipelined();
+            for (Reply reply : replies) {
+                pipeline.sendCommand(Protocol.Command.ASKING, new byte[0][]);
+                reply.response = pipeline.sendCommand(reply.command, reply.args);
+            }
+            List<Object> responses = pipeline.syncAndReturnAll();
+            for (Object response : responses) {
+                if (response instanceof JedisDataException) {
+                    throw (JedisDataException) response;
+                }
+            }
+        }
+    }
+
+    private void queue(Reply reply) {
+        int shard = shards.getShard(reply.key);
+        if (shard >= pipelines.length) {
+            throw new IllegalStateException("Shard topology changed during the write");
+        }
+
+        Pipeline pipeline = pipelines[shard];
+        if (pipeline == null) {
+            long borrowStart = System.nanoTime();
+            try {
+                clients[shard] = shards.getResource(shard);
+            } catch (JedisConnectionException e) {
+                shards.refresh("unreachable shard: " + e.getMessage());
+                throw e;
+            }
+            poolWait.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - borrowStart));
+            pipeline = clients[shard].pipelined();
+            pipelines[shard] = pipeline;
+        }
+        reply.redirect = null;
+        reply.response = pipeline.sendCommand(reply.command, reply.args);
+        queued.get(shard).add(reply);
+    }
+
+    private void reset() {
+        int shardCount = shards.getShardCount();
+        this.clients = new Jedis[shardCount];
+        this.pipelines = new Pipeline[shardCount];
+        this.queued = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            queued.add(new ArrayList<>());
+        }
+    }
+
+    private static boolean isReadOnly(JedisDataException e) {
+        return e.getMessage() != null && e.getMessage().startsWith("READONLY");
+    }
+
+    private void closeShard(int shard) {
+        if (clients[shard] != null) {
+            clients[shard].close();
+            clients[shard] = null;
+            pipelines[shard] = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        for (int i = 0; i < clients.length; i++) {
+            closeShard(i);
+        }
+    }
+
+    /**
+     * The reply of a queued command, follows the command when it is sent again after a redirect
+     */
+    public static final class Reply {
+        private final String key;
+        private final ProtocolCommand command;
+        private final byte[][] args;
+        private Response<Object> response;
+        private JedisRedirectionException redirect;
+
+        private Reply(String key, ProtocolCommand command, byte[][] args) {
+            this.key = key;
+            this.command = command;
+            this.args = args;
+        }
+
+        /**
+         * @return the raw reply, e.g. a list of byte arrays for HGETALL
+         */
+        public Object get() {
+            return response.get();
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import com.google.common.base.Preconditions;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+
+/**
+ * A single redis server, all keys map to the one pool
+ */
+public class SingleRedisShards implements RedisShards {
+    private final JedisPool jedisPool;
+
+    public SingleRedisShards(JedisPool jedisPool) {
+        Preconditions.checkNotNull(jedisPool);
+
+        this.jedisPool = jedisPool;
+    }
+
+    @Override
+    public int getShardCount() {
+        return 1;
+    }
+
+    @Override
+    public int getShard(String key) {
+        return 0;
+    }
+
+    @Override
+    public Jedis getResource(int shard) {
+        return jedisPool.getResource();
+    }
+
+    @Override
+    public void close() {
+        jedisPool.destroy();
+    }
+}
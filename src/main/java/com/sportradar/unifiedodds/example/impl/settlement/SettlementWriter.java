@@ -0,0 +1,398 @@
+package com.sportradar.unifiedodds.example.impl.settlement;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics.MessageType;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.recovery.FailedWriteTracker;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBackend;
+import com.sportradar.unifiedodds.example.impl.storage.StorageBatch;
+import com.sportradar.unifiedodds.sdk.oddsentities.Market;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithSettlement;
+import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeSettlement;
+import com.sportradar.unifiedodds.sdk.oddsentities.VoidFactor;
+import com.sportradar.utils.URN;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persists bet settlements, bet cancels and their rollbacks, see {@link RedisKeysBuilder#getMarketSettlementKey} and
+ * {@link RedisKeysBuilder#getMarketCancelKey} for the layout.
+ * <p>
+ * Messages are mapped on the calling thread and written by a single writer thread in message order, the writes of
+ * consecutive messages are pipelined together. Every write is idempotent (HSET of the same values, HDEL, DEL), so
+ * recovery replays cost only the round trips and a failed group is simply written again.
+ */
+public class SettlementWriter {
+    private static final Logger logger = LoggerFactory.getLogger(SettlementWriter.class);
+
+    private static final int MAX_DRAIN_SIZE = 256;
+    private static final int MAX_ATTEMPTS = 3;
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    private final StorageBackend storageBackend;
+    private final ExecutorService writerExecutor;
+    private final FeedMetrics feedMetrics;
+    private final FailedWriteTracker failedWriteTracker;
+    private final int settlementTtlSeconds;
+    private final int maxCommandsPerFlush;
+    private final BlockingQueue<PendingMessage> pendingMessages;
+    // queued or being written, removed once stored or failed
+    private final Set<PendingMessage> unwrittenMessages = ConcurrentHashMap.newKeySet();
+
+    private final Histogram flushCommands;
+    private final Histogram flushLatency;
+    private final Histogram writeLatency;
+    private final LongAdder writtenMarkets;
+    private final LongAdder blockedEnqueues;
+    private final LongAdder retriedWrites;
+    private final LongAdder failedWrites;
+
+    /**
+     * @param failedWriteTracker holds the messages lost by failed writes until their event is recovered
+     * @param settlementTtlSeconds the settlement and cancel keys expire after this time without a change
+     * @param maxCommandsPerFlush the max number of writes pipelined into a single round trip
+     * @param maxPendingMessages the queue capacity, settlements are never dropped so the caller blocks when it is full
+     */
+    public SettlementWriter(StorageBackend storageBackend,
+                            ExecutorService writerExecutor,
+                            MetricsRegistry metricsRegistry,
+                            FeedMetrics feedMetrics,
+                            FailedWriteTracker failedWriteTracker,
+                            int settlementTtlSeconds,
+                            int maxCommandsPerFlush,
+                            int maxPendingMessages) {
+        Preconditions.checkNotNull(storageBackend);
+        Preconditions.checkNotNull(writerExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkNotNull(feedMetrics);
+        Preconditions.checkNotNull(failedWriteTracker);
+        Preconditions.checkArgument(settlementTtlSeconds > 0);
+        Preconditions.checkArgument(maxCommandsPerFlush > 0);
+        Preconditions.checkArgument(maxPendingMessages > 0);
+
+        this.storageBackend = storageBackend;
+        this.writerExecutor = writerExecutor;
+        this.feedMetrics = feedMetrics;
+        this.failedWriteTracker = failedWriteTracker;
+        this.settlementTtlSeconds = settlementTtlSeconds;
+        this.maxCommandsPerFlush = maxCommandsPerFlush;
+        this.pendingMessages = new LinkedBlockingQueue<>(maxPendingMessages);
+
+        this.flushCommands = metricsRegistry.histogram("settlement.flush.commands");
+        this.flushLatency = metricsRegistry.histogram("settlement.flush.latency.us");
+        this.writeLatency = metricsRegistry.histogram("settlement.write.latency.us");
+        this.writtenMarkets = metricsRegistry.counter("settlement.markets.written");
+        this.blockedEnqueues = metricsRegistry.counter("settlement.queue.blocked");
+        this.retriedWrites = metricsRegistry.counter("settlement.write.retried");
+        this.failedWrites = metricsRegistry.counter("settlement.write.failed");
+        metricsRegistry.gauge("settlement.queue.depth", pendingMessages::size);
+    }
+
+    public void start() {
+        writerExecutor.execute(this::writeLoop);
+    }
+
+    public void settle(int producerId, URN eventId, List<MarketWithSettlement> markets, long generatedAt) {
+        Preconditions.checkNotNull(eventId);
+        if (markets == null || markets.isEmpty()) {
+            return;
+        }
+
+        String event = eventId.toString();
+        List<Write> writes = new ArrayList<>(markets.size());
+        for (MarketWithSettlement market : markets) {
+            List<OutcomeSettlement> outcomes = market.getOutcomeSettlements();
+            if (outcomes == null || outcomes.isEmpty()) {
+                continue;
+            }
+            Map<String, String> results = new HashMap<>(outcomes.size() * 2);
+            for (OutcomeSettlement outcome : outcomes) {
+                results.put(outcome.getId(), encodeResult(outcome));
+            }
+            writes.add(Write.hashPut(RedisKeysBuilder.getMarketSettlementKey(event, marketKey(producerId, event, market)), results));
+        }
+        enqueue(new PendingMessage(MessageType.BET_SETTLEMENT, producerId, eventId, generatedAt, writes));
+    }
+
+    public void rollbackSettlement(int producerId, URN eventId, List<? extends Market> markets, long generatedAt) {
+        Preconditions.checkNotNull(eventId);
+        if (markets == null || markets.isEmpty()) {
+            return;
+        }
+
+        String event = eventId.toString();
+        List<Write> writes = new ArrayList<>(markets.size());
+        for (Market market : markets) {
+            writes.add(Write.delete(RedisKeysBuilder.getMarketSettlementKey(event, marketKey(producerId, event, market))));
+        }
+        enqueue(new PendingMessage(MessageType.ROLLBACK_BET_SETTLEMENT, producerId, eventId, generatedAt, writes));
+    }
+
+    /**
+     * @param startTime the start of the cancelled range in millis, null if open
+     * @param endTime the end of the cancelled range in millis, null if open
+     */
+    public void cancel(int producerId, URN eventId, List<? extends Market> markets, Long startTime, Long endTime, String supersededBy,
+                       long generatedAt) {
+        Preconditions.checkNotNull(eventId);
+        if (markets == null || markets.isEmpty()) {
+            return;
+        }
+
+        String event = eventId.toString();
+        Map<String, String> range = Collections.singletonMap(encodeRange(startTime, endTime), supersededBy == null ? "" : supersededBy);
+        List<Write> writes = new ArrayList<>(markets.size());
+        for (Market market : markets) {
+            writes.add(Write.hashPut(RedisKeysBuilder.getMarketCancelKey(event, marketKey(producerId, event, market)), range));
+        }
+        enqueue(new PendingMessage(MessageType.BET_CANCEL, producerId, eventId, generatedAt, writes));
+    }
+
+    public void rollbackCancel(int producerId, URN eventId, List<? extends Market> markets, Long startTime, Long endTime, long generatedAt) {
+        Preconditions.checkNotNull(eventId);
+        if (markets == null || markets.isEmpty()) {
+            return;
+        }
+
+        String event = eventId.toString();
+        List<String> range = Collections.singletonList(encodeRange(startTime, endTime));
+        List<Write> writes = new ArrayList<>(markets.size());
+        for (Market market : markets) {
+            writes.add(Write.hashDelete(RedisKeysBuilder.getMarketCancelKey(event, marketKey(producerId, event, market)), range));
+        }
+        enqueue(new PendingMessage(MessageType.ROLLBACK_BET_CANCEL, producerId, eventId, generatedAt, writes));
+    }
+
+    /**
+     * @return the number of messages queued or being written, 0 once everything submitted so far is stored
+     */
+    public long pendingMessages() {
+        return unwrittenMessages.size();
+    }
+
+    /**
+     * @return the generated timestamp of the oldest message not stored yet (queued, being written or lost by a failed
+     * write), {@link Long#MAX_VALUE} if everything submitted so far is stored
+     */
+    public long oldestPendingGeneratedAt() {
+        long oldest = failedWriteTracker.oldestFailedGeneratedAt();
+        for (PendingMessage message : unwrittenMessages) {
+            if (message.generatedAt > 0) {
+                oldest = Math.min(oldest, message.generatedAt);
+            }
+        }
+        return oldest;
+    }
+
+    private void enqueue(PendingMessage message) {
+        if (message.writes.isEmpty()) {
+            return;
+        }
+
+        unwrittenMessages.add(message);
+        if (pendingMessages.offer(message)) {
+            return;
+        }
+        blockedEnqueues.increment();
+        try {
+            pendingMessages.put(message);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            recordFailed(message);
+            unwrittenMessages.remove(message);
+            logger.warn("Interrupted while enqueuing {} of {} markets, message discarded", message.type, message.writes.size());
+        }
+    }
+
+    private void writeLoop() {
+        List<PendingMessage> drained = new ArrayList<>(MAX_DRAIN_SIZE);
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                drained.add(pendingMessages.take());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            pendingMessages.drainTo(drained, MAX_DRAIN_SIZE - 1);
+
+            long start = System.nanoTime();
+            try {
+                writeWithRetries(drained);
+                long storedAt = System.currentTimeMillis();
+                for (PendingMessage message : drained) {
+                    writtenMarkets.add(message.writes.size());
+                    feedMetrics.onMessageStored(message.type, message.producerId, message.generatedAt, storedAt);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                failedWrites.add(drained.size());
+                drained.forEach(this::recordFailed);
+                logger.error("Failed to write " + drained.size() + " settlement messages: " + e.getMessage(), e);
+            } finally {
+                writeLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+                drained.forEach(unwrittenMessages::remove);
+                drained.clear();
+            }
+        }
+        logger.info("Settlement writer stopped");
+    }
+
+    private void recordFailed(PendingMessage message) {
+        failedWriteTracker.onFailed(message.producerId, message.eventId, message.generatedAt);
+    }
+
+    /**
+     * All the writes are idempotent, so after a failure the whole group is written again
+     */
+    private void writeWithRetries(List<PendingMessage> messages) throws InterruptedException {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                write(messages);
+                return;
+            } catch (RuntimeException e) {
+                if (attempt >= MAX_ATTEMPTS) {
+                    throw e;
+                }
+                retriedWrites.increment();
+                logger.warn("Settlement write attempt {} failed, retrying: {}", attempt, e.getMessage());
+                TimeUnit.MILLISECONDS.sleep(RETRY_DELAY_MILLIS * attempt);
+            }
+        }
+    }
+
+    private void write(List<PendingMessage> messages) {
+        try (StorageBatch batch = storageBackend.newBatch("settlement")) {
+            int pendingCommands = 0;
+            for (PendingMessage message : messages) {
+                for (Write write : message.writes) {
+                    switch (write.operation) {
+                        case HASH_PUT:
+                            batch.hashPut(write.key, write.fields);
+                            batch.expire(write.key, settlementTtlSeconds);
+                            pendingCommands += 2;
+                            break;
+                        case HASH_DELETE:
+                            batch.hashDelete(write.key, write.deletedFields);
+                            pendingCommands++;
+                            break;
+                        case DELETE:
+                            batch.delete(write.key);
+                            pendingCommands++;
+                            break;
+                        default:
+                            throw new IllegalStateException("Unsupported operation: " + write.operation);
+                    }
+                    if (pendingCommands >= maxCommandsPerFlush) {
+                        flush(batch, pendingCommands);
+                        pendingCommands = 0;
+                    }
+                }
+            }
+            if (pendingCommands > 0) {
+                flush(batch, pendingCommands);
+            }
+        }
+    }
+
+    private void flush(StorageBatch batch, int pendingCommands) {
+        long start = System.nanoTime();
+        batch.flush();
+        flushLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        flushCommands.record(pendingCommands);
+    }
+
+    private static String marketKey(int producerId, String eventId, Market market) {
+        return FullMarketIdBuilder.composeFullMarketKey(producerId, eventId, market.getId(), market.getSpecifiers());
+    }
+
+    /**
+     * [result]|[voidFactor]|[deadHeatFactor], e.g. Won|0|, Lost|0.5| or Won|0|0.5; absent parts are left empty
+     */
+    static String encodeResult(OutcomeSettlement outcome) {
+        StringBuilder sb = new StringBuilder(24);
+        if (outcome.getOutcomeResult() != null) {
+            sb.append(outcome.getOutcomeResult().name());
+        }
+        sb.append('|');
+        VoidFactor voidFactor = outcome.getVoidFactor();
+        if (voidFactor != null) {
+            sb.append(voidFactor == VoidFactor.Zero ? "0" : voidFactor == VoidFactor.Half ? "0.5" : "1");
+        }
+        sb.append('|');
+        if (outcome.getDeadHeatFactor() != null) {
+            sb.append(outcome.getDeadHeatFactor());
+        }
+        return sb.toString();
+    }
+
+    static String encodeRange(Long startTime, Long endTime) {
+        return (startTime == null ? "" : startTime.toString()) + '-' + (endTime == null ? "" : endTime.toString());
+    }
+
+    private enum Operation {
+        HASH_PUT,
+        HASH_DELETE,
+        DELETE
+    }
+
+    private static final class Write {
+        private final Operation operation;
+        private final String key;
+        private final Map<String, String> fields;
+        private final List<String> deletedFields;
+
+        private Write(Operation operation, String key, Map<String, String> fields, List<String> deletedFields) {
+            this.operation = operation;
+            this.key = key;
+            this.fields = fields;
+            this.deletedFields = deletedFields;
+        }
+
+        private static Write hashPut(String key, Map<String, String> fields) {
+            return new Write(Operation.HASH_PUT, key, fields, null);
+        }
+
+        private static Write hashDelete(String key, List<String> fields) {
+            return new Write(Operation.HASH_DELETE, key, null, fields);
+        }
+
+        private static Write delete(String key) {
+            return new Write(Operation.DELETE, key, null, null);
+        }
+    }
+
+    private static final class PendingMessage {
+        private final MessageType type;
+        private final int producerId;
+        private final URN eventId;
+        private final long generatedAt;
+        private final List<Write> writes;
+
+        private PendingMessage(MessageType type, int producerId, URN eventId, long generatedAt, List<Write> writes) {
+            this.type = type;
+            this.producerId = producerId;
+            this.eventId = eventId;
+            this.generatedAt = generatedAt;
+            this.writes = writes;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.sportradar.unifiedodds.example.impl.snapshot;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+
+/**
+ * Sequential reader over a memory-mapped snapshot, or a section of it
+ */
+public final class SnapshotReader {
+    private final ByteBuffer buffer;
+
+    SnapshotReader(ByteBuffer buffer) {
+        Preconditions.checkNotNull(buffer);
+
+        this.buffer = buffer;
+    }
+
+    public int getInt() {
+        return buffer.getInt();
+    }
+
+    public long getLong() {
+        return buffer.getLong();
+    }
+
+    public String getString() {
+        int length = buffer.getInt();
+        // a damaged length must not allocate, it fails the load like any other damage
+        Preconditions.checkState(length >= 0 && length <= buffer.remaining(), "Invalid string length: %s", length);
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    public boolean hasRemaining() {
+        return buffer.hasRemaining();
+    }
+
+    /**
+     * @return the CRC32 of the remaining bytes, which are not consumed
+     */
+    long checksum() {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate());
+        return crc.getValue();
+    }
+
+    /**
+     * @return a reader over the next length bytes, this reader continues after them
+     */
+    SnapshotReader section(long length) {
+        Preconditions.checkArgument(length >= 0 && length <= buffer.remaining(), "Invalid section length: %s", length);
+
+        ByteBuffer slice = buffer.slice();
+        slice.limit((int) length);
+        buffer.position(buffer.position() + (int) length);
+        return new SnapshotReader(slice);
+    }
+}
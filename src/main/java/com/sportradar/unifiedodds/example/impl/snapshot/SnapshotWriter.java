@@ -0,0 +1,108 @@
+package com.sportradar.unifiedodds.example.impl.snapshot;
+
+import com.google.common.base.Preconditions;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Sequential writer into a memory-mapped file, mapped in regions as it grows, so large snapshots are written
+ * without buffering them on the heap. The file is truncated to the written size on close.
+ */
+public final class SnapshotWriter implements AutoCloseable {
+    private static final int REGION_BYTES = 16 * 1024 * 1024;
+
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+
+    SnapshotWriter(Path file) {
+        Preconditions.checkNotNull(file);
+
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_BYTES);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the snapshot file " + file, e);
+        }
+    }
+
+    public void putInt(int value) {
+        ensure(Integer.BYTES).putInt(value);
+    }
+
+    public void putLong(long value) {
+        ensure(Long.BYTES).putLong(value);
+    }
+
+    public void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length).put(bytes);
+    }
+
+    /**
+     * Reserves a long to be set later with {@link Placeholder#set(long)}, e.g. a length known only afterwards
+     */
+    Placeholder reserveLong() {
+        MappedByteBuffer buffer = ensure(Long.BYTES);
+        int index = buffer.position();
+        buffer.putLong(0);
+        return value -> buffer.putLong(index, value);
+    }
+
+    long position() {
+        return regionStart + region.position();
+    }
+
+    /**
+     * @return the CRC32 of the bytes written since the position, read back region by region
+     */
+    long checksum(long from) {
+        CRC32 crc = new CRC32();
+        long end = position();
+        try {
+            for (long regionFrom = from; regionFrom < end; regionFrom += REGION_BYTES) {
+                crc.update(channel.map(FileChannel.MapMode.READ_ONLY, regionFrom, Math.min(REGION_BYTES, end - regionFrom)));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to checksum the snapshot file", e);
+        }
+        return crc.getValue();
+    }
+
+    private MappedByteBuffer ensure(int bytes) {
+        if (region.remaining() < bytes) {
+            long position = position();
+            try {
+                // the previous region stays mapped until collected, so reserved placeholders in it remain writable
+                region = channel.map(FileChannel.MapMode.READ_WRITE, position, Math.max(REGION_BYTES, bytes));
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to extend the snapshot file", e);
+            }
+            regionStart = position;
+        }
+        return region;
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.truncate(position());
+            channel.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to close the snapshot file", e);
+        }
+    }
+
+    interface Placeholder {
+        void set(long value);
+    }
+}
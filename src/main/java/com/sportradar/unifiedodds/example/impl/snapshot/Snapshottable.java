@@ -0,0 +1,17 @@
+package com.sportradar.unifiedodds.example.impl.snapshot;
+
+/**
+ * A component whose in-memory state is saved into the {@link WarmStartSnapshot} and restored on the next start
+ */
+public interface Snapshottable {
+
+    /**
+     * Invoked periodically while the component is in use, must be thread safe
+     */
+    void writeSnapshot(SnapshotWriter writer);
+
+    /**
+     * Invoked once on startup, before the component is used; the reader holds exactly what was written
+     */
+    void readSnapshot(SnapshotReader reader);
+}
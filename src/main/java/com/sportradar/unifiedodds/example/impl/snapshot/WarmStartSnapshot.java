@@ -0,0 +1,154 @@
+package com.sportradar.unifiedodds.example.impl.snapshot;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Periodically saves the registered in-memory caches (e.g. the "metadata already written" trackers and the name
+ * cache) into a memory-mapped file, which is loaded on the next start before the feed is opened, so the recovery
+ * burst after a restart does not repeat the metadata work of the previous run.
+ * <p>
+ * The file holds a header with the CRC32 of the rest and one section per component: [name][length][content].
+ * A file failing the checksum is not loaded at all, sections of unknown components are skipped. A new snapshot is written next to the old one and moved over it, so a crash leaves the previous one.
+ */
+public class WarmStartSnapshot {
+    private static final Logger logger = LoggerFactory.getLogger(WarmStartSnapshot.class);
+
+    private static final int MAGIC = 0x554f4653; // UOFS
+    private static final int VERSION = 2;
+
+    private final Path file;
+    private final ScheduledExecutorService snapshotExecutor;
+    private final long snapshotIntervalMillis;
+    private final Map<String, Snapshottable> components = new LinkedHashMap<>();
+
+    private final Histogram writeTime;
+    private final Histogram loadTime;
+    private final LongAdder failedWrites;
+    private volatile long snapshotBytes;
+
+    public WarmStartSnapshot(Path file, ScheduledExecutorService snapshotExecutor, MetricsRegistry metricsRegistry, long snapshotIntervalMillis) {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkNotNull(snapshotExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkArgument(snapshotIntervalMillis > 0);
+
+        this.file = file;
+        this.snapshotExecutor = snapshotExecutor;
+        this.snapshotIntervalMillis = snapshotIntervalMillis;
+
+        this.writeTime = metricsRegistry.histogram("snapshot.write.ms");
+        this.loadTime = metricsRegistry.histogram("snapshot.load.ms");
+        this.failedWrites = metricsRegistry.counter("snapshot.write.failed");
+        metricsRegistry.gauge("snapshot.bytes", () -> snapshotBytes);
+    }
+
+    /**
+     * Must be invoked before {@link #load()}
+     */
+    public synchronized void register(String name, Snapshottable component) {
+        Preconditions.checkNotNull(name);
+        Preconditions.checkNotNull(component);
+        Preconditions.checkArgument(!components.containsKey(name), "Duplicate snapshot component: %s", name);
+
+        components.put(name, component);
+    }
+
+    /**
+     * Restores the registered components from the last snapshot, if any. A missing or damaged file only means a
+     * cold start, failures are logged.
+     */
+    public synchronized void load() {
+        if (!Files.exists(file)) {
+            logger.info("No warm start snapshot found at {}, cold start", file);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Preconditions.checkState(channel.size() <= Integer.MAX_VALUE, "Snapshot too large: %s bytes", channel.size());
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            SnapshotReader reader = new SnapshotReader(mapped);
+            if (reader.getInt() != MAGIC || reader.getInt() != VERSION) {
+                logger.warn("Unsupported warm start snapshot {}, cold start", file);
+                return;
+            }
+            long createdAt = reader.getLong();
+            if (reader.getLong() != reader.checksum()) {
+                logger.warn("Damaged warm start snapshot {}, checksum mismatch, cold start", file);
+                return;
+            }
+
+            while (reader.hasRemaining()) {
+                String name = reader.getString();
+                SnapshotReader section = reader.section(reader.getLong());
+                Snapshottable component = components.get(name);
+                if (component == null) {
+                    logger.info("Skipping the snapshot of unknown component {}", name);
+                    continue;
+                }
+                component.readSnapshot(section);
+            }
+
+            long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            loadTime.record(elapsedMs);
+            logger.info("Warm start snapshot taken {}s ago loaded in {}ms, {} bytes",
+                    TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - createdAt), elapsedMs, channel.size());
+        } catch (Exception e) {
+            // the components restored so far keep their state, every entry in it is still valid
+            logger.error("Failed to load the warm start snapshot " + file + ": " + e.getMessage(), e);
+        }
+    }
+
+    public void start() {
+        snapshotExecutor.scheduleWithFixedDelay(this::write, snapshotIntervalMillis, snapshotIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Writes a new snapshot, runs periodically and on shutdown
+     */
+    public synchronized void write() {
+        long start = System.nanoTime();
+        Path tmpFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try {
+            long size;
+            try (SnapshotWriter writer = new SnapshotWriter(tmpFile)) {
+                writer.putInt(MAGIC);
+                writer.putInt(VERSION);
+                writer.putLong(System.currentTimeMillis());
+                SnapshotWriter.Placeholder checksum = writer.reserveLong();
+                long payloadStart = writer.position();
+                for (Map.Entry<String, Snapshottable> entry : components.entrySet()) {
+                    writer.putString(entry.getKey());
+                    SnapshotWriter.Placeholder length = writer.reserveLong();
+                    long sectionStart = writer.position();
+                    entry.getValue().writeSnapshot(writer);
+                    length.set(writer.position() - sectionStart);
+                }
+                checksum.set(writer.checksum(payloadStart));
+                size = writer.position();
+            }
+            Files.move(tmpFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            snapshotBytes = size;
+            writeTime.record(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        } catch (Exception e) {
+            failedWrites.increment();
+            logger.error("Failed to write the warm start snapshot " + file + ": " + e.getMessage(), e);
+        }
+    }
+}
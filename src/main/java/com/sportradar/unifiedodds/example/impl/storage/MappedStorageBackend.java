@@ -0,0 +1,580 @@
+package com.sportradar.unifiedodds.example.impl.storage;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * In-process provider keeping the values off-heap in a memory-mapped file, so a co-located reader gets the book
+ * without a network hop, and load tests get a deterministic backend without a redis server.
+ * <p>
+ * Only the key and field names live on the heap: each record maps its fields to slot addresses in an open addressing
+ * directory of primitive longs, each field value is a slot in the mapped file. Slots come in power of two size
+ * classes and are updated in place while the value fits, freed slots are reused per class from primitive stacks.
+ * Writes are applied immediately, so {@link StorageBatch#flush()} has nothing to wait for. The file is scratch
+ * space, it is truncated on startup. Expired keys are invisible right away and released by a periodic sweep.
+ */
+public class MappedStorageBackend implements StorageBackend {
+    private static final Logger logger = LoggerFactory.getLogger(MappedStorageBackend.class);
+
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+    private static final int MIN_SLOT_CLASS = 4; // 16 bytes
+    private static final int MAX_SLOT_CLASS = 20; // 1 MB
+    private static final int LENGTH_BYTES = Integer.BYTES;
+    private static final String VALUE_FIELD = "";
+    private static final long NO_SLOT = -1;
+
+    private final FileChannel channel;
+    private final long maxBytes;
+    private final ScheduledExecutorService sweepExecutor;
+    private final ConcurrentMap<String, Record> records = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Index> indexes = new ConcurrentHashMap<>();
+
+    // allocator state, guarded by the allocator lock
+    private final Object allocatorLock = new Object();
+    private final long[][] freeSlots;
+    private final int[] freeSlotCounts;
+    private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+    private int bumpOffset = SEGMENT_SIZE;
+
+    private final AtomicLong usedBytes = new AtomicLong();
+
+    /**
+     * @param maxBytes the max size of the mapped file, writes fail with an {@link IllegalStateException} once it is full
+     */
+    public MappedStorageBackend(Path file, long maxBytes, ScheduledExecutorService sweepExecutor, MetricsRegistry metricsRegistry) {
+        Preconditions.checkNotNull(file);
+        Preconditions.checkArgument(maxBytes >= SEGMENT_SIZE, "maxBytes must be at least one segment");
+        Preconditions.checkNotNull(sweepExecutor);
+        Preconditions.checkNotNull(metricsRegistry);
+
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open the storage file " + file, e);
+        }
+        this.maxBytes = maxBytes;
+        this.sweepExecutor = sweepExecutor;
+        this.freeSlots = new long[MAX_SLOT_CLASS + 1][];
+        this.freeSlotCounts = new int[MAX_SLOT_CLASS + 1];
+        for (int i = MIN_SLOT_CLASS; i <= MAX_SLOT_CLASS; i++) {
+            freeSlots[i] = new long[16];
+        }
+
+        metricsRegistry.gauge("storage.mapped.bytes.used", usedBytes::get);
+        metricsRegistry.gauge("storage.mapped.bytes.mapped", () -> (long) segments.length * SEGMENT_SIZE);
+        metricsRegistry.gauge("storage.mapped.records", records::size);
+        metricsRegistry.gauge("storage.mapped.indexes", indexes::size);
+    }
+
+    public void start() {
+        sweepExecutor.scheduleWithFixedDelay(this::sweepExpired, 30, 30, TimeUnit.SECONDS);
+    }
+
+    @Override
+    public StorageBatch newBatch(String owner) {
+        return new MappedStorageBatch();
+    }
+
+    @Override
+    public Set<String> indexMembers(String indexKey) {
+        Preconditions.checkNotNull(indexKey);
+
+        Index index = indexes.get(indexKey);
+        if (index == null) {
+            return Collections.emptySet();
+        }
+        synchronized (index) {
+            if (index.removed || index.isExpired(System.currentTimeMillis())) {
+                return Collections.emptySet();
+            }
+            return new HashSet<>(index.members);
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, byte[]>> readHashes(Collection<String> keys) {
+        Preconditions.checkNotNull(keys);
+
+        long now = System.currentTimeMillis();
+        Map<String, Map<String, byte[]>> hashes = new LinkedHashMap<>();
+        for (String key : keys) {
+            Record record = records.get(key);
+            if (record == null) {
+                continue;
+            }
+            synchronized (record) {
+                if (record.removed || record.isExpired(now) || record.isEmpty()) {
+                    continue;
+                }
+                Map<String, byte[]> fields = new HashMap<>();
+                record.forEach((field, slot) -> fields.put(field, read(slot)));
+                hashes.put(key, fields);
+            }
+        }
+        return hashes;
+    }
+
+    /**
+     * @return the value written with {@link StorageBatch#valuePut(String, String)}, null if not present
+     */
+    public String readValue(String key) {
+        Map<String, byte[]> fields = readHashes(Collections.singleton(key)).get(key);
+        byte[] value = fields == null ? null : fields.get(VALUE_FIELD);
+        return value == null ? null : new String(value, StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Failed to close the storage file: " + e.getMessage(), e);
+        }
+    }
+
+    void sweepExpired() {
+        try {
+            long now = System.currentTimeMillis();
+            records.forEach((key, record) -> {
+                synchronized (record) {
+                    if (!record.removed && record.isExpired(now)) {
+                        removeRecord(key, record);
+                    }
+                }
+            });
+            indexes.forEach((key, index) -> {
+                synchronized (index) {
+                    if (!index.removed && index.isExpired(now)) {
+                        index.removed = true;
+                        indexes.remove(key, index);
+                    }
+                }
+            });
+        } catch (Exception e) {
+            logger.error("Failed to sweep expired entries: " + e.getMessage(), e);
+        }
+    }
+
+    private void put(String key, String field, byte[] value) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            Record record = records.computeIfAbsent(key, k -> new Record());
+            synchronized (record) {
+                if (record.removed) {
+                    // swept meanwhile, retry with a new record
+                    continue;
+                }
+                if (record.isExpired(now)) {
+                    // same as redis, writing to an expired key creates a new key without TTL
+                    freeFields(record);
+                    record.expiresAt = Long.MAX_VALUE;
+                }
+
+                long slot = record.get(field);
+                if (slot == NO_SLOT || capacity(slot) < value.length + LENGTH_BYTES) {
+                    long newSlot = allocate(value.length + LENGTH_BYTES);
+                    write(newSlot, value);
+                    record.put(field, newSlot);
+                    if (slot != NO_SLOT) {
+                        free(slot);
+                    }
+                } else {
+                    write(slot, value);
+                }
+                return;
+            }
+        }
+    }
+
+    private void hashDelete(String key, Collection<String> fields) {
+        Record record = records.get(key);
+        if (record == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        synchronized (record) {
+            if (record.removed) {
+                return;
+            }
+            if (record.isExpired(now)) {
+                removeRecord(key, record);
+                return;
+            }
+            for (String field : fields) {
+                long slot = record.remove(field);
+                if (slot != NO_SLOT) {
+                    free(slot);
+                }
+            }
+            // same as redis, a hash without fields does not exist
+            if (record.isEmpty()) {
+                removeRecord(key, record);
+            }
+        }
+    }
+
+    private void delete(String key) {
+        Record record = records.get(key);
+        if (record != null) {
+            synchronized (record) {
+                if (!record.removed) {
+                    removeRecord(key, record);
+                }
+            }
+        }
+        Index index = indexes.get(key);
+        if (index != null) {
+            synchronized (index) {
+                if (!index.removed) {
+                    index.removed = true;
+                    indexes.remove(key, index);
+                }
+            }
+        }
+    }
+
+    private void expire(String key, int seconds) {
+        long expiresAt = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(seconds);
+        Record record = records.get(key);
+        if (record != null) {
+            synchronized (record) {
+                if (!record.removed) {
+                    record.expiresAt = expiresAt;
+                }
+            }
+        }
+        Index index = indexes.get(key);
+        if (index != null) {
+            synchronized (index) {
+                if (!index.removed) {
+                    index.expiresAt = expiresAt;
+                }
+            }
+        }
+    }
+
+    private void indexUpdate(String indexKey, String member, boolean add) {
+        long now = System.currentTimeMillis();
+        while (true) {
+            Index index = add ? indexes.computeIfAbsent(indexKey, k -> new Index()) : indexes.get(indexKey);
+            if (index == null) {
+                return;
+            }
+            synchronized (index) {
+                if (index.removed) {
+                    continue;
+                }
+                if (index.isExpired(now)) {
+                    index.members.clear();
+                    index.expiresAt = Long.MAX_VALUE;
+                }
+                if (add) {
+                    index.members.add(member);
+                } else {
+                    index.members.remove(member);
+                }
+                return;
+            }
+        }
+    }
+
+    private void removeRecord(String key, Record record) {
+        freeFields(record);
+        record.removed = true;
+        records.remove(key, record);
+    }
+
+    private void freeFields(Record record) {
+        record.forEach((field, slot) -> free(slot));
+        record.clear();
+    }
+
+    // slot address: size class (8 bits) | segment (24 bits) | offset in the segment (32 bits)
+
+    private long allocate(int size) {
+        int slotClass = Math.max(MIN_SLOT_CLASS, 32 - Integer.numberOfLeadingZeros(size - 1));
+        Preconditions.checkArgument(slotClass <= MAX_SLOT_CLASS, "Value too large: %s bytes", size);
+
+        synchronized (allocatorLock) {
+            int slotSize = 1 << slotClass;
+            if (freeSlotCounts[slotClass] > 0) {
+                usedBytes.addAndGet(slotSize);
+                return freeSlots[slotClass][--freeSlotCounts[slotClass]];
+            }
+
+            if (bumpOffset + slotSize > SEGMENT_SIZE) {
+                // throws once the file is full, nothing was taken then
+                mapSegment();
+            }
+            long slot = ((long) slotClass << 56) | ((long) (segments.length - 1) << 32) | bumpOffset;
+            bumpOffset += slotSize;
+            usedBytes.addAndGet(slotSize);
+            return slot;
+        }
+    }
+
+    private void free(long slot) {
+        synchronized (allocatorLock) {
+            int slotClass = (int) (slot >>> 56);
+            usedBytes.addAndGet(-(1L << slotClass));
+            if (freeSlotCounts[slotClass] == freeSlots[slotClass].length) {
+                freeSlots[slotClass] = Arrays.copyOf(freeSlots[slotClass], freeSlots[slotClass].length * 2);
+            }
+            freeSlots[slotClass][freeSlotCounts[slotClass]++] = slot;
+        }
+    }
+
+    private void mapSegment() {
+        int segmentIndex = segments.length;
+        long position = (long) segmentIndex * SEGMENT_SIZE;
+        if (position + SEGMENT_SIZE > maxBytes) {
+            throw new IllegalStateException("Storage file full, " + maxBytes + " bytes used");
+        }
+        try {
+            MappedByteBuffer segment = channel.map(FileChannel.MapMode.READ_WRITE, position, SEGMENT_SIZE);
+            MappedByteBuffer[] grown = new MappedByteBuffer[segmentIndex + 1];
+            System.arraycopy(segments, 0, grown, 0, segmentIndex);
+            grown[segmentIndex] = segment;
+            segments = grown;
+            bumpOffset = 0;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to map storage segment " + segmentIndex, e);
+        }
+    }
+
+    private static int capacity(long slot) {
+        return 1 << (int) (slot >>> 56);
+    }
+
+    private ByteBuffer view(long slot) {
+        // duplicates keep the positional bulk reads and writes of concurrent threads apart
+        ByteBuffer view = segments[(int) (slot >>> 32) & 0xFFFFFF].duplicate();
+        view.position((int) slot);
+        return view;
+    }
+
+    private void write(long slot, byte[] value) {
+        view(slot).putInt(value.length).put(value);
+    }
+
+    private byte[] read(long slot) {
+        ByteBuffer view = view(slot);
+        byte[] value = new byte[view.getInt()];
+        view.get(value);
+        return value;
+    }
+
+    /**
+     * A hash: its field -> slot directory is linearly probed, removals shift the following entries back instead of
+     * leaving tombstones. Guarded by the record lock.
+     */
+    private static final class Record {
+        private static final int INITIAL_CAPACITY = 4;
+
+        private String[] fields = new String[INITIAL_CAPACITY];
+        private long[] slots = new long[INITIAL_CAPACITY];
+        private int size;
+        private long expiresAt = Long.MAX_VALUE;
+        private boolean removed;
+
+        private boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+
+        private boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * @return the slot of the field, {@link #NO_SLOT} if not present
+         */
+        private long get(String field) {
+            int index = find(field);
+            return index >= 0 ? slots[index] : NO_SLOT;
+        }
+
+        private void put(String field, long slot) {
+            int index = find(field);
+            if (index >= 0) {
+                slots[index] = slot;
+                return;
+            }
+            // at most half full, so the probe chains stay short
+            if ((size + 1) * 2 > fields.length) {
+                resize(fields.length * 2);
+                index = find(field);
+            }
+            index = -1 - index;
+            fields[index] = field;
+            slots[index] = slot;
+            size++;
+        }
+
+        /**
+         * @return the slot of the removed field, {@link #NO_SLOT} if not present
+         */
+        private long remove(String field) {
+            int index = find(field);
+            if (index < 0) {
+                return NO_SLOT;
+            }
+            long slot = slots[index];
+            int mask = fields.length - 1;
+            int hole = index;
+            for (int i = (index + 1) & mask; fields[i] != null; i = (i + 1) & mask) {
+                // an entry moves into the hole unless its home lies between the hole and itself
+                int home = home(fields[i], mask);
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    fields[hole] = fields[i];
+                    slots[hole] = slots[i];
+                    hole = i;
+                }
+            }
+            fields[hole] = null;
+            size--;
+            return slot;
+        }
+
+        private void forEach(ObjLongConsumer<String> consumer) {
+            for (int i = 0; i < fields.length; i++) {
+                if (fields[i] != null) {
+                    consumer.accept(fields[i], slots[i]);
+                }
+            }
+        }
+
+        private void clear() {
+            fields = new String[INITIAL_CAPACITY];
+            slots = new long[INITIAL_CAPACITY];
+            size = 0;
+        }
+
+        /**
+         * @return the index of the field, or -1 - the free index it would be inserted at
+         */
+        private int find(String field) {
+            int mask = fields.length - 1;
+            int index = home(field, mask);
+            while (fields[index] != null) {
+                if (fields[index].equals(field)) {
+                    return index;
+                }
+                index = (index + 1) & mask;
+            }
+            return -1 - index;
+        }
+
+        private void resize(int capacity) {
+            String[] oldFields = fields;
+            long[] oldSlots = slots;
+            fields = new String[capacity];
+            slots = new long[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldFields.length; i++) {
+                if (oldFields[i] != null) {
+                    int index = home(oldFields[i], mask);
+                    while (fields[index] != null) {
+                        index = (index + 1) & mask;
+                    }
+                    fields[index] = oldFields[i];
+                    slots[index] = oldSlots[i];
+                }
+            }
+        }
+
+        private static int home(String field, int mask) {
+            int hash = field.hashCode();
+            return (hash ^ (hash >>> 16)) & mask;
+        }
+    }
+
+    private static final class Index {
+        private final Set<String> members = new HashSet<>();
+        private long expiresAt = Long.MAX_VALUE;
+        private boolean removed;
+
+        private boolean isExpired(long now) {
+            return expiresAt <= now;
+        }
+    }
+
+    private final class MappedStorageBatch implements StorageBatch {
+
+        @Override
+        public void hashPut(String key, Map<String, String> fields) {
+            fields.forEach((field, value) -> put(key, field, value.getBytes(StandardCharsets.UTF_8)));
+        }
+
+        @Override
+        public void hashPutBinary(String key, Map<byte[], byte[]> fields) {
+            fields.forEach((field, value) -> put(key, SafeEncoder.encode(field), value));
+        }
+
+        @Override
+        public void hashDelete(String key, Collection<String> fields) {
+            MappedStorageBackend.this.hashDelete(key, fields);
+        }
+
+        @Override
+        public void valuePut(String key, String value) {
+            put(key, VALUE_FIELD, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public void delete(String key) {
+            MappedStorageBackend.this.delete(key);
+        }
+
+        @Override
+        public void indexAdd(String indexKey, String member) {
+            indexUpdate(indexKey, member, true);
+        }
+
+        @Override
+        public void indexRemove(String indexKey, String member) {
+            indexUpdate(indexKey, member, false);
+        }
+
+        @Override
+        public void expire(String key, int seconds) {
+            MappedStorageBackend.this.expire(key, seconds);
+        }
+
+        @Override
+        public void flush() {
+            // writes are applied immediately
+        }
+
+        @Override
+        public void close() {
+            // nothing to release
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.sportradar.unifiedodds.example.impl.storage;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.redis.RedisShards;
+import com.sportradar.unifiedodds.example.impl.redis.ShardedPipelines;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Redis provider, every batch pipelines its commands per shard and {@link StorageBatch#flush()} syncs them,
+ * failing on the first error reply.
+ * Records the connection wait of each owner as [owner].pool.wait.us.
+ */
+public class RedisStorageBackend implements StorageBackend {
+    private final RedisShards redisShards;
+    private final MetricsRegistry metricsRegistry;
+
+    public RedisStorageBackend(RedisShards redisShards, MetricsRegistry metricsRegistry) {
+        Preconditions.checkNotNull(redisShards);
+        Preconditions.checkNotNull(metricsRegistry);
+
+        this.redisShards = redisShards;
+        this.metricsRegistry = metricsRegistry;
+    }
+
+    @Override
+    public StorageBatch newBatch(String owner) {
+        Preconditions.checkNotNull(owner);
+
+        return new RedisStorageBatch(new ShardedPipelines(redisShards, metricsRegistry.histogram(owner + ".pool.wait.us")));
+    }
+
+    @Override
+    public Set<String> indexMembers(String indexKey) {
+        Preconditions.checkNotNull(indexKey);
+
+        try (Jedis client = redisShards.getResource(redisShards.getShard(indexKey))) {
+            return client.smembers(indexKey);
+        }
+    }
+
+    @Override
+    public Map<String, Map<String, byte[]>> readHashes(Collection<String> keys) {
+        Preconditions.checkNotNull(keys);
+
+        Map<String, ShardedPipelines.Reply> replies = new LinkedHashMap<>();
+        try (ShardedPipelines pipelines = new ShardedPipelines(redisShards, metricsRegistry.histogram("read.pool.wait.us"))) {
+            for (String key : keys) {
+                replies.put(key, pipelines.add(key, Protocol.Command.HGETALL, SafeEncoder.encode(key)));
+            }
+            pipelines.sync();
+        }
+
+        Map<String, Map<String, byte[]>> hashes = new LinkedHashMap<>();
+        replies.forEach((key, reply) -> {
+            // HGETALL replies with a flat field, value list
+            @SuppressWarnings("unchecked")
+            List<byte[]> fields = (List<byte[]>) reply.get();
+            if (fields != null && !fields.isEmpty()) {
+                Map<String, byte[]> decoded = new HashMap<>();
+                for (int i = 0; i + 1 < fields.size(); i += 2) {
+                    decoded.put(SafeEncoder.encode(fields.get(i)), fields.get(i + 1));
+                }
+                hashes.put(key, decoded);
+            }
+        });
+        return hashes;
+    }
+
+    @Override
+    public void close() {
+        redisShards.close();
+    }
+
+    /**
+     * The commands are queued with their encoded arguments, which ShardedPipelines keeps to resend redirected
+     * commands, so the callers can reuse the field maps
+     */
+    private static final class RedisStorageBatch implements StorageBatch {
+        private final ShardedPipelines pipelines;
+
+        private RedisStorageBatch(ShardedPipelines pipelines) {
+            this.pipelines = pipelines;
+        }
+
+        @Override
+        public void hashPut(String key, Map<String, String> fields) {
+            byte[][] args = new byte[1 + fields.size() * 2][];
+            args[0] = SafeEncoder.encode(key);
+            int index = 1;
+            for (Map.Entry<String, String> field : fields.entrySet()) {
+                args[index++] = SafeEncoder.encode(field.getKey());
+                args[index++] = SafeEncoder.encode(field.getValue());
+            }
+            pipelines.add(key, Protocol.Command.HSET, args);
+        }
+
+        @Override
+        public void hashPutBinary(String key, Map<byte[], byte[]> fields) {
+            byte[][] args = new byte[1 + fields.size() * 2][];
+            args[0] = SafeEncoder.encode(key);
+            int index = 1;
+            for (Map.Entry<byte[], byte[]> field : fields.entrySet()) {
+                args[index++] = field.getKey();
+                args[index++] = field.getValue();
+            }
+            pipelines.add(key, Protocol.Command.HSET, args);
+        }
+
+        @Override
+        public void hashDelete(String key, Collection<String> fields) {
+            if (fields.isEmpty()) {
+                return;
+            }
+            byte[][] args = new byte[1 + fields.size()][];
+            args[0] = SafeEncoder.encode(key);
+            int index = 1;
+            for (String field : fields) {
+                args[index++] = SafeEncoder.encode(field);
+            }
+            pipelines.add(key, Protocol.Command.HDEL, args);
+        }
+
+        @Override
+        public void valuePut(String key, String value) {
+            pipelines.add(key, Protocol.Command.SET, SafeEncoder.encode(key), SafeEncoder.encode(value));
+        }
+
+        @Override
+        public void delete(String key) {
+            pipelines.add(key, Protocol.Command.DEL, SafeEncoder.encode(key));
+        }
+
+        @Override
+        public void indexAdd(String indexKey, String member) {
+            pipelines.add(indexKey, Protocol.Command.SADD, SafeEncoder.encode(indexKey), SafeEncoder.encode(member));
+        }
+
+        @Override
+        public void indexRemove(String indexKey, String member) {
+            pipelines.add(indexKey, Protocol.Command.SREM, SafeEncoder.encode(indexKey), SafeEncoder.encode(member));
+        }
+
+        @Override
+        public void expire(String key, int seconds) {
+            pipelines.add(key, Protocol.Command.EXPIRE, SafeEncoder.encode(key), Protocol.toByteArray(seconds));
+        }
+
+        @Override
+        public void flush() {
+            pipelines.sync();
+        }
+
+        @Override
+        public void close() {
+            pipelines.close();
+        }
+    }
+}
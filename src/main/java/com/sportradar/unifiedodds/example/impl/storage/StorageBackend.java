@@ -0,0 +1,32 @@
+package com.sportradar.unifiedodds.example.impl.storage;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Storage SPI of the writers: hashes (events, markets), plain values (heartbeats) and set indexes, with TTLs.
+ * Writes go through batches, so a provider can pipeline them; reads serve the market book readers.
+ */
+public interface StorageBackend extends AutoCloseable {
+
+    /**
+     * @param owner the name of the writing component (e.g. core, meta), used to label the provider metrics
+     */
+    StorageBatch newBatch(String owner);
+
+    /**
+     * @return the members of the index, empty if it does not exist
+     */
+    Set<String> indexMembers(String indexKey);
+
+    /**
+     * Reads the provided hashes in one go, hashes which don't exist are not part of the result
+     *
+     * @return field -> value maps by key
+     */
+    Map<String, Map<String, byte[]>> readHashes(Collection<String> keys);
+
+    @Override
+    void close();
+}
@@ -0,0 +1,39 @@
+package com.sportradar.unifiedodds.example.impl.storage;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * A group of writes which the provider may buffer until {@link #flush()}. The field maps are consumed when the
+ * operation is invoked, so callers can reuse them. Must be closed.
+ */
+public interface StorageBatch extends AutoCloseable {
+
+    void hashPut(String key, Map<String, String> fields);
+
+    void hashPutBinary(String key, Map<byte[], byte[]> fields);
+
+    void hashDelete(String key, Collection<String> fields);
+
+    void valuePut(String key, String value);
+
+    /**
+     * Removes the key of any type (hash, value or index)
+     */
+    void delete(String key);
+
+    void indexAdd(String indexKey, String member);
+
+    void indexRemove(String indexKey, String member);
+
+    void expire(String key, int seconds);
+
+    /**
+     * Blocks until all the operations of the batch so far are acknowledged by the storage. Throws if any of them
+     * failed, in which case none of them may be treated as written (some may have been applied).
+     */
+    void flush();
+
+    @Override
+    void close();
+}
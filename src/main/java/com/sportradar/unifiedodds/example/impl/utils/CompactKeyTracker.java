@@ -0,0 +1,377 @@
+package com.sportradar.unifiedodds.example.impl.utils;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.snapshot.SnapshotReader;
+import com.sportradar.unifiedodds.example.impl.snapshot.SnapshotWriter;
+import com.sportradar.unifiedodds.example.impl.snapshot.Snapshottable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Memory bounded, approximately expiring set of keys, a compact replacement for a {@code Cache<String, Integer>}
+ * used only to remember which keys were already processed.
+ * <p>
+ * Keys are stored as 64-bit hashes in primitive open-addressing tables, one table per time bucket (generation).
+ * A key is remembered for at least the configured ttl (and at most ttl + ttl / (GENERATIONS - 1)), unless the memory
+ * ceiling is reached earlier, in which case the oldest generation is dropped ahead of time. Both outcomes are safe
+ * for a dedup tracker: a forgotten key is just processed again. A false positive requires a full 64-bit hash
+ * collision, the expected rate is about (tracked keys / 2^64) per lookup.
+ * <p>
+ * The generations carry wall clock times, so a {@link Snapshottable snapshot} restored after a restart expires its
+ * keys when they would have expired in the previous run.
+ */
+public class CompactKeyTracker implements Snapshottable {
+    private static final Logger logger = LoggerFactory.getLogger(CompactKeyTracker.class);
+
+    private static final int SEGMENTS = 16; // must be a power of two
+    private static final int GENERATIONS = 4;
+    private static final double MAX_LOAD_FACTOR = 0.75;
+    private static final long EMPTY = 0L;
+
+    private final String identifier;
+    private final Segment[] segments;
+    private final LongSupplier clock;
+    private final long generationMillis;
+    private final long ttlMillis;
+    private final int tableCapacity;
+
+    private final LongAdder earlyRotations;
+
+    /**
+     * @param maxMemoryBytes the upper bound of the memory used by the hash tables
+     */
+    public CompactKeyTracker(String identifier, long maxMemoryBytes, long ttl, TimeUnit unit, MetricsRegistry metricsRegistry) {
+        this(identifier, maxMemoryBytes, ttl, unit, metricsRegistry, System::currentTimeMillis);
+    }
+
+    CompactKeyTracker(String identifier, long maxMemoryBytes, long ttl, TimeUnit unit, MetricsRegistry metricsRegistry, LongSupplier clock) {
+        Preconditions.checkNotNull(identifier);
+        Preconditions.checkArgument(ttl > 0);
+        Preconditions.checkNotNull(unit);
+        Preconditions.checkNotNull(metricsRegistry);
+        Preconditions.checkNotNull(clock);
+
+        long slots = maxMemoryBytes / Long.BYTES / SEGMENTS / GENERATIONS;
+        Preconditions.checkArgument(slots >= 16, "maxMemoryBytes too small");
+
+        // the largest power of two which fits into the ceiling, so the slot can be computed with a mask
+        this.identifier = identifier;
+        this.tableCapacity = Integer.highestOneBit((int) Math.min(slots, 1 << 30));
+        this.ttlMillis = unit.toMillis(ttl);
+        this.generationMillis = Math.max(1, ttlMillis / (GENERATIONS - 1));
+        this.clock = clock;
+        this.segments = new Segment[SEGMENTS];
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(clock.getAsLong());
+        }
+
+        this.earlyRotations = metricsRegistry.counter(identifier + ".tracker.rotations.early");
+        metricsRegistry.gauge(identifier + ".tracker.size", this::size);
+        metricsRegistry.gauge(identifier + ".tracker.memory.bytes", this::memoryBytes);
+    }
+
+    public boolean contains(String key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            return segment.contains(hash, clock.getAsLong());
+        }
+    }
+
+    public void put(String key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            segment.put(hash, clock.getAsLong());
+        }
+    }
+
+    /**
+     * @return true if the key was not tracked and was added, false if it was already present
+     */
+    public boolean add(String key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            long now = clock.getAsLong();
+            if (segment.contains(hash, now)) {
+                return false;
+            }
+            segment.put(hash, now);
+            return true;
+        }
+    }
+
+    public void invalidate(String key) {
+        long hash = hash(key);
+        Segment segment = segmentFor(hash);
+        synchronized (segment) {
+            segment.remove(hash);
+        }
+    }
+
+    /**
+     * @return the number of tracked hashes, including the ones of expired generations which were not reused yet
+     */
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (int generationSize : segment.sizes) {
+                    size += generationSize;
+                }
+            }
+        }
+        return size;
+    }
+
+    public long memoryBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                for (long[] table : segment.tables) {
+                    if (table != null) {
+                        bytes += (long) table.length * Long.BYTES;
+                    }
+                }
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Writes the live generations of each segment: [current][createdAt] and per generation [sealedAt][size][hashes]
+     */
+    @Override
+    public void writeSnapshot(SnapshotWriter writer) {
+        writer.putInt(SEGMENTS);
+        writer.putInt(GENERATIONS);
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.writeTo(writer, clock.getAsLong());
+            }
+        }
+    }
+
+    /**
+     * Replaces the content with the snapshot, the tables are rebuilt so the memory ceiling may differ between runs
+     */
+    @Override
+    public void readSnapshot(SnapshotReader reader) {
+        if (reader.getInt() != SEGMENTS || reader.getInt() != GENERATIONS) {
+            logger.warn("Snapshot of {} has a different layout, skipped", identifier);
+            return;
+        }
+        long now = clock.getAsLong();
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.readFrom(reader, now);
+            }
+        }
+        logger.info("Restored {} keys of {} from the snapshot", size(), identifier);
+    }
+
+    private Segment segmentFor(long hash) {
+        // the low bits pick the slot inside the table, the segment is chosen by the high bits
+        return segments[(int) (hash >>> 60) & (SEGMENTS - 1)];
+    }
+
+    /**
+     * 64-bit FNV-1a over the chars, finished with the murmur3 fmix64 avalanche step
+     */
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h == EMPTY ? 1L : h;
+    }
+
+    private final class Segment {
+        private final long[][] tables = new long[GENERATIONS][];
+        private final int[] sizes = new int[GENERATIONS];
+        // the time the generation stopped receiving writes, 0 for the current one
+        private final long[] sealedAt = new long[GENERATIONS];
+        private final int maxSize = (int) (tableCapacity * MAX_LOAD_FACTOR);
+
+        private int current;
+        private long currentCreatedAt;
+
+        private Segment(long now) {
+            this.currentCreatedAt = now;
+            Arrays.fill(sealedAt, Long.MIN_VALUE / 2);
+            sealedAt[current] = 0;
+        }
+
+        private boolean contains(long hash, long now) {
+            rotateIfDue(now);
+            for (int g = 0; g < GENERATIONS; g++) {
+                if (isLive(g, now) && indexOf(tables[g], hash) >= 0) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void put(long hash, long now) {
+            rotateIfDue(now);
+            if (sizes[current] >= maxSize) {
+                earlyRotations.increment();
+                rotate(now, now);
+            }
+
+            long[] table = table(current);
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != EMPTY) {
+                if (table[slot] == hash) {
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+            sizes[current]++;
+        }
+
+        private void remove(long hash) {
+            for (int g = 0; g < GENERATIONS; g++) {
+                long[] table = tables[g];
+                int slot = indexOf(table, hash);
+                if (slot >= 0) {
+                    deleteSlot(table, slot);
+                    sizes[g]--;
+                }
+            }
+        }
+
+        private void writeTo(SnapshotWriter writer, long now) {
+            rotateIfDue(now);
+            writer.putInt(current);
+            writer.putLong(currentCreatedAt);
+            for (int g = 0; g < GENERATIONS; g++) {
+                writer.putLong(sealedAt[g]);
+                long[] table = tables[g];
+                if (table == null || !isLive(g, now)) {
+                    writer.putInt(0);
+                    continue;
+                }
+                writer.putInt(sizes[g]);
+                for (long hash : table) {
+                    if (hash != EMPTY) {
+                        writer.putLong(hash);
+                    }
+                }
+            }
+        }
+
+        private void readFrom(SnapshotReader reader, long now) {
+            current = reader.getInt();
+            currentCreatedAt = reader.getLong();
+            for (int g = 0; g < GENERATIONS; g++) {
+                sealedAt[g] = reader.getLong();
+                int size = reader.getInt();
+                sizes[g] = 0;
+                if (tables[g] != null) {
+                    Arrays.fill(tables[g], EMPTY);
+                }
+                boolean live = isLive(g, now);
+                for (int i = 0; i < size; i++) {
+                    long hash = reader.getLong();
+                    // expired generations are not restored, with a smaller ceiling the excess hashes are dropped
+                    if (live && sizes[g] < maxSize) {
+                        insert(table(g), hash);
+                        sizes[g]++;
+                    }
+                }
+            }
+        }
+
+        private void insert(long[] table, long hash) {
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != EMPTY) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = hash;
+        }
+
+        private boolean isLive(int generation, long now) {
+            return generation == current || now - sealedAt[generation] < ttlMillis;
+        }
+
+        private void rotateIfDue(long now) {
+            if (now - currentCreatedAt >= generationMillis) {
+                // rotation is lazy, no key was written to the generation after its time window closed
+                rotate(currentCreatedAt + generationMillis, now);
+            }
+        }
+
+        private void rotate(long sealTime, long now) {
+            sealedAt[current] = sealTime;
+            current = (current + 1) % GENERATIONS;
+            if (tables[current] != null) {
+                Arrays.fill(tables[current], EMPTY);
+            }
+            sizes[current] = 0;
+            sealedAt[current] = 0;
+            currentCreatedAt = now;
+        }
+
+        private long[] table(int generation) {
+            // allocated lazily, so an idle tracker doesn't claim its whole ceiling upfront
+            if (tables[generation] == null) {
+                tables[generation] = new long[tableCapacity];
+            }
+            return tables[generation];
+        }
+
+        private int indexOf(long[] table, long hash) {
+            if (table == null) {
+                return -1;
+            }
+            int mask = table.length - 1;
+            int slot = (int) hash & mask;
+            while (table[slot] != EMPTY) {
+                if (table[slot] == hash) {
+                    return slot;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return -1;
+        }
+
+        /**
+         * Backward shift deletion, keeps the linear probing chains intact without tombstones
+         */
+        private void deleteSlot(long[] table, int slot) {
+            int mask = table.length - 1;
+            int hole = slot;
+            int next = (hole + 1) & mask;
+            while (table[next] != EMPTY) {
+                int home = (int) table[next] & mask;
+                // move the entry into the hole if its home slot is not cyclically in (hole, next]
+                boolean movable = hole <= next
+                        ? home <= hole || home > next
+                        : home <= hole && home > next;
+                if (movable) {
+                    table[hole] = table[next];
+                    hole = next;
+                }
+                next = (next + 1) & mask;
+            }
+            table[hole] = EMPTY;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package com.sportradar.unifiedodds.example.impl.utils;
+
+import com.google.common.base.Preconditions;
+import com.sportradar.unifiedodds.example.impl.metrics.Histogram;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs tasks in submission order per key while tasks of different keys run in parallel.
+ * <p>
+ * Keys are hashed to a fixed number of lanes, each lane being a lock-free task chain: submitters append to the
+ * lane queue and the first one to win the CAS on the lane's scheduled flag hands the lane to the executor, where
+ * it drains its queue. Tasks of the same key always end up in the same lane, so they can never overlap.
+ * The total number of pending tasks is bounded, submitters are blocked (or rejected) once the capacity is reached.
+ * <p>
+ * If the backing executor rejects a lane, the submitter which tried to schedule it gets its own task back (a false
+ * result or an exception), the other tasks already queued in the lane are dropped and their drop handlers invoked.
+ */
+public class KeyedSerialExecutor {
+    private static final Logger logger = LoggerFactory.getLogger(KeyedSerialExecutor.class);
+
+    // a lane gives up its thread after this many tasks, so busy lanes do not starve the others
+    static final int MAX_TASKS_PER_RUN = 32;
+
+    private final String identifier;
+    private final Executor executor;
+    private final Lane[] lanes;
+    private final Semaphore capacity;
+    private final int maxPendingTasks;
+    private final AtomicInteger activeLanes;
+    private final AtomicInteger runningTasks;
+
+    private final Histogram queueTime;
+
+    public KeyedSerialExecutor(String identifier,
+                               Executor executor,
+                               int laneCount,
+                               int maxPendingTasks,
+                               MetricsRegistry metricsRegistry) {
+        Preconditions.checkNotNull(identifier);
+        Preconditions.checkNotNull(executor);
+        Preconditions.checkArgument(laneCount > 0);
+        Preconditions.checkArgument(maxPendingTasks > 0);
+        Preconditions.checkNotNull(metricsRegistry);
+
+        this.identifier = identifier;
+        this.executor = executor;
+        this.lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane();
+        }
+        this.capacity = new Semaphore(maxPendingTasks);
+        this.maxPendingTasks = maxPendingTasks;
+        this.activeLanes = new AtomicInteger();
+        this.runningTasks = new AtomicInteger();
+
+        this.queueTime = metricsRegistry.histogram(identifier + ".queue.time.us");
+        metricsRegistry.gauge(identifier + ".queue.depth", this::getPendingTasks);
+        metricsRegistry.gauge(identifier + ".lanes.active", activeLanes::get);
+        metricsRegistry.gauge(identifier + ".inflight", runningTasks::get);
+    }
+
+    /**
+     * Submits the task, blocking while the executor is at capacity
+     *
+     * @throws RejectedExecutionException if the backing executor rejected the lane of the task
+     */
+    public void execute(Object key, Runnable task) throws InterruptedException {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(task);
+
+        capacity.acquire();
+        if (!laneFor(key).submit(new KeyedTask(key, task, null))) {
+            throw new RejectedExecutionException("Lane of key " + key + " rejected by the executor");
+        }
+    }
+
+    /**
+     * Submits the task if capacity frees up within the timeout
+     *
+     * @return false if the task was rejected because the executor is at capacity or rejected the lane of the task
+     */
+    public boolean tryExecute(Object key, Runnable task, long timeout, TimeUnit unit) throws InterruptedException {
+        return tryExecute(key, task, null, timeout, unit);
+    }
+
+    /**
+     * Submits the task if capacity frees up within the timeout
+     *
+     * @param onDropped invoked if the task is dropped after it was accepted, because the executor rejected its lane
+     *                  when it was rescheduled, may be null
+     * @return false if the task was rejected because the executor is at capacity or rejected the lane of the task
+     */
+    public boolean tryExecute(Object key, Runnable task, Runnable onDropped, long timeout, TimeUnit unit) throws InterruptedException {
+        Preconditions.checkNotNull(key);
+        Preconditions.checkNotNull(task);
+        Preconditions.checkNotNull(unit);
+
+        if (!capacity.tryAcquire(timeout, unit)) {
+            return false;
+        }
+        return laneFor(key).submit(new KeyedTask(key, task, onDropped));
+    }
+
+    public int getPendingTasks() {
+        return maxPendingTasks - capacity.availablePermits();
+    }
+
+    private Lane laneFor(Object key) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return lanes[(hash & Integer.MAX_VALUE) % lanes.length];
+    }
+
+    private final class Lane implements Runnable {
+        private final Queue<KeyedTask> tasks = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+        /**
+         * @return false if the lane could not be scheduled and the task was taken back
+         */
+        private boolean submit(KeyedTask task) {
+            tasks.offer(task);
+            return trySchedule(task);
+        }
+
+        /**
+         * @param own the task of the scheduling submitter, null when the lane reschedules itself
+         * @return false if the executor rejected the lane and the own task was taken back
+         */
+        private boolean trySchedule(KeyedTask own) {
+            if (!scheduled.compareAndSet(false, true)) {
+                return true;
+            }
+            activeLanes.incrementAndGet();
+            try {
+                executor.execute(this);
+                return true;
+            } catch (Exception e) {
+                logger.error("[{}] Failed to schedule lane, dropping its {} pending tasks, exc: {}", identifier, tasks.size(), e.getMessage(), e);
+                boolean ownDropped = false;
+                KeyedTask dropped;
+                while ((dropped = tasks.poll()) != null) {
+                    capacity.release();
+                    if (dropped == own) {
+                        ownDropped = true;
+                    } else {
+                        dropped.drop();
+                    }
+                }
+                activeLanes.decrementAndGet();
+                scheduled.set(false);
+                // a task may have been appended after the drain, before the flag was cleared
+                if (!tasks.isEmpty()) {
+                    trySchedule(null);
+                }
+                return !ownDropped;
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                KeyedTask task;
+                int processed = 0;
+                while (processed < MAX_TASKS_PER_RUN && (task = tasks.poll()) != null) {
+                    processed++;
+                    task.run();
+                    capacity.release();
+                }
+            } finally {
+                activeLanes.decrementAndGet();
+                scheduled.set(false);
+                // a task may have been appended after the last poll, before the flag was cleared
+                if (!tasks.isEmpty()) {
+                    trySchedule(null);
+                }
+            }
+        }
+    }
+
+    private final class KeyedTask {
+        private final Object key;
+        private final Runnable runnable;
+        private final Runnable onDropped;
+        private final long enqueuedAtNanos;
+
+        private KeyedTask(Object key, Runnable runnable, Runnable onDropped) {
+            this.key = key;
+            this.runnable = runnable;
+            this.onDropped = onDropped;
+            this.enqueuedAtNanos = System.nanoTime();
+        }
+
+        private void drop() {
+            logger.warn("[{}] Dropped task for key[{}]", identifier, key);
+            if (onDropped == null) {
+                return;
+            }
+            try {
+                onDropped.run();
+            } catch (Exception e) {
+                logger.error("[{}] Failed to handle dropped task for key[{}], exc: {}", identifier, key, e.getMessage(), e);
+            }
+        }
+
+        private void run() {
+            queueTime.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - enqueuedAtNanos));
+            runningTasks.incrementAndGet();
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                logger.error("[{}] Failed to process task for key[{}], exc: {}", identifier, key, e.getMessage(), e);
+            } finally {
+                runningTasks.decrementAndGet();
+            }
+        }
+    }
+}
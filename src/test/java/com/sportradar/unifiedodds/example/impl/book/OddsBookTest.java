@@ -0,0 +1,85 @@
+package com.sportradar.unifiedodds.example.impl.book;
+
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.entities.MarketCoreData;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.storage.MappedStorageBackend;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketStatus;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class OddsBookTest {
+    private static final long IDLE_EVICTION_MILLIS = TimeUnit.HOURS.toMillis(6);
+
+    private ScheduledExecutorService executor;
+    private ExecutorService lifecycleExecutor;
+    private Path file;
+    private MappedStorageBackend storageBackend;
+    private OddsBook oddsBook;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        lifecycleExecutor = Executors.newSingleThreadExecutor();
+        MetricsRegistry metricsRegistry = new MetricsRegistry(executor);
+        file = Files.createTempFile("uof-book", ".store");
+        storageBackend = new MappedStorageBackend(file, 64L * 1024 * 1024, executor, metricsRegistry);
+        EventLifecycleTracker eventLifecycleTracker = new EventLifecycleTracker(storageBackend, lifecycleExecutor, metricsRegistry, 3600);
+        oddsBook = new OddsBook(eventLifecycleTracker, executor, metricsRegistry, IDLE_EVICTION_MILLIS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        storageBackend.close();
+        executor.shutdownNow();
+        lifecycleExecutor.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void idleEventsAreEvictedWithTheirMemory() {
+        update("sr:match:1");
+        update("sr:match:2");
+        long updatedAt = oddsBook.getEvent("sr:match:1").getUpdatedAt();
+        long eventBytes = oddsBook.getEvent("sr:match:2").getEstimatedBytes();
+
+        // not idle long enough yet
+        oddsBook.evictIdle(updatedAt + IDLE_EVICTION_MILLIS - 1);
+        assertEquals(2, oddsBook.eventCount());
+
+        // the second event is updated again, so only the first one is idle
+        long later = updatedAt + IDLE_EVICTION_MILLIS;
+        while (System.currentTimeMillis() <= updatedAt) {
+            Thread.yield();
+        }
+        update("sr:match:2");
+        oddsBook.evictIdle(later);
+
+        assertNull(oddsBook.getEvent("sr:match:1"));
+        assertNotNull(oddsBook.getEvent("sr:match:2"));
+        assertEquals(1, oddsBook.eventCount());
+        assertEquals(eventBytes, oddsBook.estimatedMemoryBytes());
+        assertTrue(oddsBook.getProducerEvents(1).stream().noneMatch(event -> event.getEventId().equals("sr:match:1")));
+    }
+
+    private void update(String eventId) {
+        MarketCoreData market = new MarketCoreData(1, eventId, 1, null, MarketStatus.Active,
+                new String[]{"1", "2"}, new double[]{0.4, 0.6}, new double[]{2.5, 1.6}, new boolean[]{true, true});
+        oddsBook.apply(eventId, Collections.singletonMap(FullMarketIdBuilder.composeFullMarketKey(market), market));
+    }
+}
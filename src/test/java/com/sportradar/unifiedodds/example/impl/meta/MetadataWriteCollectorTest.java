@@ -0,0 +1,72 @@
+package com.sportradar.unifiedodds.example.impl.meta;
+
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.lifecycle.EventLifecycleTracker;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.storage.MappedStorageBackend;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MetadataWriteCollectorTest {
+    private ScheduledExecutorService executor;
+    private ExecutorService lifecycleExecutor;
+    private ExecutorService writerExecutor;
+    private Path file;
+    private MappedStorageBackend storageBackend;
+    private MetadataWriteCollector collector;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        lifecycleExecutor = Executors.newSingleThreadExecutor();
+        writerExecutor = Executors.newSingleThreadExecutor();
+        MetricsRegistry metricsRegistry = new MetricsRegistry(executor);
+        file = Files.createTempFile("uof-meta", ".store");
+        storageBackend = new MappedStorageBackend(file, 64L * 1024 * 1024, executor, metricsRegistry);
+        EventLifecycleTracker eventLifecycleTracker = new EventLifecycleTracker(storageBackend, lifecycleExecutor, metricsRegistry, 3600);
+        collector = new MetadataWriteCollector(storageBackend, eventLifecycleTracker, writerExecutor, metricsRegistry, 2);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        writerExecutor.shutdownNow();
+        storageBackend.close();
+        executor.shutdownNow();
+        lifecycleExecutor.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Test(timeout = 10_000)
+    public void writesBeyondTheCapacityAreRejectedThroughTheirCallback() throws Exception {
+        AtomicInteger failed = new AtomicInteger();
+        // the writer is not started yet, so the queue fills up
+        for (int i = 1; i <= 5; i++) {
+            collector.writeEvent("sr:match:" + i, Collections.singletonMap("name", "event " + i), failed::incrementAndGet);
+        }
+        assertEquals(3, failed.get());
+
+        collector.start();
+        collector.stop();
+        writerExecutor.shutdown();
+        assertTrue(writerExecutor.awaitTermination(5, TimeUnit.SECONDS));
+
+        // the queued writes are stored, the rejected ones are not
+        assertEquals(2, storageBackend.readHashes(Arrays.asList(RedisKeysBuilder.getEventKey("sr:match:1"),
+                RedisKeysBuilder.getEventKey("sr:match:2"), RedisKeysBuilder.getEventKey("sr:match:3"))).size());
+        assertEquals(3, failed.get());
+    }
+}
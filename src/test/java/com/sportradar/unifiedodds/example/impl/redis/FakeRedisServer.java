@@ -0,0 +1,141 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * A scriptable RESP server: the handler maps each keyed command (name and arguments) to its raw reply, null closes
+ * the connection. Commands without a key (e.g. PING, QUIT) are acknowledged by the server, ASKING marks the next
+ * command in the log with [asking].
+ */
+final class FakeRedisServer implements Closeable {
+    private final ServerSocket serverSocket;
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+    private volatile Function<List<String>, String> handler;
+
+    FakeRedisServer(Function<List<String>, String> handler) throws IOException {
+        this.handler = handler;
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        Thread acceptThread = new Thread(this::acceptConnections, "fake-redis-accept");
+        acceptThread.setDaemon(true);
+        acceptThread.start();
+    }
+
+    int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    void setHandler(Function<List<String>, String> handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * @return the received commands, e.g. "HSET key field value"
+     */
+    List<String> getLog() {
+        synchronized (log) {
+            return new ArrayList<>(log);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+
+    private void acceptConnections() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                Thread connectionThread = new Thread(() -> serve(socket), "fake-redis-connection");
+                connectionThread.setDaemon(true);
+                connectionThread.start();
+            } catch (IOException e) {
+                // closed
+            }
+        }
+    }
+
+    private void serve(Socket socket) {
+        boolean asking = false;
+        try (Socket s = socket;
+             InputStream in = new BufferedInputStream(s.getInputStream());
+             OutputStream out = new BufferedOutputStream(s.getOutputStream())) {
+            while (true) {
+                List<String> command = readCommand(in);
+                if (command == null) {
+                    return;
+                }
+                String reply;
+                if ("ASKING".equalsIgnoreCase(command.get(0))) {
+                    asking = true;
+                    reply = "+OK\r\n";
+                } else if (command.size() == 1) {
+                    reply = "PING".equalsIgnoreCase(command.get(0)) ? "+PONG\r\n" : "+OK\r\n";
+                } else {
+                    log.add(String.join(" ", command) + (asking ? " [asking]" : ""));
+                    asking = false;
+                    reply = handler.apply(command);
+                    if (reply == null) {
+                        return;
+                    }
+                }
+                out.write(reply.getBytes(StandardCharsets.UTF_8));
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // connection closed by the client
+        }
+    }
+
+    private static List<String> readCommand(InputStream in) throws IOException {
+        if (in.read() == -1) {
+            return null;
+        }
+        int arguments = Integer.parseInt(readLine(in));
+        List<String> command = new ArrayList<>(arguments);
+        for (int i = 0; i < arguments; i++) {
+            in.read(); // $
+            byte[] value = new byte[Integer.parseInt(readLine(in))];
+            int read = 0;
+            while (read < value.length) {
+                int r = in.read(value, read, value.length - read);
+                if (r == -1) {
+                    throw new EOFException();
+                }
+                read += r;
+            }
+            readLine(in);
+            command.add(new String(value, StandardCharsets.UTF_8));
+        }
+        return command;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) != '\r') {
+            if (c == -1) {
+                throw new EOFException();
+            }
+            sb.append((char) c);
+        }
+        in.read(); // \n
+        return sb.toString();
+    }
+}
@@ -0,0 +1,163 @@
+package com.sportradar.unifiedodds.example.impl.redis;
+
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import redis.clients.jedis.HostAndPort;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Protocol;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+import redis.clients.jedis.util.SafeEncoder;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ShardedPipelinesTest {
+    private static final String OK = ":1\r\n";
+
+    private ScheduledExecutorService metricsExecutor;
+    private MetricsRegistry metricsRegistry;
+    private FakeRedisServer node;
+    private FakeRedisServer otherNode;
+    private TestShards shards;
+
+    @Before
+    public void setUp() throws Exception {
+        metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        metricsRegistry = new MetricsRegistry(metricsExecutor);
+        node = new FakeRedisServer(command -> OK);
+        otherNode = new FakeRedisServer(command -> OK);
+        shards = new TestShards(node, otherNode);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        shards.close();
+        node.close();
+        otherNode.close();
+        metricsExecutor.shutdownNow();
+    }
+
+    @Test(timeout = 10_000)
+    public void askOnSecondFlushResendsOnlyTheRedirectedCommand() {
+        node.setHandler(command -> "k2".equals(command.get(1)) ? "-ASK 1 localhost:" + otherNode.getPort() + "\r\n" : OK);
+
+        try (ShardedPipelines pipelines = newPipelines()) {
+            hset(pipelines, "k1");
+            pipelines.sync();
+            hset(pipelines, "k2");
+            pipelines.sync();
+        }
+
+        assertEquals(Collections.singletonList("HSET k2 f v [asking]"), otherNode.getLog());
+        assertEquals(0, shards.refreshes.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void movedOnSecondFlushRetriesOnlyTheMovedCommand() {
+        node.setHandler(command -> "k2".equals(command.get(1)) ? "-MOVED 1 localhost:" + otherNode.getPort() + "\r\n" : OK);
+        shards.onRefresh = () -> shards.owner = 1;
+
+        try (ShardedPipelines pipelines = newPipelines()) {
+            hset(pipelines, "k1");
+            pipelines.sync();
+            hset(pipelines, "k2");
+            pipelines.sync();
+        }
+
+        assertEquals(Collections.singletonList("HSET k2 f v"), otherNode.getLog());
+        assertEquals(1, shards.refreshes.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void brokenConnectionIsReplacedForTheNextFlush() {
+        // the node drops the connection instead of answering
+        node.setHandler(command -> "broken".equals(command.get(1)) ? null : OK);
+
+        try (ShardedPipelines pipelines = newPipelines()) {
+            hset(pipelines, "k1");
+            hset(pipelines, "k2");
+            pipelines.sync();
+
+            hset(pipelines, "broken");
+            try {
+                pipelines.sync();
+                throw new AssertionError("sync did not fail");
+            } catch (JedisConnectionException e) {
+                // only the command of this sync failed
+                assertTrue(e.getMessage(), e.getMessage().startsWith("1 commands of the batch failed"));
+            }
+
+            hset(pipelines, "k3");
+            pipelines.sync();
+        }
+
+        List<String> log = node.getLog();
+        assertEquals("HSET k3 f v", log.get(log.size() - 1));
+        assertEquals(1, shards.refreshes.get());
+    }
+
+    private ShardedPipelines newPipelines() {
+        return new ShardedPipelines(shards, metricsRegistry.histogram("test.pool.wait.us"));
+    }
+
+    private static void hset(ShardedPipelines pipelines, String key) {
+        pipelines.add(key, Protocol.Command.HSET, SafeEncoder.encode(key), SafeEncoder.encode("f"), SafeEncoder.encode("v"));
+    }
+
+    /**
+     * Two nodes, all keys owned by one of them until a refresh moves them
+     */
+    private static final class TestShards implements RedisShards {
+        private final List<JedisPool> pools = new ArrayList<>();
+        private final AtomicInteger refreshes = new AtomicInteger();
+        private volatile int owner;
+        private volatile Runnable onRefresh = () -> { };
+
+        private TestShards(FakeRedisServer... nodes) {
+            for (FakeRedisServer node : nodes) {
+                pools.add(new JedisPool("localhost", node.getPort()));
+            }
+        }
+
+        @Override
+        public int getShardCount() {
+            return pools.size();
+        }
+
+        @Override
+        public int getShard(String key) {
+            return owner;
+        }
+
+        @Override
+        public Jedis getResource(int shard) {
+            return pools.get(shard).getResource();
+        }
+
+        @Override
+        public void refresh(String reason) {
+            refreshes.incrementAndGet();
+            onRefresh.run();
+        }
+
+        @Override
+        public Jedis getNodeResource(HostAndPort node) {
+            return new Jedis(node.getHost(), node.getPort());
+        }
+
+        @Override
+        public void close() {
+            pools.forEach(JedisPool::close);
+        }
+    }
+}
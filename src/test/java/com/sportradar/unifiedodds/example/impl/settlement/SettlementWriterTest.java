@@ -0,0 +1,244 @@
+package com.sportradar.unifiedodds.example.impl.settlement;
+
+import com.google.common.collect.ImmutableMap;
+import com.sportradar.unifiedodds.example.impl.FullMarketIdBuilder;
+import com.sportradar.unifiedodds.example.impl.RedisKeysBuilder;
+import com.sportradar.unifiedodds.example.impl.metrics.FeedMetrics;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.recovery.EventRecoveryRequester;
+import com.sportradar.unifiedodds.example.impl.recovery.FailedWriteTracker;
+import com.sportradar.unifiedodds.example.impl.storage.MappedStorageBackend;
+import com.sportradar.unifiedodds.sdk.oddsentities.Market;
+import com.sportradar.unifiedodds.sdk.oddsentities.MarketWithSettlement;
+import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeResult;
+import com.sportradar.unifiedodds.sdk.oddsentities.OutcomeSettlement;
+import com.sportradar.unifiedodds.sdk.oddsentities.VoidFactor;
+import com.sportradar.utils.URN;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+public class SettlementWriterTest {
+    private static final int PRODUCER_ID = 1;
+    private static final URN EVENT_ID = URN.parse("sr:match:1");
+    private static final Map<String, String> SPECIFIERS = Collections.singletonMap("total", "2.5");
+
+    private ScheduledExecutorService executor;
+    private ExecutorService writerExecutor;
+    private Path file;
+    private MappedStorageBackend storageBackend;
+    private SettlementWriter settlementWriter;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        writerExecutor = Executors.newSingleThreadExecutor();
+        MetricsRegistry metricsRegistry = new MetricsRegistry(executor);
+        file = Files.createTempFile("uof-settlement", ".store");
+        storageBackend = new MappedStorageBackend(file, 64L * 1024 * 1024, executor, metricsRegistry);
+        FailedWriteTracker failedWriteTracker = new FailedWriteTracker(new EventRecoveryRequester(executor, metricsRegistry),
+                EventRecoveryRequester.Kind.STATEFUL, metricsRegistry, "settlement.write");
+        settlementWriter = new SettlementWriter(storageBackend, writerExecutor, metricsRegistry, new FeedMetrics(metricsRegistry),
+                failedWriteTracker, 3600, 3, 100);
+        settlementWriter.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        writerExecutor.shutdownNow();
+        storageBackend.close();
+        executor.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void resultsAndRangesAreEncodedWithEmptyAbsentParts() {
+        assertEquals("Won|0|", SettlementWriter.encodeResult(outcome("1", OutcomeResult.Won, VoidFactor.Zero, null)));
+        assertEquals("Lost|0.5|", SettlementWriter.encodeResult(outcome("1", OutcomeResult.Lost, VoidFactor.Half, null)));
+        assertEquals("Won|0|0.5", SettlementWriter.encodeResult(outcome("1", OutcomeResult.Won, VoidFactor.Zero, 0.5)));
+        assertEquals("|1|", SettlementWriter.encodeResult(outcome("1", null, VoidFactor.One, null)));
+        assertEquals("||", SettlementWriter.encodeResult(outcome("1", null, null, null)));
+
+        assertEquals("1000-2000", SettlementWriter.encodeRange(1000L, 2000L));
+        assertEquals("1000-", SettlementWriter.encodeRange(1000L, null));
+        assertEquals("-2000", SettlementWriter.encodeRange(null, 2000L));
+        assertEquals("-", SettlementWriter.encodeRange(null, null));
+    }
+
+    @Test(timeout = 10_000)
+    public void replayedSettlementsStoreTheSameResults() throws Exception {
+        List<MarketWithSettlement> markets = Arrays.asList(
+                settledMarket(18, SPECIFIERS,
+                        outcome("12", OutcomeResult.Won, VoidFactor.Zero, null),
+                        outcome("13", OutcomeResult.Lost, VoidFactor.Zero, null)),
+                settledMarket(1, null,
+                        outcome("1", OutcomeResult.Won, VoidFactor.Zero, 0.5),
+                        outcome("2", OutcomeResult.Lost, VoidFactor.Half, null),
+                        outcome("3", OutcomeResult.Lost, VoidFactor.One, null)));
+        Map<String, String> totalResults = ImmutableMap.of("12", "Won|0|", "13", "Lost|0|");
+        Map<String, String> winnerResults = ImmutableMap.of("1", "Won|0|0.5", "2", "Lost|0.5|", "3", "Lost|1|");
+
+        settlementWriter.settle(PRODUCER_ID, EVENT_ID, markets, 1000);
+        awaitWritten();
+        assertEquals(totalResults, readHash(settlementKey(18, SPECIFIERS)));
+        assertEquals(winnerResults, readHash(settlementKey(1, null)));
+
+        // a recovery resends the same message
+        settlementWriter.settle(PRODUCER_ID, EVENT_ID, markets, 1000);
+        awaitWritten();
+        assertEquals(totalResults, readHash(settlementKey(18, SPECIFIERS)));
+        assertEquals(winnerResults, readHash(settlementKey(1, null)));
+    }
+
+    @Test(timeout = 10_000)
+    public void rolledBackSettlementsAreRemovedOnce() throws Exception {
+        MarketWithSettlement total = settledMarket(18, SPECIFIERS, outcome("12", OutcomeResult.Won, VoidFactor.Zero, null));
+        MarketWithSettlement winner = settledMarket(1, null, outcome("1", OutcomeResult.Lost, VoidFactor.Zero, null));
+        settlementWriter.settle(PRODUCER_ID, EVENT_ID, Arrays.asList(total, winner), 1000);
+
+        settlementWriter.rollbackSettlement(PRODUCER_ID, EVENT_ID, Collections.singletonList(market(18, SPECIFIERS)), 2000);
+        awaitWritten();
+        assertNull(readHash(settlementKey(18, SPECIFIERS)));
+        assertEquals(Collections.singletonMap("1", "Lost|0|"), readHash(settlementKey(1, null)));
+
+        // replaying the rollback changes nothing, replaying both restores the rolled back state
+        settlementWriter.rollbackSettlement(PRODUCER_ID, EVENT_ID, Collections.singletonList(market(18, SPECIFIERS)), 2000);
+        awaitWritten();
+        assertNull(readHash(settlementKey(18, SPECIFIERS)));
+        settlementWriter.settle(PRODUCER_ID, EVENT_ID, Collections.singletonList(total), 1000);
+        settlementWriter.rollbackSettlement(PRODUCER_ID, EVENT_ID, Collections.singletonList(market(18, SPECIFIERS)), 2000);
+        awaitWritten();
+        assertNull(readHash(settlementKey(18, SPECIFIERS)));
+        assertEquals(Collections.singletonMap("1", "Lost|0|"), readHash(settlementKey(1, null)));
+    }
+
+    @Test(timeout = 10_000)
+    public void cancelsWithOpenRangesAreRolledBackOneRangeAtATime() throws Exception {
+        List<Market> markets = Arrays.asList(market(18, SPECIFIERS), market(1, null));
+        settlementWriter.cancel(PRODUCER_ID, EVENT_ID, markets, null, null, null, 1000);
+        settlementWriter.cancel(PRODUCER_ID, EVENT_ID, markets, 5000L, null, "sr:match:2", 2000);
+        settlementWriter.cancel(PRODUCER_ID, EVENT_ID, markets, null, 3000L, null, 3000);
+        awaitWritten();
+        Map<String, String> ranges = ImmutableMap.of("-", "", "5000-", "sr:match:2", "-3000", "");
+        assertEquals(ranges, readHash(cancelKey(18, SPECIFIERS)));
+        assertEquals(ranges, readHash(cancelKey(1, null)));
+
+        // a replayed cancel overwrites its own range only
+        settlementWriter.cancel(PRODUCER_ID, EVENT_ID, markets, 5000L, null, "sr:match:2", 2000);
+        awaitWritten();
+        assertEquals(ranges, readHash(cancelKey(18, SPECIFIERS)));
+
+        settlementWriter.rollbackCancel(PRODUCER_ID, EVENT_ID, Collections.singletonList(market(18, SPECIFIERS)), 5000L, null, 4000);
+        awaitWritten();
+        assertEquals(ImmutableMap.of("-", "", "-3000", ""), readHash(cancelKey(18, SPECIFIERS)));
+        assertEquals(ranges, readHash(cancelKey(1, null)));
+
+        // replaying the rollback changes nothing, rolling back the remaining ranges removes the key
+        settlementWriter.rollbackCancel(PRODUCER_ID, EVENT_ID, Collections.singletonList(market(18, SPECIFIERS)), 5000L, null, 4000);
+        settlementWriter.rollbackCancel(PRODUCER_ID, EVENT_ID, Collections.singletonList(market(18, SPECIFIERS)), null, null, 5000);
+        awaitWritten();
+        assertEquals(Collections.singletonMap("-3000", ""), readHash(cancelKey(18, SPECIFIERS)));
+        settlementWriter.rollbackCancel(PRODUCER_ID, EVENT_ID, Collections.singletonList(market(18, SPECIFIERS)), null, 3000L, 6000);
+        awaitWritten();
+        assertNull(readHash(cancelKey(18, SPECIFIERS)));
+        assertFalse(readHash(cancelKey(1, null)).isEmpty());
+    }
+
+    private void awaitWritten() throws InterruptedException {
+        while (settlementWriter.pendingMessages() > 0) {
+            TimeUnit.MILLISECONDS.sleep(1);
+        }
+    }
+
+    private Map<String, String> readHash(String key) {
+        Map<String, byte[]> fields = storageBackend.readHashes(Collections.singleton(key)).get(key);
+        if (fields == null) {
+            return null;
+        }
+        Map<String, String> values = new HashMap<>();
+        fields.forEach((field, value) -> values.put(field, new String(value, StandardCharsets.UTF_8)));
+        return values;
+    }
+
+    private static String settlementKey(int marketId, Map<String, String> specifiers) {
+        String event = EVENT_ID.toString();
+        return RedisKeysBuilder.getMarketSettlementKey(event, FullMarketIdBuilder.composeFullMarketKey(PRODUCER_ID, event, marketId, specifiers));
+    }
+
+    private static String cancelKey(int marketId, Map<String, String> specifiers) {
+        String event = EVENT_ID.toString();
+        return RedisKeysBuilder.getMarketCancelKey(event, FullMarketIdBuilder.composeFullMarketKey(PRODUCER_ID, event, marketId, specifiers));
+    }
+
+    private static Market market(int id, Map<String, String> specifiers) {
+        return proxy(Market.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getSpecifiers":
+                    return specifiers;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static MarketWithSettlement settledMarket(int id, Map<String, String> specifiers, OutcomeSettlement... outcomes) {
+        return proxy(MarketWithSettlement.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getSpecifiers":
+                    return specifiers;
+                case "getOutcomeSettlements":
+                    return Arrays.asList(outcomes);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    private static OutcomeSettlement outcome(String id, OutcomeResult result, VoidFactor voidFactor, Double deadHeatFactor) {
+        return proxy(OutcomeSettlement.class, (p, method, args) -> {
+            switch (method.getName()) {
+                case "getId":
+                    return id;
+                case "getOutcomeResult":
+                    return result;
+                case "getVoidFactor":
+                    return voidFactor;
+                case "getDeadHeatFactor":
+                    return deadHeatFactor;
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * The SDK entities are interfaces with many methods, the writer only reads the ids, specifiers and results
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(SettlementWriterTest.class.getClassLoader(), new Class[]{type}, handler);
+    }
+}
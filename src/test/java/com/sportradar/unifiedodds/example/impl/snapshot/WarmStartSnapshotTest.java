@@ -0,0 +1,117 @@
+package com.sportradar.unifiedodds.example.impl.snapshot;
+
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class WarmStartSnapshotTest {
+    // magic, version, created at, checksum
+    private static final int HEADER_BYTES = 4 + 4 + 8 + 8;
+
+    private ScheduledExecutorService executor;
+    private MetricsRegistry metricsRegistry;
+    private Path file;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        metricsRegistry = new MetricsRegistry(executor);
+        file = Files.createTempFile("uof-snapshot", ".bin");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        executor.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void restoresTheWrittenState() {
+        write("market names");
+
+        assertEquals("market names", load());
+    }
+
+    @Test
+    public void damagedSnapshotIsNotLoaded() throws Exception {
+        write("market names");
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long offset = Files.size(file) - 1;
+            raf.seek(offset);
+            int last = raf.read();
+            raf.seek(offset);
+            raf.write(last ^ 0xff);
+        }
+
+        assertNull(load());
+    }
+
+    @Test
+    public void corruptStringLengthIsACleanColdStart() throws Exception {
+        write("market names");
+        // the length of the section name, right after the header
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            raf.seek(HEADER_BYTES);
+            raf.writeInt(Integer.MAX_VALUE);
+        }
+
+        assertNull(load());
+    }
+
+    @Test
+    public void getStringRejectsLengthsBeyondTheBuffer() {
+        ByteBuffer buffer = ByteBuffer.allocate(8);
+        buffer.putInt(-1).putInt(0).flip();
+
+        try {
+            new SnapshotReader(buffer).getString();
+            throw new AssertionError("negative length accepted");
+        } catch (IllegalStateException e) {
+            // expected
+        }
+    }
+
+    private void write(String value) {
+        WarmStartSnapshot snapshot = new WarmStartSnapshot(file, executor, metricsRegistry, TimeUnit.HOURS.toMillis(1));
+        snapshot.register("names", new Value(value));
+        snapshot.write();
+    }
+
+    private String load() {
+        Value restored = new Value(null);
+        WarmStartSnapshot snapshot = new WarmStartSnapshot(file, executor, metricsRegistry, TimeUnit.HOURS.toMillis(1));
+        snapshot.register("names", restored);
+        snapshot.load();
+        return restored.value;
+    }
+
+    private static final class Value implements Snapshottable {
+        private String value;
+
+        private Value(String value) {
+            this.value = value;
+        }
+
+        @Override
+        public void writeSnapshot(SnapshotWriter writer) {
+            writer.putString(value);
+        }
+
+        @Override
+        public void readSnapshot(SnapshotReader reader) {
+            value = reader.getString();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.sportradar.unifiedodds.example.impl.storage;
+
+import com.google.common.base.Strings;
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MappedStorageBackendTest {
+    private static final long SEGMENT_BYTES = 64L * 1024 * 1024;
+    private static final int LARGEST_SLOT_BYTES = 1024 * 1024;
+
+    private ScheduledExecutorService executor;
+    private MetricsRegistry metricsRegistry;
+    private Path file;
+    private MappedStorageBackend backend;
+
+    @Before
+    public void setUp() throws Exception {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        metricsRegistry = new MetricsRegistry(executor);
+        file = Files.createTempFile("uof-storage", ".store");
+        backend = new MappedStorageBackend(file, SEGMENT_BYTES, executor, metricsRegistry);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        backend.close();
+        executor.shutdownNow();
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void failedWritesOfAFullFileAreNotCountedAsUsed() throws Exception {
+        // fills the single segment with the largest slots, the length prefix is part of the slot
+        String value = Strings.repeat("x", LARGEST_SLOT_BYTES - Integer.BYTES);
+        long slots = SEGMENT_BYTES / LARGEST_SLOT_BYTES;
+        try (StorageBatch batch = backend.newBatch("test")) {
+            for (int i = 0; i < slots; i++) {
+                batch.valuePut("key-" + i, value);
+            }
+        }
+        assertEquals(SEGMENT_BYTES, usedBytes());
+
+        for (int i = 0; i < 3; i++) {
+            try (StorageBatch batch = backend.newBatch("test")) {
+                batch.valuePut("overflow-" + i, value);
+                throw new AssertionError("the write to a full file succeeded");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+        }
+        assertEquals(SEGMENT_BYTES, usedBytes());
+
+        // a freed slot is reused and counted again
+        try (StorageBatch batch = backend.newBatch("test")) {
+            batch.delete("key-0");
+            assertEquals(SEGMENT_BYTES - LARGEST_SLOT_BYTES, usedBytes());
+            batch.valuePut("overflow-0", value);
+        }
+        assertEquals(SEGMENT_BYTES, usedBytes());
+        assertEquals(value, backend.readValue("overflow-0"));
+    }
+
+    @Test
+    public void fieldDirectoryMatchesAMapThroughPutsAndDeletes() throws Exception {
+        // enough fields to grow the directory several times and wrap its probe chains
+        Random random = new Random(42);
+        Map<String, String> expected = new HashMap<>();
+        try (StorageBatch batch = backend.newBatch("test")) {
+            for (int i = 0; i < 20_000; i++) {
+                String field = "f" + random.nextInt(300);
+                if (random.nextInt(3) == 0) {
+                    batch.hashDelete("hash", Collections.singleton(field));
+                    expected.remove(field);
+                } else {
+                    // values of varying sizes move fields between slot classes
+                    String value = Strings.repeat("v", random.nextInt(100)) + i;
+                    batch.hashPut("hash", Collections.singletonMap(field, value));
+                    expected.put(field, value);
+                }
+            }
+        }
+
+        Map<String, byte[]> stored = backend.readHashes(Collections.singleton("hash")).get("hash");
+        assertEquals(expected.size(), stored.size());
+        expected.forEach((field, value) -> assertEquals(field, value, new String(stored.get(field), StandardCharsets.UTF_8)));
+
+        // a hash without fields does not exist and its slots are released
+        try (StorageBatch batch = backend.newBatch("test")) {
+            batch.hashDelete("hash", expected.keySet());
+        }
+        assertFalse(backend.readHashes(Collections.singleton("hash")).containsKey("hash"));
+        assertEquals(0, usedBytes());
+    }
+
+    private long usedBytes() throws IOException {
+        StringWriter writer = new StringWriter();
+        metricsRegistry.export(writer);
+        for (String line : writer.toString().split("\n")) {
+            if (line.startsWith("uof_storage_mapped_bytes_used ")) {
+                return Long.parseLong(line.substring(line.indexOf(' ') + 1));
+            }
+        }
+        throw new AssertionError("gauge not exported");
+    }
+}
@@ -0,0 +1,219 @@
+package com.sportradar.unifiedodds.example.impl.utils;
+
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import com.sportradar.unifiedodds.example.impl.snapshot.WarmStartSnapshot;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class CompactKeyTrackerTest {
+    // 16 segments x 4 generations x 16 slots of 8 bytes: the smallest tables, 12 keys per generation and segment
+    private static final long SMALLEST_MEMORY_BYTES = 16 * 4 * 16 * Long.BYTES;
+    private static final int TABLE_CAPACITY = 16;
+    private static final int MAX_GENERATION_SIZE = 12;
+    private static final long TTL_MILLIS = 3000;
+    private static final long GENERATION_MILLIS = TTL_MILLIS / 3;
+
+    private ScheduledExecutorService executor;
+    private MetricsRegistry metricsRegistry;
+    private AtomicLong clock;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newSingleThreadScheduledExecutor();
+        metricsRegistry = new MetricsRegistry(executor);
+        clock = new AtomicLong(1_000_000);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void invalidateInsideAWrappedProbeChain() {
+        CompactKeyTracker tracker = newTracker(SMALLEST_MEMORY_BYTES);
+        // three keys homed in the last slot wrap around to the first two, a key homed in the first slot follows them
+        List<String> lastSlot = keysHomedAt(0, TABLE_CAPACITY - 1, 3);
+        String firstSlot = keysHomedAt(0, 0, 1).get(0);
+        lastSlot.forEach(tracker::put);
+        tracker.put(firstSlot);
+
+        // the hole left at the end of the table is filled from across the wrap
+        tracker.invalidate(lastSlot.get(0));
+        assertFalse(tracker.contains(lastSlot.get(0)));
+        assertTrue(tracker.contains(lastSlot.get(1)));
+        assertTrue(tracker.contains(lastSlot.get(2)));
+        assertTrue(tracker.contains(firstSlot));
+
+        // a hole after the wrap, the key homed there stays reachable
+        tracker.invalidate(lastSlot.get(2));
+        assertTrue(tracker.contains(lastSlot.get(1)));
+        assertTrue(tracker.contains(firstSlot));
+        tracker.invalidate(lastSlot.get(1));
+        assertTrue(tracker.contains(firstSlot));
+        assertEquals(1, tracker.size());
+    }
+
+    @Test
+    public void putAndInvalidateMatchASet() {
+        CompactKeyTracker tracker = newTracker(SMALLEST_MEMORY_BYTES);
+        // keys of one segment, clustered around the end of its table
+        List<String> keys = new ArrayList<>();
+        for (int slot : new int[]{13, 14, 15, 0, 1}) {
+            keys.addAll(keysHomedAt(0, slot, 3));
+        }
+
+        Random random = new Random(7);
+        Set<String> expected = new HashSet<>();
+        for (int i = 0; i < 10_000; i++) {
+            String key = keys.get(random.nextInt(keys.size()));
+            // below the ceiling, so the table never rotates early
+            if (random.nextBoolean() && expected.size() < MAX_GENERATION_SIZE) {
+                tracker.put(key);
+                expected.add(key);
+            } else {
+                tracker.invalidate(key);
+                expected.remove(key);
+            }
+            for (String k : keys) {
+                assertEquals("step " + i + ", " + k, expected.contains(k), tracker.contains(k));
+            }
+        }
+        assertEquals(expected.size(), tracker.size());
+    }
+
+    @Test
+    public void keysSurviveAtLeastTheTtl() {
+        CompactKeyTracker tracker = newTracker(1024 * 1024);
+        long start = clock.get();
+        // put early, in the middle and at the end of a generation
+        for (long offset : new long[]{0, GENERATION_MILLIS / 2, GENERATION_MILLIS - 1}) {
+            clock.set(start + offset);
+            tracker.put("key-" + offset);
+        }
+
+        // the clock advances in small steps, so the generations rotate on time
+        for (long now = start; now < start + 2 * TTL_MILLIS; now += 50) {
+            clock.set(now);
+            for (long offset : new long[]{0, GENERATION_MILLIS / 2, GENERATION_MILLIS - 1}) {
+                boolean contained = tracker.contains("key-" + offset);
+                if (now >= start + offset && now < start + offset + TTL_MILLIS) {
+                    assertTrue("key-" + offset + " forgotten at " + (now - start), contained);
+                }
+                if (now >= start + TTL_MILLIS + GENERATION_MILLIS) {
+                    assertFalse("key-" + offset + " kept at " + (now - start), contained);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void earlyRotationAtTheCeilingDropsTheOldestGeneration() {
+        CompactKeyTracker tracker = newTracker(SMALLEST_MEMORY_BYTES);
+        List<String> keys = keysOfSegment(0, 4 * MAX_GENERATION_SIZE + 1);
+
+        for (int i = 0; i <= MAX_GENERATION_SIZE; i++) {
+            tracker.put(keys.get(i));
+        }
+        // the full generation was sealed ahead of time, its keys are still tracked
+        assertEquals(1, earlyRotations());
+        for (int i = 0; i <= MAX_GENERATION_SIZE; i++) {
+            assertTrue(tracker.contains(keys.get(i)));
+        }
+
+        for (int i = MAX_GENERATION_SIZE + 1; i < keys.size(); i++) {
+            tracker.put(keys.get(i));
+        }
+        // the first generation was reused for the last key
+        assertEquals(4, earlyRotations());
+        for (int i = 0; i < keys.size(); i++) {
+            assertEquals(keys.get(i), i >= MAX_GENERATION_SIZE, tracker.contains(keys.get(i)));
+        }
+        assertTrue(tracker.memoryBytes() <= SMALLEST_MEMORY_BYTES);
+    }
+
+    @Test
+    public void snapshotRoundTripKeepsTheExpiry() throws Exception {
+        CompactKeyTracker tracker = newTracker(1024 * 1024);
+        long start = clock.get();
+        tracker.put("old");
+        clock.set(start + 2 * GENERATION_MILLIS);
+        tracker.put("new");
+        tracker.put("invalidated");
+        tracker.invalidate("invalidated");
+
+        Path file = Files.createTempFile("uof-tracker", ".snapshot");
+        try {
+            WarmStartSnapshot snapshot = new WarmStartSnapshot(file, executor, metricsRegistry, TimeUnit.HOURS.toMillis(1));
+            snapshot.register("keys", tracker);
+            snapshot.write();
+
+            CompactKeyTracker restored = newTracker(1024 * 1024);
+            WarmStartSnapshot restoredSnapshot = new WarmStartSnapshot(file, executor, metricsRegistry, TimeUnit.HOURS.toMillis(1));
+            restoredSnapshot.register("keys", restored);
+            restoredSnapshot.load();
+
+            assertTrue(restored.contains("old"));
+            assertTrue(restored.contains("new"));
+            assertFalse(restored.contains("invalidated"));
+            assertEquals(2, restored.size());
+
+            // the restored keys expire when they would have in the previous run
+            clock.set(start + TTL_MILLIS + GENERATION_MILLIS);
+            assertFalse(restored.contains("old"));
+            assertTrue(restored.contains("new"));
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private CompactKeyTracker newTracker(long maxMemoryBytes) {
+        return new CompactKeyTracker("test", maxMemoryBytes, TTL_MILLIS, TimeUnit.MILLISECONDS, metricsRegistry, clock::get);
+    }
+
+    private long earlyRotations() {
+        return metricsRegistry.counter("test.tracker.rotations.early").sum();
+    }
+
+    private static List<String> keysHomedAt(int segment, int slot, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            long hash = CompactKeyTracker.hash("key-" + i);
+            if (segmentOf(hash) == segment && ((int) hash & (TABLE_CAPACITY - 1)) == slot) {
+                keys.add("key-" + i);
+            }
+        }
+        return keys;
+    }
+
+    private static List<String> keysOfSegment(int segment, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            if (segmentOf(CompactKeyTracker.hash("key-" + i)) == segment) {
+                keys.add("key-" + i);
+            }
+        }
+        return keys;
+    }
+
+    private static int segmentOf(long hash) {
+        return (int) (hash >>> 60) & 15;
+    }
+}
@@ -0,0 +1,276 @@
+package com.sportradar.unifiedodds.example.impl.utils;
+
+import com.sportradar.unifiedodds.example.impl.metrics.MetricsRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class KeyedSerialExecutorTest {
+    private ExecutorService workers;
+    private ScheduledExecutorService metricsExecutor;
+    private MetricsRegistry metricsRegistry;
+
+    @Before
+    public void setUp() {
+        workers = Executors.newFixedThreadPool(8);
+        metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+        metricsRegistry = new MetricsRegistry(metricsExecutor);
+    }
+
+    @After
+    public void tearDown() {
+        workers.shutdownNow();
+        metricsExecutor.shutdownNow();
+    }
+
+    @Test(timeout = 60_000)
+    public void keepsPerKeyOrderWithConcurrentSubmitters() throws Exception {
+        int submitters = 8;
+        int keysPerSubmitter = 100;
+        int tasksPerKey = 100;
+        // fewer lanes than keys, so unrelated keys share lanes, and a capacity small enough to block the submitters
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test", workers, 16, 256, metricsRegistry);
+
+        int keyCount = submitters * keysPerSubmitter;
+        AtomicIntegerArray lastSequence = new AtomicIntegerArray(keyCount);
+        AtomicIntegerArray running = new AtomicIntegerArray(keyCount);
+        AtomicReference<String> violation = new AtomicReference<>();
+        CountDownLatch completed = new CountDownLatch(keyCount * tasksPerKey);
+        for (int i = 0; i < keyCount; i++) {
+            lastSequence.set(i, -1);
+        }
+
+        List<Thread> threads = new ArrayList<>();
+        for (int s = 0; s < submitters; s++) {
+            int firstKey = s * keysPerSubmitter;
+            threads.add(new Thread(() -> {
+                try {
+                    for (int sequence = 0; sequence < tasksPerKey; sequence++) {
+                        for (int key = firstKey; key < firstKey + keysPerSubmitter; key++) {
+                            int k = key;
+                            int expected = sequence;
+                            executor.execute("key-" + k, () -> {
+                                if (running.getAndIncrement(k) != 0) {
+                                    violation.compareAndSet(null, "key-" + k + " ran concurrently");
+                                }
+                                if (!lastSequence.compareAndSet(k, expected - 1, expected)) {
+                                    violation.compareAndSet(null, "key-" + k + " ran " + expected + " after " + lastSequence.get(k));
+                                }
+                                running.decrementAndGet(k);
+                                completed.countDown();
+                            });
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertTrue("tasks did not complete", completed.await(30, TimeUnit.SECONDS));
+        assertNull(violation.get());
+        for (int i = 0; i < keyCount; i++) {
+            assertEquals("last sequence of key-" + i, tasksPerKey - 1, lastSequence.get(i));
+        }
+        awaitIdle(executor);
+    }
+
+    @Test(timeout = 10_000)
+    public void busyLaneYieldsAfterMaxTasksPerRun() throws Exception {
+        CountingExecutor singleThread = new CountingExecutor(Executors.newSingleThreadExecutor());
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test", singleThread, 2, 1024, metricsRegistry);
+        String busyKey = keyOnOtherLane(null, 2);
+        String otherKey = keyOnOtherLane(busyKey, 2);
+
+        int busyTasks = KeyedSerialExecutor.MAX_TASKS_PER_RUN * 3 + 1;
+        CountDownLatch blocked = new CountDownLatch(1);
+        CountDownLatch completed = new CountDownLatch(busyTasks);
+        List<String> order = Collections.synchronizedList(new ArrayList<>());
+        executor.execute(busyKey, () -> await(blocked));
+        for (int i = 1; i < busyTasks; i++) {
+            int sequence = i;
+            executor.execute(busyKey, () -> {
+                order.add(busyKey + "-" + sequence);
+                completed.countDown();
+            });
+        }
+        executor.execute(otherKey, () -> {
+            order.add(otherKey);
+            completed.countDown();
+        });
+        blocked.countDown();
+
+        assertTrue("tasks did not complete", completed.await(5, TimeUnit.SECONDS));
+        singleThread.delegate.shutdownNow();
+
+        // the busy lane is rescheduled behind the other one after each run of MAX_TASKS_PER_RUN tasks
+        int otherIndex = order.indexOf(otherKey);
+        assertEquals(KeyedSerialExecutor.MAX_TASKS_PER_RUN - 1, otherIndex);
+        int expected = 1;
+        for (String executed : order) {
+            if (!executed.equals(otherKey)) {
+                assertEquals(busyKey + "-" + expected++, executed);
+            }
+        }
+        assertEquals(busyTasks, expected);
+        assertTrue("lane was not rescheduled: " + singleThread.executions.get(), singleThread.executions.get() >= 1 + 4);
+        awaitIdle(executor);
+    }
+
+    @Test(timeout = 10_000)
+    public void tryExecuteTimesOutAtCapacity() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test", workers, 4, 2, metricsRegistry);
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicBoolean rejectedRan = new AtomicBoolean();
+        assertTrue(executor.tryExecute("a", () -> await(blocked), 0, TimeUnit.MILLISECONDS));
+        assertTrue(executor.tryExecute("b", () -> await(blocked), 0, TimeUnit.MILLISECONDS));
+
+        long start = System.nanoTime();
+        assertFalse(executor.tryExecute("c", () -> rejectedRan.set(true), 50, TimeUnit.MILLISECONDS));
+        assertTrue("returned before the timeout", System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(2, executor.getPendingTasks());
+
+        blocked.countDown();
+        CountDownLatch completed = new CountDownLatch(1);
+        assertTrue(executor.tryExecute("c", completed::countDown, 1, TimeUnit.SECONDS));
+        assertTrue(completed.await(5, TimeUnit.SECONDS));
+        assertFalse("the rejected task ran", rejectedRan.get());
+    }
+
+    @Test(timeout = 10_000)
+    public void rejectedLaneFailsTheSubmission() throws Exception {
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test", task -> {
+            throw new RejectedExecutionException("stopped");
+        }, 4, 16, metricsRegistry);
+        AtomicInteger dropped = new AtomicInteger();
+
+        assertFalse(executor.tryExecute("a", () -> { }, dropped::incrementAndGet, 0, TimeUnit.MILLISECONDS));
+        try {
+            executor.execute("a", () -> { });
+            throw new AssertionError("execute did not fail");
+        } catch (RejectedExecutionException e) {
+            // expected
+        }
+        // the submitter got its task back, so the drop handler is not invoked
+        assertEquals(0, dropped.get());
+        assertEquals(0, executor.getPendingTasks());
+    }
+
+    @Test(timeout = 10_000)
+    public void droppedTasksOfRejectedRescheduleAreReported() throws Exception {
+        RejectingExecutor rejecting = new RejectingExecutor(workers);
+        KeyedSerialExecutor executor = new KeyedSerialExecutor("test", rejecting, 1, 1024, metricsRegistry);
+        CountDownLatch blocked = new CountDownLatch(1);
+        AtomicInteger executed = new AtomicInteger();
+        Set<Integer> dropped = ConcurrentHashMap.newKeySet();
+
+        int queued = KeyedSerialExecutor.MAX_TASKS_PER_RUN + 8;
+        assertTrue(executor.tryExecute("key", () -> await(blocked), 0, TimeUnit.MILLISECONDS));
+        for (int i = 0; i < queued; i++) {
+            int sequence = i;
+            // accepted while the lane is running, so the submitter is told true
+            assertTrue(executor.tryExecute("key", executed::incrementAndGet, () -> dropped.add(sequence), 0, TimeUnit.MILLISECONDS));
+        }
+        rejecting.reject.set(true);
+        blocked.countDown();
+
+        awaitIdle(executor);
+        assertEquals(KeyedSerialExecutor.MAX_TASKS_PER_RUN - 1, executed.get());
+        assertEquals(queued - executed.get(), dropped.size());
+        for (int i = executed.get(); i < queued; i++) {
+            assertTrue("task " + i + " was not reported", dropped.contains(i));
+        }
+    }
+
+    /**
+     * The capacity is released right after a task returns, so it may lag behind the task's own completion signal
+     */
+    private static void awaitIdle(KeyedSerialExecutor executor) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (executor.getPendingTasks() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(0, executor.getPendingTasks());
+    }
+
+    private static String keyOnOtherLane(String key, int laneCount) {
+        for (int i = 0; ; i++) {
+            String candidate = "key-" + i;
+            if (key == null || lane(candidate, laneCount) != lane(key, laneCount)) {
+                return candidate;
+            }
+        }
+    }
+
+    private static int lane(Object key, int laneCount) {
+        int hash = key.hashCode();
+        hash ^= hash >>> 16;
+        return (hash & Integer.MAX_VALUE) % laneCount;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class CountingExecutor implements Executor {
+        private final ExecutorService delegate;
+        private final AtomicInteger executions = new AtomicInteger();
+
+        private CountingExecutor(ExecutorService delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            executions.incrementAndGet();
+            delegate.execute(command);
+        }
+    }
+
+    private static final class RejectingExecutor implements Executor {
+        private final Executor delegate;
+        private final AtomicBoolean reject = new AtomicBoolean();
+
+        private RejectingExecutor(Executor delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (reject.get()) {
+                throw new RejectedExecutionException("stopped");
+            }
+            delegate.execute(command);
+        }
+    }
+}